@@ -0,0 +1,75 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.service.BM25Service;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BM25 評分基準測試
+ *
+ * 每次調用對一個文檔評分（輪流取語料中的文檔）：
+ * - indexedDocument：{@link BM25Service#calculateBM25Score(Document, String, List)}，查已建立的 postings
+ * - rawText：{@link BM25Service#calculateBM25Score(String, String, List)}，即時分析文本後以索引統計計分
+ *
+ * 語料為中英文交替的段落，查詢分中文與英文兩組。
+ *
+ * 執行：java -jar target/benchmarks.jar BM25ScoringBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BM25ScoringBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int corpusSize;
+
+    @Param({BenchmarkFixtures.ZH, BenchmarkFixtures.EN})
+    private String language;
+
+    private BM25Service bm25Service;
+    private List<Document> documents;
+    private String query;
+    private List<String> keywords;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        documents = BenchmarkFixtures.documents(corpusSize, 42);
+        bm25Service = new BM25Service();
+        bm25Service.indexDocuments(documents);
+        query = BenchmarkFixtures.query(language);
+        keywords = List.of(query.split("\\s+"));
+    }
+
+    @Benchmark
+    public double indexedDocument() {
+        return bm25Service.calculateBM25Score(nextDocument(), query, keywords);
+    }
+
+    @Benchmark
+    public double rawText() {
+        return bm25Service.calculateBM25Score(nextDocument().getText(), query, keywords);
+    }
+
+    private Document nextDocument() {
+        Document document = documents.get(cursor);
+        cursor = cursor + 1 == documents.size() ? 0 : cursor + 1;
+        return document;
+    }
+}
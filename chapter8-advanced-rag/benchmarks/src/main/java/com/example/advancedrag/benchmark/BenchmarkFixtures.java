@@ -0,0 +1,140 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.model.DocumentFeatures;
+import com.example.advancedrag.model.ScoredDocument;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基準測試共用的中英文測試資料
+ *
+ * 段落由 RAG 技術文檔風格的句子以固定種子隨機組合而成，同樣的參數永遠產生同樣的文本；
+ * 文檔元數據與寫入流程一致，包含預計算的 {@link DocumentFeatures}。
+ */
+final class BenchmarkFixtures {
+
+    static final String ZH = "zh";
+    static final String EN = "en";
+
+    static final String ZH_QUERY = "如何使用 Spring AI 實現 RAG 系統的向量檢索與 Re-ranking？";
+    static final String EN_QUERY = "How do I combine vector search and BM25 reranking in a Spring AI RAG pipeline?";
+
+    private static final String[] ZH_SENTENCES = {
+            "Spring AI 提供向量存儲、文檔檢索與生成的完整 RAG 框架，支援多種嵌入模型與重排策略。",
+            "多階段檢索先以向量相似度粗檢索 Top-30 候選文檔，再以 Re-ranking 精檢索取出 Top-5。",
+            "BM25 根據詞頻、逆文檔頻率與文檔長度正規化計算相關性，適合補足向量檢索對專有名詞的不足。",
+            "Embedding 快取以文本、模型與維度計算快取鍵，命中時不需再次呼叫 Embedding API。",
+            "文檔切分策略會影響檢索品質：區塊太大會稀釋語義，太小則缺乏上下文。",
+            "混合檢索同時執行向量檢索與關鍵詞檢索，並以 Reciprocal Rank Fusion 融合兩路排名。",
+            "上下文優化會在 token 預算內挑選最相關的文檔片段，並去除重複的句子。",
+            "內容審核結合外部審核 API 與自定義規則，檢查敏感詞、特殊字元比例與重複內容。",
+            "查詢重寫會讓大型語言模型將口語化的問題改寫成更適合檢索的查詢。",
+            "PgVector 支援 HNSW 與 IVFFlat 索引，HNSW 的召回率與查詢延遲通常較佳。",
+            "兩級快取以 Caffeine 作為本地 L1、Redis 作為分散式 L2，降低網路往返次數。",
+            "評估指標包括答案相關性、忠實度與上下文精確度，檢索階段則常用 recall@k 與 MRR。"
+    };
+
+    private static final String[] EN_SENTENCES = {
+            "Spring AI provides a complete RAG framework with vector stores, document retrieval and generation.",
+            "Multi-stage retrieval first fetches the top 30 candidates by vector similarity and then reranks them.",
+            "BM25 scores documents by term frequency, inverse document frequency and length normalization.",
+            "The embedding cache keys entries by text, model and dimensions so repeated texts skip the API call.",
+            "Chunking strategy affects retrieval quality because large chunks dilute meaning and small ones lose context.",
+            "Hybrid search runs vector and keyword retrieval in parallel and merges them with reciprocal rank fusion.",
+            "Context optimization packs the most relevant passages into the token budget and drops duplicate sentences.",
+            "Content moderation combines an external moderation API with custom rules for sensitive words and spam.",
+            "Query rewriting asks the language model to turn a vague question into a retrieval-friendly query.",
+            "PgVector supports HNSW and IVFFlat indexes, and HNSW usually gives better recall and latency.",
+            "A two-level cache keeps hot entries in a local Caffeine L1 in front of a shared Redis L2.",
+            "Retrieval quality is usually tracked with recall at k, MRR and nDCG on a labeled query set."
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 查詢文本
+     *
+     * @param language zh 或 en
+     * @return 查詢
+     */
+    static String query(String language) {
+        return ZH.equals(language) ? ZH_QUERY : EN_QUERY;
+    }
+
+    /**
+     * 生成段落
+     *
+     * @param language zh 或 en
+     * @param sentences 句子數
+     * @param seed 隨機種子
+     * @return 段落
+     */
+    static String paragraph(String language, int sentences, long seed) {
+        return paragraph(language, sentences, new Random(seed));
+    }
+
+    /**
+     * 生成中英文交替的文檔（元數據含預計算特徵）
+     *
+     * @param count 文檔數
+     * @param seed 隨機種子
+     * @return 文檔列表
+     */
+    static List<Document> documents(int count, long seed) {
+        Random random = new Random(seed);
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String content = paragraph(i % 2 == 0 ? ZH : EN, 2 + random.nextInt(8), random);
+
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("source", "benchmark-" + (i % 10) + ".md");
+            metadata.put("category", i % 3 == 0 ? "retrieval" : "generation");
+            metadata.put(DocumentFeatures.METADATA_KEY, DocumentFeatures.extract(content, metadata).toMetadata());
+
+            documents.add(Document.builder()
+                    .id("doc-" + i)
+                    .text(content)
+                    .metadata(metadata)
+                    .score(0.5 + random.nextDouble() * 0.5)
+                    .build());
+        }
+        return documents;
+    }
+
+    /**
+     * 生成評分文檔（模擬檢索結果）
+     *
+     * @param count 文檔數
+     * @param seed 隨機種子
+     * @return 評分文檔列表
+     */
+    static List<ScoredDocument> scoredDocuments(int count, long seed) {
+        List<ScoredDocument> scored = new ArrayList<>(count);
+        for (Document document : documents(count, seed)) {
+            scored.add(ScoredDocument.builder()
+                    .document(document)
+                    .score(document.getScore())
+                    .semanticScore(document.getScore())
+                    .build());
+        }
+        return scored;
+    }
+
+    private static String paragraph(String language, int sentences, Random random) {
+        String[] pool = ZH.equals(language) ? ZH_SENTENCES : EN_SENTENCES;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            if (EN.equals(language) && i > 0) {
+                text.append(' ');
+            }
+            text.append(pool[random.nextInt(pool.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.util.CacheKeyGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding 快取鍵基準測試
+ *
+ * {@link CacheKeyGenerator#generateEmbeddingKey(String, String, Integer)} 在每次 Embedding 快取查詢時都會執行，
+ * 耗時主要來自對整段文本做摘要；中文文本的 UTF-8 編碼長度約為字元數的三倍。
+ *
+ * 執行：java -jar target/benchmarks.jar CacheKeyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+    private static final String MODEL = "text-embedding-3-small";
+    private static final int DIMENSIONS = 1536;
+
+    @Param({BenchmarkFixtures.ZH, BenchmarkFixtures.EN})
+    private String language;
+
+    @Param({"1", "30"})
+    private int sentences;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = BenchmarkFixtures.paragraph(language, sentences, 42);
+    }
+
+    @Benchmark
+    public String generateEmbeddingKey() {
+        return CacheKeyGenerator.generateEmbeddingKey(text, MODEL, DIMENSIONS);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.model.RAGQueryOptions;
+import com.example.advancedrag.model.ScoredDocument;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.service.ContextOptimizationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上下文優化基準測試
+ *
+ * {@link ContextOptimizationService#optimizeContext(List, RAGQueryOptions)}：排序、去重與按 token 預算打包。
+ * 文檔數對應 Re-ranking 後的 Top-5 與未重排的粗檢索 Top-30 / Top-100；
+ * 測試資料由同一批句子組合而成，包含真實檢索結果中常見的重複句子。
+ *
+ * 執行：java -jar target/benchmarks.jar ContextOptimizationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextOptimizationBenchmark {
+
+    @Param({"5", "30", "100"})
+    private int documents;
+
+    @Param({"1000", "4000"})
+    private int maxContextTokens;
+
+    private ContextOptimizationService service;
+    private List<ScoredDocument> scoredDocuments;
+    private RAGQueryOptions options;
+
+    @Setup
+    public void setUp() {
+        service = new ContextOptimizationService(new RAGProperties());
+        scoredDocuments = BenchmarkFixtures.scoredDocuments(documents, 42);
+        options = RAGQueryOptions.builder()
+                .maxContextTokens(maxContextTokens)
+                .build();
+    }
+
+    @Benchmark
+    public String optimizeContext() {
+        return service.optimizeContext(scoredDocuments, options);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.reranking.LocalRerankingProvider;
+import com.example.advancedrag.reranking.RerankResult;
+import com.example.advancedrag.service.BM25Service;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地 Re-ranking 端到端基準測試
+ *
+ * 完整的 {@link LocalRerankingProvider#rerank(String, List, int)}：關鍵詞提取、BM25 查 postings、
+ * 讀取預計算特徵、加權評分與 Top-K 選擇。BM25 索引預先包含所有候選文檔，與線上寫入流程一致。
+ *
+ * 執行：java -jar target/benchmarks.jar LocalRerankingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalRerankingBenchmark {
+
+    private static final int TOP_K = 5;
+
+    @Param({"30", "300", "3000"})
+    private int candidates;
+
+    @Param({BenchmarkFixtures.ZH, BenchmarkFixtures.EN})
+    private String language;
+
+    private LocalRerankingProvider provider;
+    private List<Document> documents;
+    private String query;
+
+    @Setup
+    public void setUp() {
+        documents = BenchmarkFixtures.documents(candidates, 42);
+        BM25Service bm25Service = new BM25Service();
+        bm25Service.indexDocuments(documents);
+        provider = new LocalRerankingProvider(bm25Service);
+        query = BenchmarkFixtures.query(language);
+    }
+
+    @Benchmark
+    public List<RerankResult> rerank() {
+        return provider.rerank(query, documents, TOP_K);
+    }
+}
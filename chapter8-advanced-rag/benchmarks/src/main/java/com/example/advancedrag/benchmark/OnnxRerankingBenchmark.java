@@ -0,0 +1,96 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.reranking.OnnxCrossEncoderRerankingProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ONNX Cross-Encoder Re-ranking 吞吐基準測試
+ *
+ * 每次調用對 {@link #DOCUMENTS} 個文檔評分，分數單位為 docs/sec；
+ * 推論線程數為 threads、算子內線程數為 1，每核吞吐 = 分數 / threads。
+ *
+ * 需要模型檔（例如 cross-encoder/ms-marco-MiniLM-L-6-v2 匯出的 ONNX）：
+ * java -Donnx.model=/models/model.onnx -Donnx.tokenizer=/models/tokenizer.json \
+ *      -jar target/benchmarks.jar OnnxRerankingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class OnnxRerankingBenchmark {
+
+    private static final int DOCUMENTS = 64;
+
+    private static final String QUERY = "如何使用 Spring AI 實現 RAG 系統的 Re-ranking？";
+
+    @Param({"1", "4"})
+    private int threads;
+
+    @Param({"16", "32"})
+    private int batchSize;
+
+    @Param({"256", "512"})
+    private int maxSequenceLength;
+
+    private OnnxCrossEncoderRerankingProvider provider;
+    private List<Document> documents;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String modelPath = System.getProperty("onnx.model");
+        String tokenizerPath = System.getProperty("onnx.tokenizer");
+        if (modelPath == null || tokenizerPath == null) {
+            throw new IllegalStateException("請以 -Donnx.model 與 -Donnx.tokenizer 指定模型與 tokenizer 路徑");
+        }
+
+        RAGProperties.OnnxReranking config = new RAGProperties.OnnxReranking();
+        config.setModelPath(modelPath);
+        config.setTokenizerPath(tokenizerPath);
+        config.setThreads(threads);
+        config.setBatchSize(batchSize);
+        config.setMaxSequenceLength(maxSequenceLength);
+        config.setIntraOpThreads(1);
+        provider = new OnnxCrossEncoderRerankingProvider(config);
+
+        // 中英文混合、長度約 150-600 字元的段落
+        String zh = "Spring AI 提供向量存儲、文檔檢索與生成的完整 RAG 框架，支援多種嵌入模型與重排策略。";
+        String en = "Cross-encoders score each query-document pair jointly and usually outperform bi-encoders on reranking. ";
+        documents = new ArrayList<>(DOCUMENTS);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            String text = (i % 2 == 0 ? zh : en).repeat(2 + i % 6);
+            documents.add(Document.builder().id("doc-" + i).text(text).build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        provider.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public double[] scoreDocuments() throws Exception {
+        return provider.score(QUERY, documents);
+    }
+}
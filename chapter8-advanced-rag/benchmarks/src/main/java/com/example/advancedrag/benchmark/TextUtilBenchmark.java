@@ -0,0 +1,67 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.util.TextUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本工具基準測試
+ *
+ * - tokenize：空白切分（中文無空白時整段為一個詞）
+ * - analyze：BM25 使用的詞法分析（英文單詞 + 中文二元組）
+ * - termFrequency：不區分大小寫的子字串計數
+ *
+ * 文本長度以句子數控制：3 句約為一個查詢或短段落，30 句約為一個完整的文檔區塊。
+ *
+ * 執行：java -jar target/benchmarks.jar TextUtilBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextUtilBenchmark {
+
+    @Param({BenchmarkFixtures.ZH, BenchmarkFixtures.EN})
+    private String language;
+
+    @Param({"3", "30"})
+    private int sentences;
+
+    private String text;
+    private String term;
+
+    @Setup
+    public void setUp() {
+        text = BenchmarkFixtures.paragraph(language, sentences, 42);
+        term = BenchmarkFixtures.ZH.equals(language) ? "向量檢索" : "Retrieval";
+    }
+
+    @Benchmark
+    public List<String> tokenize() {
+        return TextUtil.tokenize(text);
+    }
+
+    @Benchmark
+    public List<String> analyze() {
+        return TextUtil.analyze(text);
+    }
+
+    @Benchmark
+    public int termFrequency() {
+        return TextUtil.termFrequency(text, term);
+    }
+}
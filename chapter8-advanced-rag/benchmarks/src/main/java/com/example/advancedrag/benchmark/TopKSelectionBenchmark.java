@@ -0,0 +1,106 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.util.TopKSelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-ranking Top-K 選擇基準測試
+ *
+ * 比較三種從 n 個候選中取前 k 名的方式：
+ * - legacySortWithIndexOf：原 LocalRerankingProvider 實作（物件列表全排序 + limit + indexOf 取名次）
+ * - fullSort：物件列表全排序 + limit
+ * - topKSelector：{@link TopKSelector} 有界堆（primitive 分數陣列）
+ *
+ * 執行：java -jar target/benchmarks.jar TopKSelectionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopKSelectionBenchmark {
+
+    @Param({"30", "300", "3000"})
+    private int candidates;
+
+    @Param({"5", "50"})
+    private int topK;
+
+    private double[] scores;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        scores = new double[candidates];
+        for (int i = 0; i < candidates; i++) {
+            scores[i] = random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public List<Ranked> legacySortWithIndexOf() {
+        List<Scored> scored = toScoredList();
+        scored.sort((a, b) -> Double.compare(b.score, a.score));
+        return scored.stream()
+                .limit(topK)
+                .map(s -> new Ranked(s.index, scored.indexOf(s), s.score))
+                .toList();
+    }
+
+    @Benchmark
+    public List<Ranked> fullSort() {
+        List<Scored> scored = toScoredList();
+        scored.sort((a, b) -> Double.compare(b.score, a.score));
+        List<Ranked> result = new ArrayList<>(Math.min(topK, scored.size()));
+        for (int rank = 0; rank < scored.size() && rank < topK; rank++) {
+            Scored s = scored.get(rank);
+            result.add(new Ranked(s.index, rank, s.score));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Ranked> topKSelector() {
+        double[] finalScores = new double[scores.length];
+        System.arraycopy(scores, 0, finalScores, 0, scores.length);
+        int[] top = TopKSelector.select(finalScores, topK);
+        List<Ranked> result = new ArrayList<>(top.length);
+        for (int rank = 0; rank < top.length; rank++) {
+            result.add(new Ranked(top[rank], rank, finalScores[top[rank]]));
+        }
+        return result;
+    }
+
+    /**
+     * 模擬評分階段產生的候選物件列表
+     */
+    private List<Scored> toScoredList() {
+        List<Scored> scored = new ArrayList<>(scores.length);
+        for (int i = 0; i < scores.length; i++) {
+            scored.add(new Scored(i, scores[i]));
+        }
+        return scored;
+    }
+
+    private record Scored(int index, double score) {
+    }
+
+    public record Ranked(int originalIndex, int newIndex, double score) {
+    }
+}
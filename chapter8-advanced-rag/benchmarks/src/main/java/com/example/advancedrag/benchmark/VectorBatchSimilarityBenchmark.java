@@ -0,0 +1,112 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.util.VectorUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一對多向量相似度基準測試（暴力檢索）
+ *
+ * 每次調用計算一個查詢對 rows 個向量的相似度：
+ * - legacyPairwiseCosine：原 VectorUtil 實作，逐對呼叫純量餘弦（每次重算兩個範數）
+ * - cosineSimilarities：{@link VectorUtil#cosineSimilarities}，連續矩陣、列未正規化
+ * - dotProductsNormalized：{@link VectorUtil#dotProducts}，列與查詢預先正規化，餘弦即內積
+ *
+ * 預設以 SIMD 後端執行；加上 -jvmArgsAppend -Dadvancedrag.vector.simd=false 可量測純量後端。
+ *
+ * 執行：java -jar target/benchmarks.jar VectorBatchSimilarityBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "--add-modules=jdk.incubator.vector"})
+public class VectorBatchSimilarityBenchmark {
+
+    @Param({"384", "1536", "3072"})
+    private int dimensions;
+
+    @Param({"1000", "10000"})
+    private int rows;
+
+    private float[] query;
+    private float[] normalizedQuery;
+    private float[] matrix;
+    private float[] normalizedMatrix;
+    private float[][] vectors;
+    private double[] scores;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        query = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            query[i] = (float) random.nextGaussian();
+        }
+        matrix = new float[rows * dimensions];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = (float) random.nextGaussian();
+        }
+
+        vectors = new float[rows][dimensions];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(matrix, r * dimensions, vectors[r], 0, dimensions);
+        }
+        normalizedQuery = VectorUtil.normalize(query);
+        normalizedMatrix = VectorUtil.normalizeRows(matrix.clone(), dimensions);
+        scores = new double[rows];
+    }
+
+    @Benchmark
+    public double[] legacyPairwiseCosine() {
+        for (int r = 0; r < rows; r++) {
+            scores[r] = legacyCosine(query, vectors[r]);
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public double[] cosineSimilarities() {
+        VectorUtil.cosineSimilarities(query, matrix, dimensions, scores);
+        return scores;
+    }
+
+    @Benchmark
+    public double[] dotProductsNormalized() {
+        VectorUtil.dotProducts(normalizedQuery, normalizedMatrix, dimensions, scores);
+        return scores;
+    }
+
+    /**
+     * 原 {@code VectorUtil.cosineSimilarity(float[], float[])} 的純量實作
+     */
+    private static double legacyCosine(float[] vec1, float[] vec2) {
+        double dotProduct = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+
+        for (int i = 0; i < vec1.length; i++) {
+            dotProduct += vec1[i] * vec2[i];
+            norm1 += vec1[i] * vec1[i];
+            norm2 += vec2[i] * vec2[i];
+        }
+
+        if (norm1 == 0.0 || norm2 == 0.0) {
+            return 0.0;
+        }
+        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.util.VectorUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 餘弦相似度基準測試
+ *
+ * 比較 {@link VectorUtil#cosineSimilarity(List, List)}（List&lt;Double&gt;，逐元素拆箱）
+ * 與 {@link VectorUtil#cosineSimilarity(float[], float[])}（primitive 陣列），
+ * 維度對應常見嵌入模型：384（MiniLM）、1536（text-embedding-3-small）、3072（text-embedding-3-large）。
+ * float[] 版本在 SIMD 後端下執行；加上 -jvmArgsAppend -Dadvancedrag.vector.simd=false 可量測純量後端。
+ *
+ * 執行：java -jar target/benchmarks.jar VectorSimilarityBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorSimilarityBenchmark {
+
+    @Param({"384", "1536", "3072"})
+    private int dimensions;
+
+    private float[] left;
+    private float[] right;
+    private List<Double> leftList;
+    private List<Double> rightList;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        left = new float[dimensions];
+        right = new float[dimensions];
+        leftList = new ArrayList<>(dimensions);
+        rightList = new ArrayList<>(dimensions);
+        for (int i = 0; i < dimensions; i++) {
+            left[i] = (float) random.nextGaussian();
+            right[i] = (float) random.nextGaussian();
+            leftList.add((double) left[i]);
+            rightList.add((double) right[i]);
+        }
+    }
+
+    @Benchmark
+    public double cosineList() {
+        return VectorUtil.cosineSimilarity(leftList, rightList);
+    }
+
+    @Benchmark
+    public double cosineFloatArray() {
+        return VectorUtil.cosineSimilarity(left, right);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.advancedrag.cache;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 快取的 L2 批次存取
+ *
+ * 為指定的 Redis 快取提供單次往返的批次讀寫，
+ * 由 {@link TwoLevelCache} 在批次操作時用於 L1 未命中的鍵。
+ */
+public interface BatchCacheStore {
+
+    /**
+     * @return 對應的快取名稱
+     */
+    String getCacheName();
+
+    /**
+     * 批次讀取
+     *
+     * @param keys 快取鍵列表
+     * @return 命中的快取（鍵 → 值），未命中的鍵不在結果中；讀取失敗時視為全部未命中
+     */
+    Map<Object, Object> getAll(List<?> keys);
+
+    /**
+     * 批次寫入
+     *
+     * @param entries 快取鍵 → 值
+     */
+    void putAll(Map<?, ?> entries);
+}
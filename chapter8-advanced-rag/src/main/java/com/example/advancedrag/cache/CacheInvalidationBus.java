@@ -0,0 +1,73 @@
+package com.example.advancedrag.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * L1 快取失效廣播（Redis Pub/Sub）
+ *
+ * 訊息格式：{@code <節點 ID>|<快取名稱>|<快取鍵>}，快取鍵為 {@code *} 表示清空。
+ * 收到其他節點的訊息時只清除本地 L1，L2 已由發送方處理。
+ */
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    private static final String CLEAR_ALL = "*";
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private volatile BiConsumer<String, Object> localEvictor = (cacheName, key) -> {};
+
+    public CacheInvalidationBus(StringRedisTemplate redisTemplate, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+    }
+
+    /**
+     * 設定收到失效訊息時的本地清除動作
+     *
+     * @param localEvictor (快取名稱, 快取鍵) → 清除本地 L1，快取鍵為 null 表示清空
+     */
+    public void setLocalEvictor(BiConsumer<String, Object> localEvictor) {
+        this.localEvictor = localEvictor;
+    }
+
+    /**
+     * 廣播失效訊息
+     *
+     * @param cacheName 快取名稱
+     * @param key 快取鍵，null 表示清空
+     */
+    public void publish(String cacheName, Object key) {
+        String message = instanceId + "|" + cacheName + "|" + (key != null ? key : CLEAR_ALL);
+        try {
+            redisTemplate.convertAndSend(channel, message);
+        } catch (Exception e) {
+            log.warn("快取失效廣播失敗: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length != 3 || instanceId.equals(parts[0])) {
+            return;
+        }
+
+        Object key = CLEAR_ALL.equals(parts[2]) ? null : parts[2];
+        localEvictor.accept(parts[1], key);
+        log.debug("收到快取失效通知，快取: {}，鍵: {}", parts[1], parts[2]);
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.advancedrag.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 快取項目大小估算（用於 L1 加權淘汰）
+ */
+final class CacheWeigher {
+
+    private static final int OBJECT_OVERHEAD = 16;
+
+    private CacheWeigher() {
+    }
+
+    /**
+     * 估算物件佔用的堆內存位元組數
+     *
+     * @param value 快取鍵或值
+     * @return 估算位元組數（不超過 Integer.MAX_VALUE）
+     */
+    static int estimateBytes(Object value) {
+        long bytes = estimate(value);
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof float[] floats) {
+            return OBJECT_OVERHEAD + (long) floats.length * Float.BYTES;
+        }
+        if (value instanceof CharSequence text) {
+            return OBJECT_OVERHEAD * 2 + (long) text.length() * 2;
+        }
+        if (value instanceof Collection<?> collection) {
+            long bytes = OBJECT_OVERHEAD * 2;
+            for (Object element : collection) {
+                bytes += 8 + estimate(element);
+            }
+            return bytes;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long bytes = OBJECT_OVERHEAD * 3;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                bytes += 32 + estimate(entry.getKey()) + estimate(entry.getValue());
+            }
+            return bytes;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return OBJECT_OVERHEAD + 8;
+        }
+        return 256;
+    }
+}
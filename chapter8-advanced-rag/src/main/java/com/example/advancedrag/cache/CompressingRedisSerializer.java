@@ -0,0 +1,165 @@
+package com.example.advancedrag.cache;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 壓縮序列化裝飾器
+ *
+ * 在委派序列化結果前加上 1 byte 壓縮標記：
+ * - 0：未壓縮（小於門檻或壓縮後沒有變小）
+ * - 1：LZ4（4 bytes 原始長度 + 壓縮資料）
+ * - 2：Deflate
+ *
+ * 反序列化依標記自動解壓，因此可在不清空快取的情況下切換壓縮方式；
+ * 沒有壓縮標記的舊資料直接交給委派序列化器。
+ *
+ * @param <T> 值類型
+ */
+public class CompressingRedisSerializer<T> implements RedisSerializer<T> {
+
+    private static final byte NONE = 0;
+    private static final byte LZ4 = 1;
+    private static final byte DEFLATE = 2;
+
+    /**
+     * 壓縮演算法
+     */
+    public enum Codec {
+        NONE, LZ4, DEFLATE
+    }
+
+    private final RedisSerializer<T> delegate;
+    private final Codec codec;
+    private final int minBytes;
+
+    /**
+     * @param delegate 委派序列化器
+     * @param codec 壓縮演算法
+     * @param minBytes 小於此大小不壓縮
+     */
+    public CompressingRedisSerializer(RedisSerializer<T> delegate, Codec codec, int minBytes) {
+        this.delegate = delegate;
+        this.codec = codec;
+        this.minBytes = minBytes;
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        byte[] raw = delegate.serialize(value);
+        if (raw == null) {
+            return null;
+        }
+
+        if (codec != Codec.NONE && raw.length >= minBytes) {
+            byte[] compressed = codec == Codec.LZ4 ? lz4Compress(raw) : deflate(raw);
+            if (compressed.length < raw.length) {
+                return compressed;
+            }
+        }
+
+        return withHeader(NONE, raw, raw.length);
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        byte[] raw = switch (bytes[0]) {
+            case NONE -> copyPayload(bytes);
+            case LZ4 -> lz4Decompress(bytes);
+            case DEFLATE -> inflate(bytes);
+            // 無壓縮標記：啟用壓縮前寫入的舊資料，直接交給委派序列化器
+            default -> bytes;
+        };
+        return delegate.deserialize(raw);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return delegate.getTargetType();
+    }
+
+    private static byte[] withHeader(byte header, byte[] payload, int length) {
+        byte[] result = new byte[length + 1];
+        result[0] = header;
+        System.arraycopy(payload, 0, result, 1, length);
+        return result;
+    }
+
+    private static byte[] copyPayload(byte[] bytes) {
+        byte[] raw = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 1, raw, 0, raw.length);
+        return raw;
+    }
+
+    private static byte[] lz4Compress(byte[] raw) {
+        LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+        byte[] output = new byte[1 + Integer.BYTES + compressor.maxCompressedLength(raw.length)];
+        output[0] = LZ4;
+        ByteBuffer.wrap(output, 1, Integer.BYTES).putInt(raw.length);
+        int compressedLength = compressor.compress(raw, 0, raw.length, output, 1 + Integer.BYTES);
+
+        byte[] result = new byte[1 + Integer.BYTES + compressedLength];
+        System.arraycopy(output, 0, result, 0, result.length);
+        return result;
+    }
+
+    private static byte[] lz4Decompress(byte[] bytes) {
+        int originalLength = ByteBuffer.wrap(bytes, 1, Integer.BYTES).getInt();
+        LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+        byte[] raw = new byte[originalLength];
+        decompressor.decompress(bytes, 1 + Integer.BYTES, raw, 0, originalLength);
+        return raw;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(raw.length / 2 + 16);
+            output.write(DEFLATE);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, 1, bytes.length - 1);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsInput()) {
+                    throw new SerializationException("快取壓縮資料不完整");
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new SerializationException("快取資料解壓失敗", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.advancedrag.cache;
+
+import com.example.advancedrag.properties.CacheProperties;
+import com.example.advancedrag.properties.EmbeddingProperties;
+import com.example.advancedrag.service.SmartEmbeddingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding 批次快取存取
+ *
+ * 與 RedisCacheManager 的 embeddings 快取共用同一組 Redis 鍵（{@code embeddings::<key>}）
+ * 與值序列化配置，提供單次往返的批次讀取（MGET）與管線化批次寫入；
+ * 作為 embeddings 兩級快取的 L2 批次存取，L1 由 {@link TwoLevelCache} 處理。
+ */
+@Slf4j
+@Component
+public class EmbeddingCacheStore implements BatchCacheStore {
+
+    private static final String KEY_PREFIX = SmartEmbeddingService.EMBEDDING_CACHE + "::";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisSerializer<Object> valueSerializer;
+    private final EmbeddingProperties embeddingProperties;
+
+    @SuppressWarnings("unchecked")
+    public EmbeddingCacheStore(RedisConnectionFactory connectionFactory,
+                               EmbeddingProperties embeddingProperties,
+                               CacheProperties cacheProperties) {
+        this.embeddingProperties = embeddingProperties;
+        // 與 RedisCacheManager 的 embeddings 快取使用相同的序列化配置（含 json 格式的 ObjectMapper）
+        this.valueSerializer = (RedisSerializer<Object>) RedisValueSerializers.create(
+                cacheProperties.getSerializationFor(SmartEmbeddingService.EMBEDDING_CACHE));
+
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(valueSerializer);
+        template.afterPropertiesSet();
+        this.redisTemplate = template;
+    }
+
+    @Override
+    public String getCacheName() {
+        return SmartEmbeddingService.EMBEDDING_CACHE;
+    }
+
+    /**
+     * 批次讀取（單次 MGET）
+     *
+     * @param keys 快取鍵列表
+     * @return 命中的快取（鍵 → Embedding），未命中的鍵不在結果中
+     */
+    @Override
+    public Map<Object, Object> getAll(List<?> keys) {
+        Map<Object, Object> hits = new HashMap<>();
+        if (keys.isEmpty()) {
+            return hits;
+        }
+
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            redisKeys.add(KEY_PREFIX + key);
+        }
+
+        try {
+            List<Object> values = redisTemplate.opsForValue().multiGet(redisKeys);
+            if (values == null) {
+                return hits;
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                if (values.get(i) instanceof float[] value && value.length > 0) {
+                    hits.put(keys.get(i), value);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Embedding 快取批次讀取失敗，視為全部未命中: {}", e.getMessage());
+        }
+
+        return hits;
+    }
+
+    /**
+     * 批次寫入（管線化 SET，帶 TTL）
+     *
+     * @param embeddings 快取鍵 → Embedding
+     */
+    @Override
+    public void putAll(Map<?, ?> embeddings) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+
+        Expiration expiration = Expiration.from(embeddingProperties.getCacheTtl(), TimeUnit.SECONDS);
+
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<?, ?> entry : embeddings.entrySet()) {
+                    connection.stringCommands().set(
+                            (KEY_PREFIX + entry.getKey()).getBytes(StandardCharsets.UTF_8),
+                            valueSerializer.serialize(entry.getValue()),
+                            expiration,
+                            RedisStringCommands.SetOption.upsert()
+                    );
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Embedding 快取批次寫入失敗: {}", e.getMessage());
+        }
+    }
+}
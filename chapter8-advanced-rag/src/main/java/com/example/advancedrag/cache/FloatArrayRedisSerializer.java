@@ -0,0 +1,124 @@
+package com.example.advancedrag.cache;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * float[] Redis 序列化器
+ *
+ * 以 1 byte 格式標記 + 小端序原始位元組儲存 Embedding，取代 JSON 數字陣列與逐元素裝箱：
+ * - float32：每維 4 bytes，1024 維約 4 KB，數值無損
+ * - int8 量化：4 bytes 縮放係數 + 每維 1 byte，1024 維約 1 KB，
+ *   以 max|v|/127 對稱量化，誤差不超過縮放係數的一半
+ *
+ * 反序列化依格式標記自動識別，切換量化設定後舊資料仍可讀取。
+ */
+public class FloatArrayRedisSerializer implements RedisSerializer<float[]> {
+
+    /**
+     * 格式標記：float32 小端序
+     */
+    static final byte FORMAT_FLOAT32 = 1;
+
+    /**
+     * 格式標記：int8 對稱量化（float32 縮放係數 + int8 值）
+     */
+    static final byte FORMAT_INT8 = 2;
+
+    private final boolean quantize;
+
+    public FloatArrayRedisSerializer() {
+        this(false);
+    }
+
+    /**
+     * @param quantize 是否以 int8 量化儲存
+     */
+    public FloatArrayRedisSerializer(boolean quantize) {
+        this.quantize = quantize;
+    }
+
+    @Override
+    public byte[] serialize(float[] value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+
+        return quantize ? serializeInt8(value) : serializeFloat32(value);
+    }
+
+    @Override
+    public float[] deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        return switch (bytes[0]) {
+            case FORMAT_FLOAT32 -> deserializeFloat32(bytes);
+            case FORMAT_INT8 -> deserializeInt8(bytes);
+            default -> throw new SerializationException("無法識別的 Embedding 快取格式");
+        };
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return float[].class;
+    }
+
+    private byte[] serializeFloat32(float[] value) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + value.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(FORMAT_FLOAT32);
+        buffer.asFloatBuffer().put(value);
+        return buffer.array();
+    }
+
+    private float[] deserializeFloat32(byte[] bytes) {
+        if ((bytes.length - 1) % Float.BYTES != 0) {
+            throw new SerializationException("Embedding 快取資料長度錯誤");
+        }
+
+        float[] value = new float[(bytes.length - 1) / Float.BYTES];
+        ByteBuffer.wrap(bytes, 1, bytes.length - 1)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer()
+                .get(value);
+        return value;
+    }
+
+    private byte[] serializeInt8(float[] value) {
+        float maxAbs = 0f;
+        for (float v : value) {
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        float scale = maxAbs > 0f ? maxAbs / 127f : 1f;
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + Float.BYTES + value.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(FORMAT_INT8);
+        buffer.putFloat(scale);
+        for (float v : value) {
+            buffer.put((byte) Math.round(v / scale));
+        }
+        return buffer.array();
+    }
+
+    private float[] deserializeInt8(byte[] bytes) {
+        if (bytes.length < 1 + Float.BYTES) {
+            throw new SerializationException("Embedding 快取資料長度錯誤");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        float scale = buffer.getFloat();
+
+        float[] value = new float[buffer.remaining()];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = buffer.get() * scale;
+        }
+        return value;
+    }
+}
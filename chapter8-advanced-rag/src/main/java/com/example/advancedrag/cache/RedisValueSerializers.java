@@ -0,0 +1,88 @@
+package com.example.advancedrag.cache;
+
+import com.example.advancedrag.properties.CacheProperties;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Locale;
+
+/**
+ * Redis 值序列化器工廠
+ *
+ * 根據快取配置組合編碼格式與壓縮方式：
+ * - json：GenericJackson2JsonRedisSerializer（相容舊資料）
+ * - smile：Smile 二進位 JSON
+ * - float32 / int8：Embedding 原始位元組（int8 為量化格式）
+ * 再依 compression 以 {@link CompressingRedisSerializer} 包裝。
+ * 所有 Redis 存取路徑的 json 格式都應使用 {@link #jsonMapper()}，確保彼此寫入的值可以互相讀取。
+ */
+public final class RedisValueSerializers {
+
+    private RedisValueSerializers() {
+    }
+
+    /**
+     * 建立 json 格式使用的 ObjectMapper（JavaTimeModule + 類型資訊）
+     *
+     * @return ObjectMapper 實例
+     */
+    public static ObjectMapper jsonMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.activateDefaultTyping(
+                LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.NON_FINAL,
+                JsonTypeInfo.As.PROPERTY
+        );
+        return mapper;
+    }
+
+    /**
+     * 建立值序列化器（json 格式使用 {@link #jsonMapper()}）
+     *
+     * @param serialization 序列化配置
+     * @return RedisSerializer 實例
+     */
+    public static RedisSerializer<?> create(CacheProperties.Serialization serialization) {
+        return create(serialization, jsonMapper());
+    }
+
+    /**
+     * 建立值序列化器
+     *
+     * @param serialization 序列化配置
+     * @param jsonMapper json 格式使用的 ObjectMapper
+     * @return RedisSerializer 實例
+     */
+    public static RedisSerializer<?> create(CacheProperties.Serialization serialization, ObjectMapper jsonMapper) {
+        String format = serialization.getFormat().toLowerCase(Locale.ROOT);
+        String compression = serialization.getCompression().toLowerCase(Locale.ROOT);
+
+        return switch (format) {
+            case "float32" -> compress(new FloatArrayRedisSerializer(false), compression, serialization);
+            case "int8" -> compress(new FloatArrayRedisSerializer(true), compression, serialization);
+            case "smile" -> compress(new SmileRedisSerializer(), compression, serialization);
+            case "json" -> compress(new GenericJackson2JsonRedisSerializer(jsonMapper), compression, serialization);
+            default -> throw new IllegalArgumentException("不支援的快取序列化格式: " + serialization.getFormat());
+        };
+    }
+
+    private static <T> RedisSerializer<T> compress(RedisSerializer<T> serializer, String compression,
+                                                   CacheProperties.Serialization serialization) {
+        CompressingRedisSerializer.Codec codec = switch (compression) {
+            case "none" -> CompressingRedisSerializer.Codec.NONE;
+            case "lz4" -> CompressingRedisSerializer.Codec.LZ4;
+            case "deflate" -> CompressingRedisSerializer.Codec.DEFLATE;
+            default -> throw new IllegalArgumentException("不支援的快取壓縮方式: " + compression);
+        };
+
+        if (codec == CompressingRedisSerializer.Codec.NONE) {
+            return serializer;
+        }
+        return new CompressingRedisSerializer<>(serializer, codec, serialization.getCompressionMinBytes());
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.advancedrag.cache;
+
+import com.example.advancedrag.dto.AdvancedRAGResponse;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.VectorUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 語義答案快取
+ *
+ * 以查詢 Embedding 的餘弦相似度（而非查詢字串）作為快取鍵，
+ * 換句話說的重複問題也能直接返回先前的答案與文檔，省去檢索與 LLM 生成。
+ *
+ * 實作：
+ * - 向量在寫入時做 L2 正規化，相似度即為內積
+ * - 條目數較少時精確掃描；超過門檻後以隨機超平面 LSH（多表）篩選候選再精確比對
+ * - 每表同時探測查詢桶與漢明距離 1 的相鄰桶（multi-probe），表數按相似度閾值計算，
+ *   使閾值上的真實命中召回率不低於 {@link #TARGET_RECALL}
+ * - 所有超平面存成一個連續矩陣，簽名以一次批次內積（{@link VectorUtil#dotProducts}）計算
+ * - 僅在查詢選項指紋相同時才視為可重用
+ * - LRU（存取順序）淘汰 + TTL 過期；掃描候選時不改變存取順序，只有命中的條目被移到最近使用端
+ * - 文檔寫入或刪除後由 {@link com.example.advancedrag.service.DocumentIngestionService} 清空，避免返回過時答案
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    /**
+     * 條目數不超過此值時精確掃描
+     */
+    private static final int EXACT_SCAN_LIMIT = 1024;
+
+    private static final int LSH_BITS = 12;
+    private static final int MAX_LSH_TABLES = 32;
+    private static final long LSH_SEED = 42L;
+
+    /**
+     * 相似度恰為閾值的條目被 LSH 篩選命中的目標機率
+     */
+    static final double TARGET_RECALL = 0.999;
+
+    private final RAGProperties.SemanticCache properties;
+    private final Clock clock;
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int lshTableCount;
+    private final List<Map<Integer, Set<Entry>>> lshTables;
+    /**
+     * 超平面矩陣：第 t 表第 b 個超平面位於第 t * LSH_BITS + b 列
+     */
+    private float[] hyperplanes;
+    private int hyperplaneDimensions;
+    private long nextId;
+
+    @Autowired
+    public SemanticAnswerCache(RAGProperties ragProperties) {
+        this(ragProperties.getSemanticCache(), Clock.systemUTC());
+    }
+
+    public SemanticAnswerCache(RAGProperties.SemanticCache properties, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+        this.lshTableCount = tablesFor(properties.getSimilarityThreshold());
+        this.lshTables = new ArrayList<>(lshTableCount);
+        for (int i = 0; i < lshTableCount; i++) {
+            lshTables.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 查找語義相近的快取答案
+     *
+     * @param queryEmbedding 查詢向量
+     * @param optionsKey 查詢選項指紋
+     * @return 命中結果（相似度最高且達到閾值者）
+     */
+    public synchronized Optional<Hit> lookup(float[] queryEmbedding, String optionsKey) {
+        if (!isEnabled() || entries.isEmpty() || queryEmbedding == null || queryEmbedding.length == 0) {
+            return Optional.empty();
+        }
+
+        float[] query = VectorUtil.normalize(queryEmbedding);
+        long now = clock.millis();
+
+        Entry best = null;
+        double bestSimilarity = properties.getSimilarityThreshold();
+
+        for (Entry entry : candidates(query)) {
+            if (entry.vector.length != query.length) {
+                continue;
+            }
+            if (entry.expiresAt <= now) {
+                remove(entry);
+                continue;
+            }
+            if (!entry.optionsKey.equals(optionsKey)) {
+                continue;
+            }
+
+            double similarity = VectorUtil.dotProduct(query, entry.vector);
+            if (similarity >= bestSimilarity) {
+                best = entry;
+                bestSimilarity = similarity;
+            }
+        }
+
+        if (best == null) {
+            return Optional.empty();
+        }
+
+        // 觸發 LRU 存取順序更新
+        entries.get(best.id);
+        return Optional.of(new Hit(best.response, bestSimilarity));
+    }
+
+    /**
+     * 寫入快取
+     *
+     * @param queryEmbedding 查詢向量
+     * @param optionsKey 查詢選項指紋
+     * @param response 查詢響應
+     */
+    public synchronized void put(float[] queryEmbedding, String optionsKey, AdvancedRAGResponse response) {
+        if (!isEnabled() || queryEmbedding == null || queryEmbedding.length == 0) {
+            return;
+        }
+
+        float[] vector = VectorUtil.normalize(queryEmbedding);
+        long id = nextId++;
+        Entry entry = new Entry(id, vector, optionsKey, response,
+                clock.millis() + properties.getTtlSeconds() * 1000L, signatures(vector));
+        entries.put(id, entry);
+        for (int t = 0; t < lshTableCount; t++) {
+            lshTables.get(t).computeIfAbsent(entry.signatures[t], k -> new HashSet<>()).add(entry);
+        }
+
+        // LRU 淘汰
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > properties.getMaxEntries() && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            removeFromLsh(evicted);
+        }
+    }
+
+    /**
+     * 清空快取
+     */
+    public synchronized void clear() {
+        entries.clear();
+        lshTables.forEach(Map::clear);
+        log.info("語義答案快取已清空");
+    }
+
+    /**
+     * 獲取快取條目數
+     *
+     * @return 條目數
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private boolean isEnabled() {
+        return Boolean.TRUE.equals(properties.getEnabled());
+    }
+
+    /**
+     * 候選條目：條目數少時全部掃描，否則取任一 LSH 表同桶或相鄰桶（簽名相差 1 bit）的條目
+     *
+     * 直接返回條目而非 ID，掃描時不經 {@code entries.get} 觸發存取順序更新。
+     */
+    private Collection<Entry> candidates(float[] query) {
+        if (entries.size() <= EXACT_SCAN_LIMIT || hyperplanes == null) {
+            return new ArrayList<>(entries.values());
+        }
+
+        int[] querySignatures = signatures(query);
+        Set<Entry> candidates = new HashSet<>();
+        for (int t = 0; t < lshTableCount; t++) {
+            Map<Integer, Set<Entry>> table = lshTables.get(t);
+            addBucket(table, querySignatures[t], candidates);
+            for (int b = 0; b < LSH_BITS; b++) {
+                addBucket(table, querySignatures[t] ^ (1 << b), candidates);
+            }
+        }
+        return candidates;
+    }
+
+    private static void addBucket(Map<Integer, Set<Entry>> table, int signature, Set<Entry> candidates) {
+        Set<Entry> bucket = table.get(signature);
+        if (bucket != null) {
+            candidates.addAll(bucket);
+        }
+    }
+
+    /**
+     * 按相似度閾值計算 LSH 表數
+     *
+     * 餘弦相似度為 s 的兩向量在單個超平面上同側的機率 p = 1 - arccos(s) / π；
+     * 單表（含相鄰桶探測）命中機率 q = p^k + k·p^(k-1)·(1 - p)，
+     * L 表召回率 1 - (1 - q)^L，取達到 {@link #TARGET_RECALL} 的最小 L。
+     *
+     * @param similarityThreshold 命中所需的最低餘弦相似度
+     * @return 表數（1 到 {@link #MAX_LSH_TABLES}）
+     */
+    static int tablesFor(double similarityThreshold) {
+        double p = 1.0 - Math.acos(Math.max(-1.0, Math.min(1.0, similarityThreshold))) / Math.PI;
+        double perTable = Math.pow(p, LSH_BITS) + LSH_BITS * Math.pow(p, LSH_BITS - 1) * (1.0 - p);
+        if (perTable >= 1.0) {
+            return 1;
+        }
+        double tables = Math.ceil(Math.log(1.0 - TARGET_RECALL) / Math.log(1.0 - perTable));
+        return (int) Math.max(1, Math.min(MAX_LSH_TABLES, tables));
+    }
+
+    private void remove(Entry entry) {
+        if (entries.remove(entry.id) != null) {
+            removeFromLsh(entry);
+        }
+    }
+
+    private void removeFromLsh(Entry entry) {
+        for (int t = 0; t < lshTableCount; t++) {
+            Set<Entry> bucket = lshTables.get(t).get(entry.signatures[t]);
+            if (bucket != null && bucket.remove(entry) && bucket.isEmpty()) {
+                lshTables.get(t).remove(entry.signatures[t]);
+            }
+        }
+    }
+
+    /**
+     * 隨機超平面簽名：每個超平面貢獻 1 bit（向量位於其正側為 1）
+     */
+    private int[] signatures(float[] vector) {
+        if (hyperplanes == null || hyperplaneDimensions != vector.length) {
+            initHyperplanes(vector.length);
+        }
+
+        double[] projections = new double[lshTableCount * LSH_BITS];
+        VectorUtil.dotProducts(vector, hyperplanes, hyperplaneDimensions, projections);
+
+        int[] signatures = new int[lshTableCount];
+        for (int t = 0; t < lshTableCount; t++) {
+            int signature = 0;
+            for (int b = 0; b < LSH_BITS; b++) {
+                if (projections[t * LSH_BITS + b] >= 0) {
+                    signature |= 1 << b;
+                }
+            }
+            signatures[t] = signature;
+        }
+        return signatures;
+    }
+
+    private void initHyperplanes(int dimensions) {
+        Random random = new Random(LSH_SEED);
+        hyperplanes = new float[lshTableCount * LSH_BITS * dimensions];
+        hyperplaneDimensions = dimensions;
+        for (int i = 0; i < hyperplanes.length; i++) {
+            hyperplanes[i] = (float) random.nextGaussian();
+        }
+        // 維度變化時舊簽名失效
+        lshTables.forEach(Map::clear);
+        for (Entry entry : entries.values()) {
+            if (entry.vector.length == dimensions) {
+                entry.signatures = signatures(entry.vector);
+                for (int t = 0; t < lshTableCount; t++) {
+                    lshTables.get(t).computeIfAbsent(entry.signatures[t], k -> new HashSet<>()).add(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * 快取條目
+     */
+    private static final class Entry {
+        private final long id;
+        private final float[] vector;
+        private final String optionsKey;
+        private final AdvancedRAGResponse response;
+        private final long expiresAt;
+        private int[] signatures;
+
+        private Entry(long id, float[] vector, String optionsKey, AdvancedRAGResponse response,
+                      long expiresAt, int[] signatures) {
+            this.id = id;
+            this.vector = vector;
+            this.optionsKey = optionsKey;
+            this.response = response;
+            this.expiresAt = expiresAt;
+            this.signatures = signatures;
+        }
+    }
+
+    /**
+     * 命中結果
+     *
+     * @param response 快取的響應
+     * @param similarity 與快取查詢的餘弦相似度
+     */
+    public record Hit(AdvancedRAGResponse response, double similarity) {
+    }
+}
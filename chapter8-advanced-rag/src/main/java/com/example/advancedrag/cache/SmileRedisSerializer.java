@@ -0,0 +1,75 @@
+package com.example.advancedrag.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Smile（二進位 JSON）Redis 序列化器
+ *
+ * 保留與 GenericJackson2JsonRedisSerializer 相同的型別資訊（default typing），
+ * 但以 Smile 二進位格式編碼：欄位名稱可回溯引用、數字以二進位存放，
+ * 體積與解析成本都低於文字 JSON。
+ * 讀取到非 Smile 格式（切換前以文字 JSON 寫入）的資料時，改用 JSON 解析。
+ */
+public class SmileRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * Smile 格式標頭 ":)\n"
+     */
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final ObjectMapper mapper = configure(new ObjectMapper(new SmileFactory()));
+    private final ObjectMapper jsonMapper = configure(new ObjectMapper());
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.registerModule(new JavaTimeModule());
+        mapper.activateDefaultTyping(
+                LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.NON_FINAL,
+                JsonTypeInfo.As.PROPERTY
+        );
+        return mapper;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("Smile 序列化失敗: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            ObjectMapper reader = isSmile(bytes) ? mapper : jsonMapper;
+            return reader.readValue(bytes, Object.class);
+        } catch (Exception e) {
+            throw new SerializationException("Smile 反序列化失敗: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isSmile(byte[] bytes) {
+        if (bytes.length < SMILE_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < SMILE_HEADER.length; i++) {
+            if (bytes[i] != SMILE_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.advancedrag.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 兩級快取：Caffeine L1（進程內）+ Redis L2
+ *
+ * 讀取先查 L1，未命中再查 L2 並回填 L1；寫入與刪除同時作用於兩級。
+ * 配置了 {@link CacheInvalidationBus} 時，寫入與刪除會廣播給其他節點清除各自的 L1。
+ * 批次讀寫同樣先經過 L1；配置了 {@link BatchCacheStore} 時，L1 未命中的鍵以單次往返批次存取 L2。
+ */
+public class TwoLevelCache implements org.springframework.cache.Cache {
+
+    private final String name;
+    private final Cache<Object, Object> local;
+    private final org.springframework.cache.Cache remote;
+    private final CacheInvalidationBus publisher;
+    private final BatchCacheStore batchStore;
+
+    public TwoLevelCache(String name, Cache<Object, Object> local,
+                         org.springframework.cache.Cache remote, CacheInvalidationBus publisher) {
+        this(name, local, remote, publisher, null);
+    }
+
+    public TwoLevelCache(String name, Cache<Object, Object> local,
+                         org.springframework.cache.Cache remote, CacheInvalidationBus publisher,
+                         BatchCacheStore batchStore) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.publisher = publisher;
+        this.batchStore = batchStore;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            return new SimpleValueWrapper(value);
+        }
+
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            local.put(key, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        Object value = local.getIfPresent(key);
+        if (value != null && (type == null || type.isInstance(value))) {
+            return (T) value;
+        }
+
+        T remoteValue = remote.get(key, type);
+        if (remoteValue != null) {
+            local.put(key, remoteValue);
+        }
+        return remoteValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        T loaded = remote.get(key, valueLoader);
+        if (loaded != null) {
+            local.put(key, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        if (value != null) {
+            local.put(key, value);
+        }
+        publish(key);
+    }
+
+    /**
+     * 批次讀取：先查 L1，只向 L2 查詢 L1 未命中的鍵，並以 L2 命中回填 L1
+     *
+     * @param keys 快取鍵
+     * @return 命中的快取（鍵 → 值），未命中的鍵不在結果中
+     */
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> hits = new HashMap<>();
+        List<Object> misses = new ArrayList<>();
+        for (Object key : keys) {
+            Object value = local.getIfPresent(key);
+            if (value != null) {
+                hits.put(key, value);
+            } else {
+                misses.add(key);
+            }
+        }
+        if (misses.isEmpty()) {
+            return hits;
+        }
+
+        Map<Object, Object> remoteHits;
+        if (batchStore != null) {
+            remoteHits = batchStore.getAll(misses);
+        } else {
+            remoteHits = new HashMap<>();
+            for (Object key : misses) {
+                ValueWrapper wrapper = remote.get(key);
+                if (wrapper != null && wrapper.get() != null) {
+                    remoteHits.put(key, wrapper.get());
+                }
+            }
+        }
+
+        local.putAll(remoteHits);
+        hits.putAll(remoteHits);
+        return hits;
+    }
+
+    /**
+     * 批次寫入：寫入 L2（有批次存取時單次往返）與 L1，並逐鍵廣播失效
+     *
+     * @param entries 快取鍵 → 值
+     */
+    public void putAll(Map<?, ?> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        if (batchStore != null) {
+            batchStore.putAll(entries);
+        } else {
+            entries.forEach(remote::put);
+        }
+        entries.forEach((key, value) -> {
+            if (value != null) {
+                local.put(key, value);
+            }
+            publish(key);
+        });
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(key);
+        publish(key);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        publish(null);
+    }
+
+    /**
+     * 僅清除本地 L1（收到其他節點的失效通知時使用）
+     *
+     * @param key 快取鍵，null 表示清空
+     */
+    public void evictLocal(Object key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    /**
+     * 獲取本地 L1（用於指標監控）
+     *
+     * @return Caffeine 快取
+     */
+    public Cache<Object, Object> getLocalCache() {
+        return local;
+    }
+
+    private void publish(Object key) {
+        if (publisher != null) {
+            publisher.publish(name, key);
+        }
+    }
+}
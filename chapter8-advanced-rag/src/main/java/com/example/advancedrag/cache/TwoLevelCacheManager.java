@@ -0,0 +1,96 @@
+package com.example.advancedrag.cache;
+
+import com.example.advancedrag.properties.CacheProperties;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 兩級快取管理器
+ *
+ * 包裝 RedisCacheManager，對配置中列出的快取加上 Caffeine L1（按估算位元組數加權淘汰），
+ * 並以 {@code cache.*} 指標（tag cache=&lt;名稱&gt;.l1）輸出 L1 命中/未命中/淘汰統計。
+ * 其餘快取直接使用 Redis。提供了 {@link BatchCacheStore} 的快取，批次操作以其存取 L2。
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager remoteCacheManager;
+    private final CacheProperties.NearCache nearCacheProperties;
+    private final CacheInvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> nearCacheNames;
+    private final Map<String, BatchCacheStore> batchStores;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                CacheProperties.NearCache nearCacheProperties,
+                                CacheInvalidationBus invalidationBus,
+                                MeterRegistry meterRegistry) {
+        this(remoteCacheManager, nearCacheProperties, invalidationBus, meterRegistry, Map.of());
+    }
+
+    /**
+     * @param batchStores 快取名稱 → L2 批次存取
+     */
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                CacheProperties.NearCache nearCacheProperties,
+                                CacheInvalidationBus invalidationBus,
+                                MeterRegistry meterRegistry,
+                                Map<String, BatchCacheStore> batchStores) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.batchStores = Map.copyOf(batchStores);
+        this.nearCacheProperties = nearCacheProperties;
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.nearCacheNames = Boolean.TRUE.equals(nearCacheProperties.getEnabled()) ?
+                Set.copyOf(nearCacheProperties.getCaches()) : Set.of();
+
+        if (invalidationBus != null) {
+            invalidationBus.setLocalEvictor(this::evictLocal);
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    private Cache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null || !nearCacheNames.contains(name)) {
+            return remote;
+        }
+
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder()
+                .maximumWeight(nearCacheProperties.getMaxWeightBytes())
+                .weigher((Object key, Object value) -> CacheWeigher.estimateBytes(key) + CacheWeigher.estimateBytes(value))
+                .expireAfterWrite(Duration.ofSeconds(nearCacheProperties.getExpireAfterWriteSeconds()))
+                .recordStats()
+                .build();
+
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, local, name + ".l1");
+        }
+
+        return new TwoLevelCache(name, local, remote, invalidationBus, batchStores.get(name));
+    }
+
+    private void evictLocal(String cacheName, Object key) {
+        if (caches.get(cacheName) instanceof TwoLevelCache twoLevelCache) {
+            twoLevelCache.evictLocal(key);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.example.advancedrag.config;
 
+import com.example.advancedrag.properties.RAGProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 異步配置
@@ -35,20 +38,55 @@ public class AsyncConfiguration {
     }
 
     /**
-     * 配置評估任務執行器（專用於評估測試）
+     * 配置評估任務執行器（虛擬線程，專用於評估測試）
      *
-     * @return Executor 實例
+     * 評估任務主要等待 LLM 評審調用，並發上限與速率由 RAGEvaluationService 控制，
+     * 不以線程池大小限流（大批次評估不會因佇列已滿而被拒絕）
+     *
+     * @return ExecutorService 實例
      */
-    @Bean(name = "evaluationExecutor")
-    public Executor evaluationExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(20);
-        executor.setQueueCapacity(50);
-        executor.setThreadNamePrefix("evaluation-");
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(120);
-        executor.initialize();
-        return executor;
+    @Bean(name = "evaluationExecutor", destroyMethod = "close")
+    public ExecutorService evaluationExecutor() {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("rag-evaluation-", 0).factory()
+        );
+    }
+
+    /**
+     * 配置檢索執行器（虛擬線程，用於混合檢索的並行 I/O）
+     *
+     * @return ExecutorService 實例
+     */
+    @Bean(name = "retrievalExecutor", destroyMethod = "close")
+    public ExecutorService retrievalExecutor() {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("rag-retrieval-", 0).factory()
+        );
+    }
+
+    /**
+     * 配置查詢管線執行器（虛擬線程，用於 RAG 查詢各階段的並行執行）
+     *
+     * @return ExecutorService 實例
+     */
+    @Bean(name = "pipelineExecutor", destroyMethod = "close")
+    public ExecutorService pipelineExecutor() {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("rag-pipeline-", 0).factory()
+        );
+    }
+
+    /**
+     * 配置 Re-ranking 評分執行器（固定大小的平台線程池，用於大候選集的 CPU 密集評分）
+     *
+     * @param ragProperties RAG 配置
+     * @return ExecutorService 實例
+     */
+    @Bean(name = "rerankingExecutor", destroyMethod = "close")
+    public ExecutorService rerankingExecutor(RAGProperties ragProperties) {
+        int parallelism = Math.max(1, ragProperties.getReranking().getParallelism());
+        return Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("rag-reranking-", 0).daemon(true).factory()
+        );
     }
 }
@@ -37,12 +37,12 @@ public class OpenAIConfiguration {
     /**
      * 配置 RerankingProvider
      *
-     * 根據配置創建相應的 Re-ranking 提供者
+     * 根據配置創建相應的 Re-ranking 提供者；提供者的資源由工廠負責釋放，不在此推斷關閉方法
      *
      * @param factory Re-ranking 提供者工廠
      * @return RerankingProvider 實例
      */
-    @Bean
+    @Bean(destroyMethod = "")
     public RerankingProvider rerankingProvider(RerankingProviderFactory factory) {
         RerankingProvider provider = factory.createProvider();
         log.info("Re-ranking 提供者已註冊: {}", provider.getProviderName());
@@ -1,26 +1,45 @@
 package com.example.advancedrag.config;
 
-import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.example.advancedrag.cache.BatchCacheStore;
+import com.example.advancedrag.cache.CacheInvalidationBus;
+import com.example.advancedrag.cache.RedisValueSerializers;
+import com.example.advancedrag.cache.TwoLevelCacheManager;
+import com.example.advancedrag.properties.CacheProperties;
+import com.example.advancedrag.properties.EmbeddingProperties;
+import com.example.advancedrag.properties.ModerationProperties;
+import com.example.advancedrag.service.ContentModerationService;
+import com.example.advancedrag.service.SmartEmbeddingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Redis 配置
  *
  * 配置 Redis 快取和序列化策略
+ * 指定快取在 Redis（L2）前加上 Caffeine 本地快取（L1）
  */
 @Configuration
 @EnableCaching
@@ -52,38 +71,116 @@ public class RedisConfiguration {
     }
 
     /**
-     * 配置 Redis 快取管理器
+     * 配置 Redis 快取管理器（L2）
+     *
+     * 值序列化按快取名稱選擇（app.cache.serialization / app.cache.caches）：
+     * embeddings 預設為 float32 原始位元組，其餘快取預設為 Smile 二進位 JSON，可選 LZ4/Deflate 壓縮
      *
      * @param connectionFactory Redis 連接工廠
+     * @param embeddingProperties Embedding 配置
+     * @param moderationProperties 內容審核配置
+     * @param cacheProperties 快取配置
      * @return RedisCacheManager 實例
      */
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory,
+                                               EmbeddingProperties embeddingProperties,
+                                               ModerationProperties moderationProperties,
+                                               CacheProperties cacheProperties) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofHours(24)) // 默認 24 小時過期
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
-                        new GenericJackson2JsonRedisSerializer(objectMapper())))
+                        RedisValueSerializers.create(cacheProperties.getSerialization(), objectMapper())))
                 .disableCachingNullValues();
 
+        Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        cacheProperties.getCaches().forEach((cacheName, serialization) ->
+                cacheConfigurations.put(cacheName, config.serializeValuesWith(
+                        RedisSerializationContext.SerializationPair.fromSerializer(
+                                RedisValueSerializers.create(serialization, objectMapper())))));
+
+        RedisCacheConfiguration embeddingConfig = cacheConfigurations
+                .getOrDefault(SmartEmbeddingService.EMBEDDING_CACHE, config)
+                .entryTtl(Duration.ofSeconds(embeddingProperties.getCacheTtl()));
+        cacheConfigurations.put(SmartEmbeddingService.EMBEDDING_CACHE, embeddingConfig);
+
+        RedisCacheConfiguration moderationConfig = cacheConfigurations
+                .getOrDefault(ContentModerationService.MODERATION_CACHE, config)
+                .entryTtl(Duration.ofSeconds(moderationProperties.getCacheTtlSeconds()));
+        cacheConfigurations.put(ContentModerationService.MODERATION_CACHE, moderationConfig);
+
         return RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(config)
+                .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
     }
 
+    /**
+     * 配置兩級快取管理器（Caffeine L1 + Redis L2）
+     *
+     * @param redisCacheManager Redis 快取管理器
+     * @param cacheProperties 快取配置
+     * @param invalidationBus L1 失效廣播（未啟用時為空）
+     * @param meterRegistry 指標註冊表
+     * @param batchStores 各快取的 L2 批次存取
+     * @return CacheManager 實例
+     */
+    @Bean
+    @Primary
+    public CacheManager cacheManager(RedisCacheManager redisCacheManager,
+                                     CacheProperties cacheProperties,
+                                     ObjectProvider<CacheInvalidationBus> invalidationBus,
+                                     ObjectProvider<MeterRegistry> meterRegistry,
+                                     ObjectProvider<BatchCacheStore> batchStores) {
+        return new TwoLevelCacheManager(
+                redisCacheManager,
+                cacheProperties.getNearCache(),
+                invalidationBus.getIfAvailable(),
+                meterRegistry.getIfAvailable(),
+                batchStores.orderedStream().collect(
+                        Collectors.toMap(BatchCacheStore::getCacheName, Function.identity()))
+        );
+    }
+
+    /**
+     * 配置 L1 失效廣播
+     *
+     * @param stringRedisTemplate Redis 模板
+     * @param cacheProperties 快取配置
+     * @return CacheInvalidationBus 實例
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache.invalidation", name = "enabled", havingValue = "true")
+    public CacheInvalidationBus cacheInvalidationBus(StringRedisTemplate stringRedisTemplate,
+                                                     CacheProperties cacheProperties) {
+        return new CacheInvalidationBus(stringRedisTemplate, cacheProperties.getInvalidation().getChannel());
+    }
+
+    /**
+     * 配置 Redis 訊息監聽容器（訂閱 L1 失效通知）
+     *
+     * @param connectionFactory Redis 連接工廠
+     * @param cacheInvalidationBus L1 失效廣播
+     * @return RedisMessageListenerContainer 實例
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache.invalidation", name = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            CacheInvalidationBus cacheInvalidationBus) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheInvalidationBus, new ChannelTopic(cacheInvalidationBus.getChannel()));
+        return container;
+    }
+
     /**
      * 配置 ObjectMapper
      *
      * @return ObjectMapper 實例
      */
     private ObjectMapper objectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        mapper.activateDefaultTyping(
-                LaissezFaireSubTypeValidator.instance,
-                ObjectMapper.DefaultTyping.NON_FINAL,
-                JsonTypeInfo.As.PROPERTY
-        );
-        return mapper;
+        return RedisValueSerializers.jsonMapper();
     }
 }
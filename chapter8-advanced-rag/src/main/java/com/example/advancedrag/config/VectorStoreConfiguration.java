@@ -1,6 +1,10 @@
 package com.example.advancedrag.config;
 
+import com.example.advancedrag.service.BM25Service;
+import com.example.advancedrag.vectorstore.EmbeddingVectorSearch;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
@@ -8,7 +12,7 @@ import org.springframework.context.event.EventListener;
 /**
  * 向量數據庫配置
  *
- * PgVector VectorStore 由 Spring AI 自動配置
+ * 預設由 Spring AI 自動配置 PgVector VectorStore
  * 通過 spring-ai-starter-vector-store-pgvector 依賴和 application.yml 配置自動創建
  *
  * 配置項參考:
@@ -17,18 +21,35 @@ import org.springframework.context.event.EventListener;
  * - spring.ai.vectorstore.pgvector.database
  * - spring.ai.vectorstore.pgvector.username
  * - spring.ai.vectorstore.pgvector.password
+ *
+ * 設定 app.rag.local-vector-store.enabled=true 時改用進程內 HNSW 向量庫（HnswVectorStore），
+ * 搭配 local profile 關閉 pgvector 自動配置與數據源，不需外部資料庫。
+ *
+ * BM25 索引只存在於記憶體中，啟動完成後由向量數據庫中的現有文檔重建。
  */
 @Slf4j
 @Configuration
+@RequiredArgsConstructor
 public class VectorStoreConfiguration {
 
+    private final VectorStore vectorStore;
+    private final EmbeddingVectorSearch embeddingVectorSearch;
+    private final BM25Service bm25Service;
+
     /**
-     * 應用啟動完成後的初始化日誌
+     * 應用啟動完成後的初始化日誌，並重建 BM25 索引
      */
     @EventListener(ApplicationReadyEvent.class)
     public void onApplicationReady() {
         log.info("===========================================");
-        log.info("PgVector VectorStore 已由 Spring AI 自動配置完成");
+        log.info("VectorStore 已配置完成: {}", vectorStore.getName());
         log.info("===========================================");
+
+        try {
+            bm25Service.rebuildFrom(embeddingVectorSearch);
+        } catch (Exception e) {
+            // 重建失敗不影響啟動：向量檢索仍可用，新寫入的文檔照常索引
+            log.error("BM25 索引重建失敗，關鍵詞檢索僅涵蓋啟動後寫入的文檔", e);
+        }
     }
 }
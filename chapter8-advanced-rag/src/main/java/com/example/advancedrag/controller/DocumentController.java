@@ -0,0 +1,113 @@
+package com.example.advancedrag.controller;
+
+import com.example.advancedrag.dto.ApiResponse;
+import com.example.advancedrag.dto.DocumentAddRequest;
+import com.example.advancedrag.dto.DocumentAddResponse;
+import com.example.advancedrag.service.DocumentIngestionService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 文檔管理控制器
+ *
+ * 提供文檔寫入向量數據庫的 REST API：
+ * - POST /api/v1/documents - 添加單個文檔
+ * - POST /api/v1/documents/batch - 批量添加文檔
+ * - DELETE /api/v1/documents/{documentId} - 刪除文檔
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/documents")
+@RequiredArgsConstructor
+public class DocumentController {
+
+    private final DocumentIngestionService documentIngestionService;
+
+    /**
+     * 添加單個文檔
+     *
+     * @param item 文檔項
+     * @return 添加結果
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<DocumentAddResponse>> addDocument(
+            @Valid @RequestBody DocumentAddRequest.DocumentItem item) {
+
+        log.info("收到添加文檔請求，內容長度: {}", item.getContent().length());
+
+        try {
+            DocumentAddResponse response = documentIngestionService.addDocuments(
+                    DocumentAddRequest.builder()
+                            .documents(List.of(item))
+                            .build()
+            );
+
+            return ResponseEntity.ok(
+                    ApiResponse.success("文檔添加成功", response)
+            );
+
+        } catch (Exception e) {
+            log.error("文檔添加失敗", e);
+            return ResponseEntity.internalServerError().body(
+                    ApiResponse.error("文檔添加失敗：" + e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * 批量添加文檔
+     *
+     * @param request 添加文檔請求
+     * @return 添加結果
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse<DocumentAddResponse>> addDocuments(
+            @Valid @RequestBody DocumentAddRequest request) {
+
+        log.info("收到批量添加文檔請求，數量: {}", request.getDocumentCount());
+
+        try {
+            DocumentAddResponse response = documentIngestionService.addDocuments(request);
+
+            return ResponseEntity.ok(
+                    ApiResponse.success("批量添加文檔成功", response)
+            );
+
+        } catch (Exception e) {
+            log.error("批量添加文檔失敗", e);
+            return ResponseEntity.internalServerError().body(
+                    ApiResponse.error("批量添加文檔失敗：" + e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * 刪除文檔
+     *
+     * @param documentId 文檔 ID
+     * @return 刪除結果
+     */
+    @DeleteMapping("/{documentId}")
+    public ResponseEntity<ApiResponse<String>> deleteDocument(@PathVariable String documentId) {
+        log.info("收到刪除文檔請求: {}", documentId);
+
+        try {
+            documentIngestionService.deleteDocument(documentId);
+
+            return ResponseEntity.ok(
+                    ApiResponse.success("文檔刪除成功", documentId)
+            );
+
+        } catch (Exception e) {
+            log.error("文檔刪除失敗", e);
+            return ResponseEntity.internalServerError().body(
+                    ApiResponse.error("文檔刪除失敗：" + e.getMessage())
+            );
+        }
+    }
+}
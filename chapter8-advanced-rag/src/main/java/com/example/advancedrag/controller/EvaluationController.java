@@ -8,8 +8,11 @@ import com.example.advancedrag.service.RAGEvaluationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
@@ -18,7 +21,8 @@ import java.util.List;
  *
  * 提供 RAG 系統評估測試 REST API：
  * - POST /api/v1/evaluation/single - 單個問答對評估
- * - POST /api/v1/evaluation/batch - 批次問答對評估
+ * - POST /api/v1/evaluation/batch - 批次問答對評估（可指定 runId 續跑）
+ * - POST /api/v1/evaluation/batch/stream - 串流批次評估（SSE，每完成一個案例推送一次）
  */
 @Slf4j
 @RestController
@@ -59,13 +63,15 @@ public class EvaluationController {
      * 批次問答對評估
      *
      * @param requests 評估請求列表
+     * @param runId 評估運行 ID（可選，指定時寫入檢查點，中斷後以相同 runId 續跑）
      * @return 評估報告
      */
     @PostMapping("/batch")
     public ResponseEntity<ApiResponse<EvaluationReport>> evaluateBatch(
-            @Valid @RequestBody List<SingleEvaluationRequest> requests) {
+            @Valid @RequestBody List<SingleEvaluationRequest> requests,
+            @RequestParam(required = false) String runId) {
 
-        log.info("收到批次評估請求，數量: {}", requests.size());
+        log.info("收到批次評估請求，數量: {}，runId: {}", requests.size(), runId);
 
         try {
             if (requests == null || requests.isEmpty()) {
@@ -74,7 +80,7 @@ public class EvaluationController {
                 );
             }
 
-            EvaluationReport report = evaluationService.evaluateBatch(requests);
+            EvaluationReport report = evaluationService.evaluateBatch(runId, requests);
 
             return ResponseEntity.ok(
                     ApiResponse.success("批次評估完成", report)
@@ -88,6 +94,29 @@ public class EvaluationController {
         }
     }
 
+    /**
+     * 串流批次評估
+     *
+     * 每完成一個案例推送一個 result 事件（按完成順序，id 為案例在批次中的序號），全部完成後結束
+     *
+     * @param requests 評估請求列表
+     * @param runId 評估運行 ID（可選）
+     * @return SSE 事件流
+     */
+    @PostMapping(value = "/batch/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<EvaluationResult>> evaluateBatchStream(
+            @Valid @RequestBody List<SingleEvaluationRequest> requests,
+            @RequestParam(required = false) String runId) {
+
+        log.info("收到串流批次評估請求，數量: {}，runId: {}", requests.size(), runId);
+
+        return evaluationService.evaluateBatchStream(runId, requests)
+                .map(result -> ServerSentEvent.builder(result)
+                        .event("result")
+                        .id(String.valueOf(result.getCaseIndex()))
+                        .build());
+    }
+
     /**
      * 獲取評估摘要統計
      *
@@ -1,6 +1,7 @@
 package com.example.advancedrag.controller;
 
 import com.example.advancedrag.dto.ApiResponse;
+import com.example.advancedrag.dto.ModerationBatchRequest;
 import com.example.advancedrag.dto.ModerationRequest;
 import com.example.advancedrag.dto.ModerationResult;
 import com.example.advancedrag.service.ContentModerationService;
@@ -11,6 +12,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * 內容審核控制器
  *
@@ -18,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
  * - POST /api/v1/moderation/openai - OpenAI 審核
  * - POST /api/v1/moderation/custom - 自定義規則審核
  * - POST /api/v1/moderation/combined - 綜合審核（OpenAI + 自定義規則）
+ * - POST /api/v1/moderation/batch - 批次 OpenAI 審核（一次 API 調用）
  */
 @Slf4j
 @RestController
@@ -55,6 +59,35 @@ public class ModerationController {
         }
     }
 
+    /**
+     * 批次 OpenAI 內容審核
+     *
+     * 快取未命中的內容在一次 Moderation API 調用中審核，適合評估等批量場景
+     *
+     * @param request 批次審核請求
+     * @return 審核結果列表（與輸入順序對應）
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse<List<ModerationResult>>> moderateBatch(
+            @Valid @RequestBody ModerationBatchRequest request) {
+
+        log.info("收到批次審核請求，數量: {}", request.getContents().size());
+
+        try {
+            List<ModerationResult> results = contentModerationService.moderateContents(request.getContents());
+
+            return ResponseEntity.ok(
+                    ApiResponse.success("批次審核完成", results)
+            );
+
+        } catch (Exception e) {
+            log.error("批次審核失敗", e);
+            return ResponseEntity.internalServerError().body(
+                    ApiResponse.error("批次審核失敗：" + e.getMessage())
+            );
+        }
+    }
+
     /**
      * 自定義規則審核
      *
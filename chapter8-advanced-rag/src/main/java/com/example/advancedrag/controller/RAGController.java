@@ -3,17 +3,23 @@ package com.example.advancedrag.controller;
 import com.example.advancedrag.dto.AdvancedRAGRequest;
 import com.example.advancedrag.dto.AdvancedRAGResponse;
 import com.example.advancedrag.dto.ApiResponse;
+import com.example.advancedrag.dto.RAGStreamEvent;
 import com.example.advancedrag.service.AdvancedRAGService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 /**
  * Advanced RAG REST API 控制器
  *
- * 提供 RAG 查詢的 HTTP 接口
+ * 提供 RAG 查詢的 HTTP 接口：
+ * - POST/GET /api/v1/rag/query - 阻塞式查詢
+ * - POST/GET /api/v1/rag/query/stream - SSE 串流查詢（先推送檢索結果，再逐片段推送答案）
  */
 @Slf4j
 @RestController
@@ -82,4 +88,44 @@ public class RAGController {
             );
         }
     }
+
+    /**
+     * Advanced RAG 串流查詢（SSE）
+     *
+     * 事件名稱對應 {@link RAGStreamEvent} 的 type：retrieval、token、moderation、done、error
+     *
+     * @param request RAG 查詢請求
+     * @return SSE 事件流
+     */
+    @PostMapping(value = "/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<RAGStreamEvent>> queryStream(
+            @Valid @RequestBody AdvancedRAGRequest request) {
+
+        log.info("收到 RAG 串流查詢請求：{}", request.getQuery());
+        return toServerSentEvents(ragService.queryStream(request));
+    }
+
+    /**
+     * 簡化版 RAG 串流查詢（供瀏覽器 EventSource 使用）
+     *
+     * @param query 查詢字符串
+     * @return SSE 事件流
+     */
+    @GetMapping(value = "/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<RAGStreamEvent>> queryStreamSimple(@RequestParam String query) {
+        log.info("收到簡化 RAG 串流查詢請求：{}", query);
+
+        AdvancedRAGRequest request = AdvancedRAGRequest.builder()
+                .query(query)
+                .build();
+
+        return toServerSentEvents(ragService.queryStream(request));
+    }
+
+    private Flux<ServerSentEvent<RAGStreamEvent>> toServerSentEvents(Flux<RAGStreamEvent> events) {
+        return events.map(event -> ServerSentEvent.builder(event)
+                .event(event.getType())
+                .id(event.getQueryId())
+                .build());
+    }
 }
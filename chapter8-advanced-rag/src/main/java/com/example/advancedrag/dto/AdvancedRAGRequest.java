@@ -48,6 +48,15 @@ public class AdvancedRAGRequest {
     @Builder.Default
     private Boolean enableModeration = true;
 
+    /**
+     * 串流查詢時是否在審核前即推送答案片段
+     *
+     * 預設 false：每個句子通過審核後才推送；true 時延遲較低，
+     * 但未通過審核的句子可能已送達客戶端，需以 moderation 事件替換
+     */
+    @Builder.Default
+    private Boolean streamUnmoderatedTokens = false;
+
     /**
      * 是否啟用查詢重寫
      */
@@ -0,0 +1,60 @@
+package com.example.advancedrag.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 添加文檔響應
+ *
+ * 返回文檔寫入向量數據庫的結果統計
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentAddResponse {
+
+    /**
+     * 請求的文檔總數
+     */
+    private Integer totalDocuments;
+
+    /**
+     * 成功寫入的文檔數
+     */
+    private Integer successCount;
+
+    /**
+     * 寫入失敗的文檔數
+     */
+    private Integer failedCount;
+
+    /**
+     * 成功寫入的文檔 ID 列表
+     */
+    @Builder.Default
+    private List<String> addedDocumentIds = new ArrayList<>();
+
+    /**
+     * 因近似重複而跳過的文檔數
+     */
+    private Integer duplicateCount;
+
+    /**
+     * 跳過的文檔 ID → 與其近似重複的已有文檔 ID
+     */
+    @Builder.Default
+    private Map<String, String> duplicateDocumentIds = new HashMap<>();
+
+    /**
+     * 處理時間（毫秒）
+     */
+    private Long processingTimeMs;
+}
@@ -27,6 +27,11 @@ public class EvaluationResult {
      */
     private String testCaseId;
 
+    /**
+     * 批次評估中的案例序號（從 0 開始，單個評估時為 null）
+     */
+    private Integer caseIndex;
+
     /**
      * 測試問題
      */
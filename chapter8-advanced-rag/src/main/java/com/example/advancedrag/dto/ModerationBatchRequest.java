@@ -0,0 +1,32 @@
+package com.example.advancedrag.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批次內容審核請求
+ *
+ * 多段內容在一次 Moderation API 調用中審核，結果與輸入順序對應
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModerationBatchRequest {
+
+    /**
+     * 待審核的內容列表
+     */
+    @NotEmpty(message = "待審核內容列表不能為空")
+    @Size(max = 1000, message = "單次最多審核 1000 段內容")
+    @Builder.Default
+    private List<@NotBlank(message = "待審核內容不能為空") String> contents = new ArrayList<>();
+}
@@ -0,0 +1,64 @@
+package com.example.advancedrag.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Advanced RAG 串流事件
+ *
+ * SSE 串流查詢依序推送的事件：
+ * - retrieval：檢索完成，包含重寫後的查詢與檢索到的文檔
+ * - token：答案片段
+ * - moderation：答案未通過內容審核，生成已中止，content 為替換後的安全回覆
+ * - done：查詢完成，包含完整答案與耗時元數據
+ * - error：查詢失敗
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RAGStreamEvent {
+
+    public static final String TYPE_RETRIEVAL = "retrieval";
+    public static final String TYPE_TOKEN = "token";
+    public static final String TYPE_MODERATION = "moderation";
+    public static final String TYPE_DONE = "done";
+    public static final String TYPE_ERROR = "error";
+
+    /**
+     * 事件類型
+     */
+    private String type;
+
+    /**
+     * 查詢 ID
+     */
+    private String queryId;
+
+    /**
+     * 文本內容（答案片段、完整答案或錯誤信息）
+     */
+    private String content;
+
+    /**
+     * 重寫後的查詢（retrieval 事件）
+     */
+    private String rewrittenQuery;
+
+    /**
+     * 檢索到的文檔（retrieval 事件）
+     */
+    private List<AdvancedRAGResponse.RetrievedDocument> documents;
+
+    /**
+     * 元數據（耗時、檢索統計等）
+     */
+    private Map<String, Object> metadata;
+}
@@ -17,6 +17,11 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class SingleEvaluationRequest {
 
+    /**
+     * 測試案例 ID（可選，原樣帶回評估結果）
+     */
+    private String testCaseId;
+
     /**
      * 問題
      */
@@ -0,0 +1,569 @@
+package com.example.advancedrag.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * BM25 倒排索引
+ *
+ * 記憶體內的 BM25 索引，支援增量新增與刪除：
+ * - 每個詞項的 postings 以原始型別陣列儲存（文檔序號 int[] + 詞頻 int[]）
+ * - 維護文檔長度與集合統計（文檔數、總長度、平均長度）
+ * - 查詢時直接查表計分，不需重新掃描文檔全文
+ *
+ * 評分公式（Lucene 變體）：
+ * idf(t) = ln(1 + (N - df + 0.5) / (df + 0.5))
+ * score(t, d) = idf(t) * tf * (k1 + 1) / (tf + k1 * (1 - b + b * dl / avgdl))
+ *
+ * 刪除（以及同 ID 更新）採用標記方式；失效的文檔序號累積到不少於有效文檔數時自動壓縮：
+ * 移除失效的 postings 與詞項，並將有效文檔重新編號，讓檢索成本只隨有效文檔數增長。
+ * 所有公開方法皆為執行緒安全（讀寫鎖）。
+ */
+public class BM25Index {
+
+    /**
+     * 詞頻飽和參數
+     */
+    public static final double DEFAULT_K1 = 1.2;
+
+    /**
+     * 長度正規化參數
+     */
+    public static final double DEFAULT_B = 0.75;
+
+    /**
+     * 文檔未被索引時的評分返回值
+     */
+    public static final double NOT_INDEXED = -1.0;
+
+    /**
+     * 觸發壓縮的最少失效文檔數
+     */
+    private static final int COMPACT_MIN_DELETED = 1024;
+
+    private static final int INITIAL_DOC_CAPACITY = 64;
+    private static final int INITIAL_TERM_CAPACITY = 256;
+
+    private final double k1;
+    private final double b;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 詞項字典與 postings（以詞項 ID 為索引）
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private Postings[] postings = new Postings[INITIAL_TERM_CAPACITY];
+    private int termCount;
+
+    // 文檔資料（以文檔序號為索引）
+    private final Map<String, Integer> docOrdinals = new HashMap<>();
+    private String[] docIds = new String[INITIAL_DOC_CAPACITY];
+    private int[] docLengths = new int[INITIAL_DOC_CAPACITY];
+    private int[][] docTermIds = new int[INITIAL_DOC_CAPACITY][];
+    private final BitSet liveDocs = new BitSet();
+    private int nextOrdinal;
+
+    // 集合統計
+    private int liveDocCount;
+    private long totalLength;
+    private int deletedSinceCompaction;
+
+    public BM25Index() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    public BM25Index(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * 新增（或更新）文檔
+     *
+     * @param docId 文檔 ID
+     * @param terms 文檔詞項（已分析，含重複）
+     */
+    public void add(String docId, List<String> terms) {
+        // 鎖外先統計詞頻，縮短持鎖時間
+        Map<String, Integer> termFreqs = new HashMap<>();
+        for (String term : terms) {
+            termFreqs.merge(term, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            boolean replaced = removeInternal(docId);
+
+            int ordinal = nextOrdinal++;
+            ensureDocCapacity(ordinal + 1);
+
+            int[] uniqueTermIds = new int[termFreqs.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : termFreqs.entrySet()) {
+                int termId = termIdFor(entry.getKey());
+                postings[termId].append(ordinal, entry.getValue());
+                uniqueTermIds[i++] = termId;
+            }
+
+            docOrdinals.put(docId, ordinal);
+            docIds[ordinal] = docId;
+            docLengths[ordinal] = terms.size();
+            docTermIds[ordinal] = uniqueTermIds;
+            liveDocs.set(ordinal);
+            liveDocCount++;
+            totalLength += terms.size();
+
+            if (replaced) {
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 刪除文檔
+     *
+     * @param docId 文檔 ID
+     * @return 是否存在並已刪除
+     */
+    public boolean remove(String docId) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = removeInternal(docId);
+            if (removed) {
+                compactIfNeeded();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 檢查文檔是否已被索引
+     *
+     * @param docId 文檔 ID
+     * @return 是否已索引
+     */
+    public boolean contains(String docId) {
+        lock.readLock().lock();
+        try {
+            return docOrdinals.containsKey(docId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 計算已索引文檔的 BM25 原始分數
+     *
+     * @param docId 文檔 ID
+     * @param queryTerms 查詢詞項
+     * @return BM25 分數；文檔未索引時返回 {@link #NOT_INDEXED}
+     */
+    public double score(String docId, Collection<String> queryTerms) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = docOrdinals.get(docId);
+            if (ordinal == null) {
+                return NOT_INDEXED;
+            }
+
+            double lengthNorm = lengthNorm(docLengths[ordinal]);
+            double score = 0.0;
+            for (String term : uniqueTerms(queryTerms)) {
+                Integer termId = termIds.get(term);
+                if (termId == null) {
+                    continue;
+                }
+                Postings termPostings = postings[termId];
+                int tf = termPostings.freqOf(ordinal);
+                if (tf > 0) {
+                    score += idf(termPostings.docFreq) * tf * (k1 + 1) / (tf + k1 * lengthNorm);
+                }
+            }
+            return score;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 計算已索引文檔的正規化 BM25 分數（0-1）
+     *
+     * 以查詢的理論上限 Σ idf(t) * (k1 + 1) 進行正規化
+     *
+     * @param docId 文檔 ID
+     * @param queryTerms 查詢詞項
+     * @return 正規化分數；文檔未索引時返回 {@link #NOT_INDEXED}
+     */
+    public double normalizedScore(String docId, Collection<String> queryTerms) {
+        lock.readLock().lock();
+        try {
+            double raw = score(docId, queryTerms);
+            if (raw == NOT_INDEXED) {
+                return NOT_INDEXED;
+            }
+            double max = maxScore(queryTerms);
+            return max > 0 ? Math.min(1.0, raw / max) : 0.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 以集合統計為未索引的文本計分（不寫入索引）
+     *
+     * @param docTerms 文檔詞項（已分析，含重複）
+     * @param queryTerms 查詢詞項
+     * @return 正規化分數（0-1）
+     */
+    public double normalizedScoreOf(List<String> docTerms, Collection<String> queryTerms) {
+        Map<String, Integer> termFreqs = new HashMap<>();
+        for (String term : docTerms) {
+            termFreqs.merge(term, 1, Integer::sum);
+        }
+
+        lock.readLock().lock();
+        try {
+            double lengthNorm = lengthNorm(docTerms.size());
+            double score = 0.0;
+            for (String term : uniqueTerms(queryTerms)) {
+                int tf = termFreqs.getOrDefault(term, 0);
+                if (tf > 0) {
+                    score += idf(docFreq(term)) * tf * (k1 + 1) / (tf + k1 * lengthNorm);
+                }
+            }
+            double max = maxScore(queryTerms);
+            return max > 0 ? Math.min(1.0, score / max) : 0.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在整個索引中檢索
+     *
+     * 遍歷查詢詞項的 postings 累加分數，返回分數最高的 topK 個文檔
+     *
+     * @param queryTerms 查詢詞項
+     * @param topK 返回數量
+     * @return 命中列表（按分數降序）
+     */
+    public List<Hit> search(Collection<String> queryTerms, int topK) {
+        if (topK <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            float[] accumulator = new float[nextOrdinal];
+            BitSet touched = new BitSet(nextOrdinal);
+
+            for (String term : uniqueTerms(queryTerms)) {
+                Integer termId = termIds.get(term);
+                if (termId == null) {
+                    continue;
+                }
+                Postings termPostings = postings[termId];
+                double idf = idf(termPostings.docFreq);
+                for (int i = 0; i < termPostings.size; i++) {
+                    int ordinal = termPostings.docs[i];
+                    if (!liveDocs.get(ordinal)) {
+                        continue;
+                    }
+                    int tf = termPostings.freqs[i];
+                    accumulator[ordinal] += (float) (idf * tf * (k1 + 1)
+                            / (tf + k1 * lengthNorm(docLengths[ordinal])));
+                    touched.set(ordinal);
+                }
+            }
+
+            double max = maxScore(queryTerms);
+            List<Hit> hits = new ArrayList<>(touched.cardinality());
+            for (int ordinal = touched.nextSetBit(0); ordinal >= 0; ordinal = touched.nextSetBit(ordinal + 1)) {
+                double raw = accumulator[ordinal];
+                hits.add(new Hit(docIds[ordinal], raw, max > 0 ? Math.min(1.0, raw / max) : 0.0));
+            }
+            hits.sort((a, b) -> Double.compare(b.score(), a.score()));
+            return hits.size() > topK ? new ArrayList<>(hits.subList(0, topK)) : hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已索引（有效）文檔數量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 詞項字典大小
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return termCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 平均文檔長度（詞項數）
+     */
+    public double averageDocumentLength() {
+        lock.readLock().lock();
+        try {
+            return liveDocCount > 0 ? (double) totalLength / liveDocCount : 0.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已分配的文檔序號數（含尚未壓縮的失效序號），即每次檢索的累加陣列大小
+     */
+    int ordinalCount() {
+        lock.readLock().lock();
+        try {
+            return nextOrdinal;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            termIds.clear();
+            postings = new Postings[INITIAL_TERM_CAPACITY];
+            termCount = 0;
+            docOrdinals.clear();
+            docIds = new String[INITIAL_DOC_CAPACITY];
+            docLengths = new int[INITIAL_DOC_CAPACITY];
+            docTermIds = new int[INITIAL_DOC_CAPACITY][];
+            liveDocs.clear();
+            nextOrdinal = 0;
+            liveDocCount = 0;
+            totalLength = 0;
+            deletedSinceCompaction = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== 內部方法（呼叫前須持有鎖）==========
+
+    private boolean removeInternal(String docId) {
+        Integer ordinal = docOrdinals.remove(docId);
+        if (ordinal == null) {
+            return false;
+        }
+
+        for (int termId : docTermIds[ordinal]) {
+            postings[termId].docFreq--;
+        }
+        liveDocs.clear(ordinal);
+        liveDocCount--;
+        totalLength -= docLengths[ordinal];
+        docIds[ordinal] = null;
+        docTermIds[ordinal] = null;
+        deletedSinceCompaction++;
+        return true;
+    }
+
+    private void compactIfNeeded() {
+        if (deletedSinceCompaction >= COMPACT_MIN_DELETED && deletedSinceCompaction >= liveDocCount) {
+            compact();
+        }
+    }
+
+    /**
+     * 壓縮索引
+     *
+     * 有效文檔按原順序重新編號為 0..N-1（postings 保持遞增），文檔陣列縮小到有效文檔數；
+     * 移除 postings 中已刪除文檔的項目，並丟棄不再出現在任何文檔中的詞項。
+     */
+    private void compact() {
+        // 1. 文檔序號重新編號
+        int[] ordinalMap = new int[nextOrdinal];
+        Arrays.fill(ordinalMap, -1);
+        int capacity = Math.max(INITIAL_DOC_CAPACITY, liveDocCount);
+        String[] newDocIds = new String[capacity];
+        int[] newDocLengths = new int[capacity];
+        int[][] newDocTermIds = new int[capacity][];
+        int liveOrdinals = 0;
+        for (int ordinal = liveDocs.nextSetBit(0); ordinal >= 0; ordinal = liveDocs.nextSetBit(ordinal + 1)) {
+            int newOrdinal = liveOrdinals++;
+            ordinalMap[ordinal] = newOrdinal;
+            newDocIds[newOrdinal] = docIds[ordinal];
+            newDocLengths[newOrdinal] = docLengths[ordinal];
+            newDocTermIds[newOrdinal] = docTermIds[ordinal];
+            docOrdinals.put(docIds[ordinal], newOrdinal);
+        }
+
+        // 2. postings 改用新序號，丟棄空的詞項
+        int[] termMap = new int[termCount];
+        Postings[] newPostings = new Postings[Math.max(INITIAL_TERM_CAPACITY, termCount)];
+        int liveTerms = 0;
+        for (int termId = 0; termId < termCount; termId++) {
+            Postings termPostings = postings[termId];
+            termPostings.remap(ordinalMap);
+            if (termPostings.size == 0) {
+                termMap[termId] = -1;
+            } else {
+                termMap[termId] = liveTerms;
+                newPostings[liveTerms++] = termPostings;
+            }
+        }
+        termIds.entrySet().removeIf(entry -> termMap[entry.getValue()] < 0);
+        termIds.replaceAll((term, termId) -> termMap[termId]);
+        for (int ordinal = 0; ordinal < liveOrdinals; ordinal++) {
+            int[] ids = newDocTermIds[ordinal];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = termMap[ids[i]];
+            }
+        }
+
+        docIds = newDocIds;
+        docLengths = newDocLengths;
+        docTermIds = newDocTermIds;
+        postings = newPostings;
+        termCount = liveTerms;
+        nextOrdinal = liveOrdinals;
+        liveDocs.clear();
+        liveDocs.set(0, liveOrdinals);
+        deletedSinceCompaction = 0;
+    }
+
+    private int termIdFor(String term) {
+        Integer termId = termIds.get(term);
+        if (termId != null) {
+            return termId;
+        }
+        if (termCount == postings.length) {
+            postings = Arrays.copyOf(postings, termCount * 2);
+        }
+        int newId = termCount++;
+        postings[newId] = new Postings();
+        termIds.put(term, newId);
+        return newId;
+    }
+
+    private void ensureDocCapacity(int capacity) {
+        if (capacity <= docIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, docIds.length * 2);
+        docIds = Arrays.copyOf(docIds, newCapacity);
+        docLengths = Arrays.copyOf(docLengths, newCapacity);
+        docTermIds = Arrays.copyOf(docTermIds, newCapacity);
+    }
+
+    private int docFreq(String term) {
+        Integer termId = termIds.get(term);
+        return termId != null ? postings[termId].docFreq : 0;
+    }
+
+    private double idf(int docFreq) {
+        int n = Math.max(liveDocCount, 1);
+        return Math.log(1.0 + (n - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    private double lengthNorm(int docLength) {
+        double averageLength = liveDocCount > 0 ? (double) totalLength / liveDocCount : docLength;
+        if (averageLength <= 0) {
+            return 1.0;
+        }
+        return 1.0 - b + b * docLength / averageLength;
+    }
+
+    private double maxScore(Collection<String> queryTerms) {
+        double max = 0.0;
+        for (String term : uniqueTerms(queryTerms)) {
+            max += idf(docFreq(term)) * (k1 + 1);
+        }
+        return max;
+    }
+
+    private static Set<String> uniqueTerms(Collection<String> queryTerms) {
+        return queryTerms instanceof Set<String> set ? set : new LinkedHashSet<>(queryTerms);
+    }
+
+    /**
+     * 單一詞項的 postings 列表
+     *
+     * 文檔序號單調遞增追加，因此可二分查找
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+        int docFreq;
+
+        void append(int ordinal, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = ordinal;
+            freqs[size] = freq;
+            size++;
+            docFreq++;
+        }
+
+        int freqOf(int ordinal) {
+            int index = Arrays.binarySearch(docs, 0, size, ordinal);
+            return index >= 0 ? freqs[index] : 0;
+        }
+
+        /**
+         * 以新序號取代舊序號，丟棄映射為 -1（已刪除）的項目；映射單調遞增，因此順序不變
+         */
+        void remap(int[] ordinalMap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int ordinal = ordinalMap[docs[i]];
+                if (ordinal >= 0) {
+                    docs[kept] = ordinal;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (docs.length > 4 && size < docs.length / 4) {
+                int capacity = Math.max(4, size);
+                docs = Arrays.copyOf(docs, capacity);
+                freqs = Arrays.copyOf(freqs, capacity);
+            }
+        }
+    }
+
+    /**
+     * 檢索命中
+     *
+     * @param docId 文檔 ID
+     * @param score BM25 原始分數
+     * @param normalizedScore 正規化分數（0-1）
+     */
+    public record Hit(String docId, double score, double normalizedScore) {
+    }
+}
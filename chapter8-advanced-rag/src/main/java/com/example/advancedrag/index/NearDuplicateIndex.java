@@ -0,0 +1,188 @@
+package com.example.advancedrag.index;
+
+import com.example.advancedrag.util.SimHash;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 近似重複文檔索引（Redis 持久化的 SimHash 分段索引）
+ *
+ * Redis 結構：
+ * - {@code rag:dedup:signatures}（Hash）：文檔 ID → SimHash 指紋
+ * - {@code rag:dedup:band:<段鍵>}（Set）：該段相同的文檔 ID
+ *
+ * 一批文檔的查詢只需兩次往返（管線化 SMEMBERS + 一次 HMGET），
+ * 寫入與刪除皆管線化。Redis 不可用時視為無重複（不阻擋寫入）。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NearDuplicateIndex {
+
+    private static final String SIGNATURES_KEY = "rag:dedup:signatures";
+    private static final String BAND_KEY_PREFIX = "rag:dedup:band:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 查找每個文檔在已索引文檔中的近似重複（排除自身 ID，即更新同一文檔不算重複）
+     *
+     * @param signatures 文檔 ID → 指紋
+     * @param maxDistance 最大漢明距離
+     * @return 文檔 ID → 最接近的已索引文檔 ID（僅包含有重複的文檔）
+     */
+    public Map<String, String> findNearDuplicates(Map<String, Long> signatures, int maxDistance) {
+        Map<String, String> duplicates = new HashMap<>();
+        if (signatures.isEmpty()) {
+            return duplicates;
+        }
+
+        try {
+            // 1. 管線化讀取所有分段的候選
+            List<String> ids = new ArrayList<>(signatures.keySet());
+            List<Object> bandMembers = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    for (String id : ids) {
+                        for (int band = 0; band < SimHash.BANDS; band++) {
+                            operations.opsForSet().members(bandKey(signatures.get(id), band));
+                        }
+                    }
+                    return null;
+                }
+            });
+
+            List<Set<String>> candidatesById = new ArrayList<>(ids.size());
+            Set<String> allCandidates = new LinkedHashSet<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Set<String> candidates = new LinkedHashSet<>();
+                for (int band = 0; band < SimHash.BANDS; band++) {
+                    Object members = bandMembers.get(i * SimHash.BANDS + band);
+                    if (members instanceof Collection<?> collection) {
+                        collection.forEach(member -> candidates.add(member.toString()));
+                    }
+                }
+                candidates.remove(ids.get(i));
+                candidatesById.add(candidates);
+                allCandidates.addAll(candidates);
+            }
+            if (allCandidates.isEmpty()) {
+                return duplicates;
+            }
+
+            // 2. 一次讀取所有候選的指紋並比較漢明距離
+            List<String> candidateIds = new ArrayList<>(allCandidates);
+            List<Object> values = redisTemplate.opsForHash().multiGet(SIGNATURES_KEY, new ArrayList<>(candidateIds));
+            Map<String, Long> candidateSignatures = new HashMap<>();
+            for (int i = 0; i < candidateIds.size(); i++) {
+                if (values.get(i) != null) {
+                    candidateSignatures.put(candidateIds.get(i), Long.parseLong(values.get(i).toString()));
+                }
+            }
+
+            for (int i = 0; i < ids.size(); i++) {
+                long signature = signatures.get(ids.get(i));
+                String closest = null;
+                int closestDistance = maxDistance + 1;
+                for (String candidate : candidatesById.get(i)) {
+                    Long candidateSignature = candidateSignatures.get(candidate);
+                    if (candidateSignature == null) {
+                        continue;
+                    }
+                    int distance = SimHash.distance(signature, candidateSignature);
+                    if (distance < closestDistance) {
+                        closest = candidate;
+                        closestDistance = distance;
+                    }
+                }
+                if (closest != null) {
+                    duplicates.put(ids.get(i), closest);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("近似重複索引查詢失敗，略過去重: {}", e.getMessage());
+        }
+        return duplicates;
+    }
+
+    /**
+     * 加入索引（已存在的文檔 ID 先移除舊指紋）
+     *
+     * @param signatures 文檔 ID → 指紋
+     */
+    public void addAll(Map<String, Long> signatures) {
+        if (signatures.isEmpty()) {
+            return;
+        }
+        try {
+            removeAll(signatures.keySet());
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    for (Map.Entry<String, Long> entry : signatures.entrySet()) {
+                        operations.opsForHash().put(SIGNATURES_KEY, entry.getKey(), Long.toString(entry.getValue()));
+                        for (int band = 0; band < SimHash.BANDS; band++) {
+                            operations.opsForSet().add(bandKey(entry.getValue(), band), entry.getKey());
+                        }
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("近似重複索引寫入失敗: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 從索引中移除文檔
+     *
+     * @param documentIds 文檔 ID
+     */
+    public void removeAll(Collection<String> documentIds) {
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> ids = new ArrayList<>(documentIds);
+            List<Object> values = redisTemplate.opsForHash().multiGet(SIGNATURES_KEY, new ArrayList<>(ids));
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (values.get(i) == null) {
+                            continue;
+                        }
+                        long signature = Long.parseLong(values.get(i).toString());
+                        for (int band = 0; band < SimHash.BANDS; band++) {
+                            operations.opsForSet().remove(bandKey(signature, band), ids.get(i));
+                        }
+                        operations.opsForHash().delete(SIGNATURES_KEY, ids.get(i));
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("近似重複索引刪除失敗: {}", e.getMessage());
+        }
+    }
+
+    private static String bandKey(long signature, int band) {
+        return BAND_KEY_PREFIX + Long.toHexString(SimHash.bandKey(signature, band));
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.advancedrag.model;
+
+import org.springframework.ai.document.Document;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文檔特徵向量
+ *
+ * 只與文檔本身有關的 Re-ranking 特徵，在寫入時計算一次並存入文檔元數據
+ * （{@link #METADATA_KEY}），隨向量檢索結果一併返回，查詢時不再掃描文本或解析時間：
+ * - lengthBucket：內容長度分桶（0: &lt;200, 1: 200-2000, 2: 2000-5000, 3: &gt;5000）
+ * - punctuationDensity：標點符號密度（標點數 / 字元數）
+ * - metadataRichness：元數據豐富度（title 0.1、author 0.05、source 0.05）
+ * - timestampEpochSecond：文檔時間（updated_at / created_at / timestamp），無則為 {@link #NO_TIMESTAMP}
+ *
+ * 品質分數 = 基礎分 + 特徵與權重的內積；新鮮度分數由時間差查表得出。
+ *
+ * @param lengthBucket 內容長度分桶
+ * @param punctuationDensity 標點符號密度
+ * @param metadataRichness 元數據豐富度
+ * @param timestampEpochSecond 文檔時間（epoch 秒）
+ */
+public record DocumentFeatures(int lengthBucket, double punctuationDensity,
+                               double metadataRichness, long timestampEpochSecond) {
+
+    /**
+     * 元數據鍵：[lengthBucket, punctuationDensity, metadataRichness, timestampEpochSecond]
+     */
+    public static final String METADATA_KEY = "rag_features";
+
+    /**
+     * 無時間信息
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final String PUNCTUATION = ",.!?;:，。！？；：";
+
+    private static final double BASE_QUALITY = 0.5;
+
+    /**
+     * 各長度分桶的品質加分
+     */
+    private static final double[] LENGTH_BUCKET_SCORES = {0.0, 0.2, 0.1, 0.0};
+
+    /**
+     * 標點密度達到此值視為結構良好（約每 100 字一個標點）
+     */
+    private static final double STRUCTURED_DENSITY = 0.01;
+    private static final double STRUCTURE_SCORE = 0.1;
+
+    private static final double DEFAULT_FRESHNESS = 0.7;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    /**
+     * 從文檔內容與元數據提取特徵（寫入時使用）
+     *
+     * @param document 文檔
+     * @return 特徵
+     */
+    public static DocumentFeatures extract(Document document) {
+        return extract(document.getText(), document.getMetadata());
+    }
+
+    /**
+     * 從內容與元數據提取特徵
+     *
+     * @param text 文檔內容
+     * @param metadata 文檔元數據
+     * @return 特徵
+     */
+    public static DocumentFeatures extract(String text, Map<String, Object> metadata) {
+        String content = text != null ? text : "";
+
+        int length = content.length();
+        int lengthBucket;
+        if (length < 200) {
+            lengthBucket = 0;
+        } else if (length <= 2000) {
+            lengthBucket = 1;
+        } else if (length <= 5000) {
+            lengthBucket = 2;
+        } else {
+            lengthBucket = 3;
+        }
+
+        int punctuationCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (PUNCTUATION.indexOf(content.charAt(i)) >= 0) {
+                punctuationCount++;
+            }
+        }
+        double punctuationDensity = length > 0 ? (double) punctuationCount / length : 0.0;
+
+        double metadataRichness = 0.0;
+        if (metadata.get("title") != null) {
+            metadataRichness += 0.1;
+        }
+        if (metadata.get("author") != null) {
+            metadataRichness += 0.05;
+        }
+        if (metadata.get("source") != null) {
+            metadataRichness += 0.05;
+        }
+
+        Object timestamp = metadata.get("updated_at");
+        if (timestamp == null) {
+            timestamp = metadata.get("created_at");
+        }
+        if (timestamp == null) {
+            timestamp = metadata.get("timestamp");
+        }
+
+        return new DocumentFeatures(lengthBucket, punctuationDensity, metadataRichness, toEpochSecond(timestamp));
+    }
+
+    /**
+     * 讀取文檔的特徵：優先使用寫入時儲存的特徵，舊文檔則即時提取
+     *
+     * @param document 文檔
+     * @return 特徵
+     */
+    public static DocumentFeatures of(Document document) {
+        DocumentFeatures stored = fromMetadata(document.getMetadata().get(METADATA_KEY));
+        return stored != null ? stored : extract(document);
+    }
+
+    /**
+     * 轉換為可存入元數據的數值列表
+     *
+     * @return [lengthBucket, punctuationDensity, metadataRichness, timestampEpochSecond]
+     */
+    public List<Number> toMetadata() {
+        return List.of(lengthBucket, punctuationDensity, metadataRichness, timestampEpochSecond);
+    }
+
+    /**
+     * 品質分數（0-1）
+     *
+     * @return 品質分數
+     */
+    public double qualityScore() {
+        int bucket = Math.max(0, Math.min(lengthBucket, LENGTH_BUCKET_SCORES.length - 1));
+        double score = BASE_QUALITY
+                + LENGTH_BUCKET_SCORES[bucket]
+                + (punctuationDensity >= STRUCTURED_DENSITY ? STRUCTURE_SCORE : 0.0)
+                + metadataRichness;
+        return Math.min(1.0, score);
+    }
+
+    /**
+     * 新鮮度分數（0-1）
+     *
+     * @param nowEpochSecond 當前時間（epoch 秒）
+     * @return 新鮮度分數
+     */
+    public double freshnessScore(long nowEpochSecond) {
+        if (timestampEpochSecond == NO_TIMESTAMP) {
+            return DEFAULT_FRESHNESS; // 無時間信息返回中等分數
+        }
+
+        long daysDiff = (nowEpochSecond - timestampEpochSecond) / SECONDS_PER_DAY;
+
+        // 新鮮度評分規則
+        if (daysDiff <= 7) return 1.0;        // 一週內
+        if (daysDiff <= 30) return 0.9;       // 一個月內
+        if (daysDiff <= 90) return 0.8;       // 三個月內
+        if (daysDiff <= 180) return 0.7;      // 半年內
+        if (daysDiff <= 365) return 0.6;      // 一年內
+        return 0.5;                            // 超過一年
+    }
+
+    /**
+     * 從元數據值還原特徵（格式不符時返回 null）
+     */
+    private static DocumentFeatures fromMetadata(Object value) {
+        if (!(value instanceof List<?> list) || list.size() != 4) {
+            return null;
+        }
+        for (Object item : list) {
+            if (!(item instanceof Number)) {
+                return null;
+            }
+        }
+        return new DocumentFeatures(
+                ((Number) list.get(0)).intValue(),
+                ((Number) list.get(1)).doubleValue(),
+                ((Number) list.get(2)).doubleValue(),
+                ((Number) list.get(3)).longValue());
+    }
+
+    /**
+     * 解析時間戳：LocalDateTime、ISO-8601 字串或 epoch 秒
+     */
+    private static long toEpochSecond(Object timestamp) {
+        try {
+            if (timestamp instanceof LocalDateTime dateTime) {
+                return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+            } else if (timestamp instanceof String text) {
+                return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toEpochSecond();
+            } else if (timestamp instanceof Long epochSecond) {
+                return epochSecond;
+            }
+        } catch (Exception e) {
+            // 無法解析視為無時間信息
+        }
+        return NO_TIMESTAMP;
+    }
+}
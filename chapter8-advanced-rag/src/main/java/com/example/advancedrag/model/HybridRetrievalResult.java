@@ -0,0 +1,52 @@
+package com.example.advancedrag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 混合檢索結果
+ *
+ * 包含融合後的文檔列表，以及向量檢索、關鍵詞檢索兩路的耗時與命中數
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HybridRetrievalResult {
+
+    /**
+     * 融合後的文檔列表（按融合分數降序）
+     */
+    @Builder.Default
+    private List<ScoredDocument> documents = new ArrayList<>();
+
+    /**
+     * 融合方式：rrf 或 weighted
+     */
+    private String fusion;
+
+    /**
+     * 向量檢索耗時（毫秒）
+     */
+    private Long vectorLatencyMs;
+
+    /**
+     * 關鍵詞檢索耗時（毫秒）
+     */
+    private Long lexicalLatencyMs;
+
+    /**
+     * 向量檢索命中數
+     */
+    private Integer vectorHits;
+
+    /**
+     * 關鍵詞檢索命中數
+     */
+    private Integer lexicalHits;
+}
@@ -35,10 +35,17 @@ public class RAGQueryOptions {
     private Double similarityThreshold = 0.7;
 
     /**
-     * 最大上下文長度
+     * 最大上下文長度（字元，舊參數）
+     *
+     * 未設置 maxContextTokens 時，按候選文檔實際的字元/token 比例換算為 token 預算，
+     * 且不超過生成模型的預算；未設置時不限制
      */
-    @Builder.Default
-    private Integer maxContextLength = 4000;
+    private Integer maxContextLength;
+
+    /**
+     * 上下文 token 預算（優先於 maxContextLength；皆未設置時使用生成模型的預算）
+     */
+    private Integer maxContextTokens;
 
     /**
      * 是否啟用 Re-ranking
@@ -63,4 +70,10 @@ public class RAGQueryOptions {
      */
     @Builder.Default
     private Integer queryExpansionCount = 3;
+
+    /**
+     * 是否啟用混合檢索（向量 + BM25 關鍵詞並行檢索後融合）
+     */
+    @Builder.Default
+    private Boolean enableHybridSearch = false;
 }
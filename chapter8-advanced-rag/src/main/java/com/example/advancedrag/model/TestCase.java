@@ -45,6 +45,12 @@ public class TestCase {
      */
     private String expectedAnswer;
 
+    /**
+     * 相關文檔 ID 列表（檢索品質基準測試的標註，可選）
+     */
+    @Builder.Default
+    private List<String> relevantDocIds = new ArrayList<>();
+
     /**
      * 難度係數（0-1，數字越大越難）
      */
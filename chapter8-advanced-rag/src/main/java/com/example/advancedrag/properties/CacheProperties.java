@@ -0,0 +1,123 @@
+package com.example.advancedrag.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 快取配置屬性
+ *
+ * 綁定 application.yml 中的 app.cache 配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    /**
+     * 本地近端快取（L1）配置
+     */
+    private NearCache nearCache = new NearCache();
+
+    /**
+     * 跨節點失效通知配置
+     */
+    private Invalidation invalidation = new Invalidation();
+
+    /**
+     * Redis 值序列化預設配置
+     */
+    private Serialization serialization = new Serialization();
+
+    /**
+     * 按快取名稱覆蓋的序列化配置
+     */
+    private Map<String, Serialization> caches = new HashMap<>(Map.of(
+            "embeddings", Serialization.of("float32", "none")));
+
+    /**
+     * 獲取指定快取的序列化配置（未覆蓋時使用預設配置）
+     *
+     * @param cacheName 快取名稱
+     * @return 序列化配置
+     */
+    public Serialization getSerializationFor(String cacheName) {
+        return caches.getOrDefault(cacheName, serialization);
+    }
+
+    /**
+     * 本地近端快取配置類
+     */
+    @Data
+    public static class NearCache {
+        /**
+         * 是否啟用 L1
+         */
+        private Boolean enabled = true;
+
+        /**
+         * 啟用 L1 的快取名稱
+         */
+        private List<String> caches = new ArrayList<>(List.of(
+                "embeddings", "rewrittenQueries", "expandedQueries", "queryKeywords", "moderationResults"));
+
+        /**
+         * 每個快取的最大權重（估算的堆內存位元組數）
+         */
+        private Long maxWeightBytes = 64L * 1024 * 1024;
+
+        /**
+         * 寫入後過期時間（秒）
+         */
+        private Long expireAfterWriteSeconds = 3600L;
+    }
+
+    /**
+     * 跨節點失效通知配置類
+     */
+    @Data
+    public static class Invalidation {
+        /**
+         * 是否透過 Redis Pub/Sub 廣播 L1 失效
+         */
+        private Boolean enabled = false;
+
+        /**
+         * Pub/Sub 頻道名稱
+         */
+        private String channel = "advanced-rag:cache:invalidation";
+    }
+
+    /**
+     * Redis 值序列化配置類
+     */
+    @Data
+    public static class Serialization {
+        /**
+         * 編碼格式：json, smile, float32, int8（float32/int8 僅適用於 float[] Embedding）
+         */
+        private String format = "smile";
+
+        /**
+         * 壓縮方式：none, lz4, deflate
+         */
+        private String compression = "none";
+
+        /**
+         * 小於此大小（位元組）不壓縮
+         */
+        private Integer compressionMinBytes = 512;
+
+        public static Serialization of(String format, String compression) {
+            Serialization serialization = new Serialization();
+            serialization.setFormat(format);
+            serialization.setCompression(compression);
+            return serialization;
+        }
+    }
+}
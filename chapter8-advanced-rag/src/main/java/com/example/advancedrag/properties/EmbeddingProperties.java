@@ -32,4 +32,22 @@ public class EmbeddingProperties {
     }
 
     private Preprocessing preprocessing = new Preprocessing();
+
+    @Data
+    public static class Batch {
+        private Integer maxTokensPerRequest = 100000;  // 單次請求的 token 預算
+        private Integer maxTextsPerRequest = 512;      // 單次請求的最大文本數
+        private Integer maxConcurrentRequests = 4;     // 並行請求上限
+    }
+
+    private Batch batch = new Batch();
+
+    @Data
+    public static class Coalescing {
+        private Boolean enabled = true;     // 是否合併並發的單文本請求
+        private Long windowMs = 3L;         // 合併窗口（毫秒）
+        private Integer maxBatchSize = 64;  // 單批次最大文本數
+    }
+
+    private Coalescing coalescing = new Coalescing();
 }
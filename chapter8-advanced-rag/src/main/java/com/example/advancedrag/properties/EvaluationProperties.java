@@ -57,4 +57,27 @@ public class EvaluationProperties {
     }
 
     private Report report = new Report();
+
+    /**
+     * 批次評估引擎配置
+     */
+    @Data
+    public static class Engine {
+        /**
+         * 同時進行的評審（LLM Judge）調用上限
+         */
+        private Integer maxConcurrentJudgeCalls = 16;
+
+        /**
+         * 評審調用速率上限（每秒請求數，令牌桶）
+         */
+        private Double judgeCallsPerSecond = 10.0;
+
+        /**
+         * 評估進度檢查點目錄（中斷後以相同 runId 續跑）
+         */
+        private String checkpointDir = "reports/checkpoints";
+    }
+
+    private Engine engine = new Engine();
 }
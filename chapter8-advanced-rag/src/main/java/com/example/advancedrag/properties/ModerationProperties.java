@@ -33,6 +33,31 @@ public class ModerationProperties {
     private Providers providers = new Providers();
     private List<String> sensitiveWords = new ArrayList<>();
 
+    /**
+     * 外部敏感詞檔案（每行一個詞，# 開頭為註解），修改後自動重新載入
+     */
+    private String sensitiveWordsFile;
+
+    /**
+     * 敏感詞配置變更檢查間隔（毫秒）
+     */
+    private Long sensitiveWordsReloadIntervalMs = 30000L;
+
+    /**
+     * 是否快取 OpenAI 審核結果（以內容哈希為鍵）
+     */
+    private Boolean cacheEnabled = true;
+
+    /**
+     * 審核結果快取過期時間（秒）
+     */
+    private Long cacheTtlSeconds = 3600L;
+
+    /**
+     * 單次 Moderation API 調用的最大輸入數
+     */
+    private Integer maxBatchSize = 32;
+
     @Data
     public static class PiiDetection {
         private Boolean enabled = true;
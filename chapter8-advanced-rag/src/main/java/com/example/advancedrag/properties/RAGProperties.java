@@ -1,8 +1,16 @@
 package com.example.advancedrag.properties;
 
+import com.example.advancedrag.util.SimHash;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * RAG 系統配置屬性
@@ -11,6 +19,7 @@ import org.springframework.stereotype.Component;
  */
 @Data
 @Component
+@Validated
 @ConfigurationProperties(prefix = "app.rag")
 public class RAGProperties {
 
@@ -64,6 +73,38 @@ public class RAGProperties {
      */
     private Reranking reranking = new Reranking();
 
+    /**
+     * 混合檢索配置
+     */
+    private Hybrid hybrid = new Hybrid();
+
+    /**
+     * 語義答案快取配置
+     */
+    private SemanticCache semanticCache = new SemanticCache();
+
+    /**
+     * 查詢階段管線配置
+     */
+    private Pipeline pipeline = new Pipeline();
+
+    /**
+     * 上下文 token 預算打包配置
+     */
+    @Valid
+    private ContextPacking contextPacking = new ContextPacking();
+
+    /**
+     * 文檔寫入配置
+     */
+    @Valid
+    private Ingestion ingestion = new Ingestion();
+
+    /**
+     * 進程內 HNSW 向量庫配置
+     */
+    private LocalVectorStore localVectorStore = new LocalVectorStore();
+
     /**
      * Re-ranking 配置類
      */
@@ -75,7 +116,7 @@ public class RAGProperties {
         private Boolean enabled = true;
 
         /**
-         * Re-ranking 提供者：voyage, local, cohere, jina
+         * Re-ranking 提供者：voyage, local, onnx, cohere, jina
          */
         private String provider = "local";
 
@@ -103,5 +144,312 @@ public class RAGProperties {
          * 是否在響應中包含評分詳情
          */
         private Boolean includeScoreDetails = false;
+
+        /**
+         * 候選文檔數達到此值時並行評分，低於此值維持順序評分
+         */
+        private Integer parallelThreshold = 256;
+
+        /**
+         * 並行評分時每個分塊的候選文檔數
+         */
+        private Integer parallelChunkSize = 64;
+
+        /**
+         * 並行評分的線程數（專用有界線程池）
+         */
+        private Integer parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 遠端 Re-ranking 客戶端配置（Voyage AI）
+         */
+        private RemoteReranking remote = new RemoteReranking();
+
+        /**
+         * 本地 ONNX Cross-Encoder 配置
+         */
+        private OnnxReranking onnx = new OnnxReranking();
+    }
+
+    /**
+     * 本地 ONNX Cross-Encoder 配置類
+     */
+    @Data
+    public static class OnnxReranking {
+        /**
+         * ONNX 模型檔路徑（如 ms-marco-MiniLM-L-6-v2 匯出的 model.onnx）
+         */
+        private String modelPath;
+
+        /**
+         * HuggingFace tokenizer.json 路徑
+         */
+        private String tokenizerPath;
+
+        /**
+         * 最大序列長度（查詢 + 文檔的 token 數，超過時截斷文檔）
+         */
+        private Integer maxSequenceLength = 512;
+
+        /**
+         * 每批推論的（查詢, 文檔）對數量
+         */
+        private Integer batchSize = 16;
+
+        /**
+         * 推論線程池大小（固定）
+         */
+        private Integer threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 每次推論使用的 ONNX Runtime 算子內線程數（並行由線程池提供，預設 1）
+         */
+        private Integer intraOpThreads = 1;
+    }
+
+    /**
+     * 遠端 Re-ranking 客戶端配置類
+     */
+    @Data
+    public static class RemoteReranking {
+        /**
+         * Rerank API 端點
+         */
+        private String apiUrl = "https://api.voyageai.com/v1/rerank";
+
+        /**
+         * 單個文檔送出的最大字元數，超過則截斷
+         */
+        private Integer maxDocumentChars = 4000;
+
+        /**
+         * 單次請求的最大文檔數，超過則分塊並行請求後合併分數
+         */
+        private Integer maxDocumentsPerRequest = 100;
+
+        /**
+         * 結果快取最大條目數
+         */
+        private Integer cacheMaxEntries = 1000;
+
+        /**
+         * 結果快取存活時間（秒）
+         */
+        private Long cacheTtlSeconds = 600L;
+
+        /**
+         * 連續失敗多少次後打開斷路器
+         */
+        private Integer failureThreshold = 5;
+
+        /**
+         * 斷路器打開後的冷卻時間（秒）
+         */
+        private Long openSeconds = 30L;
+
+        /**
+         * 延遲預算（毫秒）：近期 p99 超過此值時，只等待預算時間，逾時改用本地算法
+         */
+        private Long latencyBudgetMs = 2000L;
+
+        /**
+         * 計算 p99 的延遲樣本數
+         */
+        private Integer latencyWindowSize = 100;
+
+        /**
+         * 遠端調用總超時（毫秒），逾時改用本地算法
+         */
+        private Long timeoutMs = 10000L;
+    }
+
+    /**
+     * 混合檢索配置類
+     */
+    @Data
+    public static class Hybrid {
+        /**
+         * 融合方式：rrf（Reciprocal Rank Fusion）, weighted（分數正規化後加權）
+         */
+        private String fusion = "rrf";
+
+        /**
+         * RRF 平滑常數 k，分數 = Σ weight / (k + rank)
+         */
+        private Integer rrfK = 60;
+
+        /**
+         * 向量檢索權重
+         */
+        private Double vectorWeight = 0.5;
+
+        /**
+         * 關鍵詞檢索權重
+         */
+        private Double lexicalWeight = 0.5;
+
+        /**
+         * 單路檢索超時（毫秒），超時的一路視為無結果
+         */
+        private Long legTimeoutMs = 5000L;
+    }
+
+    /**
+     * 語義答案快取配置類
+     */
+    @Data
+    public static class SemanticCache {
+        /**
+         * 是否啟用語義答案快取
+         */
+        private Boolean enabled = true;
+
+        /**
+         * 命中所需的最低餘弦相似度
+         */
+        private Double similarityThreshold = 0.95;
+
+        /**
+         * 最大快取條目數（超過時按 LRU 淘汰）
+         */
+        private Integer maxEntries = 5000;
+
+        /**
+         * 條目存活時間（秒）
+         */
+        private Long ttlSeconds = 3600L;
+    }
+
+    /**
+     * 查詢階段管線配置類（各階段超時，單位毫秒）
+     */
+    @Data
+    public static class Pipeline {
+        /**
+         * 查詢內容審核超時，超時視為通過
+         */
+        private Long moderationTimeoutMs = 5000L;
+
+        /**
+         * 語義快取查詢向量生成超時，超時跳過快取
+         */
+        private Long embeddingTimeoutMs = 3000L;
+
+        /**
+         * 查詢重寫超時，超時使用原始查詢
+         */
+        private Long rewriteTimeoutMs = 10000L;
+
+        /**
+         * 查詢擴展超時，超時不返回擴展查詢
+         */
+        private Long expansionTimeoutMs = 10000L;
+
+        /**
+         * 關鍵詞提取超時，超時不使用關鍵詞
+         */
+        private Long keywordTimeoutMs = 5000L;
+
+        /**
+         * 檢索超時，超時則查詢失敗
+         */
+        private Long retrievalTimeoutMs = 15000L;
+
+        /**
+         * Re-ranking 超時，超時使用檢索排序
+         */
+        private Long rerankingTimeoutMs = 15000L;
+    }
+
+    /**
+     * 上下文 token 預算打包配置類
+     */
+    @Data
+    public static class ContextPacking {
+        /**
+         * 生成模型名稱（決定 tokenizer 與 token 預算）
+         */
+        private String model = "gpt-4o-mini";
+
+        /**
+         * 未在 modelTokenBudgets 中配置的模型使用的 token 預算
+         */
+        private Integer defaultTokenBudget = 3000;
+
+        /**
+         * 各模型的上下文 token 預算
+         */
+        private Map<String, Integer> modelTokenBudgets = new HashMap<>();
+
+        /**
+         * 打包策略：greedy（按分數貪心）, knapsack（在預算內最大化總分）
+         */
+        private String strategy = "greedy";
+
+        /**
+         * 近似重複判定的 SimHash 漢明距離（0-3）；分段索引只在不超過 BANDS - 1 時保證不漏判
+         */
+        @Min(0)
+        @Max(SimHash.BANDS - 1)
+        private Integer dedupeMaxDistance = 3;
+
+        /**
+         * 文檔 token 數快取條目數
+         */
+        private Integer tokenCacheSize = 10000;
+    }
+
+    /**
+     * 文檔寫入配置類
+     */
+    @Data
+    public static class Ingestion {
+        /**
+         * 是否在寫入前過濾近似重複文檔
+         */
+        private Boolean dedupeEnabled = true;
+
+        /**
+         * 近似重複判定的 SimHash 漢明距離（0-3）；分段索引只在不超過 BANDS - 1 時保證不漏判
+         */
+        @Min(0)
+        @Max(SimHash.BANDS - 1)
+        private Integer dedupeMaxDistance = 3;
+    }
+
+    /**
+     * 進程內 HNSW 向量庫配置類
+     */
+    @Data
+    public static class LocalVectorStore {
+        /**
+         * 是否以進程內 HNSW 向量庫取代 pgvector
+         */
+        private Boolean enabled = false;
+
+        /**
+         * 快照目錄（為空時不載入也不保存快照）
+         */
+        private String snapshotPath;
+
+        /**
+         * 關閉應用時是否保存快照
+         */
+        private Boolean snapshotOnShutdown = true;
+
+        /**
+         * 每個節點的最大鄰居數（第 0 層為兩倍）
+         */
+        private Integer m = 16;
+
+        /**
+         * 建圖時的候選集大小（越大召回越高、寫入越慢）
+         */
+        private Integer efConstruction = 200;
+
+        /**
+         * 查詢時的候選集大小（不小於 topK；越大召回越高、查詢越慢）
+         */
+        private Integer efSearch = 64;
     }
 }
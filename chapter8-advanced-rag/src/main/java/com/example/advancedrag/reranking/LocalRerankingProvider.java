@@ -1,13 +1,14 @@
 package com.example.advancedrag.reranking;
 
+import com.example.advancedrag.model.DocumentFeatures;
 import com.example.advancedrag.service.BM25Service;
+import com.example.advancedrag.util.TopKSelector;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -16,9 +17,9 @@ import java.util.stream.Collectors;
  *
  * 使用本地多因子算法進行文檔重排：
  * - 語義相似度（基於原始檢索分數）
- * - BM25 分數（關鍵詞匹配）
- * - 文檔品質
- * - 新鮮度
+ * - BM25 分數（查詢 BM25 倒排索引）
+ * - 文檔品質（寫入時預計算的 {@link DocumentFeatures}）
+ * - 新鮮度（同上）
  *
  * 優點：
  * - 不需要外部 API
@@ -51,9 +52,10 @@ public class LocalRerankingProvider implements RerankingProvider {
 
             // 提取查詢關鍵詞
             List<String> queryKeywords = extractKeywords(query);
+            long now = Instant.now().getEpochSecond();
 
             // 計算每個文檔的綜合分數
-            List<ScoredDocument> scoredDocs = new ArrayList<>();
+            double[] finalScores = new double[documents.size()];
             for (int i = 0; i < documents.size(); i++) {
                 Document doc = documents.get(i);
 
@@ -61,42 +63,40 @@ public class LocalRerankingProvider implements RerankingProvider {
                 double semanticScore = getSemanticScore(doc);
 
                 // BM25 分數
-                double bm25Score = bm25Service.calculateBM25Score(doc.getText(), query, queryKeywords);
+                double bm25Score = bm25Service.calculateBM25Score(doc, query, queryKeywords);
 
-                // 品質分數
-                double qualityScore = calculateQualityScore(doc);
-
-                // 新鮮度分數
-                double freshnessScore = calculateFreshnessScore(doc);
+                // 品質與新鮮度分數（預計算特徵，無需掃描文本）
+                DocumentFeatures features = DocumentFeatures.of(doc);
+                double qualityScore = features.qualityScore();
+                double freshnessScore = features.freshnessScore(now);
 
                 // 綜合分數
-                double finalScore = (semanticScore * SEMANTIC_WEIGHT) +
+                finalScores[i] = (semanticScore * SEMANTIC_WEIGHT) +
                         (bm25Score * BM25_WEIGHT) +
                         (qualityScore * QUALITY_WEIGHT) +
                         (freshnessScore * FRESHNESS_WEIGHT);
 
-                scoredDocs.add(new ScoredDocument(doc, i, finalScore,
-                        semanticScore, bm25Score, qualityScore, freshnessScore));
-
                 log.debug("文檔 {} 評分: 語義={:.3f}, BM25={:.3f}, 品質={:.3f}, 新鮮度={:.3f}, 最終={:.3f}",
-                        i, semanticScore, bm25Score, qualityScore, freshnessScore, finalScore);
+                        i, semanticScore, bm25Score, qualityScore, freshnessScore, finalScores[i]);
             }
 
-            // 按綜合分數排序
-            scoredDocs.sort((a, b) -> Double.compare(b.finalScore, a.finalScore));
-
-            // 轉換為 RerankResult 並取 topK
-            List<RerankResult> results = scoredDocs.stream()
-                    .limit(topK)
-                    .map(scored -> RerankResult.builder()
-                            .document(scored.document)
-                            .originalIndex(scored.originalIndex)
-                            .newIndex(scoredDocs.indexOf(scored))
-                            .relevanceScore(scored.finalScore)
-                            .providerName(getProviderName())
-                            .content(scored.document.getText())
-                            .build())
-                    .collect(Collectors.toList());
+            // 以有界堆選出 topK（按綜合分數降序）
+            int[] topIndices = TopKSelector.select(finalScores, topK);
+
+            // 轉換為 RerankResult
+            List<RerankResult> results = new ArrayList<>(topIndices.length);
+            for (int rank = 0; rank < topIndices.length; rank++) {
+                int index = topIndices[rank];
+                Document doc = documents.get(index);
+                results.add(RerankResult.builder()
+                        .document(doc)
+                        .originalIndex(index)
+                        .newIndex(rank)
+                        .relevanceScore(finalScores[index])
+                        .providerName(getProviderName())
+                        .content(doc.getText())
+                        .build());
+            }
 
             log.info("本地 Re-ranking 完成，返回 {} 個結果", results.size());
 
@@ -145,108 +145,6 @@ public class LocalRerankingProvider implements RerankingProvider {
         return 0.7;
     }
 
-    /**
-     * 計算文檔品質分數
-     *
-     * @param doc 文檔
-     * @return 品質分數（0-1）
-     */
-    private double calculateQualityScore(Document doc) {
-        double score = 0.5; // 基礎分數
-
-        String content = doc.getText();
-        Map<String, Object> metadata = doc.getMetadata();
-
-        // 因素1：內容長度（適中為好）
-        int length = content.length();
-        if (length >= 200 && length <= 2000) {
-            score += 0.2;
-        } else if (length > 2000 && length <= 5000) {
-            score += 0.1;
-        }
-
-        // 因素2：內容結構性（標點符號）
-        long punctuationCount = content.chars()
-                .filter(c -> ",.!?;:，。！？；：".indexOf(c) >= 0)
-                .count();
-        if (punctuationCount > 5) {
-            score += 0.1;
-        }
-
-        // 因素3：元數據豐富度
-        if (metadata.containsKey("title") && metadata.get("title") != null) {
-            score += 0.1;
-        }
-        if (metadata.containsKey("author") && metadata.get("author") != null) {
-            score += 0.05;
-        }
-        if (metadata.containsKey("source") && metadata.get("source") != null) {
-            score += 0.05;
-        }
-
-        return Math.min(1.0, score);
-    }
-
-    /**
-     * 計算新鮮度分數
-     *
-     * @param doc 文檔
-     * @return 新鮮度分數（0-1）
-     */
-    private double calculateFreshnessScore(Document doc) {
-        Map<String, Object> metadata = doc.getMetadata();
-
-        // 嘗試獲取時間戳
-        Object timestampObj = metadata.getOrDefault("updated_at",
-                metadata.getOrDefault("created_at",
-                        metadata.get("timestamp")));
-
-        if (timestampObj == null) {
-            return 0.7; // 無時間信息返回中等分數
-        }
-
-        LocalDateTime documentTime = parseTimestamp(timestampObj);
-        if (documentTime == null) {
-            return 0.7;
-        }
-
-        // 計算時間差（天數）
-        LocalDateTime now = LocalDateTime.now();
-        long daysDiff = ChronoUnit.DAYS.between(documentTime, now);
-
-        // 新鮮度評分規則
-        if (daysDiff <= 7) return 1.0;        // 一週內
-        if (daysDiff <= 30) return 0.9;       // 一個月內
-        if (daysDiff <= 90) return 0.8;       // 三個月內
-        if (daysDiff <= 180) return 0.7;      // 半年內
-        if (daysDiff <= 365) return 0.6;      // 一年內
-        return 0.5;                            // 超過一年
-    }
-
-    /**
-     * 解析時間戳
-     *
-     * @param timestampObj 時間戳對象
-     * @return LocalDateTime
-     */
-    private LocalDateTime parseTimestamp(Object timestampObj) {
-        try {
-            if (timestampObj instanceof LocalDateTime) {
-                return (LocalDateTime) timestampObj;
-            } else if (timestampObj instanceof String) {
-                return LocalDateTime.parse((String) timestampObj);
-            } else if (timestampObj instanceof Long) {
-                long timestamp = (Long) timestampObj;
-                return LocalDateTime.ofEpochSecond(timestamp, 0,
-                        java.time.ZoneOffset.systemDefault().getRules()
-                                .getOffset(java.time.Instant.ofEpochSecond(timestamp)));
-            }
-        } catch (Exception e) {
-            log.debug("時間戳解析失敗: {}", timestampObj, e);
-        }
-        return null;
-    }
-
     /**
      * 提取查詢關鍵詞（簡化版）
      *
@@ -275,17 +173,4 @@ public class LocalRerankingProvider implements RerankingProvider {
                 "不", "人", "都", "一", "個", "上", "也", "為", "能", "對", "會");
         return stopWords.contains(lowerWord);
     }
-
-    /**
-     * 內部評分文檔類
-     */
-    private record ScoredDocument(
-            Document document,
-            int originalIndex,
-            double finalScore,
-            double semanticScore,
-            double bm25Score,
-            double qualityScore,
-            double freshnessScore
-    ) {}
 }
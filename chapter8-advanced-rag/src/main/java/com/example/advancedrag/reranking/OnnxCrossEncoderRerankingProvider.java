@@ -0,0 +1,238 @@
+package com.example.advancedrag.reranking;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.djl.util.PairList;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.TopKSelector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 本地 Cross-Encoder Re-ranking 提供者（ONNX Runtime，CPU）
+ *
+ * 在進程內執行小型 Cross-Encoder（如 ms-marco-MiniLM-L-6-v2）：
+ * - 批次分詞：每批（查詢, 文檔）對一次性交給 HuggingFace Tokenizer
+ * - 最大序列長度：超過時只截斷文檔，查詢保持完整
+ * - 固定線程池：各批次並行推論，每次推論的算子內線程數預設 1，避免超額訂閱 CPU
+ *
+ * 優點：
+ * - 接近遠端 Re-ranker 的排序品質
+ * - 無網路延遲、無 API 費用
+ */
+@Slf4j
+public class OnnxCrossEncoderRerankingProvider implements RerankingProvider, AutoCloseable {
+
+    // 分詞前的粗略字元上限（每 token 約 4 個字元），避免對超長文檔做無用的分詞
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final RAGProperties.OnnxReranking config;
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final HuggingFaceTokenizer tokenizer;
+    private final boolean needsTokenTypeIds;
+    private final ExecutorService inferenceExecutor;
+
+    public OnnxCrossEncoderRerankingProvider(RAGProperties.OnnxReranking config) throws OrtException, IOException {
+        this.config = config;
+        this.environment = OrtEnvironment.getEnvironment();
+
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        options.setIntraOpNumThreads(config.getIntraOpThreads());
+        options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+        this.session = environment.createSession(config.getModelPath(), options);
+        this.needsTokenTypeIds = session.getInputNames().contains("token_type_ids");
+
+        this.tokenizer = HuggingFaceTokenizer.builder()
+                .optTokenizerPath(Paths.get(config.getTokenizerPath()))
+                .optMaxLength(config.getMaxSequenceLength())
+                .optTruncateSecondOnly()
+                .optPadding(true)
+                .build();
+
+        this.inferenceExecutor = Executors.newFixedThreadPool(Math.max(1, config.getThreads()),
+                Thread.ofPlatform().name("onnx-rerank-", 0).daemon(true).factory());
+
+        log.info("ONNX Cross-Encoder 載入完成: {}，輸入: {}", config.getModelPath(), session.getInputNames());
+    }
+
+    @Override
+    public List<RerankResult> rerank(String query, List<Document> documents, int topK) {
+        if (documents == null || documents.isEmpty()) {
+            log.warn("文檔列表為空，返回空結果");
+            return Collections.emptyList();
+        }
+
+        try {
+            log.info("開始使用 ONNX Cross-Encoder 進行 Re-ranking，文檔數: {}, topK: {}", documents.size(), topK);
+
+            double[] scores = score(query, documents);
+            int[] topIndices = TopKSelector.select(scores, topK);
+
+            List<RerankResult> results = new ArrayList<>(topIndices.length);
+            for (int rank = 0; rank < topIndices.length; rank++) {
+                int index = topIndices[rank];
+                Document doc = documents.get(index);
+                results.add(RerankResult.builder()
+                        .document(doc)
+                        .originalIndex(index)
+                        .newIndex(rank)
+                        .relevanceScore(scores[index])
+                        .providerName(getProviderName())
+                        .content(doc.getText())
+                        .build());
+            }
+
+            log.info("ONNX Cross-Encoder Re-ranking 完成，返回 {} 個結果", results.size());
+            return results;
+
+        } catch (Exception e) {
+            log.error("ONNX Cross-Encoder Re-ranking 失敗", e);
+            throw new RuntimeException("ONNX Cross-Encoder Re-ranking 失敗: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 計算所有文檔的相關性分數（按 batch-size 分批並行推論）
+     *
+     * @param query 查詢文本
+     * @param documents 文檔列表
+     * @return 相關性分數（0-1），與文檔順序對應
+     */
+    public double[] score(String query, List<Document> documents) throws InterruptedException, ExecutionException {
+        int batchSize = Math.max(1, config.getBatchSize());
+        double[] scores = new double[documents.size()];
+
+        List<Future<?>> batches = new ArrayList<>();
+        for (int from = 0; from < documents.size(); from += batchSize) {
+            int start = from;
+            List<Document> batch = documents.subList(from, Math.min(from + batchSize, documents.size()));
+            batches.add(inferenceExecutor.submit(() -> {
+                double[] batchScores = scoreBatch(query, batch);
+                System.arraycopy(batchScores, 0, scores, start, batchScores.length);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            batches.forEach(batch -> batch.cancel(true));
+            throw e;
+        }
+        return scores;
+    }
+
+    /**
+     * 對一批文檔分詞並推論
+     */
+    private double[] scoreBatch(String query, List<Document> batch) throws OrtException {
+        int maxChars = config.getMaxSequenceLength() * CHARS_PER_TOKEN;
+        PairList<String, String> pairs = new PairList<>(batch.size());
+        for (Document doc : batch) {
+            String text = doc.getText() != null ? doc.getText() : "";
+            pairs.add(query, text.length() > maxChars ? text.substring(0, maxChars) : text);
+        }
+        Encoding[] encodings = tokenizer.batchEncode(pairs);
+
+        int sequenceLength = 0;
+        for (Encoding encoding : encodings) {
+            sequenceLength = Math.max(sequenceLength, encoding.getIds().length);
+        }
+
+        // 補齊為矩形張量（padding 位置為 0）
+        long[][] inputIds = new long[encodings.length][sequenceLength];
+        long[][] attentionMask = new long[encodings.length][sequenceLength];
+        long[][] tokenTypeIds = new long[encodings.length][sequenceLength];
+        for (int i = 0; i < encodings.length; i++) {
+            long[] ids = encodings[i].getIds();
+            System.arraycopy(ids, 0, inputIds[i], 0, ids.length);
+            System.arraycopy(encodings[i].getAttentionMask(), 0, attentionMask[i], 0, ids.length);
+            System.arraycopy(encodings[i].getTypeIds(), 0, tokenTypeIds[i], 0, ids.length);
+        }
+
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(environment, inputIds));
+            inputs.put("attention_mask", OnnxTensor.createTensor(environment, attentionMask));
+            if (needsTokenTypeIds) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(environment, tokenTypeIds));
+            }
+
+            try (OrtSession.Result result = session.run(inputs)) {
+                float[][] logits = (float[][]) result.get(0).getValue();
+                double[] scores = new double[logits.length];
+                for (int i = 0; i < logits.length; i++) {
+                    scores[i] = toRelevance(logits[i]);
+                }
+                return scores;
+            }
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    /**
+     * 將 logits 轉為 0-1 相關性分數：單輸出取 sigmoid，雙輸出取正類的 softmax 機率
+     */
+    private static double toRelevance(float[] logits) {
+        if (logits.length == 1) {
+            return 1.0 / (1.0 + Math.exp(-logits[0]));
+        }
+        double positive = logits[logits.length - 1];
+        double max = Double.NEGATIVE_INFINITY;
+        for (float logit : logits) {
+            max = Math.max(max, logit);
+        }
+        double sum = 0.0;
+        for (float logit : logits) {
+            sum += Math.exp(logit - max);
+        }
+        return Math.exp(positive - max) / sum;
+    }
+
+    @Override
+    public String getProviderName() {
+        return "onnx-cross-encoder";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return !inferenceExecutor.isShutdown();
+    }
+
+    /**
+     * 釋放推理線程池、tokenizer 與 ONNX Session；重複調用時不做任何事
+     */
+    @Override
+    public synchronized void close() {
+        if (inferenceExecutor.isShutdown()) {
+            return;
+        }
+        inferenceExecutor.shutdownNow();
+        tokenizer.close();
+        try {
+            session.close();
+        } catch (OrtException e) {
+            log.warn("關閉 ONNX Session 失敗", e);
+        }
+    }
+}
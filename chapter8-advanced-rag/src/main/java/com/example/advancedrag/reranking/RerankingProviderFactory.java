@@ -4,24 +4,32 @@ import com.example.advancedrag.properties.RAGProperties;
 import com.example.advancedrag.service.BM25Service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClient;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * Re-ranking 提供者工廠
  *
- * 根據配置創建相應的 RerankingProvider 實例
+ * 根據配置創建相應的 RerankingProvider 實例；
+ * 持有原生資源的提供者（ONNX Session、tokenizer、推理線程池）由工廠在容器關閉時統一釋放
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class RerankingProviderFactory {
+public class RerankingProviderFactory implements DisposableBean {
 
     private final RAGProperties ragProperties;
     private final RestClient restClient;
     private final BM25Service bm25Service;
 
+    // 已創建且需要關閉的提供者
+    private final List<AutoCloseable> closeableProviders = new CopyOnWriteArrayList<>();
+
     /**
      * 創建 RerankingProvider
      *
@@ -34,6 +42,7 @@ public class RerankingProviderFactory {
         return switch (provider.toLowerCase()) {
             case "voyage" -> createVoyageProvider();
             case "local" -> createLocalProvider();
+            case "onnx" -> createOnnxProvider();
             // 未來可擴展其他提供者
             // case "cohere" -> createCohereProvider();
             // case "jina" -> createJinaProvider();
@@ -58,7 +67,8 @@ public class RerankingProviderFactory {
         }
 
         String model = ragProperties.getReranking().getModel();
-        VoyageRerankingProvider provider = new VoyageRerankingProvider(restClient, apiKey, model);
+        RAGProperties.RemoteReranking remote = ragProperties.getReranking().getRemote();
+        VoyageRerankingProvider provider = new VoyageRerankingProvider(restClient, apiKey, model, remote);
 
         // 驗證 API 連接
         if (!provider.isAvailable()) {
@@ -67,7 +77,34 @@ public class RerankingProviderFactory {
         }
 
         log.info("Voyage AI Re-ranking 提供者創建成功，模型: {}", model);
-        return provider;
+
+        // 斷路器 + 延遲對沖，降級使用本地算法
+        return new ResilientRerankingProvider(provider, createLocalProvider(), remote);
+    }
+
+    /**
+     * 創建本地 ONNX Cross-Encoder 提供者
+     *
+     * @return OnnxCrossEncoderRerankingProvider
+     */
+    private RerankingProvider createOnnxProvider() {
+        RAGProperties.OnnxReranking onnx = ragProperties.getReranking().getOnnx();
+
+        if (!StringUtils.hasText(onnx.getModelPath()) || !StringUtils.hasText(onnx.getTokenizerPath())) {
+            log.warn("ONNX 模型或 tokenizer 路徑未配置，降級使用本地算法");
+            return createLocalProvider();
+        }
+
+        try {
+            OnnxCrossEncoderRerankingProvider provider = new OnnxCrossEncoderRerankingProvider(onnx);
+            closeableProviders.add(provider);
+            log.info("ONNX Cross-Encoder Re-ranking 提供者創建成功，線程數: {}，批次大小: {}，最大序列長度: {}",
+                    onnx.getThreads(), onnx.getBatchSize(), onnx.getMaxSequenceLength());
+            return provider;
+        } catch (Exception e) {
+            log.warn("ONNX Cross-Encoder 載入失敗，降級使用本地算法: {}", e.getMessage());
+            return createLocalProvider();
+        }
     }
 
     /**
@@ -80,6 +117,21 @@ public class RerankingProviderFactory {
         return new LocalRerankingProvider(bm25Service);
     }
 
+    /**
+     * 容器關閉或刷新時釋放已創建提供者的原生資源與線程池
+     */
+    @Override
+    public void destroy() {
+        for (AutoCloseable provider : closeableProviders) {
+            try {
+                provider.close();
+            } catch (Exception e) {
+                log.warn("關閉 Re-ranking 提供者失敗: {}", provider.getClass().getSimpleName(), e);
+            }
+        }
+        closeableProviders.clear();
+    }
+
     /**
      * 檢查提供者是否可用
      *
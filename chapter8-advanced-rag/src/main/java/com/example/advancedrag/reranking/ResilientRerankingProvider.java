@@ -0,0 +1,167 @@
+package com.example.advancedrag.reranking;
+
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.CircuitBreaker;
+import com.example.advancedrag.util.LatencyWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 具備斷路器與延遲降級的 Re-ranking 提供者
+ *
+ * 包裝遠端提供者（如 Voyage AI），以本地算法作為降級：
+ * - 斷路器：遠端連續失敗後打開，冷卻期間直接使用本地算法
+ * - 延遲對沖：近期 p99 延遲超過預算時，本地算法與遠端請求同時開始，只等待遠端預算時間，
+ *   逾時即返回本地結果；遠端請求繼續完成，用於更新延遲統計、結果快取與斷路器
+ * - 總超時：一般情況下等待 timeout-ms，逾時中斷遠端請求並降級
+ *
+ * 每次調用最多向斷路器記錄一次結果（成功、失敗或放棄），逾時後遲到的結果不會重複計數。
+ */
+@Slf4j
+public class ResilientRerankingProvider implements RerankingProvider {
+
+    private final RerankingProvider primary;
+    private final RerankingProvider fallback;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyWindow latencies;
+    private final long latencyBudgetMs;
+    private final long timeoutMs;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("rerank-hedge-", 0).factory());
+
+    public ResilientRerankingProvider(RerankingProvider primary, RerankingProvider fallback,
+                                      RAGProperties.RemoteReranking config) {
+        this(primary, fallback, config,
+                new CircuitBreaker(primary.getProviderName(), config.getFailureThreshold(),
+                        Duration.ofSeconds(config.getOpenSeconds())));
+    }
+
+    public ResilientRerankingProvider(RerankingProvider primary, RerankingProvider fallback,
+                                      RAGProperties.RemoteReranking config, CircuitBreaker circuitBreaker) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.circuitBreaker = circuitBreaker;
+        this.latencies = new LatencyWindow(config.getLatencyWindowSize());
+        this.latencyBudgetMs = config.getLatencyBudgetMs();
+        this.timeoutMs = config.getTimeoutMs();
+    }
+
+    @Override
+    public List<RerankResult> rerank(String query, List<Document> documents, int topK) {
+        if (!circuitBreaker.tryAcquire()) {
+            log.debug("{} 斷路器打開，使用 {} 降級", primary.getProviderName(), fallback.getProviderName());
+            return fallback.rerank(query, documents, topK);
+        }
+
+        long p99 = latencies.percentile(0.99);
+        boolean hedging = p99 > latencyBudgetMs;
+        long waitMs = hedging ? latencyBudgetMs : timeoutMs;
+
+        // 每次調用只向斷路器記錄一次：超時先記為失敗後，遲到的結果不再覆蓋
+        AtomicBoolean recorded = new AtomicBoolean();
+        long startTime = System.nanoTime();
+        Future<List<RerankResult>> call = executor.submit(() -> {
+            try {
+                List<RerankResult> results = primary.rerank(query, documents, topK);
+                latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                if (recorded.compareAndSet(false, true)) {
+                    circuitBreaker.recordSuccess();
+                }
+                return results;
+            } catch (RuntimeException e) {
+                if (recorded.compareAndSet(false, true)) {
+                    circuitBreaker.recordFailure();
+                }
+                throw e;
+            }
+        });
+        // 對沖：本地算法與遠端同時開始，逾時時本地結果通常已就緒
+        Future<List<RerankResult>> hedge = hedging ?
+                executor.submit(() -> fallback.rerank(query, documents, topK)) : null;
+
+        try {
+            List<RerankResult> results = call.get(waitMs, TimeUnit.MILLISECONDS);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+            return results;
+        } catch (TimeoutException e) {
+            if (hedging) {
+                // 對沖：不取消遠端請求，讓它完成以更新延遲統計、快取與斷路器
+                log.info("{} 近期 p99={}ms 超過預算 {}ms，使用 {} 結果",
+                        primary.getProviderName(), p99, latencyBudgetMs, fallback.getProviderName());
+            } else {
+                // 遠端可能一直不返回：超時即計為失敗，並中斷執行中的請求
+                call.cancel(true);
+                if (recorded.compareAndSet(false, true)) {
+                    circuitBreaker.recordFailure();
+                }
+                log.warn("{} 超時（{}ms），使用 {} 降級", primary.getProviderName(), timeoutMs,
+                        fallback.getProviderName());
+            }
+        } catch (ExecutionException e) {
+            log.warn("{} 失敗，使用 {} 降級: {}", primary.getProviderName(), fallback.getProviderName(),
+                    e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            // 調用方放棄本次請求：不計成功或失敗，只釋放半開狀態的試探名額
+            call.cancel(true);
+            if (recorded.compareAndSet(false, true)) {
+                circuitBreaker.release();
+            }
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            return fallback.rerank(query, documents, topK);
+        }
+        return hedge != null ? awaitHedge(hedge, query, documents, topK) : fallback.rerank(query, documents, topK);
+    }
+
+    /**
+     * 取得並行執行的本地結果
+     */
+    private List<RerankResult> awaitHedge(Future<List<RerankResult>> hedge, String query,
+                                          List<Document> documents, int topK) {
+        try {
+            return hedge.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            hedge.cancel(true);
+            Thread.currentThread().interrupt();
+            return fallback.rerank(query, documents, topK);
+        }
+    }
+
+    @Override
+    public String getProviderName() {
+        return primary.getProviderName();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return primary.isAvailable() || fallback.isAvailable();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public long getP99LatencyMs() {
+        return latencies.percentile(0.99);
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.advancedrag.reranking;
 
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.CacheKeyGenerator;
+import com.example.advancedrag.util.TopKSelector;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.core.ParameterizedTypeReference;
@@ -10,8 +15,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClient;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Voyage AI Re-ranking 提供者
@@ -22,17 +30,31 @@ import java.util.stream.Collectors;
  * - 精確度高
  * - API 穩定
  *
+ * 客戶端優化：
+ * - 結果快取：以（查詢雜湊, 文檔 ID 集合）為鍵快取每個文檔的分數
+ * - 負載上限：單個文檔超過 max-document-chars 時截斷
+ * - 分塊並行：候選超過 max-documents-per-request 時分塊並行請求，合併分數後統一取 topK
+ *
+ * 斷路器與延遲降級由 {@link ResilientRerankingProvider} 包裝提供。
+ *
  * API 文檔: https://docs.voyageai.com/docs/reranker
  */
 @Slf4j
 public class VoyageRerankingProvider implements RerankingProvider {
 
-    private static final String VOYAGE_API_URL = "https://api.voyageai.com/v1/rerank";
     private static final String DEFAULT_MODEL = "rerank-1";
 
     private final RestClient restClient;
     private final String apiKey;
     private final String model;
+    private final RAGProperties.RemoteReranking config;
+
+    // 文檔 ID -> 相關性分數
+    private final Cache<String, Map<String, Double>> resultCache;
+
+    // 分塊請求執行器（虛擬線程，純 I/O 等待）
+    private final ExecutorService requestExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("voyage-rerank-", 0).factory());
 
     /**
      * Voyage AI Re-ranking API 響應
@@ -68,9 +90,19 @@ public class VoyageRerankingProvider implements RerankingProvider {
     }
 
     public VoyageRerankingProvider(RestClient restClient, String apiKey, String model) {
+        this(restClient, apiKey, model, new RAGProperties.RemoteReranking());
+    }
+
+    public VoyageRerankingProvider(RestClient restClient, String apiKey, String model,
+                                   RAGProperties.RemoteReranking config) {
         this.restClient = restClient;
         this.apiKey = apiKey;
         this.model = model != null ? model : DEFAULT_MODEL;
+        this.config = config;
+        this.resultCache = Caffeine.newBuilder()
+                .maximumSize(config.getCacheMaxEntries())
+                .expireAfterWrite(Duration.ofSeconds(config.getCacheTtlSeconds()))
+                .build();
     }
 
     @Override
@@ -83,55 +115,39 @@ public class VoyageRerankingProvider implements RerankingProvider {
         try {
             log.info("開始使用 Voyage AI 進行 Re-ranking，文檔數: {}, topK: {}", documents.size(), topK);
 
-            // 準備 API 請求
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("query", query);
-            requestBody.put("model", model);
-            requestBody.put("top_k", Math.min(topK, documents.size()));
-            requestBody.put("return_documents", true);
-            requestBody.put("documents", documents.stream()
-                    .map(Document::getText)
-                    .collect(Collectors.toList()));
-
-            // 調用 API
-            ResponseEntity<VoyageRerankResponse> response = restClient.post()
-                    .uri(VOYAGE_API_URL)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .body(requestBody)
-                    .retrieve()
-                    .toEntity(new ParameterizedTypeReference<VoyageRerankResponse>() {});
-
-            // 解析結果
-            if (response.getBody() == null || response.getBody().data() == null) {
-                log.error("Voyage AI API 返回空結果");
-                return Collections.emptyList();
+            // 查詢結果快取（鍵與文檔順序無關）
+            String cacheKey = CacheKeyGenerator.generateRerankKey(query, model,
+                    documents.stream().map(Document::getId).toList());
+            Map<String, Double> scoresById = resultCache.getIfPresent(cacheKey);
+            if (scoresById != null) {
+                log.debug("Voyage AI Re-ranking 快取命中");
+            } else {
+                scoresById = fetchScores(query, documents);
+                resultCache.put(cacheKey, scoresById);
             }
 
-            VoyageRerankResponse body = response.getBody();
-            List<RerankResult> results = new ArrayList<>();
-
-            for (int i = 0; i < body.data().size(); i++) {
-                VoyageRerankItem item = body.data().get(i);
-                Document originalDoc = documents.get(item.index());
+            // 以有界堆選出 topK（按相關性分數降序）
+            double[] scores = new double[documents.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = scoresById.getOrDefault(documents.get(i).getId(), 0.0);
+            }
+            int[] topIndices = TopKSelector.select(scores, topK);
 
-                RerankResult result = RerankResult.builder()
+            List<RerankResult> results = new ArrayList<>(topIndices.length);
+            for (int rank = 0; rank < topIndices.length; rank++) {
+                int index = topIndices[rank];
+                Document originalDoc = documents.get(index);
+                results.add(RerankResult.builder()
                         .document(originalDoc)
-                        .originalIndex(item.index())
-                        .newIndex(i)
-                        .relevanceScore(item.relevanceScore())
+                        .originalIndex(index)
+                        .newIndex(rank)
+                        .relevanceScore(scores[index])
                         .providerName(getProviderName())
                         .content(originalDoc.getText())
-                        .build();
-
-                results.add(result);
+                        .build());
             }
 
             log.info("Voyage AI Re-ranking 完成，返回 {} 個結果", results.size());
-            if (body.usage() != null) {
-                log.debug("Token 使用: {}", body.usage().totalTokens());
-            }
-
             return results;
 
         } catch (Exception e) {
@@ -140,6 +156,84 @@ public class VoyageRerankingProvider implements RerankingProvider {
         }
     }
 
+    /**
+     * 獲取所有文檔的相關性分數（超過單次上限時分塊並行請求）
+     *
+     * @param query 查詢文本
+     * @param documents 文檔列表
+     * @return 文檔 ID -> 相關性分數
+     */
+    private Map<String, Double> fetchScores(String query, List<Document> documents) {
+        int chunkSize = Math.max(1, config.getMaxDocumentsPerRequest());
+        if (documents.size() <= chunkSize) {
+            return requestScores(query, documents);
+        }
+
+        List<CompletableFuture<Map<String, Double>>> chunks = new ArrayList<>();
+        for (int from = 0; from < documents.size(); from += chunkSize) {
+            List<Document> chunk = documents.subList(from, Math.min(from + chunkSize, documents.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> requestScores(query, chunk), requestExecutor));
+        }
+        log.debug("Voyage AI 分塊請求：{} 個文檔，{} 塊", documents.size(), chunks.size());
+
+        // 相關性分數是（查詢, 文檔）的絕對分數，可跨塊直接合併
+        Map<String, Double> merged = new HashMap<>();
+        for (CompletableFuture<Map<String, Double>> chunk : chunks) {
+            merged.putAll(chunk.join());
+        }
+        return merged;
+    }
+
+    /**
+     * 發送單次 Rerank 請求，返回該批文檔的全部分數
+     *
+     * @param query 查詢文本
+     * @param documents 文檔列表（不超過單次上限）
+     * @return 文檔 ID -> 相關性分數
+     */
+    private Map<String, Double> requestScores(String query, List<Document> documents) {
+        int maxChars = config.getMaxDocumentChars();
+
+        // 準備 API 請求（不傳 top_k 以取得全部分數，不回傳文檔內容以減少響應大小）
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", query);
+        requestBody.put("model", model);
+        requestBody.put("return_documents", false);
+        requestBody.put("documents", documents.stream()
+                .map(doc -> truncate(doc.getText(), maxChars))
+                .toList());
+
+        // 調用 API
+        ResponseEntity<VoyageRerankResponse> response = restClient.post()
+                .uri(config.getApiUrl())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + apiKey)
+                .body(requestBody)
+                .retrieve()
+                .toEntity(new ParameterizedTypeReference<VoyageRerankResponse>() {});
+
+        VoyageRerankResponse body = response.getBody();
+        if (body == null || body.data() == null) {
+            throw new IllegalStateException("Voyage AI API 返回空結果");
+        }
+        if (body.usage() != null) {
+            log.debug("Token 使用: {}", body.usage().totalTokens());
+        }
+
+        Map<String, Double> scores = new HashMap<>();
+        for (VoyageRerankItem item : body.data()) {
+            scores.put(documents.get(item.index()).getId(), item.relevanceScore());
+        }
+        return scores;
+    }
+
+    private static String truncate(String text, int maxChars) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() > maxChars ? text.substring(0, maxChars) : text;
+    }
+
     @Override
     public String getProviderName() {
         return "voyage-ai";
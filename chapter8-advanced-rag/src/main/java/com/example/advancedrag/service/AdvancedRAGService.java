@@ -1,11 +1,17 @@
 package com.example.advancedrag.service;
 
+import com.example.advancedrag.cache.SemanticAnswerCache;
 import com.example.advancedrag.dto.AdvancedRAGRequest;
 import com.example.advancedrag.dto.AdvancedRAGResponse;
 import com.example.advancedrag.dto.ModerationResult;
+import com.example.advancedrag.dto.RAGStreamEvent;
+import com.example.advancedrag.model.EmbeddingContext;
+import com.example.advancedrag.model.HybridRetrievalResult;
 import com.example.advancedrag.model.RAGQueryOptions;
 import com.example.advancedrag.model.ScoredDocument;
 import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.SentenceBuffer;
+import com.example.advancedrag.util.StageScope;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -13,12 +19,24 @@ import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.document.Document;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Advanced RAG 主服務
@@ -29,6 +47,13 @@ import java.util.UUID;
  * 3. 上下文優化
  * 4. LLM 生成答案
  * 5. 性能指標收集
+ *
+ * 查詢審核、查詢重寫/擴展、關鍵詞提取、檢索與 Re-ranking 以依賴圖的方式在
+ * 虛擬線程上執行（{@link StageScope}）：互不依賴的階段同時進行，
+ * 每個階段有獨立超時，審核未通過時取消所有進行中的階段。
+ *
+ * 語義相近的重複查詢（查詢 Embedding 餘弦相似度達到閾值且查詢選項相同）
+ * 直接由 {@link SemanticAnswerCache} 返回先前的答案，跳過檢索與生成。
  */
 @Slf4j
 @Service
@@ -44,6 +69,14 @@ public class AdvancedRAGService {
     private final CustomRuleModerationService customRuleModerationService;
     private final RAGMetricsService metricsService;
     private final RAGProperties ragProperties;
+    private final SmartEmbeddingService embeddingService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final ExecutorService pipelineExecutor;
+
+    /**
+     * 答案未通過內容審核時的替換回覆
+     */
+    private static final String FILTERED_ANSWER = "抱歉，生成的答案包含不當內容，已被過濾。請嘗試重新表述您的問題。";
 
     /**
      * RAG 生成 Prompt 模板
@@ -93,81 +126,12 @@ public class AdvancedRAGService {
             // 獲取查詢選項
             RAGQueryOptions options = request.getOptionsOrDefault();
 
-            // === 階段 0：查詢內容審核（Pre-Moderation）===
-            if (request.getEnableModeration() != null && request.getEnableModeration()) {
-                long moderationStartTime = System.currentTimeMillis();
-                ModerationResult queryModerationResult = performQueryModeration(request.getQuery());
-
-                // 記錄審核指標
-                metricsService.recordModeration();
-                if (!queryModerationResult.getPassed()) {
-                    metricsService.recordModerationFailed();
-                }
-
-                if (!queryModerationResult.getPassed()) {
-                    // 查詢未通過審核，直接返回錯誤
-                    log.warn("查詢未通過內容審核：{}", queryModerationResult.getReason());
-
-                    // 記錄查詢失敗
-                    long totalTime = System.currentTimeMillis() - totalStartTime;
-                    metricsService.recordQueryFailure();
-                    metricsService.recordQueryDuration(totalTime);
-
-                    return AdvancedRAGResponse.builder()
-                            .originalQuery(request.getQuery())
-                            .queryId(queryId)
-                            .sessionId(request.getSessionId())
-                            .timestamp(LocalDateTime.now())
-                            .answer("抱歉，您的查詢包含不當內容，無法處理。原因：" + queryModerationResult.getReason())
-                            .processingTimeMs(totalTime)
-                            .metadata(Map.of(
-                                    "moderation_failed", true,
-                                    "moderation_result", queryModerationResult
-                            ))
-                            .build();
-                }
-
-                // 暫時註釋 metadata，稍後統一處理
-                // long moderationTime = System.currentTimeMillis() - moderationStartTime;
+            // === 階段 0 ~ 2.5：審核、快取、查詢預處理、檢索、Re-ranking ===
+            RetrievalOutcome outcome = runRetrievalStages(request, options, queryId, totalStartTime, responseBuilder);
+            if (outcome.earlyResponse() != null) {
+                return outcome.earlyResponse();
             }
-
-            // === 階段 1：查詢預處理 ===
-            long rewriteStartTime = System.currentTimeMillis();
-            String processedQuery = preprocessQuery(request, responseBuilder);
-            long rewriteTime = System.currentTimeMillis() - rewriteStartTime;
-
-            // === 階段 2：多階段檢索 ===
-            long retrievalStartTime = System.currentTimeMillis();
-            List<ScoredDocument> retrievedDocs = performRetrieval(processedQuery, options, request);
-            long retrievalTime = System.currentTimeMillis() - retrievalStartTime;
-            responseBuilder.retrievalTimeMs(retrievalTime);
-
-            // 記錄檢索指標
-            metricsService.recordRetrievalDuration(retrievalTime);
-            metricsService.recordDocumentsRetrieved(retrievedDocs.size());
-
-            log.info("檢索完成，檢索到 {} 個文檔", retrievedDocs.size());
-
-            // === 階段 2.5：Re-ranking 精確排序 ===
-            long rerankingStartTime = System.currentTimeMillis();
-            List<ScoredDocument> rerankedDocs = retrievedDocs;
-
-            if (options.getEnableReranking() && retrievedDocs.size() > options.getFinalTopK()) {
-                rerankedDocs = rerankingService.rerank(processedQuery, retrievedDocs, options);
-                log.info("Re-ranking 完成，最終文檔數: {}", rerankedDocs.size());
-            } else {
-                log.info("跳過 Re-ranking（已關閉或文檔數量不足）");
-                // 如果不進行 Re-ranking，直接限制數量
-                rerankedDocs = retrievedDocs.stream()
-                        .limit(options.getFinalTopK())
-                        .toList();
-            }
-
-            long rerankingTime = System.currentTimeMillis() - rerankingStartTime;
-            responseBuilder.rerankingTimeMs(rerankingTime);
-
-            // 記錄 Re-ranking 指標
-            metricsService.recordRerankingDuration(rerankingTime);
+            List<ScoredDocument> rerankedDocs = outcome.rerankedDocs();
 
             // === 階段 3：上下文優化 ===
             String optimizedContext = contextOptimizationService.optimizeContext(
@@ -185,8 +149,8 @@ public class AdvancedRAGService {
             metricsService.recordGenerationDuration(generationTime);
 
             // === 階段 4.5：答案內容審核（Post-Moderation）===
+            boolean answerFiltered = false;
             if (request.getEnableModeration() != null && request.getEnableModeration()) {
-                long answerModerationStartTime = System.currentTimeMillis();
                 ModerationResult answerModerationResult = performAnswerModeration(answer);
 
                 // 記錄答案審核指標
@@ -198,7 +162,8 @@ public class AdvancedRAGService {
                 if (!answerModerationResult.getPassed()) {
                     // 答案未通過審核，替換為安全回覆
                     log.warn("生成的答案未通過內容審核：{}", answerModerationResult.getReason());
-                    answer = "抱歉，生成的答案包含不當內容，已被過濾。請嘗試重新表述您的問題。";
+                    answer = FILTERED_ANSWER;
+                    answerFiltered = true;
                 }
                 // 暫時註釋 metadata，稍後統一處理
             }
@@ -206,26 +171,16 @@ public class AdvancedRAGService {
             // === 組裝響應 ===
             responseBuilder.answer(answer);
 
-            // 添加檢索到的文檔（如果請求）
-            if (request.getReturnDocuments()) {
-                List<AdvancedRAGResponse.RetrievedDocument> retrievedDocuments =
-                        convertToResponseDocuments(rerankedDocs, request.getReturnScoringDetails());
-                responseBuilder.documents(retrievedDocuments);
-            }
-
             // 計算總耗時
             long totalTime = System.currentTimeMillis() - totalStartTime;
             responseBuilder.processingTimeMs(totalTime);
 
-            // 構建響應
-            AdvancedRAGResponse response = responseBuilder.build();
+            AdvancedRAGResponse response = buildResponse(responseBuilder, request, outcome);
 
-            // 添加元數據
-            response.addMetadata("context_quality",
-                    contextOptimizationService.calculateContextQuality(rerankedDocs));
-            response.addMetadata("rewrite_time_ms", rewriteTime);
-            response.addMetadata("original_doc_count", retrievedDocs.size());
-            response.addMetadata("reranked_doc_count", rerankedDocs.size());
+            // 寫入語義答案快取（被過濾的答案不快取）
+            if (outcome.queryEmbedding() != null && !answerFiltered) {
+                semanticAnswerCache.put(outcome.queryEmbedding(), outcome.cacheOptionsKey(), response);
+            }
 
             log.info("Advanced RAG 查詢完成，Query ID: {}, 總耗時: {}ms", queryId, totalTime);
 
@@ -248,51 +203,601 @@ public class AdvancedRAGService {
     }
 
     /**
-     * 查詢預處理
+     * 串流執行 Advanced RAG 查詢
+     *
+     * 檢索完成後先推送 retrieval 事件（文檔與重寫後的查詢），再以 {@code ChatClient.stream()}
+     * 逐片段推送答案。啟用內容審核時，每完成一個句子即進行審核，句子通過審核後才推送；
+     * 句子未通過審核時中止生成並推送 moderation 事件，未通過的內容不會送達客戶端。
+     * 請求設置 streamUnmoderatedTokens 時改為在審核前即推送片段（延遲較低，
+     * 但未通過審核的句子可能已顯示，客戶端需以 moderation 事件的內容替換答案）。
+     * 首個推送給客戶端的答案片段延遲記錄為 TTFT（Time To First Token）。
+     *
+     * @param request RAG 查詢請求
+     * @return 串流事件
+     */
+    public Flux<RAGStreamEvent> queryStream(AdvancedRAGRequest request) {
+        return Flux.defer(() -> {
+                    long totalStartTime = System.currentTimeMillis();
+                    String queryId = UUID.randomUUID().toString();
+                    metricsService.recordQuery();
+
+                    log.info("開始 Advanced RAG 串流查詢，Query ID: {}, 查詢: [{}]",
+                            queryId, request.getQuery());
+
+                    AdvancedRAGResponse.AdvancedRAGResponseBuilder responseBuilder = AdvancedRAGResponse.builder()
+                            .originalQuery(request.getQuery())
+                            .queryId(queryId)
+                            .sessionId(request.getSessionId())
+                            .timestamp(LocalDateTime.now());
+                    RAGQueryOptions options = request.getOptionsOrDefault();
+
+                    RetrievalOutcome outcome;
+                    try {
+                        outcome = runRetrievalStages(request, options, queryId, totalStartTime, responseBuilder);
+                    } catch (Exception e) {
+                        log.error("Advanced RAG 串流查詢失敗，Query ID: {}", queryId, e);
+                        metricsService.recordQueryFailure();
+                        metricsService.recordQueryDuration(System.currentTimeMillis() - totalStartTime);
+                        return Flux.just(errorEvent(queryId, e));
+                    }
+
+                    if (outcome.earlyResponse() != null) {
+                        return Flux.fromIterable(completedResponseEvents(outcome.earlyResponse()));
+                    }
+
+                    String optimizedContext = contextOptimizationService.optimizeContext(
+                            outcome.rerankedDocs(), options);
+
+                    RAGStreamEvent retrievalEvent = RAGStreamEvent.builder()
+                            .type(RAGStreamEvent.TYPE_RETRIEVAL)
+                            .queryId(queryId)
+                            .rewrittenQuery(outcome.rewrittenQuery())
+                            .documents(request.getReturnDocuments() ?
+                                    convertToResponseDocuments(outcome.rerankedDocs(),
+                                            request.getReturnScoringDetails()) :
+                                    null)
+                            .metadata(new LinkedHashMap<>(outcome.retrievalMetadata()))
+                            .build();
+
+                    return Flux.just(retrievalEvent)
+                            .concatWith(streamAnswer(request, optimizedContext, outcome,
+                                    responseBuilder, queryId, totalStartTime));
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 串流生成答案並逐句審核（預設每句審核通過後才推送該句的片段）
+     */
+    private Flux<RAGStreamEvent> streamAnswer(AdvancedRAGRequest request, String context,
+                                              RetrievalOutcome outcome,
+                                              AdvancedRAGResponse.AdvancedRAGResponseBuilder responseBuilder,
+                                              String queryId, long totalStartTime) {
+        boolean moderationEnabled = Boolean.TRUE.equals(request.getEnableModeration());
+        boolean gateTokens = moderationEnabled && !Boolean.TRUE.equals(request.getStreamUnmoderatedTokens());
+        SentenceBuffer sentences = new SentenceBuffer();
+        // 已推送給客戶端的答案長度（字元）
+        AtomicInteger released = new AtomicInteger();
+        AtomicBoolean firstToken = new AtomicBoolean(true);
+        long generationStartTime = System.currentTimeMillis();
+
+        PromptTemplate promptTemplate = new PromptTemplate(RAG_PROMPT_TEMPLATE);
+        Prompt prompt = promptTemplate.create(Map.of(
+                "question", request.getQuery(),
+                "context", context
+        ));
+
+        Flux<RAGStreamEvent> tokenEvents = chatClient.prompt(prompt)
+                .stream()
+                .content()
+                .filter(token -> token != null && !token.isEmpty())
+                .concatMap(token -> {
+                    List<String> completed = sentences.append(token);
+                    Flux<RAGStreamEvent> moderation = moderationEnabled && !completed.isEmpty() ?
+                            moderateSentence(String.join("", completed)) : Flux.empty();
+                    if (!gateTokens) {
+                        return Flux.just(tokenEvent(queryId, token)).concatWith(moderation);
+                    }
+                    // 只推送已完成且通過審核的句子，未完成的句子留待下次
+                    int completedLength = sentences.completedLength();
+                    return moderation.concatWith(Flux.defer(() ->
+                            releaseText(sentences, released, completedLength, queryId)));
+                })
+                .doOnNext(event -> {
+                    if (firstToken.compareAndSet(true, false)) {
+                        metricsService.recordTimeToFirstToken(System.currentTimeMillis() - totalStartTime);
+                    }
+                });
+
+        Flux<RAGStreamEvent> completion = Flux.defer(() -> {
+            String rest = sentences.flush();
+            Flux<RAGStreamEvent> tailModeration = moderationEnabled && !rest.isEmpty() ?
+                    moderateSentence(rest) : Flux.empty();
+            Flux<RAGStreamEvent> tailRelease = gateTokens ? Flux.defer(() ->
+                    releaseText(sentences, released, sentences.completedLength(), queryId)) : Flux.empty();
+            return tailModeration.concatWith(tailRelease).concatWith(Flux.defer(() -> {
+                long generationTime = System.currentTimeMillis() - generationStartTime;
+                metricsService.recordGenerationDuration(generationTime);
+
+                long totalTime = System.currentTimeMillis() - totalStartTime;
+                responseBuilder.answer(sentences.getText())
+                        .generationTimeMs(generationTime)
+                        .processingTimeMs(totalTime);
+                AdvancedRAGResponse response = buildResponse(responseBuilder, request, outcome);
+
+                if (outcome.queryEmbedding() != null) {
+                    semanticAnswerCache.put(outcome.queryEmbedding(), outcome.cacheOptionsKey(), response);
+                }
+
+                log.info("Advanced RAG 串流查詢完成，Query ID: {}, 總耗時: {}ms", queryId, totalTime);
+                metricsService.recordQuerySuccess();
+                metricsService.recordQueryDuration(totalTime);
+
+                return Flux.just(doneEvent(response));
+            }));
+        });
+
+        return tokenEvents
+                .concatWith(completion)
+                .onErrorResume(AnswerFlaggedException.class, e -> {
+                    log.warn("串流答案未通過內容審核，已中止生成：{}", e.getMessage());
+                    long totalTime = System.currentTimeMillis() - totalStartTime;
+                    metricsService.recordQuerySuccess();
+                    metricsService.recordQueryDuration(totalTime);
+                    return Flux.just(
+                            RAGStreamEvent.builder()
+                                    .type(RAGStreamEvent.TYPE_MODERATION)
+                                    .queryId(queryId)
+                                    .content(FILTERED_ANSWER)
+                                    .metadata(Map.of("moderation_reason", e.getMessage()))
+                                    .build(),
+                            doneEvent(responseBuilder.answer(FILTERED_ANSWER)
+                                    .processingTimeMs(totalTime)
+                                    .build()));
+                })
+                .onErrorResume(e -> {
+                    log.error("Advanced RAG 串流生成失敗，Query ID: {}", queryId, e);
+                    metricsService.recordQueryFailure();
+                    metricsService.recordQueryDuration(System.currentTimeMillis() - totalStartTime);
+                    return Flux.just(errorEvent(queryId, e));
+                });
+    }
+
+    /**
+     * 推送尚未推送、且已審核通過的答案文本（到 end 為止）
+     *
+     * @param sentences 句子緩衝區
+     * @param released 已推送的長度
+     * @param end 可推送到的位置
+     * @param queryId 查詢 ID
+     * @return token 事件（沒有新內容時為空）
+     */
+    private Flux<RAGStreamEvent> releaseText(SentenceBuffer sentences, AtomicInteger released,
+                                             int end, String queryId) {
+        int start = released.get();
+        if (end <= start) {
+            return Flux.empty();
+        }
+        released.set(end);
+        return Flux.just(tokenEvent(queryId, sentences.getText().substring(start, end)));
+    }
+
+    private RAGStreamEvent tokenEvent(String queryId, String content) {
+        return RAGStreamEvent.builder()
+                .type(RAGStreamEvent.TYPE_TOKEN)
+                .queryId(queryId)
+                .content(content)
+                .build();
+    }
+
+    /**
+     * 審核一段已完成的句子，未通過時以 {@link AnswerFlaggedException} 中止串流
+     */
+    private Flux<RAGStreamEvent> moderateSentence(String sentence) {
+        return Mono.fromCallable(() -> performAnswerModeration(sentence))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(result -> {
+                    metricsService.recordModeration();
+                    if (result.getPassed()) {
+                        return Flux.<RAGStreamEvent>empty();
+                    }
+                    metricsService.recordModerationFailed();
+                    return Flux.<RAGStreamEvent>error(new AnswerFlaggedException(result.getReason()));
+                });
+    }
+
+    /**
+     * 將已完成的響應（審核未通過、快取命中）轉為串流事件
+     */
+    private List<RAGStreamEvent> completedResponseEvents(AdvancedRAGResponse response) {
+        List<RAGStreamEvent> events = new ArrayList<>();
+        events.add(RAGStreamEvent.builder()
+                .type(RAGStreamEvent.TYPE_RETRIEVAL)
+                .queryId(response.getQueryId())
+                .rewrittenQuery(response.getRewrittenQuery())
+                .documents(response.getDocuments())
+                .metadata(response.getMetadata())
+                .build());
+        events.add(RAGStreamEvent.builder()
+                .type(RAGStreamEvent.TYPE_TOKEN)
+                .queryId(response.getQueryId())
+                .content(response.getAnswer())
+                .build());
+        events.add(doneEvent(response));
+        return events;
+    }
+
+    private RAGStreamEvent doneEvent(AdvancedRAGResponse response) {
+        Map<String, Object> metadata = new LinkedHashMap<>(response.getMetadata());
+        metadata.put("processing_time_ms", response.getProcessingTimeMs());
+        metadata.put("retrieval_time_ms", response.getRetrievalTimeMs());
+        metadata.put("reranking_time_ms", response.getRerankingTimeMs());
+        metadata.put("generation_time_ms", response.getGenerationTimeMs());
+        metadata.values().removeIf(Objects::isNull);
+
+        return RAGStreamEvent.builder()
+                .type(RAGStreamEvent.TYPE_DONE)
+                .queryId(response.getQueryId())
+                .content(response.getAnswer())
+                .metadata(metadata)
+                .build();
+    }
+
+    private RAGStreamEvent errorEvent(String queryId, Throwable error) {
+        return RAGStreamEvent.builder()
+                .type(RAGStreamEvent.TYPE_ERROR)
+                .queryId(queryId)
+                .content("查詢失敗：" + error.getMessage())
+                .build();
+    }
+
+    /**
+     * 執行答案生成前的各階段（依賴圖）
+     *
+     * 審核、語義快取向量、查詢預處理 → 檢索 → Re-ranking 同時推進；
+     * 審核未通過或快取命中時取消其餘未完成的階段，並以 earlyResponse 返回
      *
      * @param request 請求
+     * @param options 查詢選項
+     * @param queryId 查詢 ID
+     * @param totalStartTime 查詢開始時間
+     * @param responseBuilder 響應構建器（寫入重寫/擴展查詢與各階段耗時）
+     * @return 階段結果
+     */
+    private RetrievalOutcome runRetrievalStages(AdvancedRAGRequest request, RAGQueryOptions options,
+                                                String queryId, long totalStartTime,
+                                                AdvancedRAGResponse.AdvancedRAGResponseBuilder responseBuilder) {
+        RAGProperties.Pipeline pipeline = ragProperties.getPipeline();
+        boolean moderationEnabled = Boolean.TRUE.equals(request.getEnableModeration());
+        boolean rewriteEnabled = Boolean.TRUE.equals(request.getEnableQueryRewrite());
+        boolean expansionEnabled = Boolean.TRUE.equals(request.getEnableQueryExpansion());
+
+        try (StageScope scope = new StageScope(pipelineExecutor)) {
+            Map<String, Long> stageTimings = new ConcurrentHashMap<>();
+            Map<String, Object> retrievalMetadata = new LinkedHashMap<>();
+
+            CompletableFuture<ModerationResult> moderationStage = moderationEnabled ?
+                    scope.run("moderation", () -> performQueryModeration(request.getQuery()),
+                            pipeline.getModerationTimeoutMs()) :
+                    CompletableFuture.completedFuture(null);
+
+            CompletableFuture<float[]> embeddingStage = scope.run("semantic-cache-embedding",
+                    () -> embedQueryForCache(request.getQuery()), pipeline.getEmbeddingTimeoutMs());
+
+            // 階段 1：查詢重寫（與查詢擴展互斥，重寫優先）
+            CompletableFuture<String> rewriteStage = rewriteEnabled ?
+                    scope.run("rewrite",
+                                    () -> timed(stageTimings, "rewrite",
+                                            () -> queryRewriteService.rewriteQuery(request.getQuery())),
+                                    pipeline.getRewriteTimeoutMs())
+                            .exceptionally(e -> {
+                                log.warn("查詢重寫失敗，使用原始查詢: {}", e.getMessage());
+                                return request.getQuery();
+                            }) :
+                    CompletableFuture.completedFuture(request.getQuery());
+
+            CompletableFuture<List<String>> expansionStage = !rewriteEnabled && expansionEnabled ?
+                    scope.run("expansion",
+                            () -> queryRewriteService.expandQuery(request.getQuery(), options.getQueryExpansionCount()),
+                            pipeline.getExpansionTimeoutMs()) :
+                    CompletableFuture.completedFuture(List.of());
+
+            // 關鍵詞提取依賴處理後的查詢
+            CompletableFuture<List<String>> keywordStage = expansionEnabled ?
+                    scope.then(rewriteStage, "keywords", queryRewriteService::extractKeywords,
+                                    pipeline.getKeywordTimeoutMs())
+                            .exceptionally(e -> {
+                                log.warn("關鍵詞提取失敗，不使用關鍵詞: {}", e.getMessage());
+                                return List.of();
+                            }) :
+                    CompletableFuture.completedFuture(List.of());
+
+            // 階段 2：多階段檢索
+            CompletableFuture<List<ScoredDocument>> retrievalStage = scope.then(
+                    rewriteStage.thenCombine(keywordStage, PreparedQuery::new), "retrieval",
+                    prepared -> timed(stageTimings, "retrieval",
+                            () -> performRetrieval(prepared, options, request, retrievalMetadata)),
+                    pipeline.getRetrievalTimeoutMs());
+
+            // 階段 2.5：Re-ranking 精確排序
+            CompletableFuture<List<ScoredDocument>> rerankingStage = scope.then(retrievalStage, "reranking",
+                    documents -> timed(stageTimings, "reranking",
+                            () -> rerankDocuments(rewriteStage.join(), documents, options)),
+                    pipeline.getRerankingTimeoutMs());
+
+            // === 階段 0：查詢內容審核（Pre-Moderation）===
+            if (moderationEnabled) {
+                ModerationResult queryModerationResult = StageScope.awaitOrDefault(moderationStage,
+                        moderationUnavailable(), "moderation");
+
+                // 記錄審核指標
+                metricsService.recordModeration();
+                if (!queryModerationResult.getPassed()) {
+                    metricsService.recordModerationFailed();
+                }
+
+                if (!queryModerationResult.getPassed()) {
+                    // 查詢未通過審核，取消進行中的階段並直接返回錯誤
+                    scope.cancelAll();
+                    log.warn("查詢未通過內容審核：{}", queryModerationResult.getReason());
+
+                    // 記錄查詢失敗
+                    long totalTime = System.currentTimeMillis() - totalStartTime;
+                    metricsService.recordQueryFailure();
+                    metricsService.recordQueryDuration(totalTime);
+
+                    return RetrievalOutcome.early(AdvancedRAGResponse.builder()
+                            .originalQuery(request.getQuery())
+                            .queryId(queryId)
+                            .sessionId(request.getSessionId())
+                            .timestamp(LocalDateTime.now())
+                            .answer("抱歉，您的查詢包含不當內容，無法處理。原因：" + queryModerationResult.getReason())
+                            .processingTimeMs(totalTime)
+                            .metadata(Map.of(
+                                    "moderation_failed", true,
+                                    "moderation_result", queryModerationResult
+                            ))
+                            .build());
+                }
+            }
+
+            // === 階段 0.5：語義答案快取 ===
+            String cacheOptionsKey = semanticCacheOptionsKey(request, options);
+            float[] queryEmbedding = StageScope.awaitOrDefault(embeddingStage, null, "semantic-cache-embedding");
+            if (queryEmbedding != null) {
+                Optional<SemanticAnswerCache.Hit> cacheHit =
+                        semanticAnswerCache.lookup(queryEmbedding, cacheOptionsKey);
+                if (cacheHit.isPresent()) {
+                    // 命中快取，取消預先啟動的檢索階段
+                    scope.cancelAll();
+                    metricsService.recordSemanticCacheHit();
+
+                    long totalTime = System.currentTimeMillis() - totalStartTime;
+                    AdvancedRAGResponse cachedResponse = fromSemanticCache(
+                            cacheHit.get(), request, queryId, totalTime);
+
+                    log.info("語義快取命中，Query ID: {}, 相似度: {}, 總耗時: {}ms",
+                            queryId, String.format("%.4f", cacheHit.get().similarity()), totalTime);
+
+                    metricsService.recordQuerySuccess();
+                    metricsService.recordQueryDuration(totalTime);
+                    return RetrievalOutcome.early(cachedResponse);
+                }
+                metricsService.recordSemanticCacheMiss();
+            }
+
+            // === 階段 1：查詢預處理結果 ===
+            String processedQuery = StageScope.await(rewriteStage);
+            if (rewriteEnabled) {
+                responseBuilder.rewrittenQuery(processedQuery);
+                log.info("查詢重寫：[{}] -> [{}]", request.getQuery(), processedQuery);
+            }
+            if (!rewriteEnabled && expansionEnabled) {
+                List<String> expandedQueries = StageScope.awaitOrDefault(expansionStage, List.of(), "expansion");
+                responseBuilder.expandedQueries(expandedQueries);
+                log.info("查詢擴展：生成 {} 個擴展查詢", expandedQueries.size());
+            }
+
+            // === 階段 2：多階段檢索結果 ===
+            List<ScoredDocument> retrievedDocs = StageScope.await(retrievalStage);
+            long retrievalTime = stageTimings.getOrDefault("retrieval", 0L);
+            responseBuilder.retrievalTimeMs(retrievalTime);
+
+            // 記錄檢索指標
+            metricsService.recordRetrievalDuration(retrievalTime);
+            metricsService.recordDocumentsRetrieved(retrievedDocs.size());
+
+            log.info("檢索完成，檢索到 {} 個文檔", retrievedDocs.size());
+
+            // === 階段 2.5：Re-ranking 結果（失敗或超時時使用檢索排序）===
+            List<ScoredDocument> rerankedDocs = StageScope.awaitOrDefault(rerankingStage,
+                    retrievedDocs.stream().limit(options.getFinalTopK()).toList(), "reranking");
+
+            long rerankingTime = stageTimings.getOrDefault("reranking", 0L);
+            responseBuilder.rerankingTimeMs(rerankingTime);
+
+            // 記錄 Re-ranking 指標
+            metricsService.recordRerankingDuration(rerankingTime);
+
+            return new RetrievalOutcome(null, rewriteEnabled ? processedQuery : null,
+                    retrievedDocs, rerankedDocs, stageTimings, retrievalMetadata,
+                    queryEmbedding, cacheOptionsKey);
+        }
+    }
+
+    /**
+     * 組裝響應：附加文檔（如果請求）與元數據
+     *
      * @param responseBuilder 響應構建器
-     * @return 處理後的查詢
+     * @param request 請求
+     * @param outcome 階段結果
+     * @return 響應
      */
-    private String preprocessQuery(AdvancedRAGRequest request,
-                                    AdvancedRAGResponse.AdvancedRAGResponseBuilder responseBuilder) {
-        String originalQuery = request.getQuery();
-
-        // 查詢重寫
-        if (request.getEnableQueryRewrite()) {
-            String rewrittenQuery = queryRewriteService.rewriteQuery(originalQuery);
-            responseBuilder.rewrittenQuery(rewrittenQuery);
-            log.info("查詢重寫：[{}] -> [{}]", originalQuery, rewrittenQuery);
-            return rewrittenQuery;
+    private AdvancedRAGResponse buildResponse(AdvancedRAGResponse.AdvancedRAGResponseBuilder responseBuilder,
+                                              AdvancedRAGRequest request, RetrievalOutcome outcome) {
+        // 添加檢索到的文檔（如果請求）
+        if (request.getReturnDocuments()) {
+            List<AdvancedRAGResponse.RetrievedDocument> retrievedDocuments =
+                    convertToResponseDocuments(outcome.rerankedDocs(), request.getReturnScoringDetails());
+            responseBuilder.documents(retrievedDocuments);
         }
 
-        // 查詢擴展
-        if (request.getEnableQueryExpansion()) {
-            List<String> expandedQueries = queryRewriteService.expandQuery(
-                    originalQuery,
-                    request.getOptionsOrDefault().getQueryExpansionCount()
-            );
-            responseBuilder.expandedQueries(expandedQueries);
-            log.info("查詢擴展：生成 {} 個擴展查詢", expandedQueries.size());
+        // 構建響應
+        AdvancedRAGResponse response = responseBuilder.build();
+
+        // 添加元數據
+        response.addMetadata("context_quality",
+                contextOptimizationService.calculateContextQuality(outcome.rerankedDocs()));
+        response.addMetadata("rewrite_time_ms", outcome.stageTimings().getOrDefault("rewrite", 0L));
+        response.addMetadata("original_doc_count", outcome.retrievedDocs().size());
+        response.addMetadata("reranked_doc_count", outcome.rerankedDocs().size());
+        outcome.retrievalMetadata().forEach(response::addMetadata);
+        return response;
+    }
+
+    /**
+     * 生成用於語義快取的查詢向量（失敗時返回 null，不影響查詢）
+     *
+     * 與粗檢索使用相同的 Embedding 上下文，未啟用查詢重寫時可直接命中 Embedding 快取
+     *
+     * @param query 原始查詢
+     * @return 查詢向量
+     */
+    private float[] embedQueryForCache(String query) {
+        if (!Boolean.TRUE.equals(ragProperties.getSemanticCache().getEnabled())) {
+            return null;
+        }
+        try {
+            return embeddingService.generateEmbedding(query, EmbeddingContext.highAccuracy());
+        } catch (Exception e) {
+            log.warn("語義快取查詢向量生成失敗，跳過快取: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 語義快取的查詢選項指紋
+     *
+     * 只有檢索/生成選項與響應格式都相同的查詢才能共用快取答案
+     *
+     * @param request 請求
+     * @param options 查詢選項
+     * @return 選項指紋
+     */
+    private String semanticCacheOptionsKey(AdvancedRAGRequest request, RAGQueryOptions options) {
+        return options + "|rewrite=" + request.getEnableQueryRewrite()
+                + "|expansion=" + request.getEnableQueryExpansion()
+                + "|moderation=" + request.getEnableModeration()
+                + "|documents=" + request.getReturnDocuments()
+                + "|scoring=" + request.getReturnScoringDetails();
+    }
+
+    /**
+     * 由快取命中結果組裝本次查詢的響應
+     *
+     * @param hit 快取命中結果
+     * @param request 請求
+     * @param queryId 本次查詢 ID
+     * @param totalTime 本次查詢耗時
+     * @return 響應
+     */
+    private AdvancedRAGResponse fromSemanticCache(SemanticAnswerCache.Hit hit, AdvancedRAGRequest request,
+                                                  String queryId, long totalTime) {
+        AdvancedRAGResponse cached = hit.response();
+
+        AdvancedRAGResponse response = AdvancedRAGResponse.builder()
+                .originalQuery(request.getQuery())
+                .rewrittenQuery(cached.getRewrittenQuery())
+                .expandedQueries(cached.getExpandedQueries())
+                .answer(cached.getAnswer())
+                .documents(cached.getDocuments())
+                .documentCount(cached.getDocumentCount())
+                .processingTimeMs(totalTime)
+                .retrievalTimeMs(0L)
+                .rerankingTimeMs(0L)
+                .generationTimeMs(0L)
+                .moderationPassed(cached.getModerationPassed())
+                .moderationRiskScore(cached.getModerationRiskScore())
+                .sessionId(request.getSessionId())
+                .queryId(queryId)
+                .timestamp(LocalDateTime.now())
+                .scoringDetails(cached.getScoringDetails())
+                .metadata(new LinkedHashMap<>(cached.getMetadata()))
+                .build();
+
+        response.addMetadata("semantic_cache_hit", true);
+        response.addMetadata("semantic_similarity", hit.similarity());
+        response.addMetadata("cached_query_id", cached.getQueryId());
+        response.addMetadata("cached_query", cached.getOriginalQuery());
+        return response;
+    }
+
+    /**
+     * 執行 Re-ranking（關閉或文檔數量不足時直接截取前 finalTopK 個）
+     *
+     * @param query 處理後的查詢
+     * @param retrievedDocs 檢索到的文檔
+     * @param options 選項
+     * @return 排序後的文檔
+     */
+    private List<ScoredDocument> rerankDocuments(String query, List<ScoredDocument> retrievedDocs,
+                                                 RAGQueryOptions options) {
+        if (options.getEnableReranking() && retrievedDocs.size() > options.getFinalTopK()) {
+            List<ScoredDocument> rerankedDocs = rerankingService.rerank(query, retrievedDocs, options);
+            log.info("Re-ranking 完成，最終文檔數: {}", rerankedDocs.size());
+            return rerankedDocs;
         }
 
-        return originalQuery;
+        log.info("跳過 Re-ranking（已關閉或文檔數量不足）");
+        // 如果不進行 Re-ranking，直接限制數量
+        return retrievedDocs.stream()
+                .limit(options.getFinalTopK())
+                .toList();
+    }
+
+    /**
+     * 執行任務並記錄耗時
+     *
+     * @param timings 階段耗時表
+     * @param stage 階段名稱
+     * @param task 任務
+     * @return 任務結果
+     */
+    private static <T> T timed(Map<String, Long> timings, String stage, Supplier<T> task) {
+        long startTime = System.currentTimeMillis();
+        try {
+            return task.get();
+        } finally {
+            timings.put(stage, System.currentTimeMillis() - startTime);
+        }
     }
 
     /**
      * 執行檢索
      *
-     * @param query 查詢
+     * @param prepared 處理後的查詢與關鍵詞
      * @param options 選項
      * @param request 原始請求
+     * @param retrievalMetadata 檢索元數據（混合檢索時寫入各路耗時）
      * @return 檢索到的文檔
      */
-    private List<ScoredDocument> performRetrieval(String query, RAGQueryOptions options,
-                                                    AdvancedRAGRequest request) {
-        // 如果啟用查詢擴展，使用混合檢索
-        if (request.getEnableQueryExpansion()) {
-            List<String> keywords = queryRewriteService.extractKeywords(query);
-            return retrievalService.hybridRetrieval(query, keywords, options);
+    private List<ScoredDocument> performRetrieval(PreparedQuery prepared, RAGQueryOptions options,
+                                                    AdvancedRAGRequest request,
+                                                    Map<String, Object> retrievalMetadata) {
+        String query = prepared.query();
+
+        // 如果啟用查詢擴展或混合檢索，使用混合檢索（向量 + BM25 並行）
+        boolean hybridSearch = Boolean.TRUE.equals(options.getEnableHybridSearch());
+        if (request.getEnableQueryExpansion() || hybridSearch) {
+            HybridRetrievalResult result = retrievalService.hybridRetrieval(query, prepared.keywords(), options);
+
+            retrievalMetadata.put("retrieval_mode", "hybrid");
+            retrievalMetadata.put("fusion", result.getFusion());
+            retrievalMetadata.put("vector_retrieval_time_ms", result.getVectorLatencyMs());
+            retrievalMetadata.put("lexical_retrieval_time_ms", result.getLexicalLatencyMs());
+            retrievalMetadata.put("vector_hits", result.getVectorHits());
+            retrievalMetadata.put("lexical_hits", result.getLexicalHits());
+            return result.getDocuments();
         }
 
         // 標準多階段檢索
@@ -396,12 +901,38 @@ public class AdvancedRAGService {
      * @return 審核結果
      */
     private ModerationResult performQueryModeration(String query) {
-        try {
-            log.debug("開始查詢內容審核");
+        log.debug("開始查詢內容審核");
+        return moderate(query, "查詢");
+    }
+
+    /**
+     * 執行答案內容審核
+     *
+     * @param answer 生成的答案
+     * @return 審核結果
+     */
+    private ModerationResult performAnswerModeration(String answer) {
+        log.debug("開始答案內容審核");
+        return moderate(answer, "答案");
+    }
 
+    /**
+     * 並行執行 OpenAI 審核與自定義規則審核並合併結果
+     *
+     * @param content 待審核內容
+     * @param label 內容類型（用於日誌）
+     * @return 綜合審核結果
+     */
+    private ModerationResult moderate(String content, String label) {
+        CompletableFuture<ModerationResult> openAIStage = CompletableFuture.supplyAsync(
+                () -> contentModerationService.moderateContent(content), pipelineExecutor);
+        CompletableFuture<ModerationResult> customRuleStage = CompletableFuture.supplyAsync(
+                () -> customRuleModerationService.moderateContent(content), pipelineExecutor);
+
+        try {
             // 並行執行兩種審核
-            ModerationResult openAIResult = contentModerationService.moderateContent(query);
-            ModerationResult customRuleResult = customRuleModerationService.moderateContent(query);
+            ModerationResult openAIResult = StageScope.await(openAIStage);
+            ModerationResult customRuleResult = StageScope.await(customRuleStage);
 
             // 計算綜合結果（各占 50% 權重）
             double combinedScore = (openAIResult.getModerationScore() * 0.5) +
@@ -424,60 +955,65 @@ public class AdvancedRAGService {
                     .build();
 
         } catch (Exception e) {
-            log.error("查詢內容審核失敗", e);
+            log.error("{}內容審核失敗", label, e);
+            openAIStage.cancel(true);
+            customRuleStage.cancel(true);
             // 審核失敗時返回通過（避免誤攔截）
-            return ModerationResult.builder()
-                    .flagged(false)
-                    .passed(true)
-                    .moderationScore(0.0)
-                    .reason("審核服務不可用，默認通過")
-                    .build();
+            return moderationUnavailable();
         }
     }
 
     /**
-     * 執行答案內容審核
+     * 審核服務不可用（失敗或超時）時的結果：默認通過
      *
-     * @param answer 生成的答案
      * @return 審核結果
      */
-    private ModerationResult performAnswerModeration(String answer) {
-        try {
-            log.debug("開始答案內容審核");
-
-            // 並行執行兩種審核
-            ModerationResult openAIResult = contentModerationService.moderateContent(answer);
-            ModerationResult customRuleResult = customRuleModerationService.moderateContent(answer);
-
-            // 計算綜合結果（各占 50% 權重）
-            double combinedScore = (openAIResult.getModerationScore() * 0.5) +
-                    (customRuleResult.getModerationScore() * 0.5);
-
-            // 只要有一個審核不通過，則綜合結果不通過
-            boolean flagged = openAIResult.getFlagged() || customRuleResult.getFlagged();
+    private ModerationResult moderationUnavailable() {
+        return ModerationResult.builder()
+                .flagged(false)
+                .passed(true)
+                .moderationScore(0.0)
+                .reason("審核服務不可用，默認通過")
+                .build();
+    }
 
-            // 構建原因
-            String reason = flagged ?
-                    String.format("OpenAI: %s; 自定義規則: %s",
-                            openAIResult.getReason(), customRuleResult.getReason()) :
-                    "內容正常";
+    /**
+     * 答案生成前各階段的結果
+     *
+     * @param earlyResponse 提前返回的響應（審核未通過或快取命中），否則為 null
+     * @param rewrittenQuery 重寫後的查詢（未啟用重寫時為 null）
+     * @param retrievedDocs 檢索到的文檔
+     * @param rerankedDocs Re-ranking 後的文檔
+     * @param stageTimings 各階段耗時
+     * @param retrievalMetadata 檢索元數據
+     * @param queryEmbedding 語義快取查詢向量（不可用時為 null）
+     * @param cacheOptionsKey 語義快取選項指紋
+     */
+    private record RetrievalOutcome(AdvancedRAGResponse earlyResponse, String rewrittenQuery,
+                                    List<ScoredDocument> retrievedDocs, List<ScoredDocument> rerankedDocs,
+                                    Map<String, Long> stageTimings, Map<String, Object> retrievalMetadata,
+                                    float[] queryEmbedding, String cacheOptionsKey) {
 
-            return ModerationResult.builder()
-                    .flagged(flagged)
-                    .passed(!flagged)
-                    .moderationScore(combinedScore)
-                    .reason(reason)
-                    .build();
+        static RetrievalOutcome early(AdvancedRAGResponse response) {
+            return new RetrievalOutcome(response, null, List.of(), List.of(), Map.of(), Map.of(), null, null);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("答案內容審核失敗", e);
-            // 審核失敗時返回通過（避免誤攔截）
-            return ModerationResult.builder()
-                    .flagged(false)
-                    .passed(true)
-                    .moderationScore(0.0)
-                    .reason("審核服務不可用，默認通過")
-                    .build();
+    /**
+     * 串流答案中的句子未通過內容審核
+     */
+    private static class AnswerFlaggedException extends RuntimeException {
+        AnswerFlaggedException(String reason) {
+            super(reason);
         }
     }
+
+    /**
+     * 處理後的查詢與關鍵詞（檢索階段的輸入）
+     *
+     * @param query 處理後的查詢
+     * @param keywords 關鍵詞列表
+     */
+    private record PreparedQuery(String query, List<String> keywords) {
+    }
 }
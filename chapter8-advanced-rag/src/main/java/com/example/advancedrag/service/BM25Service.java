@@ -1,15 +1,27 @@
 package com.example.advancedrag.service;
 
+import com.example.advancedrag.index.BM25Index;
+import com.example.advancedrag.util.TextUtil;
+import com.example.advancedrag.vectorstore.EmbeddingVectorSearch;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * BM25 評分服務
  *
  * 實現 BM25 算法用於計算文檔與查詢的相關性分數
  * BM25 是一種基於詞頻的排序算法，廣泛用於信息檢索
+ *
+ * 文檔在寫入向量數據庫時同步建立記憶體倒排索引（{@link BM25Index}），
+ * 查詢時直接查 postings 計分，包含 IDF 與平均文檔長度正規化。
+ * 索引只保存詞項統計，不保存文檔全文；啟動時由 {@link #rebuildFrom(EmbeddingVectorSearch)}
+ * 分頁遍歷向量數據庫重建。查詢期間的評分皆為唯讀，不會改變集合統計。
  */
 @Slf4j
 @Service
@@ -19,74 +31,160 @@ public class BM25Service {
     private static final double K1 = 1.2;  // 詞頻飽和參數
     private static final double B = 0.75;  // 長度正規化參數
 
+    // 啟動重建時每頁讀取的文檔數
+    private static final int REBUILD_PAGE_SIZE = 500;
+
+    private final BM25Index index = new BM25Index(K1, B);
+
     /**
-     * 計算 BM25 分數
+     * 將文檔加入 BM25 索引
      *
-     * @param content 文檔內容
-     * @param query 查詢文本
-     * @param keywords 關鍵詞列表
-     * @return BM25 分數（0-1）
+     * @param documents 文檔列表
      */
-    public double calculateBM25Score(String content, String query, List<String> keywords) {
-        if (keywords == null || keywords.isEmpty()) {
-            return 0.5; // 無關鍵詞時返回中等分數
+    public void indexDocuments(List<Document> documents) {
+        for (Document document : documents) {
+            indexDocument(document);
         }
+        log.debug("BM25 索引更新完成，新增 {} 個文檔，索引文檔總數: {}", documents.size(), index.size());
+    }
 
-        String lowerContent = content.toLowerCase();
-        String lowerQuery = query.toLowerCase();
-
-        // 簡化版 BM25：基於關鍵詞匹配和詞頻
-        double score = 0.0;
-        int totalMatches = 0;
-
-        for (String keyword : keywords) {
-            String lowerKeyword = keyword.toLowerCase();
-            int termFreq = countOccurrences(lowerContent, lowerKeyword);
+    /**
+     * 將單個文檔加入 BM25 索引（已存在則更新）
+     *
+     * @param document 文檔
+     */
+    public void indexDocument(Document document) {
+        if (document == null || document.getId() == null || document.getText() == null) {
+            return;
+        }
+        index.add(document.getId(), TextUtil.analyze(document.getText()));
+    }
 
-            if (termFreq > 0) {
-                totalMatches++;
+    /**
+     * 分頁遍歷向量數據庫，為其中所有文檔建立 BM25 索引
+     *
+     * 已索引的文檔會被更新，因此可與同時進行的文檔寫入並行執行。
+     *
+     * @param documentStore 向量數據庫
+     * @return 重建的文檔數量
+     */
+    public int rebuildFrom(EmbeddingVectorSearch documentStore) {
+        AtomicInteger rebuilt = new AtomicInteger();
+        documentStore.forEachPage(REBUILD_PAGE_SIZE, page -> {
+            for (Document document : page) {
+                indexDocument(document);
+            }
+            rebuilt.addAndGet(page.size());
+        });
+        log.info("BM25 索引重建完成，遍歷 {} 個文檔，索引文檔總數: {}", rebuilt.get(), index.size());
+        return rebuilt.get();
+    }
 
-                // TF 部分（詞頻）使用 BM25 飽和函數
-                // BM25 TF: (tf * (k1 + 1)) / (tf + k1 * (1 - b + b * (docLength / avgDocLength)))
-                // 簡化版本：不計算平均文檔長度
-                double tf = (double) termFreq * (K1 + 1) / (termFreq + K1);
-                score += tf;
+    /**
+     * 從 BM25 索引中移除文檔
+     *
+     * @param documentIds 文檔 ID 列表
+     */
+    public void removeDocuments(List<String> documentIds) {
+        int removed = 0;
+        for (String documentId : documentIds) {
+            if (index.remove(documentId)) {
+                removed++;
             }
         }
+        log.debug("BM25 索引移除 {} 個文檔，索引文檔總數: {}", removed, index.size());
+    }
 
-        // 正規化分數
-        if (!keywords.isEmpty()) {
-            score = score / keywords.size();
+    /**
+     * 在 BM25 索引中檢索
+     *
+     * @param keywords 關鍵詞列表
+     * @param topK 返回數量
+     * @return 命中列表（按分數降序）
+     */
+    public List<BM25Index.Hit> search(List<String> keywords, int topK) {
+        Set<String> queryTerms = analyzeKeywords(keywords);
+        if (queryTerms.isEmpty()) {
+            return List.of();
         }
+        return index.search(queryTerms, topK);
+    }
 
-        // 額外加分：查詢完整匹配
-        if (lowerContent.contains(lowerQuery)) {
-            score = Math.min(1.0, score + 0.2);
+    /**
+     * 計算文檔的 BM25 分數（查 postings）
+     *
+     * 未索引的文檔以集合統計對其全文計分，不寫入索引，
+     * 因此同一查詢的分數與評分順序及先前的查詢無關。
+     *
+     * @param document 文檔
+     * @param query 查詢文本
+     * @param keywords 關鍵詞列表
+     * @return BM25 分數（0-1）
+     */
+    public double calculateBM25Score(Document document, String query, List<String> keywords) {
+        Set<String> queryTerms = analyzeKeywords(keywords);
+        if (queryTerms.isEmpty()) {
+            return 0.5; // 無關鍵詞時返回中等分數
         }
 
-        return Math.min(1.0, score);
+        double score = index.normalizedScore(document.getId(), queryTerms);
+        if (score == BM25Index.NOT_INDEXED) {
+            // 未索引的文檔：唯讀計分，不改變索引統計
+            return document.getText() != null ?
+                    index.normalizedScoreOf(TextUtil.analyze(document.getText()), queryTerms) : 0.0;
+        }
+        return score;
     }
 
     /**
-     * 計算關鍵詞在內容中出現的次數
+     * 計算任意文本的 BM25 分數（不寫入索引，使用索引的集合統計）
      *
-     * @param content 內容
-     * @param keyword 關鍵詞
-     * @return 出現次數
+     * @param content 文檔內容
+     * @param query 查詢文本
+     * @param keywords 關鍵詞列表
+     * @return BM25 分數（0-1）
      */
-    private int countOccurrences(String content, String keyword) {
-        if (content == null || keyword == null || keyword.isEmpty()) {
-            return 0;
+    public double calculateBM25Score(String content, String query, List<String> keywords) {
+        Set<String> queryTerms = analyzeKeywords(keywords);
+        if (queryTerms.isEmpty()) {
+            return 0.5; // 無關鍵詞時返回中等分數
         }
 
-        int count = 0;
-        int index = 0;
+        return index.normalizedScoreOf(TextUtil.analyze(content), queryTerms);
+    }
 
-        while ((index = content.indexOf(keyword, index)) != -1) {
-            count++;
-            index += keyword.length();
-        }
+    /**
+     * 獲取已索引文檔數量
+     *
+     * @return 文檔數量
+     */
+    public int getIndexedDocumentCount() {
+        return index.size();
+    }
+
+    /**
+     * 獲取平均文檔長度（詞項數）
+     *
+     * @return 平均文檔長度
+     */
+    public double getAverageDocumentLength() {
+        return index.averageDocumentLength();
+    }
 
-        return count;
+    /**
+     * 將關鍵詞分析為查詢詞項（與索引使用相同的分詞規則）
+     *
+     * @param keywords 關鍵詞列表
+     * @return 去重後的查詢詞項
+     */
+    private Set<String> analyzeKeywords(List<String> keywords) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (keywords == null) {
+            return terms;
+        }
+        for (String keyword : keywords) {
+            terms.addAll(TextUtil.analyze(keyword));
+        }
+        return terms;
     }
 }
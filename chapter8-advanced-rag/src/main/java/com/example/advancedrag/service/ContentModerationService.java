@@ -1,14 +1,21 @@
 package com.example.advancedrag.service;
 
 import com.example.advancedrag.dto.ModerationResult;
+import com.example.advancedrag.properties.ModerationProperties;
 import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.CacheKeyGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +29,10 @@ import java.util.Map;
  * - 性內容（sexual）
  * - 暴力內容（violence）
  *
+ * 審核結果以內容哈希為鍵快取（moderationResults，TTL 見 app.moderation.cache-ttl-seconds），
+ * 重複的查詢不再調用 API；多段內容以一次 API 調用批次審核。
+ * API 失敗時的降級結果不寫入快取；快取讀寫失敗（如 Redis 不可用）視為未命中或略過寫入，不影響審核。
+ *
  * 審核權重：50%
  */
 @Slf4j
@@ -29,80 +40,110 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class ContentModerationService {
 
+    /**
+     * 審核結果快取名稱
+     */
+    public static final String MODERATION_CACHE = "moderationResults";
+
     private final RAGProperties ragProperties;
     private final RestTemplate restTemplate;
+    private final CacheManager cacheManager;
+    private final ModerationProperties moderationProperties;
 
     /**
      * OpenAI Moderation API 端點
      */
     private static final String MODERATION_API_URL = "https://api.openai.com/v1/moderations";
 
+    /**
+     * OpenAI Moderation 模型
+     */
+    private static final String MODERATION_MODEL = "text-moderation-stable";
+
     /**
      * 審核內容
      *
      * @param content 待審核內容
-     * @return 審核結果
+     * @return 審核結果；內容為 null 或空白時返回標記為不通過的默認結果
      */
     public ModerationResult moderateContent(String content) {
-        long startTime = System.currentTimeMillis();
-
-        try {
-            log.debug("開始 OpenAI 內容審核，內容長度: {}", content.length());
-
-            // 調用 OpenAI Moderation API
-            ModerationApiResponse apiResponse = callOpenAIModerationAPI(content);
-
-            // 解析審核結果
-            ModerationResult result = parseApiResponse(apiResponse);
-
-            long processingTime = System.currentTimeMillis() - startTime;
-            result.setProcessingTimeMs(processingTime);
-
-            log.info("OpenAI 審核完成，耗時: {}ms，標記為: {}",
-                    processingTime, result.getFlagged() ? "不當內容" : "正常內容");
-
-            return result;
-
-        } catch (Exception e) {
-            log.error("OpenAI 內容審核失敗", e);
-
-            // 審核失敗時返回安全默認值（標記為不通過）
-            return ModerationResult.builder()
-                    .flagged(true)
-                    .passed(false)
-                    .moderationScore(1.0)
-                    .reason("審核服務暫時不可用")
-                    .processingTimeMs(System.currentTimeMillis() - startTime)
-                    .build();
+        if (!StringUtils.hasText(content)) {
+            return copyOf(null, false, 0);
         }
+        return moderateContents(List.of(content)).get(0);
     }
 
     /**
      * 批次審核內容
      *
+     * 相同內容只審核一次；快取未命中的內容按 max-batch-size 分批，每批一次 API 調用。
+     * null 或空白內容不查快取也不送審，直接返回標記為不通過的默認結果。
+     *
      * @param contents 待審核內容列表
-     * @return 審核結果列表
+     * @return 審核結果列表（與輸入順序對應）
      */
     public List<ModerationResult> moderateContents(List<String> contents) {
-        log.info("開始批次審核，數量: {}", contents.size());
+        long startTime = System.currentTimeMillis();
+
+        // 1. 查詢快取
+        Cache cache = moderationCache();
+        Map<String, ModerationResult> resolved = new HashMap<>();
+        Map<String, Boolean> cacheHits = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String content : new LinkedHashSet<>(contents)) {
+            if (!StringUtils.hasText(content)) {
+                continue;
+            }
+            ModerationResult cached = readCached(cache, content);
+            if (cached != null) {
+                resolved.put(content, cached);
+                cacheHits.put(content, true);
+            } else {
+                misses.add(content);
+            }
+        }
+
+        // 2. 未命中的內容分批調用 OpenAI Moderation API
+        int batchSize = Math.max(1, moderationProperties.getMaxBatchSize());
+        for (int from = 0; from < misses.size(); from += batchSize) {
+            List<String> batch = misses.subList(from, Math.min(from + batchSize, misses.size()));
+            try {
+                ModerationApiResponse apiResponse = callOpenAIModerationAPI(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    resolved.put(batch.get(i), parseApiResult(apiResponse.getResults().get(i)));
+                }
+            } catch (Exception e) {
+                // 審核失敗時返回安全默認值（標記為不通過），不寫入快取
+                log.error("OpenAI 內容審核失敗，批次大小: {}", batch.size(), e);
+                continue;
+            }
+            // 快取寫入在 API 調用之外：寫入失敗不影響已取得的審核結果
+            for (String content : batch) {
+                writeCached(cache, content, resolved.get(content));
+            }
+        }
+
+        long processingTime = System.currentTimeMillis() - startTime;
+        log.info("OpenAI 審核完成，數量: {}，快取命中: {}，API 審核: {}，耗時: {}ms",
+                contents.size(), cacheHits.size(), misses.size(), processingTime);
 
         return contents.stream()
-                .map(this::moderateContent)
+                .map(content -> copyOf(resolved.get(content), cacheHits.containsKey(content), processingTime))
                 .toList();
     }
 
     /**
-     * 調用 OpenAI Moderation API
+     * 調用 OpenAI Moderation API（一次請求審核多段內容）
      *
-     * @param content 待審核內容
-     * @return API 響應
+     * @param contents 待審核內容
+     * @return API 響應（results 與輸入順序對應）
      */
-    private ModerationApiResponse callOpenAIModerationAPI(String content) {
+    private ModerationApiResponse callOpenAIModerationAPI(List<String> contents) {
         try {
             // 構建請求
             Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("input", content);
-            requestBody.put("model", "text-moderation-stable");
+            requestBody.put("input", contents);
+            requestBody.put("model", MODERATION_MODEL);
 
             // 設置請求頭
             org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
@@ -121,8 +162,8 @@ public class ContentModerationService {
                     );
 
             if (response.getBody() == null || response.getBody().getResults() == null ||
-                    response.getBody().getResults().isEmpty()) {
-                throw new RuntimeException("OpenAI Moderation API 返回空結果");
+                    response.getBody().getResults().size() != contents.size()) {
+                throw new RuntimeException("OpenAI Moderation API 返回結果數與輸入不符");
             }
 
             return response.getBody();
@@ -134,14 +175,12 @@ public class ContentModerationService {
     }
 
     /**
-     * 解析 API 響應
+     * 解析單段內容的 API 結果
      *
-     * @param apiResponse API 響應
+     * @param result API 結果
      * @return 審核結果
      */
-    private ModerationResult parseApiResponse(ModerationApiResponse apiResponse) {
-        ModerationApiResult result = apiResponse.getResults().get(0);
-
+    private ModerationResult parseApiResult(ModerationApiResult result) {
         ModerationResult.ModerationResultBuilder builder = ModerationResult.builder()
                 .flagged(result.isFlagged())
                 .passed(!result.isFlagged());
@@ -179,6 +218,94 @@ public class ContentModerationService {
         return builder.build();
     }
 
+    /**
+     * 複製審核結果（快取中的實例可能被多個請求共享，不直接修改）
+     *
+     * @param result 審核結果（null 表示審核失敗）
+     * @param cached 是否來自快取
+     * @param processingTimeMs 處理時間
+     * @return 審核結果副本
+     */
+    private ModerationResult copyOf(ModerationResult result, boolean cached, long processingTimeMs) {
+        if (result == null) {
+            return ModerationResult.builder()
+                    .flagged(true)
+                    .passed(false)
+                    .moderationScore(1.0)
+                    .reason("審核服務暫時不可用")
+                    .processingTimeMs(processingTimeMs)
+                    .build();
+        }
+
+        Map<String, Object> details = result.getDetails() != null ?
+                new HashMap<>(result.getDetails()) : new HashMap<>();
+        details.put("cached", cached);
+
+        return ModerationResult.builder()
+                .flagged(result.getFlagged())
+                .passed(result.getPassed())
+                .moderationScore(result.getModerationScore())
+                .reason(result.getReason())
+                .flaggedCategories(result.getFlaggedCategories() != null ?
+                        new ArrayList<>(result.getFlaggedCategories()) : new ArrayList<>())
+                .processingTimeMs(processingTimeMs)
+                .details(details)
+                .build();
+    }
+
+    /**
+     * 讀取快取的審核結果（快取不可用時視為未命中）
+     *
+     * @param cache 快取實例（可為 null）
+     * @param content 內容
+     * @return 快取的審核結果，未命中或讀取失敗時返回 null
+     */
+    private ModerationResult readCached(Cache cache, String content) {
+        if (cache == null || !StringUtils.hasText(content)) {
+            return null;
+        }
+        try {
+            return cache.get(cacheKey(content), ModerationResult.class);
+        } catch (Exception e) {
+            log.warn("讀取審核結果快取失敗，改為調用審核 API: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 寫入審核結果快取（快取不可用時略過寫入）
+     *
+     * @param cache 快取實例（可為 null）
+     * @param content 內容
+     * @param result 審核結果
+     */
+    private void writeCached(Cache cache, String content, ModerationResult result) {
+        if (cache == null || !StringUtils.hasText(content)) {
+            return;
+        }
+        try {
+            cache.put(cacheKey(content), result);
+        } catch (Exception e) {
+            log.warn("寫入審核結果快取失敗，已略過: {}", e.getMessage());
+        }
+    }
+
+    private static String cacheKey(String content) {
+        return CacheKeyGenerator.generateModerationKey(content, MODERATION_MODEL);
+    }
+
+    /**
+     * 獲取審核結果快取（未啟用快取時返回 null）
+     *
+     * @return 快取實例
+     */
+    private Cache moderationCache() {
+        if (!Boolean.TRUE.equals(moderationProperties.getCacheEnabled())) {
+            return null;
+        }
+        return cacheManager.getCache(MODERATION_CACHE);
+    }
+
     /**
      * 構建標記原因
      *
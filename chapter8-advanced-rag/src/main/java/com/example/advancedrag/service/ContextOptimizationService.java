@@ -3,12 +3,15 @@ package com.example.advancedrag.service;
 import com.example.advancedrag.model.RAGQueryOptions;
 import com.example.advancedrag.model.ScoredDocument;
 import com.example.advancedrag.properties.RAGProperties;
-import lombok.RequiredArgsConstructor;
+import com.example.advancedrag.util.SimHash;
+import com.example.advancedrag.util.SimHashIndex;
+import com.example.advancedrag.util.TokenCounter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,18 +19,36 @@ import java.util.stream.Collectors;
  * 上下文優化服務
  *
  * 功能：
- * 1. 上下文長度控制（避免超出 LLM token 限制）
- * 2. 文檔去重（移除相似或重複的文檔）
+ * 1. 上下文 token 預算打包（按生成模型的預算選取文檔，貪心或背包最大化總相關性分數）
+ * 2. 文檔去重（SimHash 分段索引，線性時間移除近似重複的文檔）
  * 3. 上下文排序（按相關性排序）
  * 4. 上下文格式化（為 LLM 生成優化的上下文）
  * 5. 動態上下文截斷（智能截斷過長內容）
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ContextOptimizationService {
 
+    // 每個文檔的格式化開銷（【文檔 n】、來源、換行）
+    private static final int DOCUMENT_OVERHEAD_TOKENS = 16;
+
+    // 剩餘預算至少這麼多 token 時才截斷加入下一個文檔
+    private static final int MIN_PARTIAL_TOKENS = 64;
+
+    // 背包容量的最大格數（預算較大時按比例粗化 token 權重）
+    private static final int KNAPSACK_UNITS = 512;
+
+    // 候選文檔沒有文本可估算比例時，字元換算 token 的默認比例
+    private static final int DEFAULT_CHARS_PER_TOKEN = 4;
+
     private final RAGProperties ragProperties;
+    private final TokenCounter tokenCounter;
+
+    public ContextOptimizationService(RAGProperties ragProperties) {
+        this.ragProperties = ragProperties;
+        RAGProperties.ContextPacking packing = ragProperties.getContextPacking();
+        this.tokenCounter = new TokenCounter(packing.getModel(), packing.getTokenCacheSize());
+    }
 
     /**
      * 優化上下文
@@ -47,27 +68,20 @@ public class ContextOptimizationService {
                     .sorted((a, b) -> Double.compare(b.getScore(), a.getScore()))
                     .toList();
 
-            // 2. 去重（移除內容相似的文檔）
+            // 2. 去重（移除近似重複的文檔，保留分數較高者）
             List<ScoredDocument> dedupedDocs = deduplicateDocuments(sortedDocs);
             log.debug("去重後文檔數量: {}", dedupedDocs.size());
 
-            // 3. 限制數量
-            List<ScoredDocument> limitedDocs = dedupedDocs.stream()
-                    .limit(options.getFinalTopK())
-                    .toList();
-
-            // 4. 控制總長度
-            List<ScoredDocument> truncatedDocs = truncateToMaxLength(
-                    limitedDocs,
-                    options.getMaxContextLength()
-            );
+            // 3. 按 token 預算打包（最多 finalTopK 個）
+            int tokenBudget = resolveTokenBudget(options, dedupedDocs);
+            List<ScoredDocument> truncatedDocs = packToTokenBudget(dedupedDocs, options.getFinalTopK(), tokenBudget);
 
-            // 5. 格式化上下文
+            // 4. 格式化上下文
             String optimizedContext = formatContext(truncatedDocs);
 
             long processingTime = System.currentTimeMillis() - startTime;
-            log.info("上下文優化完成，耗時: {}ms，最終文檔數: {}，總長度: {}",
-                    processingTime, truncatedDocs.size(), optimizedContext.length());
+            log.info("上下文優化完成，耗時: {}ms，最終文檔數: {}，token 預算: {}，總長度: {}",
+                    processingTime, truncatedDocs.size(), tokenBudget, optimizedContext.length());
 
             return optimizedContext;
 
@@ -79,115 +93,222 @@ public class ContextOptimizationService {
     }
 
     /**
-     * 去重文檔（基於內容相似度）
+     * 去重文檔（SimHash 近似重複檢測）
      *
-     * @param documents 文檔列表
+     * 每個文檔的指紋只計算一次（寫入時已預計算則直接讀取元數據），
+     * 以分段索引查找近似重複，整體為線性時間。
+     *
+     * @param documents 文檔列表（按分數降序）
      * @return 去重後的文檔列表
      */
     private List<ScoredDocument> deduplicateDocuments(List<ScoredDocument> documents) {
+        SimHashIndex<Integer> index = new SimHashIndex<>(ragProperties.getContextPacking().getDedupeMaxDistance());
         List<ScoredDocument> dedupedDocs = new ArrayList<>();
 
         for (ScoredDocument doc : documents) {
-            boolean isDuplicate = false;
-
-            // 檢查是否與已有文檔重複
-            for (ScoredDocument existingDoc : dedupedDocs) {
-                if (isSimilarContent(doc.getDocument(), existingDoc.getDocument())) {
-                    isDuplicate = true;
-                    log.debug("發現重複文檔，已跳過");
-                    break;
-                }
-            }
-
-            if (!isDuplicate) {
-                dedupedDocs.add(doc);
+            long signature = signatureOf(doc.getDocument());
+            if (index.findNearDuplicate(signature) != null) {
+                log.debug("發現重複文檔，已跳過");
+                continue;
             }
+            index.add(dedupedDocs.size(), signature);
+            dedupedDocs.add(doc);
         }
 
         return dedupedDocs;
     }
 
+    private long signatureOf(Document document) {
+        Long stored = SimHash.fromMetadata(document.getMetadata().get(SimHash.METADATA_KEY));
+        return stored != null ? stored : SimHash.of(document.getText());
+    }
+
     /**
-     * 判斷兩個文檔內容是否相似
+     * 決定上下文 token 預算：請求指定 token &gt; 請求指定字元（換算）&gt; 模型預算 &gt; 默認預算
      *
-     * @param doc1 文檔1
-     * @param doc2 文檔2
-     * @return 是否相似
+     * @param options 查詢選項
+     * @param documents 候選文檔（用於估算字元/token 比例）
+     * @return token 預算
      */
-    private boolean isSimilarContent(Document doc1, Document doc2) {
-        String content1 = doc1.getText();
-        String content2 = doc2.getText();
+    private int resolveTokenBudget(RAGQueryOptions options, List<ScoredDocument> documents) {
+        if (options.getMaxContextTokens() != null) {
+            return options.getMaxContextTokens();
+        }
+        RAGProperties.ContextPacking packing = ragProperties.getContextPacking();
+        int modelBudget = packing.getModelTokenBudgets().getOrDefault(packing.getModel(), packing.getDefaultTokenBudget());
+        if (options.getMaxContextLength() != null) {
+            return Math.min(modelBudget, charsToTokens(options.getMaxContextLength(), documents));
+        }
+        return modelBudget;
+    }
 
-        // 簡化判斷：內容完全相同或高度重疊
-        if (content1.equals(content2)) {
-            return true;
+    /**
+     * 將字元上限換算為 token 數（按候選文檔在當前編碼下的字元/token 比例）
+     *
+     * @param maxChars 字元上限
+     * @param documents 候選文檔
+     * @return 對應的 token 數
+     */
+    private int charsToTokens(int maxChars, List<ScoredDocument> documents) {
+        long totalChars = 0;
+        long totalTokens = 0;
+        for (ScoredDocument doc : documents) {
+            String text = doc.getDocument().getText();
+            if (text != null && !text.isEmpty()) {
+                totalChars += text.length();
+                totalTokens += tokenCounter.count(doc.getDocument());
+            }
+        }
+        if (totalChars == 0 || totalTokens == 0) {
+            return Math.max(0, maxChars / DEFAULT_CHARS_PER_TOKEN);
         }
+        return (int) Math.max(0, (long) maxChars * totalTokens / totalChars);
+    }
 
-        // 計算內容重疊度
-        int minLength = Math.min(content1.length(), content2.length());
-        int maxLength = Math.max(content1.length(), content2.length());
+    /**
+     * 按 token 預算打包文檔
+     *
+     * 先以所選策略挑出完整放入預算的文檔，剩餘預算足夠時再截斷加入分數最高的落選文檔；
+     * 結果保持分數降序。
+     *
+     * @param documents 文檔列表（按分數降序）
+     * @param maxDocuments 最多文檔數
+     * @param tokenBudget token 預算
+     * @return 打包後的文檔列表
+     */
+    private List<ScoredDocument> packToTokenBudget(List<ScoredDocument> documents, int maxDocuments, int tokenBudget) {
+        int n = documents.size();
+        int[] costs = new int[n];
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            ScoredDocument doc = documents.get(i);
+            costs[i] = tokenCounter.count(doc.getDocument()) + DOCUMENT_OVERHEAD_TOKENS;
+            scores[i] = doc.getScore() != null ? doc.getScore() : 0.0;
+        }
+
+        boolean[] selected = "knapsack".equalsIgnoreCase(ragProperties.getContextPacking().getStrategy())
+                ? selectKnapsack(costs, scores, maxDocuments, tokenBudget)
+                : selectGreedy(costs, maxDocuments, tokenBudget);
+
+        int used = 0;
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (selected[i]) {
+                used += costs[i];
+                count++;
+            }
+        }
 
-        // 如果長度差異過大，不視為重複
-        if ((double) minLength / maxLength < 0.8) {
-            return false;
+        List<ScoredDocument> packedDocs = new ArrayList<>(count + 1);
+        boolean partialAdded = false;
+        for (int i = 0; i < n; i++) {
+            if (selected[i]) {
+                packedDocs.add(documents.get(i));
+            } else if (!partialAdded && count < maxDocuments
+                    && tokenBudget - used - DOCUMENT_OVERHEAD_TOKENS >= MIN_PARTIAL_TOKENS) {
+                // 部分添加（截斷）分數最高的落選文檔
+                int remainingTokens = tokenBudget - used - DOCUMENT_OVERHEAD_TOKENS;
+                String content = documents.get(i).getDocument().getText();
+                packedDocs.add(withContent(documents.get(i), tokenCounter.truncate(content, remainingTokens) + "..."));
+                partialAdded = true;
+            }
         }
 
-        // 計算開頭部分的相似度
-        int compareLength = Math.min(200, minLength);
-        String prefix1 = content1.substring(0, compareLength);
-        String prefix2 = content2.substring(0, compareLength);
+        log.debug("token 打包：候選 {} 個，完整放入 {} 個（{} / {} tokens），截斷放入 {} 個",
+                n, count, used, tokenBudget, partialAdded ? 1 : 0);
+        return packedDocs;
+    }
 
-        return prefix1.equals(prefix2);
+    /**
+     * 貪心選擇：按分數降序放入，放不下則跳過繼續嘗試後面較短的文檔
+     */
+    private boolean[] selectGreedy(int[] costs, int maxDocuments, int tokenBudget) {
+        boolean[] selected = new boolean[costs.length];
+        int used = 0;
+        int count = 0;
+        for (int i = 0; i < costs.length && count < maxDocuments; i++) {
+            if (used + costs[i] <= tokenBudget) {
+                selected[i] = true;
+                used += costs[i];
+                count++;
+            }
+        }
+        return selected;
     }
 
     /**
-     * 截斷到最大長度
+     * 背包選擇：在 token 預算與文檔數上限內最大化總分數（0/1 背包，DP）
      *
-     * @param documents 文檔列表
-     * @param maxLength 最大長度
-     * @return 截斷後的文檔列表
+     * token 權重按預算粗化為最多 {@link #KNAPSACK_UNITS} 格並向上取整，保證不超出預算。
      */
-    private List<ScoredDocument> truncateToMaxLength(List<ScoredDocument> documents, int maxLength) {
-        List<ScoredDocument> truncatedDocs = new ArrayList<>();
-        int currentLength = 0;
+    private boolean[] selectKnapsack(int[] costs, double[] scores, int maxDocuments, int tokenBudget) {
+        int n = costs.length;
+        int unit = Math.max(1, (tokenBudget + KNAPSACK_UNITS - 1) / KNAPSACK_UNITS);
+        int capacity = tokenBudget / unit;
+        int maxItems = Math.min(maxDocuments, n);
+
+        int[] weights = new int[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = (costs[i] + unit - 1) / unit;
+        }
 
-        for (ScoredDocument doc : documents) {
-            String content = doc.getDocument().getText();
-            int contentLength = content.length();
-
-            if (currentLength + contentLength <= maxLength) {
-                // 完整添加
-                truncatedDocs.add(doc);
-                currentLength += contentLength;
-            } else {
-                // 部分添加（截斷）
-                int remainingLength = maxLength - currentLength;
-                if (remainingLength > 100) { // 至少保留 100 字符才有意義
-                    String truncatedContent = content.substring(0, remainingLength) + "...";
-
-                    // 創建截斷後的文檔
-                    Document truncatedDoc = new Document(
-                            doc.getDocument().getId(),
-                            truncatedContent,
-                            doc.getDocument().getMetadata()
-                    );
-
-                    ScoredDocument truncatedScoredDoc = ScoredDocument.builder()
-                            .document(truncatedDoc)
-                            .score(doc.getScore())
-                            .semanticScore(doc.getSemanticScore())
-                            .bm25Score(doc.getBm25Score())
-                            .qualityScore(doc.getQualityScore())
-                            .freshnessScore(doc.getFreshnessScore())
-                            .build();
-
-                    truncatedDocs.add(truncatedScoredDoc);
+        // best[j][c]：恰好選 j 個、總權重不超過 c 時的最大分數
+        double[][] best = new double[maxItems + 1][capacity + 1];
+        for (int j = 1; j <= maxItems; j++) {
+            Arrays.fill(best[j], Double.NEGATIVE_INFINITY);
+        }
+        boolean[][][] take = new boolean[n][][];
+
+        for (int i = 0; i < n; i++) {
+            take[i] = new boolean[maxItems + 1][capacity + 1];
+            for (int j = Math.min(i + 1, maxItems); j >= 1; j--) {
+                for (int c = capacity; c >= weights[i]; c--) {
+                    double candidate = best[j - 1][c - weights[i]] + scores[i];
+                    if (candidate > best[j][c]) {
+                        best[j][c] = candidate;
+                        take[i][j][c] = true;
+                    }
                 }
-                break;
             }
         }
 
-        return truncatedDocs;
+        int bestCount = 0;
+        for (int j = 1; j <= maxItems; j++) {
+            if (best[j][capacity] > best[bestCount][capacity]) {
+                bestCount = j;
+            }
+        }
+
+        boolean[] selected = new boolean[n];
+        int c = capacity;
+        for (int i = n - 1, j = bestCount; i >= 0 && j > 0; i--) {
+            if (take[i][j][c]) {
+                selected[i] = true;
+                c -= weights[i];
+                j--;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 以新內容複製評分文檔
+     */
+    private ScoredDocument withContent(ScoredDocument doc, String content) {
+        Document truncatedDoc = new Document(
+                doc.getDocument().getId(),
+                content,
+                doc.getDocument().getMetadata()
+        );
+
+        return ScoredDocument.builder()
+                .document(truncatedDoc)
+                .score(doc.getScore())
+                .semanticScore(doc.getSemanticScore())
+                .bm25Score(doc.getBm25Score())
+                .qualityScore(doc.getQualityScore())
+                .freshnessScore(doc.getFreshnessScore())
+                .build();
     }
 
     /**
@@ -1,12 +1,22 @@
 package com.example.advancedrag.service;
 
 import com.example.advancedrag.dto.ModerationResult;
+import com.example.advancedrag.properties.ModerationProperties;
 import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.AhoCorasick;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,6 +30,10 @@ import java.util.regex.Pattern;
  * 4. URL/郵箱限制
  * 5. 重複內容檢測
  *
+ * 敏感詞、特殊字符與重複檢測在同一次線性遍歷中完成：
+ * - 敏感詞：編譯後的 Aho-Corasick 自動機，與詞庫大小無關；詞庫變更時重新編譯並原子替換
+ * - 重複：固定窗口的滾動哈希，不產生子字串
+ *
  * 審核權重：50%
  */
 @Slf4j
@@ -28,10 +42,26 @@ import java.util.regex.Pattern;
 public class CustomRuleModerationService {
 
     private final RAGProperties ragProperties;
+    private final ModerationProperties moderationProperties;
+
+    /**
+     * 當前使用的敏感詞自動機（熱更新時整體替換）
+     */
+    private final AtomicReference<AhoCorasick> sensitiveWordMatcher =
+            new AtomicReference<>(AhoCorasick.compile(SENSITIVE_WORDS));
+
+    /**
+     * 上次載入的詞庫來源（配置列表 + 檔案修改時間），用於判斷是否需要重新編譯
+     */
+    private volatile List<Object> loadedSource = List.of();
+
+    /**
+     * 滾動哈希的基數
+     */
+    private static final long HASH_BASE = 1_000_003L;
 
     /**
-     * 敏感詞黑名單（示例）
-     * 實際應用中應該從配置文件或數據庫加載
+     * 內建敏感詞黑名單（示例），與配置及外部詞庫合併使用
      */
     private static final Set<String> SENSITIVE_WORDS = Set.of(
             // 暴力相關
@@ -61,6 +91,64 @@ public class CustomRuleModerationService {
             Pattern.CASE_INSENSITIVE
     );
 
+    /**
+     * 啟動時載入配置中的敏感詞
+     */
+    @PostConstruct
+    public void init() {
+        reloadSensitiveWordsIfChanged();
+    }
+
+    /**
+     * 定期檢查敏感詞配置與外部詞庫檔案，有變更時重新編譯自動機
+     */
+    @Scheduled(fixedDelayString = "${app.moderation.sensitive-words-reload-interval-ms:30000}")
+    public void reloadSensitiveWordsIfChanged() {
+        String file = moderationProperties.getSensitiveWordsFile();
+        long lastModified = -1L;
+        try {
+            if (StringUtils.hasText(file) && Files.exists(Path.of(file))) {
+                lastModified = Files.getLastModifiedTime(Path.of(file)).toMillis();
+            }
+        } catch (IOException e) {
+            log.warn("讀取敏感詞檔案時間失敗: {}", file, e);
+        }
+
+        List<Object> source = Arrays.asList(
+                List.copyOf(moderationProperties.getSensitiveWords()), String.valueOf(file), lastModified);
+        if (source.equals(loadedSource)) {
+            return;
+        }
+
+        Set<String> words = new LinkedHashSet<>(SENSITIVE_WORDS);
+        words.addAll(moderationProperties.getSensitiveWords());
+        if (lastModified >= 0) {
+            try {
+                Files.readAllLines(Path.of(file), StandardCharsets.UTF_8).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .forEach(words::add);
+            } catch (IOException e) {
+                log.warn("載入敏感詞檔案失敗，沿用現有詞庫: {}", file, e);
+                return;
+            }
+        }
+
+        replaceSensitiveWords(words);
+        loadedSource = source;
+    }
+
+    /**
+     * 以新的詞庫替換敏感詞自動機（編譯完成後原子替換，審核中的請求不受影響）
+     *
+     * @param words 敏感詞
+     */
+    public void replaceSensitiveWords(Collection<String> words) {
+        AhoCorasick matcher = AhoCorasick.compile(words);
+        sensitiveWordMatcher.set(matcher);
+        log.info("敏感詞自動機已更新，詞數: {}", matcher.size());
+    }
+
     /**
      * 審核內容
      *
@@ -78,8 +166,11 @@ public class CustomRuleModerationService {
             Map<String, Object> details = new HashMap<>();
             double riskScore = 0.0;
 
+            // 一次遍歷：敏感詞匹配、特殊字符統計、重複窗口檢測
+            ContentScan scan = scanContent(content);
+
             // 規則1：敏感詞檢測（權重：40%）
-            SensitiveWordResult sensitiveWordResult = checkSensitiveWords(content);
+            SensitiveWordResult sensitiveWordResult = checkSensitiveWords(scan);
             if (sensitiveWordResult.hasViolation()) {
                 violations.add("包含敏感詞：" + String.join(", ", sensitiveWordResult.getMatchedWords()));
                 riskScore += 0.4 * sensitiveWordResult.getSeverity();
@@ -96,7 +187,7 @@ public class CustomRuleModerationService {
             details.put("length_valid", !lengthResult.hasViolation());
 
             // 規則3：特殊字符比例檢查（權重：15%）
-            SpecialCharResult specialCharResult = checkSpecialCharRatio(content);
+            SpecialCharResult specialCharResult = checkSpecialCharRatio(content, scan);
             if (specialCharResult.hasViolation()) {
                 violations.add(specialCharResult.reason());
                 riskScore += 0.15 * specialCharResult.ratio();
@@ -113,7 +204,7 @@ public class CustomRuleModerationService {
             details.put("email_count", urlEmailResult.emailCount());
 
             // 規則5：重複內容檢測（權重：20%）
-            RepetitionResult repetitionResult = checkRepetition(content);
+            RepetitionResult repetitionResult = checkRepetition(content, scan);
             if (repetitionResult.hasViolation()) {
                 violations.add(repetitionResult.reason());
                 riskScore += 0.2 * repetitionResult.repetitionRatio();
@@ -160,20 +251,84 @@ public class CustomRuleModerationService {
     }
 
     /**
-     * 檢查敏感詞
+     * 單次遍歷內容，同時推進敏感詞自動機、統計特殊字符並以滾動哈希檢測重複窗口
+     *
+     * 重複檢測與原窗口比對等價：窗口大小 w = min(10, n / 4)，
+     * 若某個長度為 w 的片段在其結束之後再次出現（兩次出現不重疊）即視為重複。
+     * 每個片段記錄首次出現的位置，哈希相同時以 regionMatches 確認，避免哈希碰撞誤判。
      *
      * @param content 內容
-     * @return 敏感詞檢測結果
+     * @return 掃描結果
      */
-    private SensitiveWordResult checkSensitiveWords(String content) {
-        List<String> matchedWords = new ArrayList<>();
-        String lowerContent = content.toLowerCase();
+    private ContentScan scanContent(String content) {
+        AhoCorasick matcher = sensitiveWordMatcher.get();
+        int length = content.length();
+
+        Set<String> matchedWords = new LinkedHashSet<>();
+        int state = AhoCorasick.ROOT;
+        int specialCharCount = 0;
+
+        boolean checkRepetition = length >= 20;
+        int windowSize = Math.min(10, length / 4);
+        long basePower = 1L;
+        for (int i = 1; i < windowSize; i++) {
+            basePower *= HASH_BASE;
+        }
+        Map<Long, Integer> firstOccurrence = checkRepetition ? new HashMap<>(length * 2) : Map.of();
+        long hash = 0L;
+        boolean repeated = false;
 
-        for (String sensitiveWord : SENSITIVE_WORDS) {
-            if (lowerContent.contains(sensitiveWord.toLowerCase())) {
-                matchedWords.add(sensitiveWord);
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+
+            state = matcher.next(state, c);
+            for (int index : matcher.outputs(state)) {
+                matchedWords.add(matcher.pattern(index));
+            }
+
+            if (!Character.isLetterOrDigit(c) && !Character.isWhitespace(c)) {
+                specialCharCount++;
             }
+
+            if (checkRepetition && !repeated) {
+                if (i >= windowSize) {
+                    hash -= content.charAt(i - windowSize) * basePower;
+                }
+                hash = hash * HASH_BASE + c;
+                int start = i - windowSize + 1;
+                if (start >= 0) {
+                    repeated = isRepeatedWindow(content, start, windowSize, hash, firstOccurrence);
+                }
+            }
+        }
+
+        return new ContentScan(new ArrayList<>(matchedWords), specialCharCount, repeated ? windowSize : 0);
+    }
+
+    /**
+     * 判斷從 start 開始的窗口是否在不重疊的較早位置出現過
+     */
+    private boolean isRepeatedWindow(String content, int start, int windowSize, long hash,
+                                     Map<Long, Integer> firstOccurrence) {
+        Integer first = firstOccurrence.putIfAbsent(hash, start);
+        if (first == null) {
+            return false;
+        }
+        if (!content.regionMatches(first, content, start, windowSize)) {
+            // 哈希碰撞：退回直接查找該片段的首次出現位置
+            first = content.indexOf(content.substring(start, start + windowSize));
         }
+        return start - first >= windowSize;
+    }
+
+    /**
+     * 檢查敏感詞
+     *
+     * @param scan 掃描結果
+     * @return 敏感詞檢測結果
+     */
+    private SensitiveWordResult checkSensitiveWords(ContentScan scan) {
+        List<String> matchedWords = scan.matchedWords();
 
         // 計算嚴重程度（匹配詞數越多越嚴重）
         double severity = matchedWords.isEmpty() ? 0.0 :
@@ -208,19 +363,15 @@ public class CustomRuleModerationService {
      * 檢查特殊字符比例
      *
      * @param content 內容
+     * @param scan 掃描結果
      * @return 特殊字符檢查結果
      */
-    private SpecialCharResult checkSpecialCharRatio(String content) {
+    private SpecialCharResult checkSpecialCharRatio(String content, ContentScan scan) {
         if (content.isEmpty()) {
             return new SpecialCharResult(false, 0.0, "內容為空");
         }
 
-        // 統計特殊字符數量
-        long specialCharCount = content.chars()
-                .filter(c -> !Character.isLetterOrDigit(c) && !Character.isWhitespace(c))
-                .count();
-
-        double ratio = (double) specialCharCount / content.length();
+        double ratio = (double) scan.specialCharCount() / content.length();
 
         // 特殊字符比例超過 50% 可能是亂碼或惡意內容
         if (ratio > 0.5) {
@@ -265,27 +416,15 @@ public class CustomRuleModerationService {
      * 檢查重複內容
      *
      * @param content 內容
+     * @param scan 掃描結果
      * @return 重複內容檢測結果
      */
-    private RepetitionResult checkRepetition(String content) {
+    private RepetitionResult checkRepetition(String content, ContentScan scan) {
         if (content.length() < 20) {
             return new RepetitionResult(false, 0.0, "內容太短，無需檢查重複");
         }
 
-        // 簡化版重複檢測：檢查連續重複的字符序列
-        int maxRepetitionLength = 0;
-        int windowSize = Math.min(10, content.length() / 4);
-
-        for (int i = 0; i <= content.length() - windowSize * 2; i++) {
-            String window = content.substring(i, i + windowSize);
-            String remaining = content.substring(i + windowSize);
-
-            if (remaining.contains(window)) {
-                maxRepetitionLength = Math.max(maxRepetitionLength, windowSize);
-            }
-        }
-
-        double repetitionRatio = (double) maxRepetitionLength / content.length();
+        double repetitionRatio = (double) scan.maxRepetitionLength() / content.length();
 
         // 重複比例超過 30% 可能是惡意灌水
         if (repetitionRatio > 0.3) {
@@ -298,6 +437,12 @@ public class CustomRuleModerationService {
 
     // ========== 內部結果類 ==========
 
+    /**
+     * 單次遍歷的掃描結果
+     */
+    private record ContentScan(List<String> matchedWords, int specialCharCount, int maxRepetitionLength) {
+    }
+
     /**
      * 敏感詞檢測結果
      */
@@ -0,0 +1,263 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.cache.SemanticAnswerCache;
+import com.example.advancedrag.dto.DocumentAddRequest;
+import com.example.advancedrag.dto.DocumentAddResponse;
+import com.example.advancedrag.exception.VectorStoreException;
+import com.example.advancedrag.index.NearDuplicateIndex;
+import com.example.advancedrag.model.DocumentFeatures;
+import com.example.advancedrag.model.PreprocessingOptions;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.SimHash;
+import com.example.advancedrag.util.SimHashIndex;
+import com.example.advancedrag.vectorstore.EmbeddingVectorSearch;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 文檔寫入服務
+ *
+ * 負責將文檔寫入向量數據庫，並同步維護檢索所需的本地索引：
+ * 1. 組裝 Document（內容預處理 + 元數據 + 預計算 Re-ranking 特徵與 SimHash 指紋）
+ * 2. 跳過近似重複文檔（與已索引文檔或同批較早的文檔），不產生嵌入調用；
+ *    近似重複索引存於 Redis，與向量數據庫分開保存，因此匹配到的文檔須仍存在於向量數據庫才視為重複
+ * 3. 分批寫入 VectorStore（pgvector）
+ * 4. 寫入成功的文檔同步加入 BM25 倒排索引與近似重複索引
+ * 5. 文檔有寫入或刪除時清空語義答案快取，避免返回基於舊文檔集的答案
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentIngestionService {
+
+    private final VectorStore vectorStore;
+    private final EmbeddingVectorSearch embeddingVectorSearch;
+    private final BM25Service bm25Service;
+    private final SmartEmbeddingService embeddingService;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final RAGProperties ragProperties;
+
+    /**
+     * 批量添加文檔
+     *
+     * @param request 添加文檔請求
+     * @return 添加結果
+     */
+    public DocumentAddResponse addDocuments(DocumentAddRequest request) {
+        long startTime = System.currentTimeMillis();
+
+        List<Document> candidates = request.getDocuments().stream()
+                .map(item -> toDocument(item, request.getPreprocessingOptions()))
+                .toList();
+
+        Map<String, String> duplicates = findDuplicates(candidates);
+        List<Document> documents = candidates.stream()
+                .filter(doc -> !duplicates.containsKey(doc.getId()))
+                .toList();
+
+        int batchSize = request.getBatchSize() != null && request.getBatchSize() > 0 ?
+                request.getBatchSize() : 10;
+
+        log.info("開始寫入文檔，數量: {}，跳過近似重複: {}，批次大小: {}",
+                documents.size(), duplicates.size(), batchSize);
+
+        List<String> addedIds = new ArrayList<>();
+        int failedCount = 0;
+
+        for (int from = 0; from < documents.size(); from += batchSize) {
+            List<Document> batch = documents.subList(from, Math.min(from + batchSize, documents.size()));
+            try {
+                vectorStore.add(batch);
+                bm25Service.indexDocuments(batch);
+                nearDuplicateIndex.addAll(signatures(batch));
+                batch.forEach(doc -> addedIds.add(doc.getId()));
+            } catch (Exception e) {
+                log.error("文檔批次寫入失敗，批次起始位置: {}", from, e);
+                failedCount += batch.size();
+            }
+        }
+
+        if (!addedIds.isEmpty()) {
+            semanticAnswerCache.clear();
+        }
+
+        long processingTime = System.currentTimeMillis() - startTime;
+        log.info("文檔寫入完成，成功: {}，失敗: {}，重複: {}，耗時: {}ms",
+                addedIds.size(), failedCount, duplicates.size(), processingTime);
+
+        return DocumentAddResponse.builder()
+                .totalDocuments(candidates.size())
+                .successCount(addedIds.size())
+                .failedCount(failedCount)
+                .addedDocumentIds(addedIds)
+                .duplicateCount(duplicates.size())
+                .duplicateDocumentIds(duplicates)
+                .processingTimeMs(processingTime)
+                .build();
+    }
+
+    /**
+     * 刪除文檔
+     *
+     * @param documentId 文檔 ID
+     */
+    public void deleteDocument(String documentId) {
+        try {
+            vectorStore.delete(List.of(documentId));
+            bm25Service.removeDocuments(List.of(documentId));
+            nearDuplicateIndex.removeAll(List.of(documentId));
+            semanticAnswerCache.clear();
+            log.info("文檔已刪除: {}", documentId);
+        } catch (Exception e) {
+            log.error("文檔刪除失敗: {}", documentId, e);
+            throw new VectorStoreException("DELETE_FAILED", "文檔刪除失敗: " + e.getMessage(), "delete");
+        }
+    }
+
+    /**
+     * 找出近似重複的文檔：先查已索引文檔，再在本次請求內比對（保留較早出現的文檔）
+     *
+     * @param documents 待寫入文檔
+     * @return 重複文檔 ID → 與其近似重複的文檔 ID
+     */
+    private Map<String, String> findDuplicates(List<Document> documents) {
+        Map<String, String> duplicates = new LinkedHashMap<>();
+        if (!Boolean.TRUE.equals(ragProperties.getIngestion().getDedupeEnabled())) {
+            return duplicates;
+        }
+
+        int maxDistance = ragProperties.getIngestion().getDedupeMaxDistance();
+        Map<String, Long> signatures = signatures(documents);
+        duplicates.putAll(confirmInStore(nearDuplicateIndex.findNearDuplicates(signatures, maxDistance)));
+
+        SimHashIndex<String> requestIndex = new SimHashIndex<>(maxDistance);
+        for (Document doc : documents) {
+            if (duplicates.containsKey(doc.getId())) {
+                continue;
+            }
+            long signature = signatures.get(doc.getId());
+            String original = requestIndex.findNearDuplicate(signature);
+            if (original != null) {
+                duplicates.put(doc.getId(), original);
+            } else {
+                requestIndex.add(doc.getId(), signature);
+            }
+        }
+
+        if (!duplicates.isEmpty()) {
+            log.info("跳過 {} 個近似重複文檔", duplicates.size());
+        }
+        return duplicates;
+    }
+
+    /**
+     * 只保留匹配文檔仍存在於向量數據庫的近似重複
+     *
+     * 向量數據庫被重置或本地向量庫在保存快照前崩潰時，Redis 中的指紋會指向已不存在的文檔；
+     * 這些過期指紋從近似重複索引中移除，對應的文檔照常寫入。無法確認時不跳過任何文檔。
+     *
+     * @param indexedDuplicates 文檔 ID → 近似重複索引中匹配的文檔 ID
+     * @return 匹配文檔仍存在的近似重複
+     */
+    private Map<String, String> confirmInStore(Map<String, String> indexedDuplicates) {
+        if (indexedDuplicates.isEmpty()) {
+            return indexedDuplicates;
+        }
+
+        Set<String> existing = new HashSet<>();
+        try {
+            embeddingVectorSearch.findByIds(new HashSet<>(indexedDuplicates.values()))
+                    .forEach(doc -> existing.add(doc.getId()));
+        } catch (Exception e) {
+            log.warn("無法確認近似重複文檔是否存在，不跳過任何文檔: {}", e.getMessage());
+            return Map.of();
+        }
+
+        Map<String, String> confirmed = new LinkedHashMap<>();
+        Set<String> stale = new HashSet<>();
+        indexedDuplicates.forEach((id, original) -> {
+            if (existing.contains(original)) {
+                confirmed.put(id, original);
+            } else {
+                stale.add(original);
+            }
+        });
+        if (!stale.isEmpty()) {
+            log.warn("近似重複索引中有 {} 個文檔已不在向量數據庫中，已移除其指紋", stale.size());
+            nearDuplicateIndex.removeAll(stale);
+        }
+        return confirmed;
+    }
+
+    /**
+     * 讀取文檔的 SimHash 指紋（toDocument 已預先計算）
+     */
+    private Map<String, Long> signatures(List<Document> documents) {
+        Map<String, Long> signatures = new LinkedHashMap<>();
+        for (Document doc : documents) {
+            Long signature = SimHash.fromMetadata(doc.getMetadata().get(SimHash.METADATA_KEY));
+            signatures.put(doc.getId(), signature != null ? signature : SimHash.of(doc.getText()));
+        }
+        return signatures;
+    }
+
+    /**
+     * 將請求中的文檔項轉換為 Document
+     *
+     * @param item 文檔項
+     * @param preprocessingOptions 預處理選項（可選）
+     * @return Document
+     */
+    private Document toDocument(DocumentAddRequest.DocumentItem item, PreprocessingOptions preprocessingOptions) {
+        String content = preprocessingOptions != null ?
+                embeddingService.preprocessText(item.getContent(), preprocessingOptions) :
+                item.getContent();
+
+        Map<String, Object> metadata = new HashMap<>();
+        if (item.getMetadata() != null) {
+            metadata.putAll(item.getMetadata());
+        }
+        putIfHasText(metadata, "title", item.getTitle());
+        putIfHasText(metadata, "source", item.getSource());
+        putIfHasText(metadata, "type", item.getType());
+        putIfHasText(metadata, "author", item.getAuthor());
+        if (item.getTags() != null && !item.getTags().isEmpty()) {
+            metadata.put("tags", item.getTags());
+        }
+        metadata.putIfAbsent("created_at", LocalDateTime.now().toString());
+
+        String documentId = StringUtils.hasText(item.getDocumentId()) ?
+                item.getDocumentId() : UUID.randomUUID().toString();
+
+        // 預計算 Re-ranking 特徵，查詢時直接從元數據讀取
+        metadata.put(DocumentFeatures.METADATA_KEY, DocumentFeatures.extract(content, metadata).toMetadata());
+        metadata.put(SimHash.METADATA_KEY, SimHash.of(content));
+
+        return Document.builder()
+                .id(documentId)
+                .text(content)
+                .metadata(metadata)
+                .build();
+    }
+
+    private void putIfHasText(Map<String, Object> metadata, String key, String value) {
+        if (StringUtils.hasText(value)) {
+            metadata.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.exception.AdvancedRAGException;
+import com.example.advancedrag.properties.EmbeddingProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding 請求合併器（Micro-batching）
+ *
+ * 高並發時多個查詢各自只 Embedding 一段短文本，逐一呼叫 API 容易觸發限流。
+ * 合併器在短時間窗口（預設 3ms）內收集請求，或累積到上限數量後，
+ * 以單個 EmbeddingRequest 批次發送，再將結果分發給等待中的呼叫者。
+ * 相同文本在請求進行中只會發送一次。
+ *
+ * 收集線程在第一次提交時才啟動，未啟用合併（app.embedding.coalescing.enabled=false）時不佔用線程。
+ * 等待結果可被中斷：階段超時或查詢取消時呼叫者立即返回，批次本身繼續完成並分發給其他等待者。
+ */
+@Slf4j
+@Component
+public class EmbeddingCoalescer {
+
+    private final EmbeddingModel embeddingModel;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Semaphore permits;
+
+    /**
+     * 進行中的請求（文本 → 結果），用於去重
+     */
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 等待合併的文本
+     */
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile Thread collector;
+    private volatile boolean running = true;
+
+    @Autowired
+    public EmbeddingCoalescer(EmbeddingModel embeddingModel, EmbeddingProperties embeddingProperties) {
+        this(embeddingModel,
+                embeddingProperties.getCoalescing().getWindowMs(),
+                embeddingProperties.getCoalescing().getMaxBatchSize(),
+                embeddingProperties.getBatch().getMaxConcurrentRequests());
+    }
+
+    public EmbeddingCoalescer(EmbeddingModel embeddingModel, long windowMs, int maxBatchSize, int maxConcurrentRequests) {
+        this.embeddingModel = embeddingModel;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxBatchSize = maxBatchSize;
+        this.permits = new Semaphore(maxConcurrentRequests);
+    }
+
+    /**
+     * 生成單個文本的 Embedding（與同一窗口內的其他請求合併發送）
+     *
+     * 等待中被中斷時拋出 {@link AdvancedRAGException}（保留中斷標記），不取消共用的批次。
+     *
+     * @param text 文本
+     * @return Embedding 向量
+     */
+    public float[] embed(String text) {
+        try {
+            return submit(text).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AdvancedRAGException("EMBEDDING_INTERRUPTED", "等待 Embedding 結果時被中斷", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new AdvancedRAGException("EMBEDDING_FAILED", "Embedding 生成失敗: " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+    }
+
+    /**
+     * 提交文本，返回結果 Future；相同文本進行中時共用同一個 Future
+     *
+     * @param text 文本
+     * @return 結果 Future
+     */
+    public CompletableFuture<float[]> submit(String text) {
+        if (!running) {
+            throw new IllegalStateException("Embedding 合併器已關閉");
+        }
+
+        CompletableFuture<float[]> created = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = inFlight.putIfAbsent(text, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        ensureCollectorStarted();
+        pending.add(text);
+        return created;
+    }
+
+    /**
+     * 首次提交時啟動收集線程
+     */
+    private void ensureCollectorStarted() {
+        if (collector != null) {
+            return;
+        }
+        synchronized (this) {
+            if (collector == null && running) {
+                collector = Thread.ofPlatform()
+                        .name("embedding-coalescer")
+                        .daemon(true)
+                        .start(this::collectLoop);
+            }
+        }
+    }
+
+    /**
+     * 收集循環：取到第一個文本後，在窗口時間內繼續收集，直到窗口結束或達到批次上限
+     */
+    private void collectLoop() {
+        while (running) {
+            try {
+                String first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                List<String> batch = new ArrayList<>();
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        pending.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    String next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                permits.acquire();
+                dispatcher.execute(() -> {
+                    try {
+                        dispatch(batch);
+                    } finally {
+                        permits.release();
+                    }
+                });
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 發送一個批次並將結果分發給等待者
+     *
+     * @param batch 文本列表
+     */
+    private void dispatch(List<String> batch) {
+        try {
+            EmbeddingResponse response = embeddingModel.call(new EmbeddingRequest(batch, null));
+            List<Embedding> outputs = response.getResults();
+
+            float[][] embeddings = new float[batch.size()][];
+            for (int i = 0; i < outputs.size(); i++) {
+                Embedding output = outputs.get(i);
+                int index = output.getIndex() != null ? output.getIndex() : i;
+                embeddings[index] = output.getOutput();
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<float[]> future = inFlight.remove(batch.get(i));
+                if (future == null) {
+                    continue;
+                }
+                if (embeddings[i] != null) {
+                    future.complete(embeddings[i]);
+                } else {
+                    future.completeExceptionally(new IllegalStateException("Embedding 生成失敗：無結果返回"));
+                }
+            }
+
+            log.debug("合併 Embedding 請求完成，批次大小: {}", batch.size());
+
+        } catch (Exception e) {
+            log.error("合併 Embedding 請求失敗，批次大小: {}", batch.size(), e);
+            for (String text : batch) {
+                CompletableFuture<float[]> future = inFlight.remove(text);
+                if (future != null) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 關閉合併器，尚未發送的請求以異常結束
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        synchronized (this) {
+            if (collector != null) {
+                collector.interrupt();
+            }
+        }
+        dispatcher.close();
+
+        IllegalStateException closed = new IllegalStateException("Embedding 合併器已關閉");
+        inFlight.values().forEach(future -> future.completeExceptionally(closed));
+        inFlight.clear();
+        pending.clear();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.dto.EvaluationResult;
+import com.example.advancedrag.dto.SingleEvaluationRequest;
+import com.example.advancedrag.exception.EvaluationException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 批次評估檢查點
+ *
+ * 每完成一個案例即以 JSON Lines 追加到 {@code <checkpointDir>/<runId>.jsonl}；
+ * 以相同 runId 重新執行時載入已完成的結果並跳過這些案例。
+ * 案例鍵為批次序號與評估請求內容的哈希，批次中內容相同的案例各自記錄；中斷時寫了一半的最後一行會被忽略。
+ */
+@Slf4j
+class EvaluationCheckpoint implements AutoCloseable {
+
+    private static final Pattern RUN_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, EvaluationResult> completed;
+    private final BufferedWriter writer;
+
+    private EvaluationCheckpoint(ObjectMapper objectMapper, Map<String, EvaluationResult> completed,
+                                 BufferedWriter writer) {
+        this.objectMapper = objectMapper;
+        this.completed = completed;
+        this.writer = writer;
+    }
+
+    /**
+     * 打開（或建立）檢查點
+     *
+     * @param directory 檢查點目錄
+     * @param runId 評估運行 ID（僅允許英數字、底線與連字號）
+     * @param objectMapper JSON 映射器
+     * @return 檢查點
+     */
+    static EvaluationCheckpoint open(String directory, String runId, ObjectMapper objectMapper) {
+        if (!RUN_ID_PATTERN.matcher(runId).matches()) {
+            throw new EvaluationException("INVALID_RUN_ID", "runId 只能包含英數字、底線與連字號（最長 64 字元）");
+        }
+
+        Path file = Path.of(directory, runId + ".jsonl");
+        try {
+            Map<String, EvaluationResult> completed = new HashMap<>();
+            String existing = Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : "";
+            if (!existing.isEmpty()) {
+                // 結果中的衍生屬性（如 highScore）沒有對應的 setter，讀取時忽略
+                ObjectReader reader = objectMapper.readerFor(Entry.class)
+                        .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+                for (String line : existing.split("\n")) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        Entry entry = reader.readValue(line);
+                        completed.put(entry.key(), entry.result());
+                    } catch (IOException e) {
+                        log.warn("略過無法解析的檢查點記錄: {}", file);
+                    }
+                }
+                log.info("載入評估檢查點 {}，已完成案例: {}", file, completed.size());
+            }
+
+            Files.createDirectories(file.getParent());
+            BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (!existing.isEmpty() && !existing.endsWith("\n")) {
+                // 上次中斷在行中間：先換行，避免新記錄接在殘缺記錄之後
+                writer.newLine();
+            }
+            return new EvaluationCheckpoint(objectMapper, completed, writer);
+
+        } catch (IOException e) {
+            throw new EvaluationException("CHECKPOINT_FAILED", "無法打開評估檢查點: " + file + "，" + e.getMessage());
+        }
+    }
+
+    /**
+     * 計算案例鍵
+     *
+     * @param index 案例在批次中的序號
+     * @param request 評估請求
+     * @return 案例鍵
+     */
+    static String caseKey(int index, SingleEvaluationRequest request) {
+        return DigestUtils.md5Hex(String.join("\u0000",
+                String.valueOf(index),
+                String.valueOf(request.getTestCaseId()),
+                String.valueOf(request.getQuestion()),
+                String.valueOf(request.getGeneratedAnswer()),
+                String.valueOf(request.getGroundTruth()),
+                String.valueOf(request.getRetrievedContext())));
+    }
+
+    /**
+     * 取得已完成的結果
+     *
+     * @param key 案例鍵
+     * @return 評估結果，未完成時返回 null
+     */
+    EvaluationResult completed(String key) {
+        return completed.get(key);
+    }
+
+    /**
+     * 追加一個完成的結果（立即寫入磁碟）
+     *
+     * @param key 案例鍵
+     * @param result 評估結果
+     */
+    synchronized void append(String key, EvaluationResult result) {
+        try {
+            writer.write(objectMapper.writeValueAsString(new Entry(key, result)));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("寫入評估檢查點失敗，案例: {}", key, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("關閉評估檢查點失敗", e);
+        }
+    }
+
+    /**
+     * 檢查點記錄
+     *
+     * @param key 案例鍵
+     * @param result 評估結果
+     */
+    record Entry(String key, EvaluationResult result) {
+    }
+}
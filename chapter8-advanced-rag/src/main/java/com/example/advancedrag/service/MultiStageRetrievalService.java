@@ -1,20 +1,28 @@
 package com.example.advancedrag.service;
 
+import com.example.advancedrag.index.BM25Index;
 import com.example.advancedrag.model.EmbeddingContext;
+import com.example.advancedrag.model.HybridRetrievalResult;
 import com.example.advancedrag.model.RAGQueryOptions;
 import com.example.advancedrag.model.ScoredDocument;
-import com.example.advancedrag.util.TextUtil;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.vectorstore.EmbeddingVectorSearch;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * 多階段檢索服務
@@ -26,14 +34,19 @@ import java.util.stream.Collectors;
  * 檢索策略：
  * - 階段一：向量相似度檢索（快速、召回率高）
  * - 階段二：多因子評分（語義相似度 + BM25 + 品質 + 新鮮度）
+ *
+ * 混合檢索：向量檢索與 BM25 關鍵詞檢索並行執行，以 RRF 或加權方式融合
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MultiStageRetrievalService {
 
-    private final VectorStore vectorStore;
+    private final EmbeddingVectorSearch embeddingVectorSearch;
     private final SmartEmbeddingService embeddingService;
+    private final BM25Service bm25Service;
+    private final RAGProperties ragProperties;
+    private final ExecutorService retrievalExecutor;
 
     /**
      * 多階段檢索
@@ -75,25 +88,22 @@ public class MultiStageRetrievalService {
      */
     private List<ScoredDocument> coarseRetrieval(String query, RAGQueryOptions options) {
         try {
-            // 1. 生成查詢 Embedding
-            List<Double> queryEmbedding = embeddingService.generateEmbedding(
+            // 1. 生成查詢 Embedding（SmartEmbeddingService 快取命中時不呼叫 Embedding API）
+            float[] queryEmbedding = embeddingService.generateEmbedding(
                     query,
                     EmbeddingContext.highAccuracy()
             );
 
-            // 2. 構建檢索請求
-            SearchRequest searchRequest = SearchRequest.builder()
-                    .query(query)
-                    .topK(options.getCoarseTopK())
-                    .similarityThreshold(options.getSimilarityThreshold())
-                    .build();
-
-            // 3. 執行向量檢索
-            List<Document> documents = vectorStore.similaritySearch(searchRequest);
+            // 2. 以預先計算的查詢向量執行向量檢索（向量庫不再重複 Embedding）
+            List<Document> documents = embeddingVectorSearch.similaritySearch(
+                    queryEmbedding,
+                    options.getCoarseTopK(),
+                    options.getSimilarityThreshold()
+            );
 
             log.debug("向量檢索完成，檢索到 {} 個文檔", documents.size());
 
-            // 4. 轉換為 ScoredDocument
+            // 3. 轉換為 ScoredDocument
             List<ScoredDocument> scoredDocuments = new ArrayList<>();
             for (int i = 0; i < documents.size(); i++) {
                 Document doc = documents.get(i);
@@ -119,95 +129,106 @@ public class MultiStageRetrievalService {
     }
 
     /**
-     * 混合檢索：組合向量檢索和關鍵詞檢索
+     * 混合檢索：向量檢索與 BM25 關鍵詞檢索並行執行，再進行排名融合
+     *
+     * 兩路檢索在虛擬線程上同時執行，總耗時約為 max(向量, 關鍵詞) 而非兩者相加；
+     * 兩路共用一個 leg-timeout-ms 截止時間，最壞情況的等待也不超過一次超時；
+     * 超時的一路以 {@link Future#cancel(boolean)} 中斷，不會在截止後繼續佔用執行緒與資料庫連線。
+     * 融合方式由 app.rag.hybrid.fusion 決定：
+     * - rrf：Reciprocal Rank Fusion，分數 = Σ weight / (k + rank)，不受兩路分數尺度差異影響
+     * - weighted：各路分數 min-max 正規化後加權求和
      *
      * @param query 查詢文本
-     * @param keywords 關鍵詞列表
+     * @param keywords 關鍵詞列表（可為空，此時直接使用查詢文本分詞）
      * @param options 查詢選項
-     * @return 候選文檔列表
+     * @return 混合檢索結果（含兩路耗時）
      */
-    public List<ScoredDocument> hybridRetrieval(String query, List<String> keywords, RAGQueryOptions options) {
-        try {
-            log.info("開始混合檢索，查詢: [{}]，關鍵詞: {}", query, keywords);
-
-            // 1. 向量檢索
-            List<ScoredDocument> vectorResults = coarseRetrieval(query, options);
-
-            // 2. 關鍵詞檢索（簡化版：基於內容匹配）
-            List<ScoredDocument> keywordResults = keywordSearch(keywords, options);
-
-            // 3. 合併結果（去重）
-            Map<String, ScoredDocument> mergedResults = vectorResults.stream()
-                    .collect(Collectors.toMap(
-                            doc -> doc.getDocument().getId(),
-                            doc -> doc,
-                            (existing, replacement) -> existing
-                    ));
-
-            // 添加關鍵詞檢索結果
-            for (ScoredDocument keywordDoc : keywordResults) {
-                String docId = keywordDoc.getDocument().getId();
-                if (mergedResults.containsKey(docId)) {
-                    // 已存在，提升分數
-                    ScoredDocument existing = mergedResults.get(docId);
-                    Double boostedScore = (existing.getScore() + keywordDoc.getBm25Score()) / 2;
-                    existing.setScore(boostedScore);
-                } else {
-                    // 新文檔，添加
-                    mergedResults.put(docId, keywordDoc);
-                }
-            }
+    public HybridRetrievalResult hybridRetrieval(String query, List<String> keywords, RAGQueryOptions options) {
+        RAGProperties.Hybrid hybrid = ragProperties.getHybrid();
+        long startTime = System.currentTimeMillis();
 
-            // 4. 按分數排序並限制數量
-            List<ScoredDocument> results = mergedResults.values().stream()
-                    .sorted((a, b) -> Double.compare(b.getScore(), a.getScore()))
-                    .limit(options.getCoarseTopK())
-                    .toList();
+        log.info("開始混合檢索，查詢: [{}]，關鍵詞: {}", query, keywords);
 
-            log.info("混合檢索完成，檢索到 {} 個文檔", results.size());
+        // 1. 兩路檢索並行執行
+        // 以 submit 取得可中斷的 Future（CompletableFuture.cancel 不會中斷執行中的任務）
+        Future<TimedLeg> vectorLeg = retrievalExecutor.submit(
+                () -> TimedLeg.run(() -> coarseRetrieval(query, options)));
+        Future<TimedLeg> lexicalLeg = retrievalExecutor.submit(
+                () -> TimedLeg.run(() -> keywordSearch(query, keywords, options)));
 
-            return results;
+        // 兩路共用同一個截止時間：總等待不超過 legTimeoutMs，而非逐路各等一次
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hybrid.getLegTimeoutMs());
+        TimedLeg vectorResult = awaitLeg(vectorLeg, "向量檢索", deadlineNanos, hybrid.getLegTimeoutMs());
+        TimedLeg lexicalResult = awaitLeg(lexicalLeg, "關鍵詞檢索", deadlineNanos, hybrid.getLegTimeoutMs());
 
-        } catch (Exception e) {
-            log.error("混合檢索失敗", e);
-            return coarseRetrieval(query, options);
-        }
+        // 2. 排名融合
+        String fusion = "weighted".equalsIgnoreCase(hybrid.getFusion()) ? "weighted" : "rrf";
+        List<ScoredDocument> fused = "weighted".equals(fusion) ?
+                weightedFusion(vectorResult.documents(), lexicalResult.documents(), hybrid) :
+                reciprocalRankFusion(vectorResult.documents(), lexicalResult.documents(), hybrid);
+
+        List<ScoredDocument> results = fused.stream()
+                .limit(options.getCoarseTopK())
+                .toList();
+
+        log.info("混合檢索完成，向量: {} 個（{}ms），關鍵詞: {} 個（{}ms），融合（{}）後: {} 個，總耗時: {}ms",
+                vectorResult.documents().size(), vectorResult.latencyMs(),
+                lexicalResult.documents().size(), lexicalResult.latencyMs(),
+                fusion, results.size(), System.currentTimeMillis() - startTime);
+
+        return HybridRetrievalResult.builder()
+                .documents(results)
+                .fusion(fusion)
+                .vectorLatencyMs(vectorResult.latencyMs())
+                .lexicalLatencyMs(lexicalResult.latencyMs())
+                .vectorHits(vectorResult.documents().size())
+                .lexicalHits(lexicalResult.documents().size())
+                .build();
     }
 
     /**
-     * 關鍵詞搜索（簡化版 BM25）
+     * 關鍵詞搜索（BM25 倒排索引）
+     *
+     * 索引只返回文檔 ID 與分數，文檔內容按 ID 從向量庫取回；
+     * 已從向量庫刪除但仍在索引中的命中直接略過。
      *
+     * @param query 查詢文本
      * @param keywords 關鍵詞列表
      * @param options 查詢選項
-     * @return 匹配的文檔列表
+     * @return 匹配的文檔列表（按 BM25 分數降序）
      */
-    private List<ScoredDocument> keywordSearch(List<String> keywords, RAGQueryOptions options) {
+    private List<ScoredDocument> keywordSearch(String query, List<String> keywords, RAGQueryOptions options) {
         try {
-            // 使用 VectorStore 的全文檢索功能（如果支持）
-            // 這裡簡化實現：將關鍵詞組合成查詢字符串
-            String combinedQuery = String.join(" ", keywords);
-
-            SearchRequest searchRequest = SearchRequest.builder()
-                    .query(combinedQuery)
-                    .topK(options.getCoarseTopK() / 2) // 關鍵詞檢索返回一半數量
-                    .similarityThreshold(0.5)
-                    .build();
-
-            List<Document> documents = vectorStore.similaritySearch(searchRequest);
-
-            // 計算 BM25 分數（簡化版：基於關鍵詞匹配數量）
-            return documents.stream()
-                    .map(doc -> {
-                        double bm25Score = calculateSimpleBM25(doc.getText(), keywords);
-
-                        return ScoredDocument.builder()
-                                .document(doc)
-                                .score(bm25Score)
-                                .bm25Score(bm25Score)
-                                .build();
-                    })
-                    .filter(doc -> doc.getBm25Score() > 0.0)
-                    .toList();
+            List<String> terms = new ArrayList<>();
+            terms.add(query);
+            if (keywords != null) {
+                terms.addAll(keywords);
+            }
+
+            List<BM25Index.Hit> hits = bm25Service.search(terms, options.getCoarseTopK());
+            if (hits.isEmpty()) {
+                return List.of();
+            }
+
+            Map<String, Document> documentsById = new HashMap<>();
+            for (Document document : embeddingVectorSearch.findByIds(
+                    hits.stream().map(BM25Index.Hit::docId).toList())) {
+                documentsById.put(document.getId(), document);
+            }
+
+            List<ScoredDocument> results = new ArrayList<>(hits.size());
+            for (BM25Index.Hit hit : hits) {
+                Document document = documentsById.get(hit.docId());
+                if (document == null) {
+                    continue;
+                }
+                results.add(ScoredDocument.builder()
+                        .document(document)
+                        .score(hit.normalizedScore())
+                        .bm25Score(hit.normalizedScore())
+                        .build());
+            }
+            return results;
 
         } catch (Exception e) {
             log.error("關鍵詞搜索失敗", e);
@@ -216,29 +237,132 @@ public class MultiStageRetrievalService {
     }
 
     /**
-     * 計算簡化版 BM25 分數
+     * 等待單路檢索完成（最多等到共用的截止時間），失敗或超時時視為無結果；超時或被中斷時中斷該路任務
+     */
+    private TimedLeg awaitLeg(Future<TimedLeg> leg, String name, long deadlineNanos, long timeoutMs) {
+        try {
+            long remainingNanos = Math.max(0L, deadlineNanos - System.nanoTime());
+            return leg.get(remainingNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            leg.cancel(true);
+            log.warn("{}超時（{}ms），以空結果參與融合", name, timeoutMs);
+            return new TimedLeg(List.of(), timeoutMs);
+        } catch (InterruptedException e) {
+            leg.cancel(true);
+            Thread.currentThread().interrupt();
+            return new TimedLeg(List.of(), 0L);
+        } catch (ExecutionException e) {
+            log.error("{}失敗", name, e.getCause());
+            return new TimedLeg(List.of(), 0L);
+        }
+    }
+
+    /**
+     * Reciprocal Rank Fusion
      *
-     * @param content 文檔內容
-     * @param keywords 關鍵詞列表
-     * @return BM25 分數（0-1）
+     * @param vectorResults 向量檢索結果（按相似度降序）
+     * @param lexicalResults 關鍵詞檢索結果（按 BM25 分數降序）
+     * @param hybrid 混合檢索配置
+     * @return 融合後的文檔列表（按融合分數降序）
      */
-    private double calculateSimpleBM25(String documentContent, List<String> keywords) {
-        if (keywords.isEmpty()) {
-            return 0.0;
+    private List<ScoredDocument> reciprocalRankFusion(List<ScoredDocument> vectorResults,
+                                                      List<ScoredDocument> lexicalResults,
+                                                      RAGProperties.Hybrid hybrid) {
+        Map<String, ScoredDocument> merged = new LinkedHashMap<>();
+        Map<String, Double> fusedScores = new HashMap<>();
+        int k = hybrid.getRrfK();
+
+        for (int rank = 0; rank < vectorResults.size(); rank++) {
+            ScoredDocument doc = vectorResults.get(rank);
+            String docId = doc.getDocument().getId();
+            merged.putIfAbsent(docId, doc);
+            fusedScores.merge(docId, hybrid.getVectorWeight() / (k + rank + 1), Double::sum);
         }
 
-        String lowerContent = documentContent.toLowerCase();
-        int matchCount = 0;
+        for (int rank = 0; rank < lexicalResults.size(); rank++) {
+            ScoredDocument doc = lexicalResults.get(rank);
+            String docId = doc.getDocument().getId();
+            mergeLexical(merged, doc);
+            fusedScores.merge(docId, hybrid.getLexicalWeight() / (k + rank + 1), Double::sum);
+        }
 
-        for (String keyword : keywords) {
-            int termFreq = TextUtil.termFrequency(lowerContent, keyword.toLowerCase());
-            if (termFreq > 0) {
-                matchCount++;
-            }
+        return sortByFusedScore(merged, fusedScores);
+    }
+
+    /**
+     * 加權融合：各路分數 min-max 正規化後加權求和
+     *
+     * @param vectorResults 向量檢索結果
+     * @param lexicalResults 關鍵詞檢索結果
+     * @param hybrid 混合檢索配置
+     * @return 融合後的文檔列表（按融合分數降序）
+     */
+    private List<ScoredDocument> weightedFusion(List<ScoredDocument> vectorResults,
+                                                List<ScoredDocument> lexicalResults,
+                                                RAGProperties.Hybrid hybrid) {
+        Map<String, ScoredDocument> merged = new LinkedHashMap<>();
+        Map<String, Double> fusedScores = new HashMap<>();
+
+        double[] vectorScores = normalizeScores(vectorResults);
+        for (int i = 0; i < vectorResults.size(); i++) {
+            ScoredDocument doc = vectorResults.get(i);
+            String docId = doc.getDocument().getId();
+            merged.putIfAbsent(docId, doc);
+            fusedScores.merge(docId, hybrid.getVectorWeight() * vectorScores[i], Double::sum);
+        }
+
+        double[] lexicalScores = normalizeScores(lexicalResults);
+        for (int i = 0; i < lexicalResults.size(); i++) {
+            ScoredDocument doc = lexicalResults.get(i);
+            String docId = doc.getDocument().getId();
+            mergeLexical(merged, doc);
+            fusedScores.merge(docId, hybrid.getLexicalWeight() * lexicalScores[i], Double::sum);
+        }
+
+        return sortByFusedScore(merged, fusedScores);
+    }
+
+    /**
+     * 合併關鍵詞檢索結果：已存在的文檔補上 BM25 分數，否則新增
+     */
+    private void mergeLexical(Map<String, ScoredDocument> merged, ScoredDocument lexicalDoc) {
+        ScoredDocument existing = merged.putIfAbsent(lexicalDoc.getDocument().getId(), lexicalDoc);
+        if (existing != null) {
+            existing.setBm25Score(lexicalDoc.getBm25Score());
+        }
+    }
+
+    /**
+     * min-max 正規化分數（所有分數相同時皆為 1）
+     */
+    private double[] normalizeScores(List<ScoredDocument> documents) {
+        double[] scores = new double[documents.size()];
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < scores.length; i++) {
+            Double score = documents.get(i).getScore();
+            scores[i] = score != null ? score : 0.0;
+            min = Math.min(min, scores[i]);
+            max = Math.max(max, scores[i]);
         }
+        double range = max - min;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = range > 0 ? (scores[i] - min) / range : 1.0;
+        }
+        return scores;
+    }
 
-        // 簡化評分：匹配關鍵詞的比例
-        return (double) matchCount / keywords.size();
+    /**
+     * 以融合分數作為文檔分數並降序排序
+     */
+    private List<ScoredDocument> sortByFusedScore(Map<String, ScoredDocument> merged,
+                                                  Map<String, Double> fusedScores) {
+        List<ScoredDocument> results = new ArrayList<>(merged.values());
+        for (ScoredDocument doc : results) {
+            doc.setScore(fusedScores.get(doc.getDocument().getId()));
+        }
+        results.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return results;
     }
 
     /**
@@ -249,17 +373,21 @@ public class MultiStageRetrievalService {
      */
     private Double extractSimilarityScore(Document document) {
         try {
+            // 向量庫直接提供的相似度分數
+            if (document.getScore() != null) {
+                return document.getScore();
+            }
+
             // Spring AI VectorStore 會在元數據中存儲 similarity score
             Map<String, Object> metadata = document.getMetadata();
 
-            if (metadata.containsKey("distance")) {
-                // distance 越小表示越相似，需要轉換為相似度分數
-                Double distance = (Double) metadata.get("distance");
-                return 1.0 / (1.0 + distance);
+            if (metadata.get("distance") instanceof Number distance) {
+                // 餘弦距離越小表示越相似，相似度 = 1 - 距離
+                return 1.0 - distance.doubleValue();
             }
 
-            if (metadata.containsKey("score")) {
-                return (Double) metadata.get("score");
+            if (metadata.get("score") instanceof Number score) {
+                return score.doubleValue();
             }
 
             // 默認分數
@@ -293,4 +421,16 @@ public class MultiStageRetrievalService {
 
         return results;
     }
+
+    /**
+     * 單路檢索結果與耗時
+     */
+    private record TimedLeg(List<ScoredDocument> documents, long latencyMs) {
+
+        static TimedLeg run(Supplier<List<ScoredDocument>> leg) {
+            long startTime = System.currentTimeMillis();
+            List<ScoredDocument> documents = leg.get();
+            return new TimedLeg(documents, System.currentTimeMillis() - startTime);
+        }
+    }
 }
@@ -3,17 +3,29 @@ package com.example.advancedrag.service;
 import com.example.advancedrag.dto.SingleEvaluationRequest;
 import com.example.advancedrag.dto.EvaluationResult;
 import com.example.advancedrag.dto.EvaluationReport;
-import lombok.RequiredArgsConstructor;
+import com.example.advancedrag.exception.EvaluationException;
+import com.example.advancedrag.properties.EvaluationProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.RateLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * RAG 評估服務
@@ -25,14 +37,47 @@ import java.util.Map;
  * 3. 答案完整性（Completeness）
  * 4. 答案一致性（Consistency）
  * 5. 檢索質量（Retrieval Quality）
+ *
+ * 批次評估引擎：
+ * - 各案例與案例內的各維度評審在 evaluationExecutor（虛擬線程）上並行執行
+ * - 評審調用以信號量限制並發數、以令牌桶（Guava RateLimiter）限制速率
+ * - 每完成一個案例即可串流返回，並寫入檢查點；以相同 runId 重跑時跳過已完成的案例
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class RAGEvaluationService {
 
     private final ChatClient chatClient;
     private final RAGMetricsService metricsService;
+    private final EvaluationProperties evaluationProperties;
+    private final ExecutorService evaluationExecutor;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 評審調用並發上限
+     */
+    private final Semaphore judgePermits;
+
+    /**
+     * 評審調用速率上限
+     */
+    private final RateLimiter judgeRateLimiter;
+
+    public RAGEvaluationService(ChatClient chatClient,
+                                RAGMetricsService metricsService,
+                                EvaluationProperties evaluationProperties,
+                                @Qualifier("evaluationExecutor") ExecutorService evaluationExecutor,
+                                ObjectMapper objectMapper) {
+        this.chatClient = chatClient;
+        this.metricsService = metricsService;
+        this.evaluationProperties = evaluationProperties;
+        this.evaluationExecutor = evaluationExecutor;
+        this.objectMapper = objectMapper;
+
+        EvaluationProperties.Engine engine = evaluationProperties.getEngine();
+        this.judgePermits = new Semaphore(Math.max(1, engine.getMaxConcurrentJudgeCalls()));
+        this.judgeRateLimiter = RateLimiter.create(engine.getJudgeCallsPerSecond());
+    }
 
     /**
      * 評估 Prompt 模板 - 答案準確性
@@ -134,26 +179,26 @@ public class RAGEvaluationService {
         try {
             log.info("開始評估單個問答對，問題: {}", request.getQuestion());
 
-            // 評估準確性
-            double accuracyScore = evaluateAccuracy(
+            // 三個維度的評審並行執行
+            CompletableFuture<Double> accuracy = judgeAsync(() -> evaluateAccuracy(
                     request.getQuestion(),
                     request.getGroundTruth(),
                     request.getGeneratedAnswer()
-            );
-
-            // 評估相關性
-            double relevanceScore = evaluateRelevance(
+            ));
+            CompletableFuture<Double> relevance = judgeAsync(() -> evaluateRelevance(
                     request.getQuestion(),
                     request.getGeneratedAnswer(),
                     request.getRetrievedContext()
-            );
-
-            // 評估完整性
-            double completenessScore = evaluateCompleteness(
+            ));
+            CompletableFuture<Double> completeness = judgeAsync(() -> evaluateCompleteness(
                     request.getQuestion(),
                     request.getGroundTruth(),
                     request.getGeneratedAnswer()
-            );
+            ));
+
+            double accuracyScore = accuracy.join();
+            double relevanceScore = relevance.join();
+            double completenessScore = completeness.join();
 
             // 計算綜合分數（加權平均）
             double overallScore = (accuracyScore * 0.4) +
@@ -169,6 +214,7 @@ public class RAGEvaluationService {
             metricsService.recordOverallScore(overallScore);
 
             return EvaluationResult.builder()
+                    .testCaseId(request.getTestCaseId())
                     .question(request.getQuestion())
                     .generatedAnswer(request.getGeneratedAnswer())
                     .groundTruth(request.getGroundTruth())
@@ -194,41 +240,149 @@ public class RAGEvaluationService {
      * @return 評估報告
      */
     public EvaluationReport evaluateBatch(List<SingleEvaluationRequest> requests) {
+        return evaluateBatch(null, requests);
+    }
+
+    /**
+     * 批次評估多個問答對（可續跑）
+     *
+     * 所有案例並行評估；指定 runId 時每完成一個案例即寫入檢查點，
+     * 中斷後以相同 runId 重新提交，只評估尚未完成的案例。
+     *
+     * @param runId 評估運行 ID（可選）
+     * @param requests 評估請求列表
+     * @return 評估報告
+     */
+    public EvaluationReport evaluateBatch(String runId, List<SingleEvaluationRequest> requests) {
         long startTime = System.currentTimeMillis();
 
-        log.info("開始批次評估，數量: {}", requests.size());
+        log.info("開始批次評估，數量: {}，runId: {}", requests.size(), runId);
 
         List<EvaluationResult> results = new ArrayList<>();
-        int passedCount = 0;
-        double totalAccuracy = 0.0;
-        double totalRelevance = 0.0;
-        double totalCompleteness = 0.0;
-        double totalOverall = 0.0;
+        try (EvaluationCheckpoint checkpoint = openCheckpoint(runId)) {
+            List<CompletableFuture<EvaluationResult>> futures = startBatch(checkpoint, requests, result -> { });
+
+            for (CompletableFuture<EvaluationResult> future : futures) {
+                try {
+                    results.add(future.join());
+                } catch (CompletionException e) {
+                    // 失敗的案例已在 startBatch 中記錄，不計入報告
+                }
+            }
+        }
 
-        for (SingleEvaluationRequest request : requests) {
+        return buildReport(results, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 串流批次評估：每完成一個案例即推送結果（按完成順序）
+     *
+     * 客戶端斷開後評估仍會完成並寫入檢查點，可稍後以相同 runId 取回。
+     *
+     * @param runId 評估運行 ID（可選）
+     * @param requests 評估請求列表
+     * @return 評估結果流
+     */
+    public Flux<EvaluationResult> evaluateBatchStream(String runId, List<SingleEvaluationRequest> requests) {
+        return Flux.create(sink -> {
+            EvaluationCheckpoint checkpoint;
             try {
-                EvaluationResult result = evaluateSingle(request);
-                results.add(result);
+                checkpoint = openCheckpoint(runId);
+            } catch (EvaluationException e) {
+                sink.error(e);
+                return;
+            }
+
+            log.info("開始串流批次評估，數量: {}，runId: {}", requests.size(), runId);
 
-                if (result.getPassed()) {
-                    passedCount++;
+            CompletableFuture<?>[] futures = startBatch(checkpoint, requests, sink::next).stream()
+                    .map(future -> future.exceptionally(e -> null))
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(futures).whenComplete((ignored, e) -> {
+                if (checkpoint != null) {
+                    checkpoint.close();
                 }
+                sink.complete();
+            });
+        });
+    }
+
+    /**
+     * 啟動批次評估：檢查點中已完成的案例直接返回，其餘案例提交到 evaluationExecutor
+     *
+     * @param checkpoint 檢查點（可為 null）
+     * @param requests 評估請求列表
+     * @param onResult 每完成一個案例的回調
+     * @return 各案例的結果（與請求順序對應；失敗的案例以異常完成）
+     */
+    private List<CompletableFuture<EvaluationResult>> startBatch(EvaluationCheckpoint checkpoint,
+                                                                 List<SingleEvaluationRequest> requests,
+                                                                 Consumer<EvaluationResult> onResult) {
+        List<CompletableFuture<EvaluationResult>> futures = new ArrayList<>(requests.size());
+        int resumed = 0;
+
+        for (int i = 0; i < requests.size(); i++) {
+            SingleEvaluationRequest request = requests.get(i);
+            String key = EvaluationCheckpoint.caseKey(i, request);
+
+            EvaluationResult completed = checkpoint != null ? checkpoint.completed(key) : null;
+            if (completed != null) {
+                resumed++;
+                onResult.accept(completed);
+                futures.add(CompletableFuture.completedFuture(completed));
+                continue;
+            }
+
+            int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> evaluateSingle(request), evaluationExecutor)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("評估第 {} 個問答對失敗", index + 1, e);
+                            return;
+                        }
+                        result.setCaseIndex(index);
+                        if (checkpoint != null) {
+                            checkpoint.append(key, result);
+                        }
+                        onResult.accept(result);
+                    }));
+        }
+
+        if (resumed > 0) {
+            log.info("從檢查點恢復 {} 個已完成案例，待評估: {}", resumed, requests.size() - resumed);
+        }
+        return futures;
+    }
 
-                totalAccuracy += result.getAccuracyScore();
-                totalRelevance += result.getRelevanceScore();
-                totalCompleteness += result.getCompletenessScore();
-                totalOverall += result.getOverallScore();
+    /**
+     * 匯總評估報告
+     *
+     * @param results 評估結果
+     * @param processingTime 處理時間（毫秒）
+     * @return 評估報告
+     */
+    private EvaluationReport buildReport(List<EvaluationResult> results, long processingTime) {
+        int passedCount = 0;
+        double totalAccuracy = 0.0;
+        double totalRelevance = 0.0;
+        double totalCompleteness = 0.0;
+        double totalOverall = 0.0;
 
-            } catch (Exception e) {
-                log.error("評估第 {} 個問答對失敗", results.size() + 1, e);
+        for (EvaluationResult result : results) {
+            if (result.getPassed()) {
+                passedCount++;
             }
+
+            totalAccuracy += result.getAccuracyScore();
+            totalRelevance += result.getRelevanceScore();
+            totalCompleteness += result.getCompletenessScore();
+            totalOverall += result.getOverallScore();
         }
 
         int totalCount = results.size();
         double passRate = totalCount > 0 ? (double) passedCount / totalCount : 0.0;
 
-        long processingTime = System.currentTimeMillis() - startTime;
-
         return EvaluationReport.builder()
                 .totalCount(totalCount)
                 .passedCount(passedCount)
@@ -244,6 +398,47 @@ public class RAGEvaluationService {
                 .build();
     }
 
+    /**
+     * 打開評估檢查點（未指定 runId 時返回 null）
+     */
+    private EvaluationCheckpoint openCheckpoint(String runId) {
+        if (!StringUtils.hasText(runId)) {
+            return null;
+        }
+        return EvaluationCheckpoint.open(evaluationProperties.getEngine().getCheckpointDir(), runId, objectMapper);
+    }
+
+    /**
+     * 在 evaluationExecutor 上執行一個評審維度
+     */
+    private CompletableFuture<Double> judgeAsync(Supplier<Double> judge) {
+        return CompletableFuture.supplyAsync(judge, evaluationExecutor);
+    }
+
+    /**
+     * 調用 LLM 評審（受並發上限與速率限制）
+     *
+     * @param prompt 評審 Prompt
+     * @return LLM 響應
+     */
+    private String callJudge(String prompt) {
+        try {
+            judgePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EvaluationException("JUDGE_INTERRUPTED", "評審調用被中斷");
+        }
+        try {
+            judgeRateLimiter.acquire();
+            return chatClient.prompt()
+                    .user(prompt)
+                    .call()
+                    .content();
+        } finally {
+            judgePermits.release();
+        }
+    }
+
     /**
      * 評估準確性
      *
@@ -260,10 +455,7 @@ public class RAGEvaluationService {
             params.put("groundTruth", groundTruth != null ? groundTruth : "無參考答案");
             params.put("generatedAnswer", generatedAnswer);
 
-            String response = chatClient.prompt()
-                    .user(promptTemplate.create(params).getContents())
-                    .call()
-                    .content();
+            String response = callJudge(promptTemplate.create(params).getContents());
 
             return parseOverallScore(response);
 
@@ -289,10 +481,7 @@ public class RAGEvaluationService {
             params.put("generatedAnswer", generatedAnswer);
             params.put("context", context != null ? context : "無上下文");
 
-            String response = chatClient.prompt()
-                    .user(promptTemplate.create(params).getContents())
-                    .call()
-                    .content();
+            String response = callJudge(promptTemplate.create(params).getContents());
 
             return parseOverallScore(response);
 
@@ -318,10 +507,7 @@ public class RAGEvaluationService {
             params.put("groundTruth", groundTruth != null ? groundTruth : "無參考答案");
             params.put("generatedAnswer", generatedAnswer);
 
-            String response = chatClient.prompt()
-                    .user(promptTemplate.create(params).getContents())
-                    .call()
-                    .content();
+            String response = callJudge(promptTemplate.create(params).getContents());
 
             return parseOverallScore(response);
 
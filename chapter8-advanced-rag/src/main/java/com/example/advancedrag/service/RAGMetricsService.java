@@ -31,12 +31,15 @@ public class RAGMetricsService {
     private final Counter ragQueryFailureCounter;
     private final Counter moderationCounter;
     private final Counter moderationFailedCounter;
+    private final Counter semanticCacheHitCounter;
+    private final Counter semanticCacheMissCounter;
 
     // 計時器
     private final Timer ragQueryTimer;
     private final Timer retrievalTimer;
     private final Timer rerankingTimer;
     private final Timer generationTimer;
+    private final Timer timeToFirstTokenTimer;
     private final Timer evaluationTimer;
 
     // 儀表（Gauge）
@@ -48,6 +51,7 @@ public class RAGMetricsService {
     private final DistributionSummary accuracyScoreDistribution;
     private final DistributionSummary relevanceScoreDistribution;
     private final DistributionSummary overallScoreDistribution;
+    private final DistributionSummary rerankingCandidatesDistribution;
 
     // 緩存統計
     private final ConcurrentHashMap<String, AtomicLong> customMetrics;
@@ -77,6 +81,14 @@ public class RAGMetricsService {
                 .description("內容審核未通過數")
                 .register(meterRegistry);
 
+        this.semanticCacheHitCounter = Counter.builder("rag.semantic.cache.hit")
+                .description("語義答案快取命中數")
+                .register(meterRegistry);
+
+        this.semanticCacheMissCounter = Counter.builder("rag.semantic.cache.miss")
+                .description("語義答案快取未命中數")
+                .register(meterRegistry);
+
         // 初始化計時器
         this.ragQueryTimer = Timer.builder("rag.query.duration")
                 .description("RAG 查詢響應時間")
@@ -98,6 +110,11 @@ public class RAGMetricsService {
                 .publishPercentiles(0.5, 0.95, 0.99)
                 .register(meterRegistry);
 
+        this.timeToFirstTokenTimer = Timer.builder("rag.generation.ttft")
+                .description("串流查詢首個答案片段延遲（Time To First Token）")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+
         this.evaluationTimer = Timer.builder("rag.evaluation.duration")
                 .description("評估時間")
                 .publishPercentiles(0.5, 0.95, 0.99)
@@ -119,6 +136,10 @@ public class RAGMetricsService {
                 .description("平均每次查詢檢索文檔數")
                 .register(meterRegistry);
 
+        Gauge.builder("rag.semantic.cache.hit.rate", this, RAGMetricsService::getSemanticCacheHitRate)
+                .description("語義答案快取命中率（%）")
+                .register(meterRegistry);
+
         // 初始化分布摘要
         this.accuracyScoreDistribution = DistributionSummary.builder("rag.evaluation.accuracy")
                 .description("準確性評分分布")
@@ -138,6 +159,12 @@ public class RAGMetricsService {
                 .publishPercentiles(0.5, 0.95, 0.99)
                 .register(meterRegistry);
 
+        this.rerankingCandidatesDistribution = DistributionSummary.builder("rag.reranking.candidates")
+                .description("Re-ranking 候選文檔數分布")
+                .baseUnit("documents")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+
         log.info("RAG 指標服務初始化完成");
     }
 
@@ -213,6 +240,15 @@ public class RAGMetricsService {
         rerankingTimer.record(durationMs, java.util.concurrent.TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * 記錄 Re-ranking 候選文檔數
+     *
+     * @param count 候選文檔數
+     */
+    public void recordRerankingCandidates(int count) {
+        rerankingCandidatesDistribution.record(count);
+    }
+
     // ========== 生成指標 ==========
 
     /**
@@ -224,6 +260,15 @@ public class RAGMetricsService {
         generationTimer.record(durationMs, java.util.concurrent.TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * 記錄串流查詢首個答案片段延遲（自查詢開始計算）
+     *
+     * @param durationMs 延遲（毫秒）
+     */
+    public void recordTimeToFirstToken(long durationMs) {
+        timeToFirstTokenTimer.record(durationMs, java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
     // ========== 內容審核指標 ==========
 
     /**
@@ -240,6 +285,22 @@ public class RAGMetricsService {
         moderationFailedCounter.increment();
     }
 
+    // ========== 語義快取指標 ==========
+
+    /**
+     * 記錄語義答案快取命中
+     */
+    public void recordSemanticCacheHit() {
+        semanticCacheHitCounter.increment();
+    }
+
+    /**
+     * 記錄語義答案快取未命中
+     */
+    public void recordSemanticCacheMiss() {
+        semanticCacheMissCounter.increment();
+    }
+
     // ========== 評估指標 ==========
 
     /**
@@ -346,6 +407,17 @@ public class RAGMetricsService {
         return (getSuccessQueries() / total) * 100;
     }
 
+    /**
+     * 獲取語義答案快取命中率
+     */
+    public double getSemanticCacheHitRate() {
+        double total = semanticCacheHitCounter.count() + semanticCacheMissCounter.count();
+        if (total == 0) {
+            return 0.0;
+        }
+        return (semanticCacheHitCounter.count() / total) * 100;
+    }
+
     /**
      * 獲取當前活躍查詢數
      */
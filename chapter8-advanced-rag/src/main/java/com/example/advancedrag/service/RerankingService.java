@@ -1,21 +1,25 @@
 package com.example.advancedrag.service;
 
+import com.example.advancedrag.exception.AdvancedRAGException;
+import com.example.advancedrag.model.DocumentFeatures;
 import com.example.advancedrag.model.RAGQueryOptions;
 import com.example.advancedrag.model.RerankingCandidate;
 import com.example.advancedrag.model.ScoredDocument;
 import com.example.advancedrag.properties.RAGProperties;
 import com.example.advancedrag.util.TextUtil;
+import com.example.advancedrag.util.TopKSelector;
 import com.example.advancedrag.util.VectorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Re-ranking 服務
@@ -26,6 +30,10 @@ import java.util.Map;
  * - 文檔品質（20%）：基於文檔元數據和內容品質
  * - 新鮮度（10%）：基於文檔時間戳
  *
+ * 候選文檔數達到 parallel-threshold 時，按 parallel-chunk-size 分塊提交到專用的
+ * rerankingExecutor 並行評分；每個候選只寫入自身的分數，BM25 評分只讀取索引（不寫入、不持寫鎖），
+ * 因此結果與順序評分完全一致。
+ *
  * @deprecated 此服務已過時，建議使用 Spring AI 1.0.3 的 Advisor 模式進行 Re-ranking。
  *             新的實現方式：
  *             <ul>
@@ -50,6 +58,9 @@ public class RerankingService {
 
     private final RAGProperties ragProperties;
     private final SmartEmbeddingService embeddingService;
+    private final BM25Service bm25Service;
+    private final RAGMetricsService metricsService;
+    private final ExecutorService rerankingExecutor;
 
     /**
      * Re-rank 候選文檔
@@ -71,27 +82,26 @@ public class RerankingService {
             // 2. 提取查詢關鍵詞
             List<String> queryKeywords = extractKeywords(query);
 
-            // 3. 計算多維度分數
-            for (RerankingCandidate candidate : rerankingCandidates) {
-                calculateMultiFactorScore(candidate, query, queryKeywords);
-            }
+            // 3. 計算多維度分數（大候選集分塊並行）
+            metricsService.recordRerankingCandidates(rerankingCandidates.size());
+            scoreCandidates(rerankingCandidates, query, queryKeywords);
 
-            // 4. 按最終分數排序
-            rerankingCandidates.sort((a, b) ->
-                    Double.compare(b.getFinalScore(), a.getFinalScore())
-            );
+            // 4. 以有界堆選出最終分數最高的 finalTopK 個（不對全部候選排序）
+            double[] finalScores = new double[rerankingCandidates.size()];
+            for (int i = 0; i < finalScores.length; i++) {
+                finalScores[i] = rerankingCandidates.get(i).getFinalScore();
+            }
+            int[] topIndices = TopKSelector.select(finalScores, options.getFinalTopK());
 
             // 5. 分配排名
-            for (int i = 0; i < rerankingCandidates.size(); i++) {
-                rerankingCandidates.get(i).setRank(i + 1);
+            List<RerankingCandidate> topCandidates = new ArrayList<>(topIndices.length);
+            for (int rank = 0; rank < topIndices.length; rank++) {
+                RerankingCandidate candidate = rerankingCandidates.get(topIndices[rank]);
+                candidate.setRank(rank + 1);
+                topCandidates.add(candidate);
             }
 
-            // 6. 限制返回數量
-            List<RerankingCandidate> topCandidates = rerankingCandidates.stream()
-                    .limit(options.getFinalTopK())
-                    .toList();
-
-            // 7. 轉換回 ScoredDocument
+            // 6. 轉換回 ScoredDocument
             List<ScoredDocument> rerankedDocs = convertToScoredDocuments(topCandidates);
 
             long processingTime = System.currentTimeMillis() - startTime;
@@ -108,15 +118,64 @@ public class RerankingService {
         }
     }
 
+    /**
+     * 計算所有候選文檔的分數
+     *
+     * 低於並行閾值時順序評分；否則分塊提交到 rerankingExecutor，等待全部分塊完成。
+     * 同一次評分使用相同的當前時間，保證順序與並行結果一致。
+     *
+     * @param candidates 候選文檔
+     * @param query 查詢文本
+     * @param queryKeywords 查詢關鍵詞
+     */
+    private void scoreCandidates(List<RerankingCandidate> candidates, String query,
+                                 List<String> queryKeywords) {
+        RAGProperties.Reranking config = ragProperties.getReranking();
+        long now = Instant.now().getEpochSecond();
+        int chunkSize = Math.max(1, config.getParallelChunkSize());
+
+        if (candidates.size() < config.getParallelThreshold() || candidates.size() <= chunkSize) {
+            for (RerankingCandidate candidate : candidates) {
+                calculateMultiFactorScore(candidate, query, queryKeywords, now);
+            }
+            return;
+        }
+
+        List<Future<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < candidates.size(); from += chunkSize) {
+            List<RerankingCandidate> chunk = candidates.subList(from, Math.min(from + chunkSize, candidates.size()));
+            chunks.add(rerankingExecutor.submit(() -> {
+                for (RerankingCandidate candidate : chunk) {
+                    calculateMultiFactorScore(candidate, query, queryKeywords, now);
+                }
+            }));
+        }
+        log.debug("並行評分 {} 個候選文檔，分為 {} 塊", candidates.size(), chunks.size());
+
+        try {
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw new AdvancedRAGException("RERANKING_INTERRUPTED", "Re-ranking 評分被中斷", e);
+        } catch (ExecutionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw new AdvancedRAGException("RERANKING_FAILED", "Re-ranking 評分失敗: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
     /**
      * 計算多因子分數
      *
      * @param candidate 候選文檔
      * @param query 查詢文本
      * @param queryKeywords 查詢關鍵詞
+     * @param now 當前時間（epoch 秒）
      */
     private void calculateMultiFactorScore(RerankingCandidate candidate, String query,
-                                           List<String> queryKeywords) {
+                                           List<String> queryKeywords, long now) {
         Document doc = candidate.getDocument();
 
         // 1. 語義相似度分數（40%）
@@ -125,15 +184,16 @@ public class RerankingService {
         candidate.setSemanticScore(semanticScore);
 
         // 2. BM25 分數（30%）
-        double bm25Score = calculateBM25Score(doc.getText(), query, queryKeywords);
+        double bm25Score = bm25Service.calculateBM25Score(doc, query, queryKeywords);
         candidate.setBm25Score(bm25Score);
 
-        // 3. 文檔品質分數（20%）
-        double qualityScore = calculateQualityScore(doc);
+        // 3. 文檔品質分數（20%，寫入時預計算的特徵）
+        DocumentFeatures features = DocumentFeatures.of(doc);
+        double qualityScore = features.qualityScore();
         candidate.setQualityScore(qualityScore);
 
         // 4. 新鮮度分數（10%）
-        double freshnessScore = calculateFreshnessScore(doc);
+        double freshnessScore = features.freshnessScore(now);
         candidate.setFreshnessScore(freshnessScore);
 
         // 5. 計算最終綜合分數
@@ -149,169 +209,6 @@ public class RerankingService {
                 candidate.getFinalScore());
     }
 
-    /**
-     * 計算 BM25 分數（關鍵詞匹配）
-     *
-     * @param content 文檔內容
-     * @param query 查詢文本
-     * @param keywords 關鍵詞列表
-     * @return BM25 分數（0-1）
-     */
-    private double calculateBM25Score(String content, String query, List<String> keywords) {
-        if (keywords.isEmpty()) {
-            return 0.5; // 無關鍵詞時返回中等分數
-        }
-
-        String lowerContent = content.toLowerCase();
-        String lowerQuery = query.toLowerCase();
-
-        // 簡化版 BM25：基於關鍵詞匹配和詞頻
-        double score = 0.0;
-        int totalMatches = 0;
-
-        for (String keyword : keywords) {
-            String lowerKeyword = keyword.toLowerCase();
-            int termFreq = TextUtil.termFrequency(lowerContent, lowerKeyword);
-
-            if (termFreq > 0) {
-                totalMatches++;
-
-                // TF 部分（詞頻）
-                double tf = (double) termFreq / (termFreq + 1.0); // 飽和函數
-                score += tf;
-            }
-        }
-
-        // 正規化分數
-        if (!keywords.isEmpty()) {
-            score = score / keywords.size();
-        }
-
-        // 額外加分：查詢完整匹配
-        if (lowerContent.contains(lowerQuery)) {
-            score = Math.min(1.0, score + 0.2);
-        }
-
-        return Math.min(1.0, score);
-    }
-
-    /**
-     * 計算文檔品質分數
-     *
-     * @param doc 文檔
-     * @return 品質分數（0-1）
-     */
-    private double calculateQualityScore(Document doc) {
-        double score = 0.5; // 基礎分數
-
-        String content = doc.getText();
-        Map<String, Object> metadata = doc.getMetadata();
-
-        // 因素1：內容長度（適中為好）
-        int length = content.length();
-        if (length >= 200 && length <= 2000) {
-            score += 0.2;
-        } else if (length > 2000 && length <= 5000) {
-            score += 0.1;
-        }
-
-        // 因素2：內容結構性（檢查是否有標點、段落等）
-        long punctuationCount = content.chars()
-                .filter(c -> ",.!?;:，。！？；：".indexOf(c) >= 0)
-                .count();
-        if (punctuationCount > 5) {
-            score += 0.1;
-        }
-
-        // 因素3：元數據豐富度
-        if (metadata.containsKey("title") && metadata.get("title") != null) {
-            score += 0.1;
-        }
-        if (metadata.containsKey("author") && metadata.get("author") != null) {
-            score += 0.05;
-        }
-        if (metadata.containsKey("source") && metadata.get("source") != null) {
-            score += 0.05;
-        }
-
-        return Math.min(1.0, score);
-    }
-
-    /**
-     * 計算新鮮度分數
-     *
-     * @param doc 文檔
-     * @return 新鮮度分數（0-1）
-     */
-    private double calculateFreshnessScore(Document doc) {
-        Map<String, Object> metadata = doc.getMetadata();
-
-        // 嘗試從元數據中獲取時間戳
-        Object createdAtObj = metadata.get("created_at");
-        Object updatedAtObj = metadata.get("updated_at");
-        Object timestampObj = metadata.get("timestamp");
-
-        LocalDateTime documentTime = null;
-
-        // 解析時間戳
-        if (updatedAtObj != null) {
-            documentTime = parseTimestamp(updatedAtObj);
-        } else if (createdAtObj != null) {
-            documentTime = parseTimestamp(createdAtObj);
-        } else if (timestampObj != null) {
-            documentTime = parseTimestamp(timestampObj);
-        }
-
-        // 沒有時間信息，返回中等分數
-        if (documentTime == null) {
-            return 0.7;
-        }
-
-        // 計算時間差（天數）
-        LocalDateTime now = LocalDateTime.now();
-        long daysDiff = ChronoUnit.DAYS.between(documentTime, now);
-
-        // 新鮮度評分規則
-        if (daysDiff <= 7) {
-            return 1.0; // 一週內：最高分
-        } else if (daysDiff <= 30) {
-            return 0.9; // 一個月內：高分
-        } else if (daysDiff <= 90) {
-            return 0.8; // 三個月內：較高分
-        } else if (daysDiff <= 180) {
-            return 0.7; // 半年內：中等分
-        } else if (daysDiff <= 365) {
-            return 0.6; // 一年內：較低分
-        } else {
-            return 0.5; // 超過一年：基礎分
-        }
-    }
-
-    /**
-     * 解析時間戳
-     *
-     * @param timestampObj 時間戳對象
-     * @return LocalDateTime
-     */
-    private LocalDateTime parseTimestamp(Object timestampObj) {
-        try {
-            if (timestampObj instanceof LocalDateTime) {
-                return (LocalDateTime) timestampObj;
-            } else if (timestampObj instanceof String) {
-                return LocalDateTime.parse((String) timestampObj);
-            } else if (timestampObj instanceof Long) {
-                // Unix 時間戳（秒）
-                long timestamp = (Long) timestampObj;
-                return LocalDateTime.ofEpochSecond(timestamp, 0,
-                        java.time.ZoneOffset.systemDefault().getRules().getOffset(
-                                java.time.Instant.ofEpochSecond(timestamp)));
-            }
-        } catch (Exception e) {
-            log.debug("時間戳解析失敗: {}", timestampObj, e);
-        }
-        return null;
-    }
-
     /**
      * 提取查詢關鍵詞（簡化版）
      *
@@ -1,5 +1,7 @@
 package com.example.advancedrag.service;
 
+import com.example.advancedrag.cache.EmbeddingCacheStore;
+import com.example.advancedrag.cache.TwoLevelCache;
 import com.example.advancedrag.model.EmbeddingContext;
 import com.example.advancedrag.model.ModelStats;
 import com.example.advancedrag.model.PreprocessingOptions;
@@ -8,16 +10,27 @@ import com.example.advancedrag.util.CacheKeyGenerator;
 import com.example.advancedrag.util.TextUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.Embedding;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingRequest;
 import org.springframework.ai.embedding.EmbeddingResponse;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * 智能 Embedding 管理服務
@@ -25,8 +38,8 @@ import java.util.concurrent.ConcurrentHashMap;
  * 功能：
  * 1. 智能模型選擇（基於上下文自動選擇最佳模型）
  * 2. 文本預處理（清理、標準化）
- * 3. Embedding 快取（Redis）
- * 4. 批次處理優化
+ * 3. Embedding 快取（Redis，float[] 二進位編碼）
+ * 4. 批次處理優化（快取批次讀寫 + 按 token 預算合併請求）
  * 5. 性能統計收集
  */
 @Slf4j
@@ -34,8 +47,21 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class SmartEmbeddingService {
 
+    /**
+     * Embedding 快取名稱
+     */
+    public static final String EMBEDDING_CACHE = "embeddings";
+
     private final EmbeddingModel embeddingModel;
     private final EmbeddingProperties embeddingProperties;
+    private final CacheManager cacheManager;
+    private final EmbeddingCacheStore embeddingCacheStore;
+    private final EmbeddingCoalescer embeddingCoalescer;
+
+    /**
+     * Token 數估算（用於批次打包）
+     */
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
 
     /**
      * 模型統計數據（內存存儲）
@@ -49,65 +75,298 @@ public class SmartEmbeddingService {
      * @param context Embedding 上下文
      * @return Embedding 向量
      */
-    public List<Double> generateEmbedding(String text, EmbeddingContext context) {
-        long startTime = System.currentTimeMillis();
-
+    public float[] generateEmbedding(String text, EmbeddingContext context) {
         // 1. 文本預處理
         String processedText = preprocessText(text, PreprocessingOptions.defaultOptions());
 
-        // 2. 檢查快取
-        String cacheKey = CacheKeyGenerator.generateEmbeddingKey(
-                processedText,
-                embeddingProperties.getPrimaryModel(),
-                embeddingProperties.getDefaultDimensions()
-        );
-
-        // 3. 生成 Embedding（帶快取）
-        List<Double> embedding = generateEmbeddingWithCache(processedText, context);
-
-        // 4. 記錄統計
-        long processingTime = System.currentTimeMillis() - startTime;
-        recordStats(embeddingProperties.getPrimaryModel(), processingTime, text.length(), true);
-
-        log.debug("生成 Embedding 完成，耗時: {}ms，文本長度: {}", processingTime, text.length());
-
-        return embedding;
+        // 2. 生成 Embedding（帶快取）
+        return generateEmbeddingWithCache(processedText, context);
     }
 
     /**
      * 批次生成 Embedding
      *
+     * 1. 所有文本的快取鍵先查 L1，L1 未命中的鍵以一次 MGET 查詢 Redis
+     * 2. 未命中的文本按 token 預算打包成少量 EmbeddingRequest，以有限並行度發送
+     * 3. 新生成的 Embedding 寫入 L1，以管線化一次寫回 Redis 並廣播 L1 失效
+     *
      * @param texts 文本列表
      * @param context Embedding 上下文
-     * @return Embedding 向量列表
+     * @return Embedding 向量列表（與輸入順序一致）
      */
-    public List<List<Double>> generateEmbeddings(List<String> texts, EmbeddingContext context) {
+    public List<float[]> generateEmbeddings(List<String> texts, EmbeddingContext context) {
         long startTime = System.currentTimeMillis();
 
         log.info("開始批次生成 Embedding，數量: {}", texts.size());
 
-        // 使用並行流處理批次請求（提升性能）
-        List<List<Double>> embeddings = texts.parallelStream()
-                .map(text -> generateEmbedding(text, context))
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+
+        // 1. 預處理並計算快取鍵（相同文本只處理一次）
+        List<String> keys = new ArrayList<>(texts.size());
+        Map<String, String> textByKey = new LinkedHashMap<>();
+        for (String text : texts) {
+            String processedText = preprocessText(text, PreprocessingOptions.defaultOptions());
+            String key = CacheKeyGenerator.generateEmbeddingKey(
+                    processedText,
+                    embeddingProperties.getPrimaryModel(),
+                    embeddingProperties.getDefaultDimensions()
+            );
+            keys.add(key);
+            textByKey.putIfAbsent(key, processedText);
+        }
+
+        // 2. 批次查詢快取（L1 未命中的鍵以一次 MGET 查詢 Redis）
+        Cache cache = embeddingCache();
+        Map<String, float[]> embeddingByKey = getCachedEmbeddings(cache, new ArrayList<>(textByKey.keySet()));
+        int cacheHits = embeddingByKey.size();
+
+        // 3. 未命中的文本打包成批次請求
+        List<String> missingKeys = textByKey.keySet().stream()
+                .filter(key -> !embeddingByKey.containsKey(key))
                 .toList();
+        List<List<String>> batches = packBatches(missingKeys, textByKey);
+        Map<String, float[]> generated = embedBatches(batches, textByKey);
+        embeddingByKey.putAll(generated);
+
+        // 4. 管線化寫回快取
+        putCachedEmbeddings(cache, generated);
+
+        List<float[]> embeddings = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            float[] embedding = embeddingByKey.get(key);
+            if (embedding == null) {
+                log.error("批次 Embedding 結果缺失，快取鍵: {}", key);
+                throw new RuntimeException("批次 Embedding 結果缺失: " + key);
+            }
+            embeddings.add(embedding);
+        }
 
         long processingTime = System.currentTimeMillis() - startTime;
-        log.info("批次生成 Embedding 完成，數量: {}，總耗時: {}ms，平均: {}ms",
-                texts.size(), processingTime, processingTime / texts.size());
+        log.info("批次生成 Embedding 完成，數量: {}，快取命中: {}，API 請求: {} 次，總耗時: {}ms",
+                texts.size(), cacheHits, batches.size(), processingTime);
 
         return embeddings;
     }
 
+    /**
+     * 批次讀取 Embedding 快取
+     *
+     * 兩級快取先查 Caffeine L1，只有 L1 未命中的鍵才查詢 Redis 並回填 L1，
+     * 與單筆路徑看到相同的快取狀態；未配置 L1 時直接批次讀取 Redis。
+     *
+     * @param cache embeddings 快取（停用時為 null）
+     * @param keys 快取鍵列表
+     * @return 命中的快取（鍵 → Embedding）
+     */
+    private Map<String, float[]> getCachedEmbeddings(Cache cache, List<String> keys) {
+        Map<String, float[]> hits = new HashMap<>();
+        if (cache == null) {
+            return hits;
+        }
+
+        Map<Object, Object> values = cache instanceof TwoLevelCache twoLevelCache ?
+                twoLevelCache.getAll(keys) : embeddingCacheStore.getAll(keys);
+        values.forEach((key, value) -> {
+            if (value instanceof float[] embedding && embedding.length > 0) {
+                hits.put((String) key, embedding);
+            }
+        });
+        return hits;
+    }
+
+    /**
+     * 批次寫回 Embedding 快取（兩級快取同時寫入 L1 並廣播失效）
+     *
+     * @param cache embeddings 快取（停用時為 null）
+     * @param embeddings 快取鍵 → Embedding
+     */
+    private void putCachedEmbeddings(Cache cache, Map<String, float[]> embeddings) {
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            twoLevelCache.putAll(embeddings);
+        } else if (cache != null) {
+            embeddingCacheStore.putAll(embeddings);
+        }
+    }
+
+    /**
+     * 按 token 預算與文本數上限將文本打包成批次
+     *
+     * @param keys 待生成的快取鍵
+     * @param textByKey 快取鍵 → 文本
+     * @return 批次列表（每批為快取鍵列表）
+     */
+    private List<List<String>> packBatches(List<String> keys, Map<String, String> textByKey) {
+        EmbeddingProperties.Batch batchConfig = embeddingProperties.getBatch();
+        List<List<String>> batches = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int currentTokens = 0;
+
+        for (String key : keys) {
+            int tokens = tokenCountEstimator.estimate(textByKey.get(key));
+            boolean overBudget = currentTokens + tokens > batchConfig.getMaxTokensPerRequest();
+            boolean overSize = current.size() >= batchConfig.getMaxTextsPerRequest();
+            if (!current.isEmpty() && (overBudget || overSize)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(key);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+
+        return batches;
+    }
+
+    /**
+     * 以有限並行度發送批次 EmbeddingRequest
+     *
+     * @param batches 批次列表
+     * @param textByKey 快取鍵 → 文本
+     * @return 快取鍵 → Embedding
+     */
+    private Map<String, float[]> embedBatches(List<List<String>> batches, Map<String, String> textByKey) {
+        Map<String, float[]> results = new ConcurrentHashMap<>();
+        if (batches.isEmpty()) {
+            return results;
+        }
+
+        Semaphore permits = new Semaphore(embeddingProperties.getBatch().getMaxConcurrentRequests());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(batches.size());
+            for (List<String> batch : batches) {
+                futures.add(executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        embedBatch(batch, textByKey, results);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("批次 Embedding 生成被中斷", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("批次 Embedding 生成失敗: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        return results;
+    }
+
+    /**
+     * 發送單個批次請求
+     *
+     * 模型返回的向量數、索引與輸入不一致時整批視為失敗，不寫入任何結果。
+     *
+     * @param batch 快取鍵列表
+     * @param textByKey 快取鍵 → 文本
+     * @param results 結果收集
+     */
+    private void embedBatch(List<String> batch, Map<String, String> textByKey, Map<String, float[]> results) {
+        long startTime = System.currentTimeMillis();
+        List<String> batchTexts = batch.stream().map(textByKey::get).toList();
+        int totalLength = batchTexts.stream().mapToInt(String::length).sum();
+
+        try {
+            EmbeddingResponse response = embeddingModel.call(new EmbeddingRequest(batchTexts, null));
+            List<Embedding> outputs = response.getResults();
+            if (outputs.size() != batch.size()) {
+                log.error("Embedding 模型返回數量不符，輸入: {}，輸出: {}", batch.size(), outputs.size());
+                throw new RuntimeException("Embedding 模型返回數量不符，輸入: " + batch.size()
+                        + "，輸出: " + outputs.size());
+            }
+
+            float[][] embeddings = new float[batch.size()][];
+            for (int i = 0; i < outputs.size(); i++) {
+                Embedding output = outputs.get(i);
+                int index = output.getIndex() != null ? output.getIndex() : i;
+                if (index < 0 || index >= batch.size() || embeddings[index] != null
+                        || output.getOutput() == null || output.getOutput().length == 0) {
+                    log.error("Embedding 模型返回無效結果，位置: {}，索引: {}", i, index);
+                    throw new RuntimeException("Embedding 模型返回無效結果，索引: " + index);
+                }
+                embeddings[index] = output.getOutput();
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                results.put(batch.get(i), embeddings[i]);
+            }
+
+            recordStats(embeddingProperties.getPrimaryModel(), System.currentTimeMillis() - startTime,
+                    totalLength, true, false);
+        } catch (Exception e) {
+            recordStats(embeddingProperties.getPrimaryModel(), 0, totalLength, false, false);
+            throw e;
+        }
+    }
+
     /**
      * 生成 Embedding（帶快取）
      *
+     * 直接操作 embeddings 快取（而非 @Cacheable），確保類內呼叫同樣會命中快取；
+     * 快取命中時不呼叫 Embedding API。
+     *
      * @param text 文本
      * @param context Embedding 上下文
      * @return Embedding 向量
      */
-    @Cacheable(value = "embeddings", key = "#text", unless = "#result == null")
-    public List<Double> generateEmbeddingWithCache(String text, EmbeddingContext context) {
+    public float[] generateEmbeddingWithCache(String text, EmbeddingContext context) {
+        long startTime = System.currentTimeMillis();
+
+        // 1. 檢查快取
+        Cache cache = embeddingCache();
+        String cacheKey = cache != null ? CacheKeyGenerator.generateEmbeddingKey(
+                text,
+                embeddingProperties.getPrimaryModel(),
+                embeddingProperties.getDefaultDimensions()
+        ) : null;
+
+        if (cache != null) {
+            float[] cached = cache.get(cacheKey, float[].class);
+            if (cached != null && cached.length > 0) {
+                long processingTime = System.currentTimeMillis() - startTime;
+                recordStats(embeddingProperties.getPrimaryModel(), processingTime, text.length(), true, true);
+                log.debug("Embedding 快取命中，耗時: {}ms，文本長度: {}", processingTime, text.length());
+                return cached;
+            }
+        }
+
+        // 2. 呼叫 EmbeddingModel
+        float[] embedding = callEmbeddingModel(text);
+
+        // 3. 寫回快取
+        if (cache != null && embedding.length > 0) {
+            cache.put(cacheKey, embedding);
+        }
+
+        long processingTime = System.currentTimeMillis() - startTime;
+        recordStats(embeddingProperties.getPrimaryModel(), processingTime, text.length(), true, false);
+        log.debug("生成 Embedding 完成，耗時: {}ms，文本長度: {}", processingTime, text.length());
+
+        return embedding;
+    }
+
+    /**
+     * 呼叫 EmbeddingModel 生成 Embedding
+     *
+     * @param text 文本
+     * @return Embedding 向量
+     */
+    private float[] callEmbeddingModel(String text) {
         try {
+            // 並發的單文本請求經合併器批次發送
+            if (Boolean.TRUE.equals(embeddingProperties.getCoalescing().getEnabled())) {
+                return embeddingCoalescer.embed(text);
+            }
+
             // 使用 Spring AI EmbeddingModel 生成 Embedding
             EmbeddingResponse response = embeddingModel.call(
                     new EmbeddingRequest(List.of(text), null)
@@ -115,25 +374,30 @@ public class SmartEmbeddingService {
 
             if (response.getResults().isEmpty()) {
                 log.error("Embedding 生成失敗：無結果返回");
-                return List.of();
-            }
-
-            // 轉換 float[] 為 List<Double>
-            float[] floatArray = response.getResults().get(0).getOutput();
-            List<Double> doubleList = new ArrayList<>();
-            for (float f : floatArray) {
-                doubleList.add((double) f);
+                return new float[0];
             }
 
-            return doubleList;
+            return response.getResults().get(0).getOutput();
 
         } catch (Exception e) {
             log.error("Embedding 生成失敗", e);
-            recordStats(embeddingProperties.getPrimaryModel(), 0, text.length(), false);
+            recordStats(embeddingProperties.getPrimaryModel(), 0, text.length(), false, false);
             throw new RuntimeException("Embedding 生成失敗: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 獲取 embeddings 快取（未啟用快取時返回 null）
+     *
+     * @return 快取實例
+     */
+    private Cache embeddingCache() {
+        if (!Boolean.TRUE.equals(embeddingProperties.getEnableCache())) {
+            return null;
+        }
+        return cacheManager.getCache(EMBEDDING_CACHE);
+    }
+
     /**
      * 文本預處理
      *
@@ -209,8 +473,10 @@ public class SmartEmbeddingService {
      * @param processingTime 處理時間（毫秒）
      * @param textLength 文本長度
      * @param success 是否成功
+     * @param fromCache 是否命中快取
      */
-    private void recordStats(String modelName, long processingTime, int textLength, boolean success) {
+    private void recordStats(String modelName, long processingTime, int textLength,
+                             boolean success, boolean fromCache) {
         ModelStats stats = modelStatsMap.computeIfAbsent(modelName, k ->
                 ModelStats.builder()
                         .modelName(modelName)
@@ -220,7 +486,7 @@ public class SmartEmbeddingService {
         if (success) {
             // 估算 token 數量（簡單估算：字符數 / 4）
             int estimatedTokens = textLength / 4;
-            stats.recordSuccess(processingTime, textLength, estimatedTokens, false);
+            stats.recordSuccess(processingTime, textLength, estimatedTokens, fromCache);
         } else {
             stats.recordFailure();
         }
@@ -0,0 +1,213 @@
+package com.example.advancedrag.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aho-Corasick 多模式匹配自動機（不區分大小寫）
+ *
+ * 編譯後不可變，可在多線程間共享；詞庫變更時重新編譯並整體替換。
+ * 掃描文本只需一次線性遍歷，與詞數無關：
+ * - {@link #findAll(String)}：返回文本中出現的所有模式
+ * - {@link #next(int, char)} / {@link #outputs(int)}：逐字元推進，供調用方在同一次遍歷中合併其他統計
+ *
+ * 每個狀態的轉移以排序的字元陣列儲存（二分查找），失敗轉移在編譯時預先展開到輸出集合。
+ */
+public final class AhoCorasick {
+
+    /**
+     * 初始狀態
+     */
+    public static final int ROOT = 0;
+
+    private static final int[] NO_OUTPUTS = new int[0];
+
+    private final String[] patterns;
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    private final int[] failure;
+    private final int[][] outputs;
+
+    private AhoCorasick(String[] patterns, char[][] transitionChars, int[][] transitionTargets,
+                        int[] failure, int[][] outputs) {
+        this.patterns = patterns;
+        this.transitionChars = transitionChars;
+        this.transitionTargets = transitionTargets;
+        this.failure = failure;
+        this.outputs = outputs;
+    }
+
+    /**
+     * 編譯模式集合（忽略空白模式，重複模式只保留一個）
+     *
+     * @param words 模式集合
+     * @return 自動機
+     */
+    public static AhoCorasick compile(Collection<String> words) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String word : words) {
+            if (word != null && !word.isBlank()) {
+                unique.add(word.trim());
+            }
+        }
+        String[] patterns = unique.toArray(new String[0]);
+
+        // 1. 建立 Trie（暫以 Map 儲存轉移）
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> terminal = new ArrayList<>();
+        trie.add(new HashMap<>());
+        terminal.add(new ArrayList<>());
+        for (int p = 0; p < patterns.length; p++) {
+            String pattern = patterns[p];
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = Character.toLowerCase(pattern.charAt(i));
+                Integer target = trie.get(state).get(c);
+                if (target == null) {
+                    target = trie.size();
+                    trie.get(state).put(c, target);
+                    trie.add(new HashMap<>());
+                    terminal.add(new ArrayList<>());
+                }
+                state = target;
+            }
+            terminal.get(state).add(p);
+        }
+
+        // 2. 轉為排序陣列
+        int size = trie.size();
+        char[][] transitionChars = new char[size][];
+        int[][] transitionTargets = new int[size][];
+        for (int state = 0; state < size; state++) {
+            Character[] keys = trie.get(state).keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            transitionChars[state] = new char[keys.length];
+            transitionTargets[state] = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                transitionChars[state][i] = keys[i];
+                transitionTargets[state][i] = trie.get(state).get(keys[i]);
+            }
+        }
+
+        // 3. BFS 計算失敗轉移，並合併後綴狀態的輸出
+        int[] failure = new int[size];
+        int[][] outputs = new int[size][];
+        outputs[ROOT] = NO_OUTPUTS;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int target : transitionTargets[ROOT]) {
+            failure[target] = ROOT;
+            outputs[target] = toArray(terminal.get(target));
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < transitionChars[state].length; i++) {
+                char c = transitionChars[state][i];
+                int target = transitionTargets[state][i];
+
+                int fallback = failure[state];
+                int next;
+                while ((next = find(transitionChars, transitionTargets, fallback, c)) < 0 && fallback != ROOT) {
+                    fallback = failure[fallback];
+                }
+                failure[target] = next >= 0 ? next : ROOT;
+
+                int[] own = toArray(terminal.get(target));
+                int[] inherited = outputs[failure[target]];
+                int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+                System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+                outputs[target] = merged.length == 0 ? NO_OUTPUTS : merged;
+                queue.add(target);
+            }
+        }
+
+        return new AhoCorasick(patterns, transitionChars, transitionTargets, failure, outputs);
+    }
+
+    /**
+     * 推進一個字元
+     *
+     * @param state 當前狀態
+     * @param c 字元
+     * @return 新狀態
+     */
+    public int next(int state, char c) {
+        char lower = Character.toLowerCase(c);
+        while (true) {
+            int target = find(transitionChars, transitionTargets, state, lower);
+            if (target >= 0) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failure[state];
+        }
+    }
+
+    /**
+     * 在該狀態結束的模式索引（包含後綴模式）
+     *
+     * @param state 狀態
+     * @return 模式索引，對應 {@link #pattern(int)}
+     */
+    public int[] outputs(int state) {
+        return outputs[state];
+    }
+
+    /**
+     * 取得模式
+     *
+     * @param index 模式索引
+     * @return 模式（原始大小寫）
+     */
+    public String pattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * 模式數量
+     *
+     * @return 模式數量
+     */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * 查找文本中出現的所有模式（按首次出現的順序，不重複）
+     *
+     * @param text 文本
+     * @return 出現的模式
+     */
+    public List<String> findAll(String text) {
+        Set<String> matched = new LinkedHashSet<>();
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            for (int index : outputs[state]) {
+                matched.add(patterns[index]);
+            }
+        }
+        return new ArrayList<>(matched);
+    }
+
+    private static int find(char[][] transitionChars, int[][] transitionTargets, int state, char c) {
+        int index = Arrays.binarySearch(transitionChars[state], c);
+        return index >= 0 ? transitionTargets[state][index] : -1;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        if (values.isEmpty()) {
+            return NO_OUTPUTS;
+        }
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
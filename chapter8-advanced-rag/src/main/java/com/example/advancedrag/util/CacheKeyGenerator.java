@@ -3,6 +3,9 @@ package com.example.advancedrag.util;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Collection;
+import java.util.TreeSet;
+
 /**
  * 快取鍵生成器
  *
@@ -14,6 +17,8 @@ public class CacheKeyGenerator {
     private static final String QUERY_PREFIX = "query:";
     private static final String DOCUMENT_PREFIX = "doc:";
     private static final String SESSION_PREFIX = "session:";
+    private static final String RERANK_PREFIX = "rerank:";
+    private static final String MODERATION_PREFIX = "mod:";
 
     /**
      * 生成 Embedding 快取鍵
@@ -66,6 +71,42 @@ public class CacheKeyGenerator {
         return DOCUMENT_PREFIX + documentId;
     }
 
+    /**
+     * 生成 Re-ranking 結果快取鍵
+     *
+     * 文檔 ID 以集合計算（與順序無關），同一批候選換個順序也能命中
+     *
+     * @param query 查詢內容
+     * @param model 模型名稱
+     * @param documentIds 候選文檔 ID
+     * @return 快取鍵
+     */
+    public static String generateRerankKey(String query, String model, Collection<String> documentIds) {
+        if (StringUtils.isBlank(query)) {
+            throw new IllegalArgumentException("查詢不能為空");
+        }
+
+        String queryHash = DigestUtils.md5Hex(query);
+        String documentSetHash = DigestUtils.md5Hex(String.join("\n", new TreeSet<>(documentIds)));
+
+        return RERANK_PREFIX + model + ":" + queryHash + ":" + documentSetHash;
+    }
+
+    /**
+     * 生成內容審核結果快取鍵
+     *
+     * @param content 待審核內容
+     * @param model 審核模型名稱
+     * @return 快取鍵
+     */
+    public static String generateModerationKey(String content, String model) {
+        if (StringUtils.isBlank(content)) {
+            throw new IllegalArgumentException("審核內容不能為空");
+        }
+
+        return MODERATION_PREFIX + model + ":" + DigestUtils.md5Hex(content);
+    }
+
     /**
      * 生成會話快取鍵
      *
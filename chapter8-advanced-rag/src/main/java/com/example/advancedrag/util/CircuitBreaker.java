@@ -0,0 +1,106 @@
+package com.example.advancedrag.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * 斷路器
+ *
+ * 保護對外部服務的調用：
+ * - CLOSED：正常調用，連續失敗達到閾值後轉為 OPEN
+ * - OPEN：直接拒絕調用，經過冷卻時間後轉為 HALF_OPEN
+ * - HALF_OPEN：只放行一個試探請求，成功則 CLOSED，失敗則重新 OPEN
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMillis;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this(name, failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, Clock clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * 是否允許本次調用（HALF_OPEN 時只允許一個試探請求）
+     *
+     * @return 是否允許
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && clock.millis() - openedAtMillis >= openDuration.toMillis()) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+            log.info("斷路器 {} 冷卻結束，進入半開狀態", name);
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probeInFlight) {
+                    yield false;
+                }
+                probeInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * 記錄調用成功
+     */
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.info("斷路器 {} 試探成功，恢復關閉狀態", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    /**
+     * 記錄調用失敗
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("斷路器 {} 打開（連續失敗 {} 次），{} 秒內不再調用",
+                        name, consecutiveFailures, openDuration.toSeconds());
+            }
+            state = State.OPEN;
+            openedAtMillis = clock.millis();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * 放棄本次調用（不計成功或失敗），半開狀態時允許下一個試探請求
+     */
+    public synchronized void release() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
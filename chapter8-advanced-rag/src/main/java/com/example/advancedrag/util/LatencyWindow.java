@@ -0,0 +1,52 @@
+package com.example.advancedrag.util;
+
+import java.util.Arrays;
+
+/**
+ * 延遲滑動窗口
+ *
+ * 以環形緩衝區保存最近 N 次調用的延遲（毫秒），用於計算近期百分位數（如 p99）
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    public LatencyWindow(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * 記錄一次延遲
+     *
+     * @param latencyMs 延遲（毫秒）
+     */
+    public synchronized void record(long latencyMs) {
+        samples[next] = latencyMs;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    /**
+     * 計算百分位數（nearest-rank）
+     *
+     * @param percentile 百分位（0-1，例如 0.99）
+     * @return 延遲（毫秒），無樣本時返回 0
+     */
+    public synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * size);
+        return sorted[Math.min(size, Math.max(1, rank)) - 1];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.advancedrag.util;
+
+/**
+ * 純量向量計算核心
+ *
+ * float 乘積以 double 累加，結果與原 {@code VectorUtil} 實現一致。
+ */
+final class ScalarVectorKernels implements VectorKernels {
+
+    static final ScalarVectorKernels INSTANCE = new ScalarVectorKernels();
+
+    private ScalarVectorKernels() {
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public double dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double cosine(float[] a, float[] b) {
+        double dotProduct = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+
+        for (int i = 0; i < a.length; i++) {
+            dotProduct += a[i] * b[i];
+            norm1 += a[i] * a[i];
+            norm2 += b[i] * b[i];
+        }
+
+        if (norm1 == 0.0 || norm2 == 0.0) {
+            return 0.0;
+        }
+        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.advancedrag.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 串流文本的句子緩衝區
+ *
+ * 累積 LLM 串流輸出的片段，在句子邊界處切出完整句子，
+ * 供逐句內容審核使用。
+ *
+ * 句子邊界：中文句末標點（。！？；）、英文 ! ? ;、換行，
+ * 以及後接空白的英文句點（避免切開 3.5 之類的小數）。
+ * 非線程安全，每個串流使用獨立實例。
+ */
+public class SentenceBuffer {
+
+    private final StringBuilder pending = new StringBuilder();
+    private final StringBuilder all = new StringBuilder();
+
+    /**
+     * 追加片段，返回因此完成的句子
+     *
+     * @param fragment 文本片段
+     * @return 完成的句子（可能為空）
+     */
+    public List<String> append(String fragment) {
+        List<String> sentences = new ArrayList<>();
+        if (fragment == null || fragment.isEmpty()) {
+            return sentences;
+        }
+
+        all.append(fragment);
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+            boolean periodBoundary = Character.isWhitespace(c)
+                    && !pending.isEmpty()
+                    && pending.charAt(pending.length() - 1) == '.';
+            pending.append(c);
+            if (isSentenceEnd(c) || periodBoundary) {
+                addIfNotBlank(sentences, pending.toString());
+                pending.setLength(0);
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * 取出尚未完成的剩餘文本（串流結束時呼叫）
+     *
+     * @return 剩餘文本，沒有則為空字串
+     */
+    public String flush() {
+        String rest = pending.toString().trim();
+        pending.setLength(0);
+        return rest;
+    }
+
+    /**
+     * 已切分為完整句子的文本長度（{@link #getText()} 中此位置之前的內容都屬於已完成的句子；
+     * {@link #flush()} 之後等於完整文本長度）
+     *
+     * @return 長度（字元）
+     */
+    public int completedLength() {
+        return all.length() - pending.length();
+    }
+
+    /**
+     * 獲取目前累積的完整文本
+     *
+     * @return 完整文本
+     */
+    public String getText() {
+        return all.toString();
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return switch (c) {
+            case '。', '！', '？', '；', '!', '?', ';', '\n' -> true;
+            default -> false;
+        };
+    }
+
+    private static void addIfNotBlank(List<String> sentences, String sentence) {
+        String trimmed = sentence.trim();
+        if (!trimmed.isEmpty()) {
+            sentences.add(trimmed);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.advancedrag.util;
+
+/**
+ * SimHash 文本指紋
+ *
+ * 以字元 3-gram 為特徵計算 64 位 SimHash（中英文皆適用），近似重複的文本
+ * 指紋的漢明距離很小。搭配 {@link SimHashIndex} 以分段（band）索引在線性時間內找出近似重複。
+ */
+public final class SimHash {
+
+    /**
+     * 文檔元數據中預計算指紋的鍵
+     */
+    public static final String METADATA_KEY = "rag_simhash";
+
+    /**
+     * 分段數：4 段 × 16 位，漢明距離 ≤ 3 的指紋至少有一段完全相同
+     */
+    public static final int BANDS = 4;
+
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final int SHINGLE = 3;
+
+    private SimHash() {
+    }
+
+    /**
+     * 計算文本指紋
+     *
+     * @param text 文本
+     * @return 64 位指紋
+     */
+    public static long of(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0L;
+        }
+        String normalized = normalize(text);
+        int[] weights = new int[64];
+
+        if (normalized.length() < SHINGLE) {
+            accumulate(weights, hash(normalized, 0, normalized.length()));
+        } else {
+            for (int i = 0; i + SHINGLE <= normalized.length(); i++) {
+                accumulate(weights, hash(normalized, i, i + SHINGLE));
+            }
+        }
+
+        long signature = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                signature |= 1L << bit;
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 讀取文檔元數據中預計算的指紋，不存在時返回 null
+     *
+     * @param value 元數據值
+     * @return 指紋或 null
+     */
+    public static Long fromMetadata(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    /**
+     * 漢明距離
+     *
+     * @param a 指紋 a
+     * @param b 指紋 b
+     * @return 不同位數
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 取得第 band 段的索引鍵（高位存段號，避免不同段碰撞）
+     *
+     * @param signature 指紋
+     * @param band 段號（0 到 BANDS-1）
+     * @return 索引鍵
+     */
+    public static long bandKey(long signature, int band) {
+        long bits = (signature >>> (band * BAND_BITS)) & ((1L << BAND_BITS) - 1);
+        return ((long) band << BAND_BITS) | bits;
+    }
+
+    /**
+     * 正規化：轉小寫並移除空白，使格式差異不影響指紋
+     */
+    private static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void accumulate(int[] weights, long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+        }
+    }
+
+    /**
+     * FNV-1a 64 位雜湊，再以 SplitMix64 混合使各位分佈均勻
+     */
+    private static long hash(String text, int from, int to) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.advancedrag.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SimHash 近似重複索引
+ *
+ * 以 {@link SimHash#BANDS} 段分段建立倒排：查詢時只比對至少一段相同的候選，
+ * 插入與查詢皆為期望 O(1)，對 n 個文檔去重為線性時間（取代兩兩比較）。
+ * 漢明距離閾值不超過 BANDS - 1 時不會漏判。
+ *
+ * @param <K> 文檔鍵類型
+ */
+public class SimHashIndex<K> {
+
+    private final int maxDistance;
+    private final Map<Long, List<Entry<K>>> buckets = new HashMap<>();
+
+    /**
+     * @param maxDistance 視為近似重複的最大漢明距離（0 到 BANDS - 1）
+     * @throws IllegalArgumentException 超出範圍時，分段倒排無法保證找出所有近似重複
+     */
+    public SimHashIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > SimHash.BANDS - 1) {
+            throw new IllegalArgumentException("SimHash 漢明距離須在 0 到 " + (SimHash.BANDS - 1)
+                    + " 之間: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * 查找近似重複的已索引文檔
+     *
+     * @param signature 指紋
+     * @return 近似重複文檔的鍵，不存在時返回 null
+     */
+    public K findNearDuplicate(long signature) {
+        for (int band = 0; band < SimHash.BANDS; band++) {
+            List<Entry<K>> bucket = buckets.get(SimHash.bandKey(signature, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry<K> entry : bucket) {
+                if (SimHash.distance(signature, entry.signature()) <= maxDistance) {
+                    return entry.key();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 加入索引
+     *
+     * @param key 文檔鍵
+     * @param signature 指紋
+     */
+    public void add(K key, long signature) {
+        Entry<K> entry = new Entry<>(key, signature);
+        for (int band = 0; band < SimHash.BANDS; band++) {
+            buckets.computeIfAbsent(SimHash.bandKey(signature, band), k -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    private record Entry<K>(K key, long signature) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.advancedrag.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD 向量計算核心（jdk.incubator.vector）
+ *
+ * 使用平台偏好的向量寬度（AVX2 為 8 個 float、AVX-512 為 16 個），以 FMA 累加；
+ * 內積使用兩個獨立累加器以隱藏 FMA 延遲，不足一個向量寬度的尾端以純量處理。
+ * 累加在 float 精度下進行，與純量實現（double 累加）的餘弦相似度差異約在 1e-6 量級。
+ */
+final class SimdVectorKernels implements VectorKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * @return 平台偏好的向量寬度（float 個數），供 {@link VectorKernels#loadSimd()} 在構造前判斷是否值得啟用
+     */
+    static int preferredLanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public double dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int lanes = SPECIES.length();
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        FloatVector acc2 = FloatVector.zero(SPECIES);
+
+        int i = 0;
+        int unrolledBound = length - 2 * lanes;
+        for (; i <= unrolledBound; i += 2 * lanes) {
+            acc1 = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), acc1);
+            acc2 = FloatVector.fromArray(SPECIES, a, aOffset + i + lanes)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i + lanes), acc2);
+        }
+        for (; i <= length - lanes; i += lanes) {
+            acc1 = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), acc1);
+        }
+
+        double sum = acc1.add(acc2).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double cosine(float[] a, float[] b) {
+        int lanes = SPECIES.length();
+        FloatVector dotAcc = FloatVector.zero(SPECIES);
+        FloatVector normAAcc = FloatVector.zero(SPECIES);
+        FloatVector normBAcc = FloatVector.zero(SPECIES);
+
+        int i = 0;
+        for (; i <= a.length - lanes; i += lanes) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            dotAcc = va.fma(vb, dotAcc);
+            normAAcc = va.fma(va, normAAcc);
+            normBAcc = vb.fma(vb, normBAcc);
+        }
+
+        double dotProduct = dotAcc.reduceLanes(VectorOperators.ADD);
+        double norm1 = normAAcc.reduceLanes(VectorOperators.ADD);
+        double norm2 = normBAcc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            dotProduct += a[i] * b[i];
+            norm1 += a[i] * a[i];
+            norm2 += b[i] * b[i];
+        }
+
+        if (norm1 == 0.0 || norm2 == 0.0) {
+            return 0.0;
+        }
+        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.advancedrag.util;
+
+import com.example.advancedrag.exception.AdvancedRAGException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * 非同步階段作用域
+ *
+ * 將一次查詢的各階段組織為依賴圖：
+ * - {@link #run} 啟動無前置依賴的階段
+ * - {@link #then} 在上游完成後啟動依賴階段
+ * - 每個階段有獨立超時，超時或取消時中斷執行中的線程
+ * - {@link #cancelAll()} / {@link #close()} 取消所有未完成的階段
+ *
+ * 使用方式：
+ * <pre>
+ * try (StageScope scope = new StageScope(executor)) {
+ *     CompletableFuture&lt;A&gt; a = scope.run("a", this::loadA, 1000);
+ *     CompletableFuture&lt;B&gt; b = scope.then(a, "b", this::loadB, 1000);
+ *     B result = StageScope.await(b);
+ * }
+ * </pre>
+ */
+@Slf4j
+public class StageScope implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final List<CompletableFuture<?>> stages = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    public StageScope(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 啟動無前置依賴的階段
+     *
+     * @param name 階段名稱（用於日誌與超時異常）
+     * @param task 階段任務
+     * @param timeoutMs 超時（毫秒）
+     * @return 階段結果
+     */
+    public <T> CompletableFuture<T> run(String name, Callable<T> task, long timeoutMs) {
+        CompletableFuture<T> stage = new CompletableFuture<>();
+        stages.add(stage);
+        if (cancelled) {
+            // 作用域已取消：上游剛完成的依賴階段不再啟動
+            stage.cancel(true);
+            return stage;
+        }
+        Future<?> running = executor.submit(() -> {
+            try {
+                stage.complete(task.call());
+            } catch (Throwable e) {
+                stage.completeExceptionally(e);
+            }
+        });
+
+        stage.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        // 超時或取消：中斷仍在執行的任務
+                        running.cancel(true);
+                        if (unwrap(error) instanceof TimeoutException) {
+                            log.warn("階段 {} 超時（{}ms）", name, timeoutMs);
+                        }
+                    }
+                });
+
+        return stage;
+    }
+
+    /**
+     * 在上游階段完成後啟動依賴階段（上游失敗或取消時直接傳遞異常）
+     *
+     * @param upstream 上游階段
+     * @param name 階段名稱
+     * @param task 階段任務
+     * @param timeoutMs 超時（毫秒，自本階段開始計算）
+     * @return 階段結果
+     */
+    public <T, R> CompletableFuture<R> then(CompletableFuture<T> upstream, String name,
+                                            Function<T, R> task, long timeoutMs) {
+        CompletableFuture<R> stage = upstream.thenCompose(
+                input -> run(name, () -> task.apply(input), timeoutMs));
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * 取消所有未完成的階段
+     */
+    public void cancelAll() {
+        cancelled = true;
+        int count = 0;
+        for (CompletableFuture<?> stage : stages) {
+            if (stage.cancel(true)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.debug("已取消 {} 個未完成的階段", count);
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+    }
+
+    /**
+     * 等待階段結果
+     *
+     * 超時轉為 {@link AdvancedRAGException}（錯誤碼 STAGE_TIMEOUT），其餘異常原樣拋出
+     *
+     * @param stage 階段
+     * @return 階段結果
+     */
+    public static <T> T await(CompletableFuture<T> stage) {
+        try {
+            return stage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AdvancedRAGException("STAGE_INTERRUPTED", "查詢處理被中斷", e);
+        } catch (ExecutionException | CancellationException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof TimeoutException) {
+                throw new AdvancedRAGException("STAGE_TIMEOUT", "查詢階段超時", cause);
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new AdvancedRAGException("STAGE_FAILED", "查詢階段失敗: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 等待階段結果，失敗或超時時返回降級值
+     *
+     * @param stage 階段
+     * @param fallback 降級值
+     * @param name 階段名稱（用於日誌）
+     * @return 階段結果或降級值
+     */
+    public static <T> T awaitOrDefault(CompletableFuture<T> stage, T fallback, String name) {
+        try {
+            return await(stage);
+        } catch (RuntimeException e) {
+            log.warn("階段 {} 失敗，使用降級結果: {}", name, e.getMessage());
+            return fallback;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
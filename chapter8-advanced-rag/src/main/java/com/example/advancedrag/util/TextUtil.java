@@ -2,6 +2,7 @@ package com.example.advancedrag.util;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -84,6 +85,73 @@ public class TextUtil {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 詞法分析（用於 BM25 索引與查詢）
+     *
+     * 英文、數字按連續字母數字切分並轉小寫；
+     * 中文（漢字）不含空格，採用相鄰二元組（bigram）切分，
+     * 單獨出現的漢字則保留為單字詞。
+     *
+     * @param text 文本
+     * @return 詞項列表（保留重複，用於計算詞頻）
+     */
+    public static List<String> analyze(String text) {
+        if (StringUtils.isBlank(text)) {
+            return List.of();
+        }
+
+        List<String> terms = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        int previousHan = -1;
+        int hanRunLength = 0;
+
+        int length = text.length();
+        for (int i = 0; i < length; ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+                flushWord(word, terms);
+                if (previousHan >= 0) {
+                    terms.add(new String(new int[]{previousHan, codePoint}, 0, 2));
+                }
+                previousHan = codePoint;
+                hanRunLength++;
+                continue;
+            }
+
+            // 漢字序列結束：單字序列保留為單字詞
+            if (hanRunLength == 1) {
+                terms.add(new String(Character.toChars(previousHan)));
+            }
+            previousHan = -1;
+            hanRunLength = 0;
+
+            if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+            } else {
+                flushWord(word, terms);
+            }
+        }
+
+        if (hanRunLength == 1) {
+            terms.add(new String(Character.toChars(previousHan)));
+        }
+        flushWord(word, terms);
+
+        return terms;
+    }
+
+    /**
+     * 將累積的英文/數字詞寫入詞項列表
+     */
+    private static void flushWord(StringBuilder word, List<String> terms) {
+        if (!word.isEmpty()) {
+            terms.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
     /**
      * 計算詞頻
      *
@@ -0,0 +1,77 @@
+package com.example.advancedrag.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+
+/**
+ * Token 計數器（JTokkit）
+ *
+ * - 編碼表按模型選取並只載入一次（載入 BPE 詞表成本高）
+ * - 文檔 token 數以（文檔 ID, 內容雜湊）快取，同一文檔在多次查詢中只計數一次
+ */
+@Slf4j
+public class TokenCounter {
+
+    private static final EncodingRegistry REGISTRY = Encodings.newLazyEncodingRegistry();
+
+    private final Encoding encoding;
+    private final Cache<String, Integer> documentTokens;
+
+    /**
+     * @param model 模型名稱（如 gpt-4o-mini），未知模型使用 o200k_base
+     * @param cacheSize 文檔 token 數快取條目數
+     */
+    public TokenCounter(String model, int cacheSize) {
+        this.encoding = model == null ? REGISTRY.getEncoding(EncodingType.O200K_BASE)
+                : REGISTRY.getEncodingForModel(model).orElseGet(() -> {
+                    log.warn("未知的模型 {}，使用 o200k_base 編碼計算 token", model);
+                    return REGISTRY.getEncoding(EncodingType.O200K_BASE);
+                });
+        this.documentTokens = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+    }
+
+    /**
+     * 計算文本 token 數
+     *
+     * @param text 文本
+     * @return token 數
+     */
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokens(text);
+    }
+
+    /**
+     * 計算文檔 token 數（快取）
+     *
+     * @param document 文檔
+     * @return token 數
+     */
+    public int count(Document document) {
+        String text = document.getText();
+        if (document.getId() == null || text == null) {
+            return count(text);
+        }
+        return documentTokens.get(document.getId() + ":" + text.hashCode(), key -> count(text));
+    }
+
+    /**
+     * 截斷文本到指定 token 數
+     *
+     * @param text 文本
+     * @param maxTokens 最大 token 數
+     * @return 截斷後的文本（未超過時原樣返回）
+     */
+    public String truncate(String text, int maxTokens) {
+        EncodingResult result = encoding.encode(text, maxTokens);
+        return result.isTruncated() ? encoding.decode(result.getTokens()) : text;
+    }
+}
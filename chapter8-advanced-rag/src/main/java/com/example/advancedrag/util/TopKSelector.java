@@ -0,0 +1,93 @@
+package com.example.advancedrag.util;
+
+/**
+ * Top-K 選擇工具
+ *
+ * 以大小為 k 的最小堆（int 索引陣列，直接比較 double 分數）從 n 個分數中選出前 k 名，
+ * 時間 O(n log k)，不需對整個候選列表排序，也不產生裝箱物件。
+ *
+ * 結果與「穩定排序（分數降序）後取前 k 個」完全一致：分數相同時索引較小者優先。
+ */
+public final class TopKSelector {
+
+    private TopKSelector() {
+    }
+
+    /**
+     * 選出分數最高的 k 個索引
+     *
+     * @param scores 分數陣列
+     * @param k 選取數量
+     * @return 索引陣列（按分數降序，同分時按索引升序），長度為 min(k, scores.length)
+     */
+    public static int[] select(double[] scores, int k) {
+        int n = scores.length;
+        int size = Math.min(Math.max(k, 0), n);
+        if (size == 0) {
+            return new int[0];
+        }
+
+        // heap[0] 為目前入選者中排名最差的
+        int[] heap = new int[size];
+        for (int i = 0; i < size; i++) {
+            heap[i] = i;
+            siftUp(heap, i, scores);
+        }
+
+        for (int i = size; i < n; i++) {
+            // 後出現的同分候選排名較差，只有分數嚴格更高才能替換
+            if (worse(heap[0], i, scores)) {
+                heap[0] = i;
+                siftDown(heap, 0, size, scores);
+            }
+        }
+
+        // 依次彈出最差者，從尾端往前填
+        int[] result = new int[size];
+        for (int end = size - 1; end >= 0; end--) {
+            result[end] = heap[0];
+            heap[0] = heap[end];
+            siftDown(heap, 0, end, scores);
+        }
+        return result;
+    }
+
+    /**
+     * a 的排名是否比 b 差（分數較低，或同分但索引較大）
+     */
+    private static boolean worse(int a, int b, double[] scores) {
+        int cmp = Double.compare(scores[a], scores[b]);
+        return cmp < 0 || (cmp == 0 && a > b);
+    }
+
+    private static void siftUp(int[] heap, int index, double[] scores) {
+        int item = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!worse(item, heap[parent], scores)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = item;
+    }
+
+    private static void siftDown(int[] heap, int index, int size, double[] scores) {
+        int item = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && worse(heap[right], heap[child], scores)) {
+                child = right;
+            }
+            if (!worse(heap[child], item, scores)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = item;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.advancedrag.util;
+
+/**
+ * 向量計算核心（{@link VectorUtil} 的後端）
+ *
+ * 兩種實現：
+ * - {@link SimdVectorKernels}：基於 {@code jdk.incubator.vector}，需以 {@code --add-modules jdk.incubator.vector} 啟動
+ * - {@link ScalarVectorKernels}：純 Java 迴圈，模組不可用或以 {@code -Dadvancedrag.vector.simd=false} 關閉時使用
+ *
+ * 矩陣以列優先（row-major）連續存放於單一 float[]，第 r 列位於 {@code [r * dimensions, (r + 1) * dimensions)}。
+ */
+interface VectorKernels {
+
+    /**
+     * 關閉 SIMD 後端的系統屬性
+     */
+    String SIMD_PROPERTY = "advancedrag.vector.simd";
+
+    /**
+     * 啟用 SIMD 後端所需的最小向量寬度（float 個數），更窄時純量實現並不更慢
+     */
+    int MIN_SIMD_LANES = 4;
+
+    /**
+     * 後端名稱
+     *
+     * @return 名稱
+     */
+    String name();
+
+    /**
+     * 內積
+     *
+     * @param a 向量 a
+     * @param aOffset a 的起始位置
+     * @param b 向量 b
+     * @param bOffset b 的起始位置
+     * @param length 長度
+     * @return 內積
+     */
+    double dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * 餘弦相似度（一次遍歷同時累加內積與兩個範數）
+     *
+     * @param a 向量 a
+     * @param b 向量 b（與 a 等長）
+     * @return 餘弦相似度，任一向量範數為 0 時為 0
+     */
+    double cosine(float[] a, float[] b);
+
+    /**
+     * 查詢向量與矩陣每一列的內積
+     *
+     * @param query 查詢向量
+     * @param matrix 矩陣
+     * @param dimensions 維度（列寬）
+     * @param rows 列數
+     * @param scores 輸出，長度至少為 rows
+     */
+    default void dotBatch(float[] query, float[] matrix, int dimensions, int rows, double[] scores) {
+        for (int r = 0; r < rows; r++) {
+            scores[r] = dot(query, 0, matrix, r * dimensions, dimensions);
+        }
+    }
+
+    /**
+     * 查詢向量與矩陣每一列的餘弦相似度（列未正規化）
+     *
+     * @param query 查詢向量
+     * @param matrix 矩陣
+     * @param dimensions 維度（列寬）
+     * @param rows 列數
+     * @param scores 輸出，長度至少為 rows
+     */
+    default void cosineBatch(float[] query, float[] matrix, int dimensions, int rows, double[] scores) {
+        double queryNorm = Math.sqrt(dot(query, 0, query, 0, dimensions));
+        for (int r = 0; r < rows; r++) {
+            int offset = r * dimensions;
+            double rowNorm = Math.sqrt(dot(matrix, offset, matrix, offset, dimensions));
+            scores[r] = queryNorm == 0.0 || rowNorm == 0.0 ? 0.0 :
+                    dot(query, 0, matrix, offset, dimensions) / (queryNorm * rowNorm);
+        }
+    }
+
+    /**
+     * 選擇後端：SIMD 可用且未被關閉時使用 SIMD，否則使用純量實現
+     *
+     * SIMD 實現以反射載入，模組不存在時不會連結到 {@code jdk.incubator.vector} 的類別。
+     *
+     * @return 後端
+     */
+    static VectorKernels load() {
+        boolean simdEnabled = Boolean.parseBoolean(System.getProperty(SIMD_PROPERTY, "true"));
+        VectorKernels simd = simdEnabled ? loadSimd() : null;
+        return simd != null ? simd : ScalarVectorKernels.INSTANCE;
+    }
+
+    /**
+     * 以反射載入 SIMD 實現（SimdVectorKernels 單獨編譯，其他類別不直接引用）
+     *
+     * @return SIMD 後端；模組不存在、類別無法載入或偏好向量寬度不足 {@link #MIN_SIMD_LANES} 時返回 null
+     */
+    static VectorKernels loadSimd() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            Class<?> simdClass = Class.forName("com.example.advancedrag.util.SimdVectorKernels");
+            int lanes = (int) simdClass.getDeclaredMethod("preferredLanes").invoke(null);
+            if (lanes < MIN_SIMD_LANES) {
+                return null;
+            }
+            return (VectorKernels) simdClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -6,16 +6,34 @@ import java.util.List;
  * 向量計算工具類
  *
  * 提供向量相關的數學計算功能
+ * Embedding 在系統內以 float[] 傳遞，避免逐元素裝箱為 Double
+ *
+ * float[] 版本的計算委派給 {@link VectorKernels}：以 {@code --add-modules jdk.incubator.vector} 啟動時使用 SIMD，
+ * 否則使用純量迴圈（可用 {@code -Dadvancedrag.vector.simd=false} 強制純量）。
+ * 大量向量的暴力比對應存成連續矩陣並預先正規化，以 {@link #dotProducts} 一次計算一個查詢對所有列的相似度。
  */
 public class VectorUtil {
 
+    private static final VectorKernels KERNELS = VectorKernels.load();
+
+    /**
+     * 目前使用的計算後端
+     *
+     * @return 後端名稱（scalar 或 simd-&lt;位元寬度&gt;）
+     */
+    public static String backend() {
+        return KERNELS.name();
+    }
+
     /**
      * 計算兩個向量的餘弦相似度
      *
      * @param vec1 向量1
      * @param vec2 向量2
      * @return 餘弦相似度（-1 到 1 之間）
+     * @deprecated 請使用 {@link #cosineSimilarity(float[], float[])}
      */
+    @Deprecated
     public static double cosineSimilarity(List<Double> vec1, List<Double> vec2) {
         if (vec1 == null || vec2 == null || vec1.size() != vec2.size()) {
             throw new IllegalArgumentException("向量不能為空且維度必須相同");
@@ -50,21 +68,74 @@ public class VectorUtil {
             throw new IllegalArgumentException("向量不能為空且維度必須相同");
         }
 
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
+        return KERNELS.cosine(vec1, vec2);
+    }
 
-        for (int i = 0; i < vec1.length; i++) {
-            dotProduct += vec1[i] * vec2[i];
-            norm1 += vec1[i] * vec1[i];
-            norm2 += vec2[i] * vec2[i];
+    /**
+     * 計算兩個向量的內積（兩者皆已正規化時即為餘弦相似度）
+     *
+     * @param vec1 向量1
+     * @param vec2 向量2
+     * @return 內積
+     */
+    public static double dotProduct(float[] vec1, float[] vec2) {
+        if (vec1 == null || vec2 == null || vec1.length != vec2.length) {
+            throw new IllegalArgumentException("向量不能為空且維度必須相同");
         }
 
-        if (norm1 == 0.0 || norm2 == 0.0) {
-            return 0.0;
+        return KERNELS.dot(vec1, 0, vec2, 0, vec1.length);
+    }
+
+    /**
+     * 批次內積：查詢向量對矩陣每一列
+     *
+     * 列已預先正規化（見 {@link #normalizeRows}）且查詢已正規化時，結果即為餘弦相似度。
+     *
+     * @param query 查詢向量
+     * @param matrix 列優先的連續矩陣（列數 = matrix.length / dimensions）
+     * @param dimensions 維度
+     * @param scores 輸出，長度至少為列數
+     */
+    public static void dotProducts(float[] query, float[] matrix, int dimensions, double[] scores) {
+        int rows = checkMatrix(query, matrix, dimensions, scores);
+        KERNELS.dotBatch(query, matrix, dimensions, rows, scores);
+    }
+
+    /**
+     * 批次餘弦相似度：查詢向量對矩陣每一列（列未正規化）
+     *
+     * @param query 查詢向量
+     * @param matrix 列優先的連續矩陣（列數 = matrix.length / dimensions）
+     * @param dimensions 維度
+     * @param scores 輸出，長度至少為列數
+     */
+    public static void cosineSimilarities(float[] query, float[] matrix, int dimensions, double[] scores) {
+        int rows = checkMatrix(query, matrix, dimensions, scores);
+        KERNELS.cosineBatch(query, matrix, dimensions, rows, scores);
+    }
+
+    /**
+     * 原地正規化矩陣的每一列（L2 正規化，零向量保持不變）
+     *
+     * @param matrix 列優先的連續矩陣
+     * @param dimensions 維度
+     * @return 同一個矩陣
+     */
+    public static float[] normalizeRows(float[] matrix, int dimensions) {
+        if (matrix == null || dimensions <= 0 || matrix.length % dimensions != 0) {
+            throw new IllegalArgumentException("矩陣不能為空且長度必須為維度的整數倍");
         }
 
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+        for (int offset = 0; offset < matrix.length; offset += dimensions) {
+            double norm = Math.sqrt(KERNELS.dot(matrix, offset, matrix, offset, dimensions));
+            if (norm == 0.0) {
+                continue;
+            }
+            for (int i = offset; i < offset + dimensions; i++) {
+                matrix[i] = (float) (matrix[i] / norm);
+            }
+        }
+        return matrix;
     }
 
     /**
@@ -74,14 +145,14 @@ public class VectorUtil {
      * @param vec2 向量2
      * @return 歐幾里得距離
      */
-    public static double euclideanDistance(List<Double> vec1, List<Double> vec2) {
-        if (vec1 == null || vec2 == null || vec1.size() != vec2.size()) {
+    public static double euclideanDistance(float[] vec1, float[] vec2) {
+        if (vec1 == null || vec2 == null || vec1.length != vec2.length) {
             throw new IllegalArgumentException("向量不能為空且維度必須相同");
         }
 
         double sum = 0.0;
-        for (int i = 0; i < vec1.size(); i++) {
-            double diff = vec1.get(i) - vec2.get(i);
+        for (int i = 0; i < vec1.length; i++) {
+            double diff = vec1[i] - vec2[i];
             sum += diff * diff;
         }
 
@@ -92,27 +163,62 @@ public class VectorUtil {
      * 正規化向量（L2 正規化）
      *
      * @param vector 原始向量
-     * @return 正規化後的向量
+     * @return 正規化後的向量（新陣列）
      */
-    public static List<Double> normalize(List<Double> vector) {
-        if (vector == null || vector.isEmpty()) {
+    public static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
             throw new IllegalArgumentException("向量不能為空");
         }
 
         double norm = 0.0;
-        for (Double v : vector) {
+        for (float v : vector) {
             norm += v * v;
         }
         norm = Math.sqrt(norm);
 
+        float[] result = vector.clone();
         if (norm == 0.0) {
-            return vector;
+            return result;
+        }
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (float) (result[i] / norm);
+        }
+        return result;
+    }
+
+    /**
+     * 將 List<Double> 向量轉換為 float[]
+     *
+     * @param vector 向量
+     * @return float[] 向量
+     */
+    public static float[] toFloatArray(List<Double> vector) {
+        if (vector == null) {
+            throw new IllegalArgumentException("向量不能為空");
         }
 
-        // 創建 final 副本供 lambda 使用
-        final double finalNorm = norm;
-        return vector.stream()
-                .map(v -> v / finalNorm)
-                .toList();
+        float[] result = new float[vector.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = vector.get(i).floatValue();
+        }
+        return result;
+    }
+
+    /**
+     * 檢查批次計算的參數
+     *
+     * @return 列數
+     */
+    private static int checkMatrix(float[] query, float[] matrix, int dimensions, double[] scores) {
+        if (query == null || matrix == null || scores == null || query.length != dimensions
+                || dimensions <= 0 || matrix.length % dimensions != 0) {
+            throw new IllegalArgumentException("查詢維度必須與矩陣列寬相同，且矩陣長度必須為維度的整數倍");
+        }
+        int rows = matrix.length / dimensions;
+        if (scores.length < rows) {
+            throw new IllegalArgumentException("輸出陣列長度不足: " + scores.length + " < " + rows);
+        }
+        return rows;
     }
 }
@@ -0,0 +1,43 @@
+package com.example.advancedrag.vectorstore;
+
+import org.springframework.ai.document.Document;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 以預先計算的查詢向量進行相似度檢索
+ *
+ * 與 {@code VectorStore.similaritySearch(SearchRequest)} 不同，呼叫端自行提供查詢 Embedding，
+ * 向量庫不會再次呼叫 EmbeddingModel，避免同一查詢被 Embedding 兩次。
+ * 另提供按 ID 查詢與分頁遍歷，供 BM25 等衍生索引取回文檔或在啟動時重建。
+ */
+public interface EmbeddingVectorSearch {
+
+    /**
+     * 向量相似度檢索
+     *
+     * @param queryEmbedding 查詢向量
+     * @param topK 返回數量
+     * @param similarityThreshold 相似度閾值（0-1，餘弦相似度）
+     * @return 文檔列表（按相似度降序，metadata 含 distance，score 為相似度）
+     */
+    List<Document> similaritySearch(float[] queryEmbedding, int topK, double similarityThreshold);
+
+    /**
+     * 按 ID 取回文檔
+     *
+     * @param ids 文檔 ID
+     * @return 存在的文檔（順序不保證，不存在的 ID 直接略過，score 為 null）
+     */
+    List<Document> findByIds(Collection<String> ids);
+
+    /**
+     * 分頁遍歷向量庫中的所有文檔
+     *
+     * @param pageSize 每頁文檔數
+     * @param pageConsumer 每頁文檔的處理函數
+     */
+    void forEachPage(int pageSize, Consumer<List<Document>> pageConsumer);
+}
@@ -0,0 +1,661 @@
+package com.example.advancedrag.vectorstore;
+
+import com.example.advancedrag.util.TopKSelector;
+import com.example.advancedrag.util.VectorUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW（Hierarchical Navigable Small World）近似最近鄰圖
+ *
+ * 演算法依 Malkov &amp; Yashunin（2016）：
+ * - 每個節點以幾何分佈隨機決定最高層，上層稀疏、第 0 層包含全部節點
+ * - 查詢從入口點逐層貪心下降，在第 0 層以大小為 ef 的候選集做 best-first 搜索
+ * - 新節點的鄰居以啟發式挑選（候選與已選鄰居的相似度高於與新節點的相似度時捨棄），保留不同方向的連線
+ *
+ * 向量預先 L2 正規化並存放於 {@link OffHeapVectorStorage}，相似度即內積（{@link VectorUtil#dotProduct}）；
+ * 鄰接表以 int 陣列存於堆上（每層首元素為鄰居數）。刪除為標記刪除：節點仍參與導航但不出現在結果中。
+ *
+ * 非線程安全：插入與刪除須由呼叫端以寫鎖串行化；搜索可在讀鎖下並行。
+ * 搜索暫存區由圖持有的有界池借出與歸還，而非綁定線程：檢索在每任務一個的虛擬線程上執行，
+ * ThreadLocal 會讓每次查詢都配置新的 visited 陣列。
+ */
+final class HnswGraph {
+
+    private static final int MAX_LEVEL = 16;
+    private static final int FORMAT_VERSION = 1;
+    private static final IntPredicate ACCEPT_ALL = node -> true;
+    private static final int SCRATCH_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private final OffHeapVectorStorage vectors;
+    private final ArrayBlockingQueue<Scratch> scratchPool = new ArrayBlockingQueue<>(SCRATCH_POOL_SIZE);
+
+    private int[][][] links = new int[16][][];
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param dimensions 向量維度
+     * @param m 每個節點在上層的最大鄰居數（第 0 層為 2m）
+     * @param efConstruction 建圖時的候選集大小
+     * @param seed 層級隨機數種子
+     */
+    HnswGraph(int dimensions, int m, int efConstruction, long seed) {
+        this(new OffHeapVectorStorage(dimensions), m, efConstruction, seed);
+    }
+
+    private HnswGraph(OffHeapVectorStorage vectors, int m, int efConstruction, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m 必須不小於 2: " + m);
+        }
+        this.vectors = vectors;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+    }
+
+    int dimensions() {
+        return vectors.dimensions();
+    }
+
+    int size() {
+        return vectors.size();
+    }
+
+    int deletedCount() {
+        return deletedCount;
+    }
+
+    boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    /**
+     * 標記刪除節點
+     *
+     * @param node 節點編號
+     */
+    void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * 讀取節點向量（已正規化）
+     *
+     * @param node 節點編號
+     * @param target 目標陣列
+     */
+    void readVector(int node, float[] target) {
+        vectors.read(node, target);
+    }
+
+    /**
+     * 插入已正規化的向量
+     *
+     * @param vector 向量
+     * @return 節點編號
+     */
+    int insert(float[] vector) {
+        int node = vectors.append(vector);
+        int level = randomLevel();
+        ensureCapacity(node + 1);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + maxNeighbors(l)];
+        }
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        Scratch s = acquireScratch(node + 1);
+        try {
+            int current = entryPoint;
+            double currentScore = similarity(vector, current, s.row);
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyStep(vector, current, currentScore, l, s);
+                currentScore = s.greedyScore;
+            }
+
+            NodeHeap entries = new NodeHeap(efConstruction + 1, true);
+            entries.push(current, currentScore);
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                NodeHeap results = searchLayer(vector, entries, efConstruction, l, ACCEPT_ALL, s);
+                int[] selected = selectNeighbors(results, m, s);
+                for (int neighbor : selected) {
+                    addLink(node, neighbor, l, s);
+                    addLink(neighbor, node, l, s);
+                }
+                entries = results;
+            }
+        } finally {
+            releaseScratch(s);
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+        return node;
+    }
+
+    /**
+     * 近似 Top-K 搜索
+     *
+     * @param query 已正規化的查詢向量
+     * @param k 返回數量
+     * @param ef 第 0 層候選集大小（不小於 k）
+     * @param accept 結果過濾（未通過的節點仍用於導航）
+     * @return 結果（按相似度降序）
+     */
+    Result search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0 || k <= 0) {
+            return new Result(new int[0], new double[0]);
+        }
+
+        NodeHeap results;
+        Scratch s = acquireScratch(size());
+        try {
+            int current = entryPoint;
+            double currentScore = similarity(query, current, s.row);
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyStep(query, current, currentScore, l, s);
+                currentScore = s.greedyScore;
+            }
+
+            NodeHeap entries = new NodeHeap(1, true);
+            entries.push(current, currentScore);
+            results = searchLayer(query, entries, Math.max(ef, k), 0, accept, s);
+        } finally {
+            releaseScratch(s);
+        }
+        while (results.size() > k) {
+            results.pop();
+        }
+
+        int count = results.size();
+        int[] nodes = new int[count];
+        double[] scores = new double[count];
+        for (int i = count - 1; i >= 0; i--) {
+            scores[i] = results.peekScore();
+            nodes[i] = results.pop();
+        }
+        return new Result(nodes, scores);
+    }
+
+    /**
+     * 精確 Top-K 搜索：掃描所有通過過濾的節點
+     *
+     * 用於高選擇性過濾：符合條件的節點很少時，圖搜索可能因啟發式剪枝後入度為零的節點而漏掉結果。
+     *
+     * @param query 已正規化的查詢向量
+     * @param k 返回數量
+     * @param accept 節點過濾
+     * @return 結果（按相似度降序）
+     */
+    Result exactSearch(float[] query, int k, IntPredicate accept) {
+        float[] row = new float[vectors.dimensions()];
+        int[] matched = new int[16];
+        double[] scores = new double[16];
+        int count = 0;
+        for (int node = 0; node < size(); node++) {
+            if (!accept.test(node)) {
+                continue;
+            }
+            if (count == matched.length) {
+                matched = Arrays.copyOf(matched, count * 2);
+                scores = Arrays.copyOf(scores, count * 2);
+            }
+            matched[count] = node;
+            scores[count++] = similarity(query, node, row);
+        }
+
+        double[] candidateScores = Arrays.copyOf(scores, count);
+        int[] top = TopKSelector.select(candidateScores, k);
+        int[] nodes = new int[top.length];
+        double[] topScores = new double[top.length];
+        for (int i = 0; i < top.length; i++) {
+            nodes[i] = matched[top[i]];
+            topScores[i] = candidateScores[top[i]];
+        }
+        return new Result(nodes, topScores);
+    }
+
+    /**
+     * 搜索結果（按相似度降序）
+     *
+     * @param nodes 節點編號
+     * @param scores 相似度（內積）
+     */
+    record Result(int[] nodes, double[] scores) {
+    }
+
+    /**
+     * 上層貪心下降：移動到當前層中比目前節點更相似的鄰居，直到無法改進
+     *
+     * @return 停止時的節點（相似度寫入 {@code s.greedyScore}）
+     */
+    private int greedyStep(float[] query, int start, double startScore, int level, Scratch s) {
+        int current = start;
+        double currentScore = startScore;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                double score = similarity(query, neighbor, s.row);
+                if (score > currentScore) {
+                    current = neighbor;
+                    currentScore = score;
+                    changed = true;
+                }
+            }
+        }
+        s.greedyScore = currentScore;
+        return current;
+    }
+
+    /**
+     * 單層 best-first 搜索
+     *
+     * @param entries 入口節點（含相似度）
+     * @param ef 結果集大小
+     * @param accept 可進入結果集的節點
+     * @return 結果集（小頂堆，堆頂為最不相似的結果）
+     */
+    private NodeHeap searchLayer(float[] query, NodeHeap entries, int ef, int level,
+                                 IntPredicate accept, Scratch s) {
+        int epoch = s.nextEpoch();
+        NodeHeap candidates = new NodeHeap(Math.max(16, ef), false);
+        NodeHeap results = new NodeHeap(ef + 1, true);
+
+        for (int i = 0; i < entries.size(); i++) {
+            int node = entries.nodeAt(i);
+            double score = entries.scoreAt(i);
+            s.visited[node] = epoch;
+            candidates.push(node, score);
+            if (accept.test(node)) {
+                results.push(node, score);
+            }
+        }
+        while (results.size() > ef) {
+            results.pop();
+        }
+
+        while (candidates.size() > 0) {
+            double candidateScore = candidates.peekScore();
+            if (results.size() >= ef && candidateScore < results.peekScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+
+            int[] neighbors = links[candidate][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (s.visited[neighbor] == epoch) {
+                    continue;
+                }
+                s.visited[neighbor] = epoch;
+
+                double score = similarity(query, neighbor, s.row);
+                if (results.size() < ef || score > results.peekScore()) {
+                    candidates.push(neighbor, score);
+                    if (accept.test(neighbor)) {
+                        results.push(neighbor, score);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 啟發式鄰居選擇：依相似度由高到低檢查候選，
+     * 與任一已選鄰居的相似度高於與目標的相似度時捨棄（該方向已有更近的連線）
+     *
+     * @param candidates 候選（含與目標的相似度），呼叫後保持不變
+     * @param limit 最大鄰居數
+     */
+    private int[] selectNeighbors(NodeHeap candidates, int limit, Scratch s) {
+        int count = candidates.size();
+        int[] order = new int[count];
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = candidates.nodeAt(i);
+            scores[i] = candidates.scoreAt(i);
+        }
+        sortDescending(order, scores);
+        return selectSorted(order, scores, count, limit, s);
+    }
+
+    private int[] selectSorted(int[] order, double[] scores, int count, int limit, Scratch s) {
+        int[] selected = new int[Math.min(limit, count)];
+        int selectedCount = 0;
+        for (int i = 0; i < count && selectedCount < limit; i++) {
+            float[] candidateVector = s.selectedVectors[selectedCount];
+            vectors.read(order[i], candidateVector);
+            boolean keep = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (VectorUtil.dotProduct(candidateVector, s.selectedVectors[j]) > scores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[selectedCount++] = order[i];
+            }
+        }
+        return selectedCount == selected.length ? selected : Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * 加入單向連線；超過該層上限時以啟發式重新挑選鄰居
+     */
+    private void addLink(int from, int to, int level, Scratch s) {
+        int[] neighbors = links[from][level];
+        int count = neighbors[0];
+        int limit = maxNeighbors(level);
+        if (count < limit) {
+            neighbors[++neighbors[0]] = to;
+            return;
+        }
+
+        float[] base = new float[vectors.dimensions()];
+        vectors.read(from, base);
+        int[] order = new int[count + 1];
+        double[] scores = new double[count + 1];
+        for (int i = 0; i < count; i++) {
+            order[i] = neighbors[i + 1];
+            scores[i] = similarity(base, order[i], s.row);
+        }
+        order[count] = to;
+        scores[count] = similarity(base, to, s.row);
+        sortDescending(order, scores);
+
+        int[] selected = selectSorted(order, scores, count + 1, limit, s);
+        neighbors[0] = selected.length;
+        System.arraycopy(selected, 0, neighbors, 1, selected.length);
+    }
+
+    /**
+     * 從池中借出暫存區（池空時新建），visited 陣列至少可容納 capacity 個節點
+     */
+    private Scratch acquireScratch(int capacity) {
+        Scratch s = scratchPool.poll();
+        if (s == null) {
+            s = new Scratch(vectors.dimensions(), maxM0);
+        }
+        s.ensureVisitedCapacity(capacity);
+        return s;
+    }
+
+    /**
+     * 歸還暫存區（池已滿時丟棄，由 GC 回收）
+     */
+    private void releaseScratch(Scratch s) {
+        scratchPool.offer(s);
+    }
+
+    private double similarity(float[] query, int node, float[] row) {
+        vectors.read(node, row);
+        return VectorUtil.dotProduct(query, row);
+    }
+
+    private int maxNeighbors(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double uniform = 1.0 - random.nextDouble();
+        return Math.min(MAX_LEVEL, (int) (-Math.log(uniform) * levelMultiplier));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > links.length) {
+            links = Arrays.copyOf(links, Math.max(capacity, links.length + (links.length >> 1)));
+        }
+    }
+
+    /**
+     * 以相似度降序排序（插入排序，候選數不超過 efConstruction）
+     */
+    private static void sortDescending(int[] nodes, double[] scores) {
+        for (int i = 1; i < nodes.length; i++) {
+            int node = nodes[i];
+            double score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                nodes[j + 1] = nodes[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * 寫出全部向量（供 {@link OffHeapVectorStorage#map} 載入）
+     *
+     * @param file 目標檔案
+     * @throws IOException 寫入失敗
+     */
+    void writeVectorsTo(Path file) throws IOException {
+        vectors.writeTo(file);
+    }
+
+    /**
+     * 寫出圖結構（不含向量）
+     *
+     * @param out 輸出流
+     * @throws IOException 寫入失敗
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(size());
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int node = 0; node < size(); node++) {
+            int[][] levels = links[node];
+            out.writeByte(levels.length);
+            for (int[] neighbors : levels) {
+                out.writeShort(neighbors[0]);
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    out.writeInt(neighbors[i]);
+                }
+            }
+        }
+        long[] deletedWords = deleted.toLongArray();
+        out.writeInt(deletedWords.length);
+        for (long word : deletedWords) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * 讀取 {@link #writeTo(DataOutputStream)} 寫出的圖結構
+     *
+     * @param in 輸入流
+     * @param vectors 對應的向量存儲
+     * @param seed 後續插入使用的層級隨機數種子
+     * @return 圖
+     * @throws IOException 格式不符或讀取失敗
+     */
+    static HnswGraph readFrom(DataInputStream in, OffHeapVectorStorage vectors, long seed) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支援的索引格式版本: " + version);
+        }
+        int m = in.readInt();
+        int efConstruction = in.readInt();
+        int size = in.readInt();
+        if (size != vectors.size()) {
+            throw new IOException("索引節點數與向量數不符: " + size + " != " + vectors.size());
+        }
+
+        HnswGraph graph = new HnswGraph(vectors, m, efConstruction, seed);
+        graph.entryPoint = in.readInt();
+        graph.maxLevel = in.readInt();
+        graph.ensureCapacity(size);
+        for (int node = 0; node < size; node++) {
+            int levelCount = in.readUnsignedByte();
+            int[][] levels = new int[levelCount][];
+            for (int l = 0; l < levelCount; l++) {
+                int count = in.readUnsignedShort();
+                int[] neighbors = new int[1 + graph.maxNeighbors(l)];
+                neighbors[0] = count;
+                for (int i = 1; i <= count; i++) {
+                    neighbors[i] = in.readInt();
+                }
+                levels[l] = neighbors;
+            }
+            graph.links[node] = levels;
+        }
+
+        long[] deletedWords = new long[in.readInt()];
+        for (int i = 0; i < deletedWords.length; i++) {
+            deletedWords[i] = in.readLong();
+        }
+        graph.deleted.or(BitSet.valueOf(deletedWords));
+        graph.deletedCount = graph.deleted.cardinality();
+        return graph;
+    }
+
+    /**
+     * 搜索暫存區：向量讀取緩衝、鄰居選擇緩衝與以 epoch 標記的已訪問陣列（避免每次搜索清空）
+     *
+     * 同一時間只由一個搜索或插入使用，用完歸還 {@link #scratchPool} 供後續查詢重用。
+     */
+    private static final class Scratch {
+        private final float[] row;
+        private final float[][] selectedVectors;
+        private int[] visited = new int[0];
+        private int epoch;
+        private double greedyScore;
+
+        private Scratch(int dimensions, int maxNeighbors) {
+            this.row = new float[dimensions];
+            this.selectedVectors = new float[maxNeighbors][dimensions];
+        }
+
+        private void ensureVisitedCapacity(int capacity) {
+            if (visited.length < capacity) {
+                visited = Arrays.copyOf(visited, Math.max(capacity, visited.length + (visited.length >> 1)));
+            }
+        }
+
+        private int nextEpoch() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                epoch = 1;
+            }
+            return epoch;
+        }
+    }
+
+    /**
+     * 以基本型別陣列實現的二元堆（避免每個訪問節點配置物件）
+     */
+    private static final class NodeHeap {
+        private final boolean minHeap;
+        private int[] nodes;
+        private double[] scores;
+        private int size;
+
+        private NodeHeap(int capacity, boolean minHeap) {
+            this.minHeap = minHeap;
+            this.nodes = new int[Math.max(1, capacity)];
+            this.scores = new double[Math.max(1, capacity)];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private int nodeAt(int index) {
+            return nodes[index];
+        }
+
+        private double scoreAt(int index) {
+            return scores[index];
+        }
+
+        private double peekScore() {
+            return scores[0];
+        }
+
+        private void push(int node, double score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        private int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            double lastScore = scores[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!before(scores[child], lastScore)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        private boolean before(double a, double b) {
+            return minHeap ? a < b : a > b;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.example.advancedrag.vectorstore;
+
+import com.example.advancedrag.exception.VectorStoreException;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.VectorUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * 進程內 HNSW 向量庫
+ *
+ * 實現 Spring AI {@link VectorStore} 與 {@link EmbeddingVectorSearch}，
+ * 啟用後（{@code app.rag.local-vector-store.enabled=true}）取代 pgvector，
+ * 讓邊緣節點與 CI 不需外部資料庫即可執行完整的寫入與檢索流程。
+ *
+ * 功能：
+ * - 增量寫入：同 ID 再次寫入視為更新（舊節點標記刪除後插入新節點）
+ * - 刪除：按 ID 或元數據過濾表達式；標記刪除的節點仍參與圖導航，可以 {@link #compact()} 重建回收
+ * - 過濾檢索：{@link SearchRequest#getFilterExpression()} 在第 0 層搜索時套用，不符合的節點只用於導航；
+ *   結果不足 topK 時（高選擇性過濾）改為精確掃描符合的文檔
+ * - 快照：{@link #snapshot(Path)} 將向量、圖結構與文檔寫入新的版本子目錄，再以原子替換 CURRENT 檔切換版本；
+ *   {@link #restore(Path)} 讀取 CURRENT 指向的版本並以記憶體映射載入向量
+ *
+ * 並發：檢索持有讀鎖可並行；寫入、刪除與快照載入持有寫鎖。
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "app.rag.local-vector-store", name = "enabled", havingValue = "true")
+public class HnswVectorStore implements VectorStore, EmbeddingVectorSearch {
+
+    private static final String VECTORS_FILE = "vectors.f32";
+    private static final String GRAPH_FILE = "graph.bin";
+    private static final String DOCUMENTS_FILE = "documents.json";
+    private static final String MANIFEST_FILE = "CURRENT";
+    private static final String VERSION_PREFIX = "snapshot-";
+    private static final int SNAPSHOT_MAGIC = 0x484E5357;
+    private static final long LEVEL_SEED = 42L;
+    private static final TypeReference<List<StoredDocument>> DOCUMENTS_TYPE = new TypeReference<>() {};
+
+    private final EmbeddingModel embeddingModel;
+    private final RAGProperties.LocalVectorStore properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private HnswGraph graph;
+    private List<StoredDocument> documents = new ArrayList<>();
+    private Map<String, Integer> nodeById = new HashMap<>();
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, RAGProperties ragProperties) {
+        this.embeddingModel = embeddingModel;
+        this.properties = ragProperties.getLocalVectorStore();
+    }
+
+    /**
+     * 啟動時載入快照（目錄存在時）
+     */
+    @PostConstruct
+    public void loadSnapshot() {
+        Path directory = snapshotDirectory();
+        if (directory != null && (Files.exists(directory.resolve(MANIFEST_FILE))
+                || Files.exists(directory.resolve(GRAPH_FILE)))) {
+            restore(directory);
+        }
+    }
+
+    /**
+     * 關閉時保存快照
+     */
+    @PreDestroy
+    public void saveSnapshot() {
+        Path directory = snapshotDirectory();
+        if (directory != null && Boolean.TRUE.equals(properties.getSnapshotOnShutdown())) {
+            snapshot(directory);
+        }
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<String> texts = documents.stream().map(Document::getText).toList();
+        add(documents, embeddingModel.embed(texts));
+    }
+
+    /**
+     * 以預先計算的 Embedding 寫入文檔
+     *
+     * @param documents 文檔列表
+     * @param embeddings Embedding 列表（與文檔順序一致）
+     */
+    public void add(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("文檔與向量數量不一致");
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                float[] embedding = embeddings.get(i);
+                if (graph == null) {
+                    graph = newGraph(embedding.length);
+                }
+
+                Integer previous = nodeById.get(document.getId());
+                if (previous != null) {
+                    removeNode(previous);
+                }
+
+                int node = graph.insert(VectorUtil.normalize(embedding));
+                this.documents.add(new StoredDocument(
+                        document.getId(), document.getText(), new HashMap<>(document.getMetadata())));
+                nodeById.put(document.getId(), node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("HNSW 向量庫寫入 {} 個文檔，目前 {} 個", documents.size(), size());
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer node = nodeById.get(id);
+                if (node != null) {
+                    removeNode(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> filter = MetadataFilter.compile(filterExpression);
+        lock.writeLock().lock();
+        try {
+            for (int node = 0; node < documents.size(); node++) {
+                StoredDocument document = documents.get(node);
+                if (document != null && filter.test(document.metadata())) {
+                    removeNode(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] queryEmbedding = embeddingModel.embed(request.getQuery());
+        return search(queryEmbedding, request.getTopK(), request.getSimilarityThreshold(),
+                request.getFilterExpression());
+    }
+
+    @Override
+    public List<Document> similaritySearch(float[] queryEmbedding, int topK, double similarityThreshold) {
+        return search(queryEmbedding, topK, similarityThreshold, null);
+    }
+
+    /**
+     * 向量相似度檢索（可選元數據過濾）
+     *
+     * @param queryEmbedding 查詢向量
+     * @param topK 返回數量
+     * @param similarityThreshold 相似度閾值（0-1，餘弦相似度）
+     * @param filterExpression 過濾表達式（null 表示不過濾）
+     * @return 文檔列表（按相似度降序，metadata 含 distance，score 為相似度）
+     */
+    public List<Document> search(float[] queryEmbedding, int topK, double similarityThreshold,
+                                 Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> filter = MetadataFilter.compile(filterExpression);
+        float[] query = VectorUtil.normalize(queryEmbedding);
+
+        lock.readLock().lock();
+        try {
+            if (graph == null) {
+                return List.of();
+            }
+            if (query.length != graph.dimensions()) {
+                throw new IllegalArgumentException("查詢向量維度不一致: " + query.length + " != " + graph.dimensions());
+            }
+
+            IntPredicate accept = node -> {
+                StoredDocument document = documents.get(node);
+                return document != null && filter.test(document.metadata());
+            };
+            HnswGraph.Result result = graph.search(query, topK, properties.getEfSearch(), accept);
+            if (filterExpression != null && result.nodes().length < topK) {
+                // 符合條件的文檔不足 topK：改以精確掃描，避免高選擇性過濾漏掉結果
+                result = graph.exactSearch(query, topK, accept);
+            }
+
+            List<Document> hits = new ArrayList<>(result.nodes().length);
+            for (int i = 0; i < result.nodes().length; i++) {
+                double similarity = result.scores()[i];
+                if (similarity < similarityThreshold) {
+                    break;
+                }
+                hits.add(toDocument(documents.get(result.nodes()[i]), similarity));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> findByIds(Collection<String> ids) {
+        lock.readLock().lock();
+        try {
+            List<Document> found = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                Integer node = nodeById.get(id);
+                if (node != null) {
+                    found.add(toDocument(documents.get(node)));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachPage(int pageSize, Consumer<List<Document>> pageConsumer) {
+        int node = 0;
+        while (true) {
+            List<Document> page = new ArrayList<>(pageSize);
+            // 每頁單獨持有讀鎖，處理函數在鎖外執行，不阻塞寫入
+            lock.readLock().lock();
+            try {
+                while (node < documents.size() && page.size() < pageSize) {
+                    StoredDocument document = documents.get(node++);
+                    if (document != null) {
+                        page.add(toDocument(document));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (page.isEmpty()) {
+                return;
+            }
+            pageConsumer.accept(page);
+        }
+    }
+
+    /**
+     * 有效文檔數（不含已刪除）
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 重建索引，回收已刪除節點佔用的向量與圖空間
+     *
+     * 重建期間持有寫鎖（檢索會等待），適合在刪除比例較高時於低峰期呼叫。
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (graph == null || graph.deletedCount() == 0) {
+                return;
+            }
+
+            int removed = graph.deletedCount();
+            HnswGraph rebuilt = newGraph(graph.dimensions());
+            List<StoredDocument> liveDocuments = new ArrayList<>(nodeById.size());
+            Map<String, Integer> liveNodes = new HashMap<>();
+            float[] vector = new float[graph.dimensions()];
+            for (int node = 0; node < documents.size(); node++) {
+                StoredDocument document = documents.get(node);
+                if (document == null) {
+                    continue;
+                }
+                graph.readVector(node, vector);
+                liveNodes.put(document.id(), rebuilt.insert(vector));
+                liveDocuments.add(document);
+            }
+
+            graph = rebuilt;
+            documents = liveDocuments;
+            nodeById = liveNodes;
+            log.info("HNSW 向量庫重建完成，回收 {} 個已刪除節點，目前 {} 個", removed, liveNodes.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 保存快照
+     *
+     * 三個檔案寫入新的版本子目錄（snapshot-N），全部寫完後才以原子替換 CURRENT 檔指向新版本，
+     * 中途崩潰只會留下未被引用的目錄，載入時始終得到同一版本的向量、圖結構與文檔。
+     * 切換後刪除更早的版本，保留上一版本（可能仍被記憶體映射）。
+     *
+     * @param directory 快照根目錄
+     */
+    public void snapshot(Path directory) {
+        lock.readLock().lock();
+        try {
+            if (graph == null) {
+                return;
+            }
+            Files.createDirectories(directory);
+            String previous = currentVersion(directory);
+            String version = VERSION_PREFIX + (latestVersionNumber(directory) + 1);
+            Path target = Files.createDirectory(directory.resolve(version));
+
+            graph.writeVectorsTo(target.resolve(VECTORS_FILE));
+            objectMapper.writeValue(target.resolve(DOCUMENTS_FILE).toFile(), documents);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(target.resolve(GRAPH_FILE)), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(graph.dimensions());
+                out.writeInt(graph.size());
+                graph.writeTo(out);
+            }
+
+            Path manifestTemp = directory.resolve(MANIFEST_FILE + ".tmp");
+            Files.writeString(manifestTemp, version);
+            moveAtomically(manifestTemp, directory.resolve(MANIFEST_FILE));
+            log.info("HNSW 向量庫快照已保存: {}，{} 個節點", target, graph.size());
+
+            deleteOldVersions(directory, version, previous);
+        } catch (IOException e) {
+            throw new VectorStoreException("SNAPSHOT_FAILED", "保存 HNSW 快照失敗: " + e.getMessage(), "snapshot");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 載入快照，取代目前內容（向量以唯讀記憶體映射使用，不複製到堆上）
+     *
+     * 讀取 CURRENT 指向的版本子目錄；沒有 CURRENT 時按舊版格式直接讀取根目錄中的檔案。
+     *
+     * @param root 快照根目錄
+     */
+    public void restore(Path root) {
+        try {
+            String version = currentVersion(root);
+            Path directory = version != null ? root.resolve(version) : root;
+            HnswGraph restored;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(directory.resolve(GRAPH_FILE)), 1 << 16))) {
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("不是 HNSW 快照檔");
+                }
+                int dimensions = in.readInt();
+                int size = in.readInt();
+                OffHeapVectorStorage vectors = OffHeapVectorStorage.map(
+                        directory.resolve(VECTORS_FILE), dimensions, size);
+                restored = HnswGraph.readFrom(in, vectors, LEVEL_SEED);
+            }
+
+            List<StoredDocument> restoredDocuments = objectMapper.readValue(
+                    directory.resolve(DOCUMENTS_FILE).toFile(), DOCUMENTS_TYPE);
+            if (restoredDocuments.size() != restored.size()) {
+                throw new IOException("文檔數與節點數不符: " + restoredDocuments.size() + " != " + restored.size());
+            }
+            Map<String, Integer> restoredNodes = new HashMap<>();
+            for (int node = 0; node < restoredDocuments.size(); node++) {
+                StoredDocument document = restoredDocuments.get(node);
+                if (document != null && !restored.isDeleted(node)) {
+                    restoredNodes.put(document.id(), node);
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                graph = restored;
+                documents = restoredDocuments;
+                nodeById = restoredNodes;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("HNSW 向量庫快照已載入: {}，{} 個文檔", directory, restoredNodes.size());
+        } catch (IOException e) {
+            throw new VectorStoreException("RESTORE_FAILED", "載入 HNSW 快照失敗: " + e.getMessage(), "restore");
+        }
+    }
+
+    private HnswGraph newGraph(int dimensions) {
+        return new HnswGraph(dimensions, properties.getM(), properties.getEfConstruction(), LEVEL_SEED);
+    }
+
+    private void removeNode(int node) {
+        StoredDocument document = documents.get(node);
+        if (document != null) {
+            nodeById.remove(document.id());
+            documents.set(node, null);
+        }
+        graph.markDeleted(node);
+    }
+
+    private Path snapshotDirectory() {
+        return StringUtils.hasText(properties.getSnapshotPath()) ? Path.of(properties.getSnapshotPath()) : null;
+    }
+
+    /**
+     * CURRENT 檔指向的版本目錄名（不存在時返回 null）
+     */
+    private static String currentVersion(Path root) throws IOException {
+        Path manifest = root.resolve(MANIFEST_FILE);
+        return Files.exists(manifest) ? Files.readString(manifest).trim() : null;
+    }
+
+    /**
+     * 已存在的最大版本號（包含未完成、未被 CURRENT 引用的目錄，避免重用其名稱）
+     */
+    private static long latestVersionNumber(Path root) throws IOException {
+        long latest = 0;
+        try (var entries = Files.list(root)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(VERSION_PREFIX)) {
+                    try {
+                        latest = Math.max(latest, Long.parseLong(name.substring(VERSION_PREFIX.length())));
+                    } catch (NumberFormatException ignored) {
+                        // 非快照版本目錄
+                    }
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 刪除目前與上一版本以外的版本目錄（刪除失敗只記錄日誌，例如檔案仍被映射）
+     */
+    private static void deleteOldVersions(Path root, String current, String previous) {
+        try (var entries = Files.list(root)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(VERSION_PREFIX) && !name.equals(current) && !name.equals(previous)) {
+                    deleteDirectory(entry);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理舊 HNSW 快照失敗: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Document toDocument(StoredDocument document) {
+        return Document.builder()
+                .id(document.id())
+                .text(document.text())
+                .metadata(new HashMap<>(document.metadata()))
+                .build();
+    }
+
+    private static Document toDocument(StoredDocument document, double similarity) {
+        Map<String, Object> metadata = new HashMap<>(document.metadata());
+        metadata.put("distance", 1.0 - similarity);
+        return Document.builder()
+                .id(document.id())
+                .text(document.text())
+                .metadata(metadata)
+                .score(similarity)
+                .build();
+    }
+
+    /**
+     * 節點對應的文檔（已刪除節點為 null）
+     */
+    record StoredDocument(String id, String text, Map<String, Object> metadata) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.advancedrag.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * 元數據過濾表達式求值
+ *
+ * 將 Spring AI 的 {@link Filter.Expression}（由 {@code FilterExpressionBuilder} 或
+ * {@code "genre == 'drama' && year >= 2020"} 形式的文字表達式解析而來）編譯為對文檔元數據的判斷式。
+ * 支援 AND / OR / NOT、EQ / NE / GT / GTE / LT / LTE、IN / NIN 與括號分組。
+ *
+ * 比較規則：
+ * - 兩側皆為數字時按數值比較（元數據的 Integer 與表達式的 Long / Double 可互相比較）
+ * - 其餘按相同類型的自然順序比較，類型不同視為不相等
+ * - 元數據缺少欄位時，除 NE / NIN 外一律不匹配
+ */
+final class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    /**
+     * 編譯過濾表達式
+     *
+     * @param expression 過濾表達式（null 表示不過濾）
+     * @return 元數據判斷式
+     */
+    static Predicate<Map<String, Object>> compile(Filter.Expression expression) {
+        if (expression == null) {
+            return metadata -> true;
+        }
+        return compileOperand(expression);
+    }
+
+    private static Predicate<Map<String, Object>> compileOperand(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return compileOperand(group.content());
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("不支援的過濾運算元: " + operand);
+        }
+
+        return switch (expression.type()) {
+            case AND -> compileOperand(expression.left()).and(compileOperand(expression.right()));
+            case OR -> compileOperand(expression.left()).or(compileOperand(expression.right()));
+            case NOT -> compileOperand(expression.left()).negate();
+            case EQ -> comparison(expression, (actual, expected) -> valueEquals(actual, expected));
+            case NE -> comparison(expression, (actual, expected) -> !valueEquals(actual, expected));
+            case GT -> comparison(expression, (actual, expected) -> compare(actual, expected, c -> c > 0));
+            case GTE -> comparison(expression, (actual, expected) -> compare(actual, expected, c -> c >= 0));
+            case LT -> comparison(expression, (actual, expected) -> compare(actual, expected, c -> c < 0));
+            case LTE -> comparison(expression, (actual, expected) -> compare(actual, expected, c -> c <= 0));
+            case IN -> comparison(expression, (actual, expected) -> contains(expected, actual));
+            case NIN -> comparison(expression, (actual, expected) -> !contains(expected, actual));
+            default -> throw new UnsupportedOperationException("不支援的過濾運算: " + expression.type());
+        };
+    }
+
+    private static Predicate<Map<String, Object>> comparison(Filter.Expression expression, Matcher matcher) {
+        if (!(expression.left() instanceof Filter.Key key) || !(expression.right() instanceof Filter.Value value)) {
+            throw new IllegalArgumentException("比較運算的左側須為欄位、右側須為值: " + expression);
+        }
+        String field = unquote(key.key());
+        Object expected = value.value();
+        boolean matchesMissing = expression.type() == Filter.ExpressionType.NE
+                || expression.type() == Filter.ExpressionType.NIN;
+
+        return metadata -> {
+            Object actual = metadata.get(field);
+            if (actual == null) {
+                return matchesMissing;
+            }
+            return matcher.matches(actual, expected);
+        };
+    }
+
+    private static boolean valueEquals(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+        return Objects.equals(actual, expected);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static boolean compare(Object actual, Object expected, IntPredicate test) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return test.test(Double.compare(a.doubleValue(), b.doubleValue()));
+        }
+        if (actual instanceof Comparable comparable && actual.getClass().isInstance(expected)) {
+            return test.test(comparable.compareTo(expected));
+        }
+        // 類型不同無法比較：不滿足任何大小關係
+        return false;
+    }
+
+    private static boolean contains(Object expected, Object actual) {
+        Collection<?> values = expected instanceof Collection<?> collection ? collection : List.of(expected);
+        for (Object value : values) {
+            if (valueEquals(actual, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String unquote(String key) {
+        if (key.length() >= 2) {
+            char first = key.charAt(0);
+            char last = key.charAt(key.length() - 1);
+            if ((first == '"' || first == '\'') && first == last) {
+                return key.substring(1, key.length() - 1);
+            }
+        }
+        return key;
+    }
+
+    @FunctionalInterface
+    private interface Matcher {
+        boolean matches(Object actual, Object expected);
+    }
+}
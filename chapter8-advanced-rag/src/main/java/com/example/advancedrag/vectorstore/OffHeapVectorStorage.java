@@ -0,0 +1,171 @@
+package com.example.advancedrag.vectorstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外向量存儲（只追加）
+ *
+ * 向量按列連續存放在多個 direct buffer 分段中，每段不超過 1 GiB，總容量不受單個 ByteBuffer 2 GiB 的限制；
+ * 百萬級向量不佔用 Java 堆，也不增加 GC 掃描成本。位元組序固定為 little-endian，與快照檔格式一致。
+ * 最後一個分段按需倍增（複製到更大的 buffer），小型向量庫不會預先配置整段記憶體。
+ *
+ * 從快照載入時，完整的分段直接以唯讀記憶體映射使用（由作業系統按需分頁），
+ * 僅最後一個未滿分段複製到新分配的 direct buffer 以便繼續追加。
+ *
+ * 寫入由呼叫端以寫鎖串行化；讀取只使用絕對位置的批量 get，可多線程並行。
+ */
+final class OffHeapVectorStorage {
+
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int INITIAL_SEGMENT_ROWS = 1024;
+
+    private final int dimensions;
+    private final int rowsPerSegment;
+    private final List<ByteBuffer> segmentBytes = new ArrayList<>();
+    private final List<FloatBuffer> segments = new ArrayList<>();
+    private int size;
+
+    OffHeapVectorStorage(int dimensions) {
+        if (dimensions <= 0) {
+            throw new IllegalArgumentException("向量維度必須大於 0: " + dimensions);
+        }
+        this.dimensions = dimensions;
+        this.rowsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / ((long) dimensions * Float.BYTES));
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 追加一列向量
+     *
+     * @param vector 向量（長度須等於維度）
+     * @return 列號
+     */
+    int append(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("向量維度不一致: " + vector.length + " != " + dimensions);
+        }
+        int segment = size / rowsPerSegment;
+        int offset = size % rowsPerSegment;
+        if (segment == segments.size()) {
+            addSegment(allocate(Math.min(INITIAL_SEGMENT_ROWS, rowsPerSegment)));
+        } else if (offset * dimensions == segments.get(segment).capacity()) {
+            growLastSegment();
+        }
+        segments.get(segment).put(offset * dimensions, vector);
+        return size++;
+    }
+
+    /**
+     * 讀取一列向量到呼叫端提供的陣列
+     *
+     * @param row 列號
+     * @param target 目標陣列（長度至少為維度）
+     */
+    void read(int row, float[] target) {
+        segments.get(row / rowsPerSegment).get((row % rowsPerSegment) * dimensions, target, 0, dimensions);
+    }
+
+    /**
+     * 將所有向量依列順序寫入檔案（little-endian float32）
+     *
+     * @param file 目標檔案
+     * @throws IOException 寫入失敗
+     */
+    void writeTo(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int remaining = size;
+            for (ByteBuffer segment : segmentBytes) {
+                int rows = Math.min(remaining, rowsPerSegment);
+                ByteBuffer bytes = segment.duplicate().clear().limit(rows * dimensions * Float.BYTES);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                remaining -= rows;
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 以記憶體映射載入 {@link #writeTo(Path)} 寫出的檔案
+     *
+     * @param file 向量檔案
+     * @param dimensions 向量維度
+     * @param rows 向量數量
+     * @return 存儲實例
+     * @throws IOException 檔案大小不符或讀取失敗
+     */
+    static OffHeapVectorStorage map(Path file, int dimensions, int rows) throws IOException {
+        OffHeapVectorStorage storage = new OffHeapVectorStorage(dimensions);
+        long segmentSize = (long) storage.rowsPerSegment * dimensions * Float.BYTES;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long expected = (long) rows * dimensions * Float.BYTES;
+            if (channel.size() != expected) {
+                throw new IOException("向量檔案大小不符: " + channel.size() + " != " + expected);
+            }
+
+            int fullSegments = rows / storage.rowsPerSegment;
+            for (int i = 0; i < fullSegments; i++) {
+                storage.addSegment(channel.map(FileChannel.MapMode.READ_ONLY, i * segmentSize, segmentSize));
+            }
+
+            int tailRows = rows % storage.rowsPerSegment;
+            if (tailRows > 0) {
+                ByteBuffer tail = storage.allocate(tailRows);
+                ByteBuffer bytes = tail.duplicate().limit(tailRows * dimensions * Float.BYTES);
+                long position = fullSegments * segmentSize;
+                while (bytes.hasRemaining()) {
+                    int read = channel.read(bytes, position);
+                    if (read < 0) {
+                        throw new IOException("向量檔案提前結束");
+                    }
+                    position += read;
+                }
+                storage.addSegment(tail);
+            }
+        }
+
+        storage.size = rows;
+        return storage;
+    }
+
+    private ByteBuffer allocate(int rows) {
+        return ByteBuffer.allocateDirect(rows * dimensions * Float.BYTES);
+    }
+
+    /**
+     * 最後一個分段容量倍增（不超過分段上限），已寫入的內容複製到新 buffer
+     */
+    private void growLastSegment() {
+        int last = segments.size() - 1;
+        ByteBuffer current = segmentBytes.get(last);
+        int rows = current.capacity() / (dimensions * Float.BYTES);
+        ByteBuffer grown = allocate((int) Math.min((long) rows * 2, rowsPerSegment));
+        grown.put(current.duplicate().clear()).clear();
+        segmentBytes.remove(last);
+        segments.remove(last);
+        addSegment(grown);
+    }
+
+    private void addSegment(ByteBuffer buffer) {
+        segmentBytes.add(buffer);
+        segments.add(buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+    }
+}
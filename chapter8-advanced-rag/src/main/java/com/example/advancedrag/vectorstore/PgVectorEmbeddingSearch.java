@@ -0,0 +1,143 @@
+package com.example.advancedrag.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * pgvector 向量檢索（JDBC 直連）
+ *
+ * 直接對 Spring AI PgVectorStore 建立的資料表執行 {@code embedding <=> ?} 餘弦距離查詢，
+ * 查詢向量由呼叫端傳入（通常來自 SmartEmbeddingService 及其快取），
+ * 快取命中時整個檢索過程不需要呼叫 Embedding API。
+ * 按 ID 查詢與分頁遍歷以主鍵（UUID）進行，分頁採 keyset 方式避免大 OFFSET。
+ * 啟用進程內向量庫（{@code app.rag.local-vector-store.enabled=true}）時由 {@link HnswVectorStore} 取代。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.rag.local-vector-store", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class PgVectorEmbeddingSearch implements EmbeddingVectorSearch {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String searchSql;
+    private final String findByIdsSql;
+    private final String firstPageSql;
+    private final String nextPageSql;
+
+    public PgVectorEmbeddingSearch(
+            JdbcTemplate jdbcTemplate,
+            @Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schemaName,
+            @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        String table = StringUtils.hasText(schemaName) ? schemaName + "." + tableName : tableName;
+        this.searchSql = "SELECT id, content, metadata, embedding <=> ?::vector AS distance FROM " + table
+                + " WHERE embedding <=> ?::vector < ? ORDER BY distance LIMIT ?";
+        this.findByIdsSql = "SELECT id, content, metadata FROM " + table + " WHERE id = ANY(?::uuid[])";
+        this.firstPageSql = "SELECT id, content, metadata FROM " + table + " ORDER BY id LIMIT ?";
+        this.nextPageSql = "SELECT id, content, metadata FROM " + table + " WHERE id > ?::uuid ORDER BY id LIMIT ?";
+    }
+
+    @Override
+    public List<Document> similaritySearch(float[] queryEmbedding, int topK, double similarityThreshold) {
+        String vector = toVectorLiteral(queryEmbedding);
+        // 餘弦距離 = 1 - 餘弦相似度
+        double distanceThreshold = 1.0 - similarityThreshold;
+
+        List<Document> documents = jdbcTemplate.query(
+                searchSql,
+                (rs, rowNum) -> toDocument(rs),
+                vector, vector, distanceThreshold, topK
+        );
+
+        log.debug("pgvector 檢索完成，topK: {}，命中: {}", topK, documents.size());
+        return documents;
+    }
+
+    @Override
+    public List<Document> findByIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // PostgreSQL 陣列文字格式：{id1,id2,...}
+        String idArray = "{" + String.join(",", ids) + "}";
+        return jdbcTemplate.query(findByIdsSql, (rs, rowNum) -> toStoredDocument(rs), idArray);
+    }
+
+    @Override
+    public void forEachPage(int pageSize, Consumer<List<Document>> pageConsumer) {
+        List<Document> page = jdbcTemplate.query(firstPageSql, (rs, rowNum) -> toStoredDocument(rs), pageSize);
+        while (!page.isEmpty()) {
+            pageConsumer.accept(page);
+            if (page.size() < pageSize) {
+                return;
+            }
+            String lastId = page.get(page.size() - 1).getId();
+            page = jdbcTemplate.query(nextPageSql, (rs, rowNum) -> toStoredDocument(rs), lastId, pageSize);
+        }
+    }
+
+    /**
+     * 轉換為 pgvector 文字格式：[v1,v2,...]
+     */
+    private String toVectorLiteral(float[] embedding) {
+        StringBuilder literal = new StringBuilder(embedding.length * 12).append('[');
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(embedding[i]);
+        }
+        return literal.append(']').toString();
+    }
+
+    private Document toDocument(ResultSet rs) throws SQLException {
+        double distance = rs.getDouble("distance");
+
+        Map<String, Object> metadata = new HashMap<>(parseMetadata(rs.getString("metadata")));
+        metadata.put("distance", distance);
+
+        return Document.builder()
+                .id(rs.getString("id"))
+                .text(rs.getString("content"))
+                .metadata(metadata)
+                .score(1.0 - distance)
+                .build();
+    }
+
+    private Document toStoredDocument(ResultSet rs) throws SQLException {
+        return Document.builder()
+                .id(rs.getString("id"))
+                .text(rs.getString("content"))
+                .metadata(parseMetadata(rs.getString("metadata")))
+                .build();
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (!StringUtils.hasText(json)) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (Exception e) {
+            log.warn("無法解析文檔元數據，已忽略: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+}
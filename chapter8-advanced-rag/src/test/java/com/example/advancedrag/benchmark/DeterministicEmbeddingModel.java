@@ -0,0 +1,77 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.util.TextUtil;
+import com.example.advancedrag.util.VectorUtil;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 確定性的假 EmbeddingModel（不需網路）
+ *
+ * 以 {@link TextUtil#analyze(String)} 的詞項（英文單詞、中文二元組）做特徵哈希，
+ * 映射到固定維度並 L2 正規化：相同文本永遠得到相同向量，共享詞項越多的文本餘弦相似度越高。
+ * 只用於比較檢索與 Re-ranking 變更的相對效果，不代表真實模型的語義能力。
+ */
+class DeterministicEmbeddingModel implements EmbeddingModel {
+
+    static final int DEFAULT_DIMENSIONS = 256;
+
+    private final int dimensions;
+
+    DeterministicEmbeddingModel() {
+        this(DEFAULT_DIMENSIONS);
+    }
+
+    DeterministicEmbeddingModel(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(embed(texts.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        for (String term : TextUtil.analyze(text)) {
+            int hash = mix(term.hashCode());
+            // 低位決定符號，其餘位決定維度，降低碰撞造成的系統性偏差
+            vector[(hash >>> 1) % dimensions] += (hash & 1) == 0 ? 1f : -1f;
+        }
+        return VectorUtil.normalize(vector);
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * murmur3 fmix32：打散 String.hashCode 的低位分佈
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.util.TopKSelector;
+import com.example.advancedrag.util.VectorUtil;
+import com.example.advancedrag.vectorstore.EmbeddingVectorSearch;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 記憶體向量庫（暴力掃描餘弦相似度）
+ *
+ * 向量預先正規化後存成一個連續矩陣，查詢時以 {@link VectorUtil#dotProducts} 一次計算對所有文檔的相似度。
+ * 返回的文檔與 {@code PgVectorEmbeddingSearch} 一致：metadata 含 distance，score 為相似度。
+ */
+class InMemoryEmbeddingVectorSearch implements EmbeddingVectorSearch {
+
+    private final List<Document> documents = new ArrayList<>();
+    private float[] matrix = new float[0];
+    private int dimensions;
+
+    /**
+     * 加入文檔
+     *
+     * @param docs 文檔列表
+     * @param vectors Embedding 列表（與文檔順序一致）
+     */
+    void add(List<Document> docs, List<float[]> vectors) {
+        if (docs.size() != vectors.size()) {
+            throw new IllegalArgumentException("文檔與向量數量不一致");
+        }
+        if (vectors.isEmpty()) {
+            return;
+        }
+        if (dimensions == 0) {
+            dimensions = vectors.get(0).length;
+        }
+
+        int offset = matrix.length;
+        matrix = Arrays.copyOf(matrix, offset + vectors.size() * dimensions);
+        for (float[] vector : vectors) {
+            if (vector.length != dimensions) {
+                throw new IllegalArgumentException("向量維度不一致: " + vector.length + " != " + dimensions);
+            }
+            System.arraycopy(VectorUtil.normalize(vector), 0, matrix, offset, dimensions);
+            offset += dimensions;
+        }
+        documents.addAll(docs);
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    @Override
+    public List<Document> similaritySearch(float[] queryEmbedding, int topK, double similarityThreshold) {
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        double[] similarities = new double[documents.size()];
+        VectorUtil.dotProducts(VectorUtil.normalize(queryEmbedding), matrix, dimensions, similarities);
+
+        List<Document> results = new ArrayList<>();
+        for (int index : TopKSelector.select(similarities, topK)) {
+            if (similarities[index] < similarityThreshold) {
+                break;
+            }
+            Document document = documents.get(index);
+            Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+            metadata.put("distance", 1.0 - similarities[index]);
+            results.add(Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(metadata)
+                    .score(similarities[index])
+                    .build());
+        }
+        return results;
+    }
+
+    @Override
+    public List<Document> findByIds(Collection<String> ids) {
+        Set<String> wanted = new HashSet<>(ids);
+        return documents.stream()
+                .filter(document -> wanted.contains(document.getId()))
+                .toList();
+    }
+
+    @Override
+    public void forEachPage(int pageSize, Consumer<List<Document>> pageConsumer) {
+        for (int from = 0; from < documents.size(); from += pageSize) {
+            pageConsumer.accept(documents.subList(from, Math.min(documents.size(), from + pageSize)));
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.model.EmbeddingContext;
+import com.example.advancedrag.model.HybridRetrievalResult;
+import com.example.advancedrag.model.RAGQueryOptions;
+import com.example.advancedrag.model.ScoredDocument;
+import com.example.advancedrag.model.TestCase;
+import com.example.advancedrag.properties.EmbeddingProperties;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.reranking.RerankResult;
+import com.example.advancedrag.reranking.RerankingProvider;
+import com.example.advancedrag.service.BM25Service;
+import com.example.advancedrag.service.MultiStageRetrievalService;
+import com.example.advancedrag.service.SmartEmbeddingService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.document.Document;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * 離線檢索品質基準測試
+ *
+ * 以標註的「查詢 → 相關文檔」資料集（{@link TestCase#getRelevantDocIds()}）驅動真實的
+ * {@link MultiStageRetrievalService} 與各 {@link RerankingProvider}，
+ * Embedding 由 {@link DeterministicEmbeddingModel} 產生、向量庫為 {@link InMemoryEmbeddingVectorSearch}，
+ * 整個流程不需網路、結果可重現。
+ *
+ * 評估的管線：
+ * - vector：多階段檢索的粗檢索（Embedding + 向量檢索）
+ * - hybrid：向量 + BM25 混合檢索（RRF 融合）
+ * - vector+&lt;provider&gt;：粗檢索候選經 Re-ranking 重排
+ *
+ * 報告包含各管線的 recall@k、nDCG@k、MRR，以及各階段延遲的 p50/p95/p99。
+ */
+class RetrievalBenchmark {
+
+    /**
+     * 品質指標的截斷位置
+     */
+    static final List<Integer> CUTOFFS = List.of(1, 3, 5, 10);
+
+    private static final int RERANK_TOP_K = 10;
+
+    private final Dataset dataset;
+    private final List<RerankingProvider> providers;
+    private final int iterations;
+
+    /**
+     * @param dataset 標註資料集
+     * @param providers 參與比較的 Re-ranking 提供者
+     * @param iterations 量測輪數（另有一輪不計入的預熱）
+     */
+    RetrievalBenchmark(Dataset dataset, List<RerankingProvider> providers, int iterations) {
+        this.dataset = dataset;
+        this.providers = providers;
+        this.iterations = iterations;
+    }
+
+    /**
+     * 從 classpath 載入資料集
+     *
+     * @param objectMapper JSON 映射器
+     * @param resource classpath 路徑
+     * @return 資料集
+     */
+    static Dataset load(ObjectMapper objectMapper, String resource) throws IOException {
+        try (InputStream input = RetrievalBenchmark.class.getClassLoader().getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new IOException("找不到基準測試資料集: " + resource);
+            }
+            return objectMapper.readerFor(Dataset.class)
+                    .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .readValue(input);
+        }
+    }
+
+    /**
+     * 建立語料索引並執行所有管線
+     *
+     * @param bm25Service BM25 服務（與 Re-ranking 提供者共用同一個索引）
+     * @return 基準測試報告
+     */
+    Report run(BM25Service bm25Service) {
+        // 1. 以與線上相同的服務組裝檢索流程，只替換 EmbeddingModel 與向量庫
+        EmbeddingProperties embeddingProperties = new EmbeddingProperties();
+        embeddingProperties.setEnableCache(false);
+        embeddingProperties.getCoalescing().setEnabled(false);
+        SmartEmbeddingService embeddingService = new SmartEmbeddingService(new DeterministicEmbeddingModel(),
+                embeddingProperties, new ConcurrentMapCacheManager(), null, null);
+
+        List<Document> corpus = dataset.documents().stream()
+                .map(doc -> Document.builder()
+                        .id(doc.id())
+                        .text(doc.text())
+                        .metadata(doc.metadata() != null ? doc.metadata() : Map.of())
+                        .build())
+                .toList();
+        InMemoryEmbeddingVectorSearch vectorSearch = new InMemoryEmbeddingVectorSearch();
+        vectorSearch.add(corpus, embeddingService.generateEmbeddings(
+                corpus.stream().map(Document::getText).toList(), EmbeddingContext.batch()));
+        bm25Service.indexDocuments(corpus);
+
+        RAGQueryOptions options = RAGQueryOptions.builder()
+                .similarityThreshold(0.0)
+                .build();
+
+        Map<String, QualityAccumulator> quality = new LinkedHashMap<>();
+        Map<String, List<Double>> latencies = new LinkedHashMap<>();
+
+        try (ExecutorService retrievalExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            MultiStageRetrievalService retrievalService = new MultiStageRetrievalService(
+                    vectorSearch, embeddingService, bm25Service, new RAGProperties(), retrievalExecutor);
+
+            // 2. 第 0 輪為預熱，品質指標以確定性結果只在預熱輪計算一次
+            for (int round = 0; round <= iterations; round++) {
+                boolean warmup = round == 0;
+                for (TestCase testCase : dataset.cases()) {
+                    runCase(retrievalService, testCase, options, warmup, quality, latencies);
+                }
+            }
+        }
+
+        // 3. 匯總
+        Map<String, PipelineQuality> pipelines = new LinkedHashMap<>();
+        quality.forEach((name, accumulator) -> pipelines.put(name, accumulator.summary()));
+        Map<String, LatencySummary> stages = new LinkedHashMap<>();
+        latencies.forEach((stage, samples) -> stages.put(stage, LatencySummary.of(samples)));
+
+        return new Report(dataset.name(), corpus.size(), dataset.cases().size(), iterations,
+                CUTOFFS, pipelines, stages);
+    }
+
+    private void runCase(MultiStageRetrievalService retrievalService, TestCase testCase, RAGQueryOptions options,
+                         boolean warmup, Map<String, QualityAccumulator> quality,
+                         Map<String, List<Double>> latencies) {
+        String query = testCase.getQuestion();
+        Set<String> relevant = new HashSet<>(testCase.getRelevantDocIds());
+
+        // 粗檢索（Embedding + 向量檢索）
+        List<ScoredDocument> candidates = timed("retrieve", warmup, latencies,
+                () -> retrievalService.retrieve(query, options));
+
+        // 混合檢索（兩路各自的耗時由服務回報，精度為毫秒）
+        HybridRetrievalResult hybrid = timed("hybrid", warmup, latencies,
+                () -> retrievalService.hybridRetrieval(query, List.of(), options));
+        if (!warmup) {
+            latencies.computeIfAbsent("hybrid.vector", k -> new ArrayList<>())
+                    .add(hybrid.getVectorLatencyMs().doubleValue());
+            latencies.computeIfAbsent("hybrid.lexical", k -> new ArrayList<>())
+                    .add(hybrid.getLexicalLatencyMs().doubleValue());
+        }
+
+        // Re-ranking
+        List<Document> candidateDocuments = candidates.stream().map(ScoredDocument::getDocument).toList();
+        Map<String, List<String>> rankings = new LinkedHashMap<>();
+        rankings.put("vector", scoredIds(candidates));
+        rankings.put("hybrid", scoredIds(hybrid.getDocuments()));
+        for (RerankingProvider provider : providers) {
+            List<RerankResult> reranked = timed("rerank." + provider.getProviderName(), warmup, latencies,
+                    () -> provider.rerank(query, candidateDocuments, RERANK_TOP_K));
+            rankings.put("vector+" + provider.getProviderName(),
+                    reranked.stream().map(result -> result.getDocument().getId()).toList());
+        }
+
+        if (warmup) {
+            rankings.forEach((pipeline, ids) ->
+                    quality.computeIfAbsent(pipeline, k -> new QualityAccumulator()).add(ids, relevant));
+        }
+    }
+
+    private static <T> T timed(String stage, boolean warmup, Map<String, List<Double>> latencies, Supplier<T> call) {
+        long start = System.nanoTime();
+        T result = call.get();
+        if (!warmup) {
+            latencies.computeIfAbsent(stage, k -> new ArrayList<>()).add((System.nanoTime() - start) / 1_000_000.0);
+        }
+        return result;
+    }
+
+    private static List<String> scoredIds(List<ScoredDocument> documents) {
+        return documents.stream().map(doc -> doc.getDocument().getId()).toList();
+    }
+
+    /**
+     * 單一管線的品質指標累加
+     */
+    private static class QualityAccumulator {
+
+        private final double[] recall = new double[CUTOFFS.size()];
+        private final double[] ndcg = new double[CUTOFFS.size()];
+        private double reciprocalRank;
+        private int queries;
+
+        void add(List<String> rankedIds, Set<String> relevant) {
+            for (int i = 0; i < CUTOFFS.size(); i++) {
+                recall[i] += RetrievalMetrics.recallAtK(rankedIds, relevant, CUTOFFS.get(i));
+                ndcg[i] += RetrievalMetrics.ndcgAtK(rankedIds, relevant, CUTOFFS.get(i));
+            }
+            reciprocalRank += RetrievalMetrics.reciprocalRank(rankedIds, relevant);
+            queries++;
+        }
+
+        PipelineQuality summary() {
+            Map<Integer, Double> recallAtK = new LinkedHashMap<>();
+            Map<Integer, Double> ndcgAtK = new LinkedHashMap<>();
+            for (int i = 0; i < CUTOFFS.size(); i++) {
+                recallAtK.put(CUTOFFS.get(i), recall[i] / queries);
+                ndcgAtK.put(CUTOFFS.get(i), ndcg[i] / queries);
+            }
+            return new PipelineQuality(recallAtK, ndcgAtK, reciprocalRank / queries);
+        }
+    }
+
+    /**
+     * 標註資料集
+     *
+     * @param name 資料集名稱
+     * @param documents 語料
+     * @param cases 查詢與相關文檔標註
+     */
+    record Dataset(String name, List<CorpusDocument> documents, List<TestCase> cases) {
+    }
+
+    /**
+     * 語料文檔
+     *
+     * @param id 文檔 ID
+     * @param text 內容
+     * @param metadata 元數據
+     */
+    record CorpusDocument(String id, String text, Map<String, Object> metadata) {
+    }
+
+    /**
+     * 基準測試報告
+     *
+     * @param dataset 資料集名稱
+     * @param documents 語料文檔數
+     * @param queries 查詢數
+     * @param iterations 量測輪數
+     * @param cutoffs 品質指標的截斷位置
+     * @param pipelines 管線名稱 → 品質指標
+     * @param stageLatencies 階段名稱 → 延遲分佈
+     */
+    record Report(String dataset, int documents, int queries, int iterations, List<Integer> cutoffs,
+                  Map<String, PipelineQuality> pipelines, Map<String, LatencySummary> stageLatencies) {
+    }
+
+    /**
+     * 管線品質指標
+     *
+     * @param recallAtK k → 平均 recall@k
+     * @param ndcgAtK k → 平均 nDCG@k
+     * @param mrr 平均倒數排名
+     */
+    record PipelineQuality(Map<Integer, Double> recallAtK, Map<Integer, Double> ndcgAtK, double mrr) {
+    }
+
+    /**
+     * 階段延遲分佈（毫秒）
+     *
+     * @param samples 樣本數
+     * @param p50Ms p50
+     * @param p95Ms p95
+     * @param p99Ms p99
+     */
+    record LatencySummary(int samples, double p50Ms, double p95Ms, double p99Ms) {
+
+        static LatencySummary of(List<Double> samples) {
+            double[] values = samples.stream().mapToDouble(Double::doubleValue).toArray();
+            return new LatencySummary(values.length,
+                    RetrievalMetrics.percentile(values, 50),
+                    RetrievalMetrics.percentile(values, 95),
+                    RetrievalMetrics.percentile(values, 99));
+        }
+    }
+}
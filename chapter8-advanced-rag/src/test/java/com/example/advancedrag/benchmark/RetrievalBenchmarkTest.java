@@ -0,0 +1,144 @@
+package com.example.advancedrag.benchmark;
+
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.reranking.LocalRerankingProvider;
+import com.example.advancedrag.reranking.OnnxCrossEncoderRerankingProvider;
+import com.example.advancedrag.reranking.RerankingProvider;
+import com.example.advancedrag.service.BM25Service;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 離線檢索品質基準測試
+ *
+ * 報告寫入 {@code target/retrieval-benchmark/report.json}（可用 -Dretrieval.benchmark.output 指定），
+ * 量測輪數以 -Dretrieval.benchmark.iterations 指定（預設 5）。
+ * 以 -Donnx.model、-Donnx.tokenizer 指定模型時，ONNX Cross-Encoder 也會參與比較。
+ *
+ * 測試：
+ * 1. recall@k、nDCG@k、倒數排名、百分位數與手算結果一致
+ * 2. 假 Embedding 模型輸出確定且已正規化
+ * 3. 執行所有管線並輸出 JSON 報告，品質指標不低於基線
+ */
+@DisplayName("離線檢索品質基準測試")
+class RetrievalBenchmarkTest {
+
+    private static final String DATASET = "test-cases/retrieval-benchmark.json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("指標測試1：與手算結果一致")
+    void testMetrics() {
+        List<String> ranked = List.of("a", "x", "b", "y");
+        Set<String> relevant = Set.of("a", "b", "c");
+
+        assertEquals(1.0 / 3, RetrievalMetrics.recallAtK(ranked, relevant, 1), 1e-12);
+        assertEquals(2.0 / 3, RetrievalMetrics.recallAtK(ranked, relevant, 10), 1e-12);
+        assertEquals(1.0, RetrievalMetrics.reciprocalRank(ranked, relevant), 1e-12);
+        assertEquals(0.5, RetrievalMetrics.reciprocalRank(List.of("x", "a"), relevant), 1e-12);
+        assertEquals(0.0, RetrievalMetrics.reciprocalRank(List.of("x", "y"), relevant), 1e-12);
+
+        // DCG = 1 + 1/log2(4) = 1.5；IDCG = 1 + 1/log2(3) + 1/log2(4)
+        double idealDcg = 1 + 1 / (Math.log(3) / Math.log(2)) + 0.5;
+        assertEquals(1.5 / idealDcg, RetrievalMetrics.ndcgAtK(ranked, relevant, 4), 1e-12);
+        assertEquals(1.0, RetrievalMetrics.ndcgAtK(List.of("a", "b", "c"), relevant, 3), 1e-12);
+
+        double[] samples = {5, 1, 4, 2, 3, 6, 7, 8, 9, 10};
+        assertEquals(5, RetrievalMetrics.percentile(samples, 50));
+        assertEquals(10, RetrievalMetrics.percentile(samples, 95));
+        assertEquals(1, RetrievalMetrics.percentile(samples, 0));
+    }
+
+    @Test
+    @DisplayName("模型測試2：假 Embedding 確定且正規化")
+    void testDeterministicEmbedding() {
+        DeterministicEmbeddingModel model = new DeterministicEmbeddingModel();
+        float[] first = model.embed("Spring AI 的 ChatClient 如何使用？");
+        float[] second = new DeterministicEmbeddingModel().embed("Spring AI 的 ChatClient 如何使用？");
+
+        assertArrayEquals(first, second);
+        assertEquals(DeterministicEmbeddingModel.DEFAULT_DIMENSIONS, first.length);
+
+        double norm = 0;
+        for (float v : first) {
+            norm += v * v;
+        }
+        assertEquals(1.0, norm, 1e-5);
+    }
+
+    @Test
+    @DisplayName("基準測試3：執行所有管線並輸出報告")
+    void testRunBenchmark() throws Exception {
+        RetrievalBenchmark.Dataset dataset = RetrievalBenchmark.load(objectMapper, DATASET);
+        assertFalse(dataset.cases().isEmpty());
+        assertTrue(dataset.cases().stream().noneMatch(testCase -> testCase.getRelevantDocIds().isEmpty()));
+
+        BM25Service bm25Service = new BM25Service();
+        List<RerankingProvider> providers = new ArrayList<>();
+        providers.add(new LocalRerankingProvider(bm25Service));
+        OnnxCrossEncoderRerankingProvider onnx = createOnnxProviderIfConfigured();
+        if (onnx != null) {
+            providers.add(onnx);
+        }
+
+        RetrievalBenchmark.Report report;
+        try {
+            int iterations = Integer.getInteger("retrieval.benchmark.iterations", 5);
+            report = new RetrievalBenchmark(dataset, providers, iterations).run(bm25Service);
+        } finally {
+            if (onnx != null) {
+                onnx.close();
+            }
+        }
+
+        Path output = Path.of(System.getProperty("retrieval.benchmark.output",
+                "target/retrieval-benchmark/report.json"));
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+        assertTrue(Files.size(output) > 0);
+
+        // 每條管線的 recall 隨 k 單調不減
+        assertTrue(report.pipelines().containsKey("vector"));
+        assertTrue(report.pipelines().containsKey("hybrid"));
+        assertTrue(report.pipelines().containsKey("vector+local"));
+        report.pipelines().forEach((name, quality) -> {
+            double previous = 0;
+            for (int k : RetrievalBenchmark.CUTOFFS) {
+                assertTrue(quality.recallAtK().get(k) >= previous, name + " recall@" + k);
+                previous = quality.recallAtK().get(k);
+            }
+        });
+
+        // 品質基線：語料小且標註明確，任何管線的 recall@10 低於此值都代表檢索流程出了問題
+        report.pipelines().forEach((name, quality) ->
+                assertTrue(quality.recallAtK().get(10) >= 0.6, name + " recall@10 = " + quality.recallAtK().get(10)));
+
+        RetrievalBenchmark.LatencySummary retrieve = report.stageLatencies().get("retrieve");
+        assertEquals(dataset.cases().size() * report.iterations(), retrieve.samples());
+        assertTrue(retrieve.p50Ms() <= retrieve.p95Ms() && retrieve.p95Ms() <= retrieve.p99Ms());
+        assertTrue(report.stageLatencies().containsKey("rerank.local"));
+    }
+
+    private static OnnxCrossEncoderRerankingProvider createOnnxProviderIfConfigured() throws Exception {
+        String modelPath = System.getProperty("onnx.model");
+        String tokenizerPath = System.getProperty("onnx.tokenizer");
+        if (modelPath == null || tokenizerPath == null) {
+            return null;
+        }
+        RAGProperties.OnnxReranking config = new RAGProperties.OnnxReranking();
+        config.setModelPath(modelPath);
+        config.setTokenizerPath(tokenizerPath);
+        return new OnnxCrossEncoderRerankingProvider(config);
+    }
+}
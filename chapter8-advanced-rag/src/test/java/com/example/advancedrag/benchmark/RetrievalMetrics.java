@@ -0,0 +1,103 @@
+package com.example.advancedrag.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 檢索品質與延遲指標
+ *
+ * 相關性為二元標註（文檔在 relevantDocIds 中即相關）：
+ * - recall@k：前 k 名中命中的相關文檔數 / 相關文檔總數
+ * - nDCG@k：DCG = Σ 1 / log2(rank + 1)，以理想排序的 DCG 正規化
+ * - 倒數排名（RR）：第一個相關文檔排名的倒數，未命中為 0；對所有查詢取平均即 MRR
+ */
+final class RetrievalMetrics {
+
+    private RetrievalMetrics() {
+    }
+
+    /**
+     * recall@k
+     *
+     * @param rankedIds 排序後的文檔 ID
+     * @param relevantIds 相關文檔 ID
+     * @param k 截斷位置
+     * @return 召回率（無相關文檔時為 0）
+     */
+    static double recallAtK(List<String> rankedIds, Set<String> relevantIds, int k) {
+        if (relevantIds.isEmpty()) {
+            return 0.0;
+        }
+        int hits = 0;
+        for (int i = 0; i < Math.min(k, rankedIds.size()); i++) {
+            if (relevantIds.contains(rankedIds.get(i))) {
+                hits++;
+            }
+        }
+        return (double) hits / relevantIds.size();
+    }
+
+    /**
+     * nDCG@k
+     *
+     * @param rankedIds 排序後的文檔 ID
+     * @param relevantIds 相關文檔 ID
+     * @param k 截斷位置
+     * @return nDCG（無相關文檔時為 0）
+     */
+    static double ndcgAtK(List<String> rankedIds, Set<String> relevantIds, int k) {
+        double dcg = 0.0;
+        for (int i = 0; i < Math.min(k, rankedIds.size()); i++) {
+            if (relevantIds.contains(rankedIds.get(i))) {
+                dcg += discount(i);
+            }
+        }
+
+        double idealDcg = 0.0;
+        for (int i = 0; i < Math.min(k, relevantIds.size()); i++) {
+            idealDcg += discount(i);
+        }
+        return idealDcg > 0 ? dcg / idealDcg : 0.0;
+    }
+
+    /**
+     * 倒數排名
+     *
+     * @param rankedIds 排序後的文檔 ID
+     * @param relevantIds 相關文檔 ID
+     * @return 1 / 第一個相關文檔的排名，未命中為 0
+     */
+    static double reciprocalRank(List<String> rankedIds, Set<String> relevantIds) {
+        for (int i = 0; i < rankedIds.size(); i++) {
+            if (relevantIds.contains(rankedIds.get(i))) {
+                return 1.0 / (i + 1);
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * 百分位數（nearest-rank 法）
+     *
+     * @param samples 樣本
+     * @param percentile 百分位（0-100）
+     * @return 百分位數（無樣本時為 0）
+     */
+    static double percentile(double[] samples, double percentile) {
+        if (samples.length == 0) {
+            return 0.0;
+        }
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+    }
+
+    /**
+     * 排名 i（從 0 開始）的折扣 1 / log2(i + 2)
+     */
+    private static double discount(int i) {
+        return 1.0 / (Math.log(i + 2) / Math.log(2));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.advancedrag.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompressingRedisSerializer 測試
+ *
+ * 測試壓縮裝飾器：
+ * 1. LZ4 / Deflate 往返
+ * 2. 小於門檻不壓縮
+ * 3. 讀取未壓縮的舊資料
+ */
+@DisplayName("壓縮序列化器測試")
+class CompressingRedisSerializerTest {
+
+    private static final RedisSerializer<String> UTF8 = new RedisSerializer<>() {
+        @Override
+        public byte[] serialize(String value) {
+            return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String deserialize(byte[] bytes) {
+            return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private static final String LARGE_TEXT = "Spring AI 進階 RAG 檢索增強生成。".repeat(200);
+
+    @Test
+    @DisplayName("壓縮測試1：LZ4 往返且體積變小")
+    void testLz4RoundTrip() {
+        CompressingRedisSerializer<String> serializer =
+                new CompressingRedisSerializer<>(UTF8, CompressingRedisSerializer.Codec.LZ4, 64);
+
+        byte[] bytes = serializer.serialize(LARGE_TEXT);
+
+        assertTrue(bytes.length < LARGE_TEXT.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(LARGE_TEXT, serializer.deserialize(bytes));
+    }
+
+    @Test
+    @DisplayName("壓縮測試2：Deflate 往返且體積變小")
+    void testDeflateRoundTrip() {
+        CompressingRedisSerializer<String> serializer =
+                new CompressingRedisSerializer<>(UTF8, CompressingRedisSerializer.Codec.DEFLATE, 64);
+
+        byte[] bytes = serializer.serialize(LARGE_TEXT);
+
+        assertTrue(bytes.length < LARGE_TEXT.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(LARGE_TEXT, serializer.deserialize(bytes));
+    }
+
+    @Test
+    @DisplayName("壓縮測試3：小於門檻不壓縮")
+    void testBelowThresholdIsStoredRaw() {
+        CompressingRedisSerializer<String> serializer =
+                new CompressingRedisSerializer<>(UTF8, CompressingRedisSerializer.Codec.DEFLATE, 1024);
+
+        byte[] bytes = serializer.serialize("short");
+
+        assertEquals(0, bytes[0]);
+        assertEquals("short", serializer.deserialize(bytes));
+    }
+
+    @Test
+    @DisplayName("壓縮測試4：讀取啟用壓縮前寫入的 JSON 資料")
+    void testLegacyPayload() {
+        CompressingRedisSerializer<String> serializer =
+                new CompressingRedisSerializer<>(UTF8, CompressingRedisSerializer.Codec.LZ4, 64);
+
+        assertEquals("{\"a\":1}", serializer.deserialize("{\"a\":1}".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.advancedrag.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FloatArrayRedisSerializer 測試
+ *
+ * 測試 Embedding 二進位編碼：
+ * 1. 序列化/反序列化往返
+ * 2. 編碼大小
+ * 3. 空值與錯誤格式處理
+ * 4. int8 量化編碼
+ */
+@DisplayName("float[] Redis 序列化器測試")
+class FloatArrayRedisSerializerTest {
+
+    private final FloatArrayRedisSerializer serializer = new FloatArrayRedisSerializer();
+
+    @Test
+    @DisplayName("序列化測試1：往返後數值完全一致")
+    void testRoundTrip() {
+        float[] embedding = new float[1024];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = (float) Math.sin(i) * 0.1f;
+        }
+
+        byte[] bytes = serializer.serialize(embedding);
+
+        assertEquals(1 + 1024 * Float.BYTES, bytes.length);
+        assertArrayEquals(embedding, serializer.deserialize(bytes));
+    }
+
+    @Test
+    @DisplayName("序列化測試2：空值處理")
+    void testNullValues() {
+        assertNull(serializer.serialize(null));
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    @DisplayName("序列化測試3：無法識別的格式拋出異常")
+    void testUnknownFormat() {
+        assertThrows(SerializationException.class,
+                () -> serializer.deserialize(new byte[]{9, 0, 0, 0, 0}));
+    }
+
+    @Test
+    @DisplayName("序列化測試4：int8 量化誤差在縮放係數一半以內")
+    void testInt8Quantization() {
+        FloatArrayRedisSerializer quantized = new FloatArrayRedisSerializer(true);
+        float[] embedding = new float[1024];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = (float) Math.cos(i) * 0.05f;
+        }
+
+        byte[] bytes = quantized.serialize(embedding);
+        float[] restored = serializer.deserialize(bytes);
+
+        assertEquals(1 + Float.BYTES + 1024, bytes.length);
+        float scale = 0.05f / 127f;
+        assertArrayEquals(embedding, restored, scale / 2 + 1e-7f);
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.advancedrag.cache;
+
+import com.example.advancedrag.dto.AdvancedRAGResponse;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.VectorUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SemanticAnswerCache 測試
+ *
+ * 測試語義答案快取：
+ * 1. 語義相近查詢命中
+ * 2. 相似度不足或選項不同時不命中
+ * 3. TTL 過期
+ * 4. LRU 淘汰
+ * 5. 條目較多時經 LSH 候選篩選仍可命中
+ * 6. 條目超過精確掃描門檻時，相似度剛過閾值的查詢召回率
+ * 7. 掃描到但未命中的候選不更新 LRU 順序
+ */
+@DisplayName("語義答案快取測試")
+class SemanticAnswerCacheTest {
+
+    private static final String OPTIONS = "default-options";
+
+    private RAGProperties.SemanticCache properties;
+    private MutableClock clock;
+    private SemanticAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RAGProperties.SemanticCache();
+        properties.setSimilarityThreshold(0.95);
+        properties.setMaxEntries(100);
+        properties.setTtlSeconds(60L);
+        clock = new MutableClock();
+        cache = new SemanticAnswerCache(properties, clock);
+    }
+
+    @Test
+    @DisplayName("快取測試1：語義相近的查詢命中並返回相似度")
+    void testSimilarQueryHits() {
+        cache.put(new float[]{1f, 0f, 0f}, OPTIONS, response("q1"));
+
+        Optional<SemanticAnswerCache.Hit> hit = cache.lookup(new float[]{2f, 0.1f, 0f}, OPTIONS);
+
+        assertTrue(hit.isPresent());
+        assertEquals("q1", hit.get().response().getQueryId());
+        assertTrue(hit.get().similarity() >= 0.95);
+    }
+
+    @Test
+    @DisplayName("快取測試2：相似度不足或查詢選項不同時不命中")
+    void testMissOnLowSimilarityOrDifferentOptions() {
+        cache.put(new float[]{1f, 0f, 0f}, OPTIONS, response("q1"));
+
+        assertTrue(cache.lookup(new float[]{1f, 1f, 0f}, OPTIONS).isEmpty());
+        assertTrue(cache.lookup(new float[]{1f, 0f, 0f}, "other-options").isEmpty());
+    }
+
+    @Test
+    @DisplayName("快取測試3：條目過期後不再命中並被移除")
+    void testExpiry() {
+        cache.put(new float[]{0f, 1f, 0f}, OPTIONS, response("q1"));
+        assertTrue(cache.lookup(new float[]{0f, 1f, 0f}, OPTIONS).isPresent());
+
+        clock.advanceSeconds(61);
+
+        assertTrue(cache.lookup(new float[]{0f, 1f, 0f}, OPTIONS).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("快取測試4：超過容量時淘汰最久未使用的條目")
+    void testLruEviction() {
+        properties.setMaxEntries(2);
+        cache.put(new float[]{1f, 0f, 0f}, OPTIONS, response("a"));
+        cache.put(new float[]{0f, 1f, 0f}, OPTIONS, response("b"));
+
+        // 存取 a，使 b 成為最久未使用
+        assertTrue(cache.lookup(new float[]{1f, 0f, 0f}, OPTIONS).isPresent());
+        cache.put(new float[]{0f, 0f, 1f}, OPTIONS, response("c"));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.lookup(new float[]{1f, 0f, 0f}, OPTIONS).isPresent());
+        assertTrue(cache.lookup(new float[]{0f, 1f, 0f}, OPTIONS).isEmpty());
+        assertTrue(cache.lookup(new float[]{0f, 0f, 1f}, OPTIONS).isPresent());
+    }
+
+    @Test
+    @DisplayName("快取測試5：條目較多時經 LSH 篩選仍命中相同查詢")
+    void testLshLookup() {
+        properties.setMaxEntries(5000);
+        Random random = new Random(7);
+        float[] target = null;
+        for (int i = 0; i < 2000; i++) {
+            float[] vector = new float[64];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            cache.put(vector, OPTIONS, response("q" + i));
+            if (i == 1234) {
+                target = vector;
+            }
+        }
+
+        Optional<SemanticAnswerCache.Hit> hit = cache.lookup(target, OPTIONS);
+
+        assertTrue(hit.isPresent());
+        assertEquals("q1234", hit.get().response().getQueryId());
+        assertEquals(1.0, hit.get().similarity(), 1e-5);
+    }
+
+    @Test
+    @DisplayName("快取測試6：超過精確掃描門檻後閾值附近的召回率")
+    void testLshRecallNearThreshold() {
+        properties.setMaxEntries(5000);
+        int dimensions = 64;
+        Random random = new Random(11);
+        List<float[]> stored = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            float[] vector = VectorUtil.normalize(randomVector(random, dimensions));
+            stored.add(vector);
+            cache.put(vector, OPTIONS, response("q" + i));
+        }
+
+        // 每個查詢與某個快取條目的餘弦相似度恰為 0.96（略高於閾值 0.95）
+        double similarity = 0.96;
+        int queries = 300;
+        int hits = 0;
+        for (int q = 0; q < queries; q++) {
+            int target = random.nextInt(stored.size());
+            float[] query = rotate(stored.get(target), randomVector(random, dimensions), similarity);
+
+            Optional<SemanticAnswerCache.Hit> hit = cache.lookup(query, OPTIONS);
+            if (hit.isPresent() && hit.get().response().getQueryId().equals("q" + target)) {
+                hits++;
+            }
+        }
+
+        double recall = (double) hits / queries;
+        assertTrue(recall >= 0.99, "recall = " + recall);
+    }
+
+    @Test
+    @DisplayName("快取測試7：掃描到但未命中的候選不更新 LRU 順序")
+    void testScannedCandidatesKeepLruOrder() {
+        int capacity = 1100;
+        properties.setMaxEntries(capacity);
+        Random random = new Random(13);
+        float[] eldest = randomVector(random, 64);
+        float[] second = randomVector(random, 64);
+        cache.put(eldest, OPTIONS, response("eldest"));
+        cache.put(second, OPTIONS, response("second"));
+        for (int i = 2; i < capacity; i++) {
+            cache.put(randomVector(random, 64), OPTIONS, response("q" + i));
+        }
+
+        // 最久未使用的條目必定落在 LSH 候選中，但選項不同不算命中
+        assertTrue(cache.lookup(eldest, "other-options").isEmpty());
+        cache.put(randomVector(random, 64), OPTIONS, response("newest"));
+
+        assertEquals(capacity, cache.size());
+        assertTrue(cache.lookup(eldest, OPTIONS).isEmpty());
+        assertTrue(cache.lookup(second, OPTIONS).isPresent());
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    /**
+     * 構造與單位向量 base 的餘弦相似度為 similarity 的單位向量
+     */
+    private static float[] rotate(float[] base, float[] noise, double similarity) {
+        double projection = VectorUtil.dotProduct(noise, base);
+        float[] orthogonal = new float[base.length];
+        for (int d = 0; d < base.length; d++) {
+            orthogonal[d] = (float) (noise[d] - projection * base[d]);
+        }
+        orthogonal = VectorUtil.normalize(orthogonal);
+
+        double sine = Math.sqrt(1.0 - similarity * similarity);
+        float[] result = new float[base.length];
+        for (int d = 0; d < base.length; d++) {
+            result[d] = (float) (similarity * base[d] + sine * orthogonal[d]);
+        }
+        return result;
+    }
+
+    private AdvancedRAGResponse response(String queryId) {
+        return AdvancedRAGResponse.builder()
+                .queryId(queryId)
+                .answer("answer-" + queryId)
+                .build();
+    }
+
+    /**
+     * 可手動推進的測試時鐘
+     */
+    private static final class MutableClock extends Clock {
+        private long millis = 1_000_000L;
+
+        void advanceSeconds(long seconds) {
+            millis += seconds * 1000L;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
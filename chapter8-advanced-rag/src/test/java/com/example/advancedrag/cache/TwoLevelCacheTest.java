@@ -0,0 +1,145 @@
+package com.example.advancedrag.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TwoLevelCache 測試
+ *
+ * 使用 ConcurrentMapCache 模擬 Redis L2：
+ * 1. L2 命中後回填 L1
+ * 2. 寫入與刪除同時作用於兩級
+ * 3. 僅清除本地 L1
+ * 4. 批次讀取先查 L1，只向 L2 批次查詢未命中的鍵；批次寫入寫兩級並廣播失效
+ */
+@DisplayName("兩級快取測試")
+class TwoLevelCacheTest {
+
+    private ConcurrentMapCache remote;
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCache("embeddings", false);
+        local = Caffeine.newBuilder().maximumSize(100).build();
+        cache = new TwoLevelCache("embeddings", local, remote, null);
+    }
+
+    @Test
+    @DisplayName("快取測試1：L2 命中後回填 L1")
+    void testRemoteHitPopulatesLocal() {
+        float[] embedding = {0.1f, 0.2f};
+        remote.put("key", embedding);
+
+        assertSame(embedding, cache.get("key", float[].class));
+        assertSame(embedding, local.getIfPresent("key"));
+    }
+
+    @Test
+    @DisplayName("快取測試2：寫入與刪除作用於兩級")
+    void testPutAndEvict() {
+        cache.put("key", "value");
+        assertEquals("value", remote.get("key").get());
+        assertEquals("value", local.getIfPresent("key"));
+
+        cache.evict("key");
+        assertNull(remote.get("key"));
+        assertNull(local.getIfPresent("key"));
+    }
+
+    @Test
+    @DisplayName("快取測試3：本地失效後仍可從 L2 讀取")
+    void testEvictLocalOnly() {
+        cache.put("key", "value");
+
+        cache.evictLocal("key");
+
+        assertNull(local.getIfPresent("key"));
+        assertEquals("value", cache.get("key").get());
+    }
+
+    @Test
+    @DisplayName("快取測試4：批次讀寫經過 L1 並廣播失效")
+    void testBatchGetAndPut() {
+        RecordingBatchStore batchStore = new RecordingBatchStore(remote);
+        RecordingBus bus = new RecordingBus();
+        TwoLevelCache batchCache = new TwoLevelCache("embeddings", local, remote, bus, batchStore);
+
+        local.put("l1", "v1");
+        remote.put("l2", "v2");
+
+        Map<Object, Object> hits = batchCache.getAll(List.of("l1", "l2", "none"));
+
+        assertEquals(Map.of("l1", "v1", "l2", "v2"), hits);
+        assertEquals(List.of(List.of("l2", "none")), batchStore.requestedKeys);
+        assertEquals("v2", local.getIfPresent("l2"));
+
+        batchCache.putAll(Map.of("a", "x", "b", "y"));
+
+        assertEquals("x", remote.get("a").get());
+        assertEquals("y", local.getIfPresent("b"));
+        assertEquals(2, bus.published.size());
+        assertTrue(bus.published.containsAll(List.of("a", "b")));
+    }
+
+    /**
+     * 以 ConcurrentMapCache 模擬 Redis 批次存取，記錄每次批次查詢的鍵
+     */
+    private static final class RecordingBatchStore implements BatchCacheStore {
+        private final ConcurrentMapCache remote;
+        private final List<List<?>> requestedKeys = new ArrayList<>();
+
+        private RecordingBatchStore(ConcurrentMapCache remote) {
+            this.remote = remote;
+        }
+
+        @Override
+        public String getCacheName() {
+            return "embeddings";
+        }
+
+        @Override
+        public Map<Object, Object> getAll(List<?> keys) {
+            requestedKeys.add(List.copyOf(keys));
+            Map<Object, Object> hits = new HashMap<>();
+            for (Object key : keys) {
+                if (remote.get(key) != null) {
+                    hits.put(key, remote.get(key).get());
+                }
+            }
+            return hits;
+        }
+
+        @Override
+        public void putAll(Map<?, ?> entries) {
+            entries.forEach(remote::put);
+        }
+    }
+
+    /**
+     * 記錄廣播的失效鍵（不連接 Redis）
+     */
+    private static final class RecordingBus extends CacheInvalidationBus {
+        private final List<Object> published = new ArrayList<>();
+
+        private RecordingBus() {
+            super(null, "test");
+        }
+
+        @Override
+        public void publish(String cacheName, Object key) {
+            published.add(key);
+        }
+    }
+}
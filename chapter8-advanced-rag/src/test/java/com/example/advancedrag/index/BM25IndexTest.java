@@ -0,0 +1,111 @@
+package com.example.advancedrag.index;
+
+import com.example.advancedrag.util.TextUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BM25Index 測試
+ *
+ * 測試記憶體倒排索引：
+ * 1. 增量寫入與檢索排序
+ * 2. IDF 對稀有詞的加權
+ * 3. 文檔更新與刪除
+ * 4. 中文分詞（二元組）檢索
+ * 5. 大量更新與刪除後自動壓縮（重新編號、丟棄失效詞項），檢索結果不變
+ */
+@DisplayName("BM25 倒排索引測試")
+class BM25IndexTest {
+
+    private BM25Index index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BM25Index();
+        index.add("doc-1", TextUtil.analyze("Spring AI makes RAG applications simple"));
+        index.add("doc-2", TextUtil.analyze("PostgreSQL pgvector stores embeddings for vector search"));
+        index.add("doc-3", TextUtil.analyze("Spring Boot and Spring AI with pgvector"));
+    }
+
+    @Test
+    @DisplayName("索引測試1：檢索結果按分數降序")
+    void testSearchOrdersByScore() {
+        List<BM25Index.Hit> hits = index.search(Set.of("pgvector", "embeddings"), 10);
+
+        assertEquals(2, hits.size());
+        assertEquals("doc-2", hits.get(0).docId());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+        assertTrue(hits.get(0).normalizedScore() <= 1.0);
+    }
+
+    @Test
+    @DisplayName("索引測試2：稀有詞的 IDF 高於常見詞")
+    void testRareTermWeighsMore() {
+        double rare = index.score("doc-1", Set.of("rag"));
+        double common = index.score("doc-1", Set.of("spring"));
+
+        assertTrue(rare > common);
+    }
+
+    @Test
+    @DisplayName("索引測試3：更新與刪除文檔")
+    void testUpdateAndRemove() {
+        index.add("doc-1", TextUtil.analyze("completely different content"));
+        assertEquals(0.0, index.score("doc-1", Set.of("rag")));
+        assertEquals(3, index.size());
+
+        assertTrue(index.remove("doc-2"));
+        assertFalse(index.contains("doc-2"));
+        assertEquals(BM25Index.NOT_INDEXED, index.normalizedScore("doc-2", Set.of("pgvector")));
+        assertTrue(index.search(Set.of("embeddings"), 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("索引測試4：中文二元組檢索")
+    void testChineseBigrams() {
+        index.add("doc-zh", TextUtil.analyze("向量數據庫支援語義檢索"));
+
+        List<BM25Index.Hit> hits = index.search(TextUtil.analyze("語義檢索"), 5);
+
+        assertFalse(hits.isEmpty());
+        assertEquals("doc-zh", hits.get(0).docId());
+    }
+
+    @Test
+    @DisplayName("索引測試5：更新與刪除累積後壓縮並重新編號")
+    void testCompactionAfterUpdates() {
+        BM25Index large = new BM25Index();
+        int documents = 2000;
+        for (int i = 0; i < documents; i++) {
+            large.add("doc-" + i, TextUtil.analyze("common token" + i));
+        }
+
+        // 全部以相同 ID 重新寫入（如啟動重建）：失效序號達到有效文檔數時壓縮
+        for (int i = 0; i < documents; i++) {
+            large.add("doc-" + i, TextUtil.analyze("common updated" + i));
+        }
+        assertEquals(documents, large.size());
+        assertEquals(documents, large.ordinalCount());
+
+        List<BM25Index.Hit> hits = large.search(Set.of("updated42"), 5);
+        assertEquals(1, hits.size());
+        assertEquals("doc-42", hits.get(0).docId());
+        assertTrue(large.search(Set.of("token42"), 5).isEmpty());
+        assertTrue(large.termCount() <= documents + 1, "失效詞項應被丟棄: " + large.termCount());
+
+        // 刪除超過一半後壓縮，序號數隨有效文檔數縮小
+        for (int i = 0; i < 1500; i++) {
+            large.remove("doc-" + i);
+        }
+        assertEquals(500, large.size());
+        assertTrue(large.ordinalCount() < documents, "ordinalCount = " + large.ordinalCount());
+        assertEquals("doc-1999", large.search(Set.of("updated1999"), 1).get(0).docId());
+        assertTrue(large.score("doc-1999", Set.of("updated1999")) > 0);
+    }
+}
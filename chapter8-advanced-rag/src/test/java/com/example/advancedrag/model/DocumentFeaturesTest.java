@@ -0,0 +1,85 @@
+package com.example.advancedrag.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DocumentFeatures 測試
+ *
+ * 測試寫入時預計算的 Re-ranking 特徵：
+ * 1. 長度分桶、標點密度與元數據豐富度
+ * 2. 品質分數
+ * 3. 新鮮度分數與無時間信息的默認值
+ * 4. 元數據往返與舊文檔即時提取
+ */
+@DisplayName("文檔特徵測試")
+class DocumentFeaturesTest {
+
+    private static final long DAY = 86_400L;
+
+    @Test
+    @DisplayName("特徵測試1：提取長度分桶、標點密度與元數據豐富度")
+    void testExtract() {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("title", "Spring AI");
+        metadata.put("source", "docs");
+
+        DocumentFeatures features = DocumentFeatures.extract("一二三，四五六。".repeat(50), metadata);
+
+        assertEquals(1, features.lengthBucket());
+        assertEquals(0.25, features.punctuationDensity(), 1e-9);
+        assertEquals(0.15, features.metadataRichness(), 1e-9);
+        assertEquals(DocumentFeatures.NO_TIMESTAMP, features.timestampEpochSecond());
+    }
+
+    @Test
+    @DisplayName("特徵測試2：品質分數為基礎分加各特徵權重")
+    void testQualityScore() {
+        assertEquals(0.5, new DocumentFeatures(0, 0.0, 0.0, 0L).qualityScore(), 1e-9);
+        assertEquals(0.8, new DocumentFeatures(1, 0.05, 0.0, 0L).qualityScore(), 1e-9);
+        assertEquals(0.8, new DocumentFeatures(2, 0.0, 0.2, 0L).qualityScore(), 1e-9);
+        assertEquals(1.0, new DocumentFeatures(1, 0.05, 0.2, 0L).qualityScore(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("特徵測試3：新鮮度依時間差查表")
+    void testFreshnessScore() {
+        long now = 1_700_000_000L;
+
+        assertEquals(1.0, new DocumentFeatures(0, 0, 0, now - 3 * DAY).freshnessScore(now), 1e-9);
+        assertEquals(0.9, new DocumentFeatures(0, 0, 0, now - 20 * DAY).freshnessScore(now), 1e-9);
+        assertEquals(0.6, new DocumentFeatures(0, 0, 0, now - 300 * DAY).freshnessScore(now), 1e-9);
+        assertEquals(0.5, new DocumentFeatures(0, 0, 0, now - 400 * DAY).freshnessScore(now), 1e-9);
+        assertEquals(0.7, new DocumentFeatures(0, 0, 0, DocumentFeatures.NO_TIMESTAMP).freshnessScore(now), 1e-9);
+    }
+
+    @Test
+    @DisplayName("特徵測試4：優先讀取元數據中的特徵，舊文檔即時提取")
+    void testOfReadsStoredFeatures() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 1, 0, 0);
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("created_at", createdAt.toString());
+        metadata.put("author", "kevin");
+
+        DocumentFeatures extracted = DocumentFeatures.extract("短文", metadata);
+        assertEquals(createdAt.atZone(ZoneId.systemDefault()).toEpochSecond(), extracted.timestampEpochSecond());
+
+        // 模擬 JSON 往返：數值類型可能改變
+        Map<String, Object> stored = new HashMap<>(metadata);
+        stored.put(DocumentFeatures.METADATA_KEY, List.of(3, 0.5, 0.05, extracted.timestampEpochSecond()));
+        Document document = Document.builder().id("doc-1").text("短文").metadata(stored).build();
+        assertEquals(3, DocumentFeatures.of(document).lengthBucket());
+
+        Document legacy = Document.builder().id("doc-2").text("短文").metadata(metadata).build();
+        assertEquals(extracted, DocumentFeatures.of(legacy));
+    }
+}
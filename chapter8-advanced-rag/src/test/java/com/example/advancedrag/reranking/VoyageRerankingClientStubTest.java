@@ -0,0 +1,249 @@
+package com.example.advancedrag.reranking;
+
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.CircuitBreaker;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Voyage AI Re-ranking 客戶端測試（本地 HTTP 樁服務，不需要 API Key）
+ *
+ * 樁服務依文檔內容中的 "score=" 返回分數，測試：
+ * 1. 超過單次上限時分塊並行請求並合併分數
+ * 2. 結果快取以（查詢, 文檔 ID 集合）為鍵，與順序無關
+ * 3. 文檔負載超過上限時截斷
+ * 4. 連續失敗後斷路器打開，不再調用遠端
+ * 5. p99 延遲超過預算時對沖降級到本地算法
+ * 6. 超時計為一次失敗，遲到的遠端結果不會關閉斷路器
+ */
+@DisplayName("Voyage AI Re-ranking 客戶端測試")
+class VoyageRerankingClientStubTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger maxDocumentLength = new AtomicInteger();
+    private volatile int responseStatus = 200;
+    private volatile long responseDelayMs = 0;
+
+    private RAGProperties.RemoteReranking config;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/rerank", this::handleRerank);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        config = new RAGProperties.RemoteReranking();
+        config.setApiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/rerank");
+        config.setMaxDocumentsPerRequest(10);
+        config.setTimeoutMs(5000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("客戶端測試1：分塊並行請求並合併分數")
+    void testChunkedRequestsAreMerged() {
+        List<Document> documents = documents(25);
+
+        List<RerankResult> results = voyage().rerank("query", documents, 5);
+
+        assertEquals(3, requestCount.get());
+        assertEquals(5, results.size());
+        // 分數 = (i * 7 % 25) / 25，最高分依次為 i=7, 14, 21, 3, 10
+        assertEquals(List.of(7, 14, 21, 3, 10),
+                results.stream().map(RerankResult::getOriginalIndex).toList());
+        assertEquals(24.0 / 25, results.get(0).getRelevanceScore(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("客戶端測試2：結果快取與文檔順序無關")
+    void testCacheKeyedByDocumentSet() {
+        VoyageRerankingProvider provider = voyage();
+        List<Document> documents = documents(8);
+
+        List<RerankResult> first = provider.rerank("query", documents, 3);
+        List<Document> shuffled = new ArrayList<>(documents);
+        Collections.reverse(shuffled);
+        List<RerankResult> second = provider.rerank("query", shuffled, 3);
+
+        assertEquals(1, requestCount.get());
+        assertEquals(first.get(0).getDocument().getId(), second.get(0).getDocument().getId());
+        assertEquals(7 - first.get(0).getOriginalIndex(), second.get(0).getOriginalIndex());
+
+        provider.rerank("another query", documents, 3);
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    @DisplayName("客戶端測試3：文檔負載超過上限時截斷")
+    void testDocumentPayloadIsCapped() {
+        config.setMaxDocumentChars(100);
+        List<Document> documents = List.of(
+                Document.builder().id("long").text("score=0.9 " + "長".repeat(5000)).build(),
+                Document.builder().id("short").text("score=0.1").build());
+
+        List<RerankResult> results = voyage().rerank("query", documents, 2);
+
+        assertEquals(100, maxDocumentLength.get());
+        assertEquals("long", results.get(0).getDocument().getId());
+    }
+
+    @Test
+    @DisplayName("客戶端測試4：連續失敗後斷路器打開")
+    void testCircuitBreakerOpens() {
+        responseStatus = 500;
+        config.setFailureThreshold(2);
+        ResilientRerankingProvider provider = new ResilientRerankingProvider(voyage(), new FixedProvider(), config);
+        List<Document> documents = documents(3);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("fixed", provider.rerank("query", documents, 1).get(0).getProviderName());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, provider.getCircuitState());
+
+        int requestsWhenOpened = requestCount.get();
+        assertEquals("fixed", provider.rerank("query", documents, 1).get(0).getProviderName());
+        assertEquals(requestsWhenOpened, requestCount.get(), "斷路器打開後不應再調用遠端");
+    }
+
+    @Test
+    @DisplayName("客戶端測試5：p99 超過預算時對沖降級")
+    void testHedgedFallbackWhenOverBudget() {
+        responseDelayMs = 400;
+        config.setLatencyBudgetMs(50L);
+        ResilientRerankingProvider provider = new ResilientRerankingProvider(voyage(), new FixedProvider(), config);
+
+        // 尚無延遲樣本：等待遠端結果
+        assertEquals("voyage-ai", provider.rerank("q1", documents(3), 1).get(0).getProviderName());
+        assertTrue(provider.getP99LatencyMs() >= 400);
+
+        // p99 超過預算：只等待 50ms 即返回本地結果
+        long start = System.nanoTime();
+        List<RerankResult> hedged = provider.rerank("q2", documents(3), 1);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("fixed", hedged.get(0).getProviderName());
+        assertTrue(elapsedMs < 400, "對沖應在遠端返回前完成，實際耗時 " + elapsedMs + "ms");
+    }
+
+    @Test
+    @DisplayName("客戶端測試6：超時只計一次失敗，遲到結果不關閉斷路器")
+    void testLateResultAfterTimeoutIsNotRecorded() throws InterruptedException {
+        responseDelayMs = 300;
+        config.setTimeoutMs(50L);
+        config.setFailureThreshold(1);
+        ResilientRerankingProvider provider = new ResilientRerankingProvider(voyage(), new FixedProvider(), config);
+
+        assertEquals("fixed", provider.rerank("query", documents(3), 1).get(0).getProviderName());
+        assertEquals(CircuitBreaker.State.OPEN, provider.getCircuitState());
+
+        // 等待遠端原本返回的時間之後，斷路器仍保持打開
+        Thread.sleep(500);
+        assertEquals(CircuitBreaker.State.OPEN, provider.getCircuitState());
+    }
+
+    private VoyageRerankingProvider voyage() {
+        return new VoyageRerankingProvider(RestClient.builder().build(), "test-key", "rerank-2.5", config);
+    }
+
+    /**
+     * 文檔 i 的分數為 (i * 7 % n) / n，n 為文檔數
+     */
+    private List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double score = (double) (i * 7 % count) / count;
+            documents.add(Document.builder().id("doc-" + i).text("score=" + score + " 文檔 " + i).build());
+        }
+        return documents;
+    }
+
+    private void handleRerank(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+
+        if (responseDelayMs > 0) {
+            try {
+                Thread.sleep(responseDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] body;
+        if (responseStatus != 200) {
+            body = "{\"detail\":\"error\"}".getBytes(StandardCharsets.UTF_8);
+        } else {
+            List<Map<String, Object>> data = new ArrayList<>();
+            JsonNode documents = request.get("documents");
+            for (int i = 0; i < documents.size(); i++) {
+                String text = documents.get(i).asText();
+                maxDocumentLength.accumulateAndGet(text.length(), Math::max);
+                double score = Double.parseDouble(text.substring("score=".length()).split(" ")[0]);
+                data.add(Map.of("index", i, "relevance_score", score));
+            }
+            body = MAPPER.writeValueAsBytes(Map.of("object", "list", "data", data, "model", "rerank-2.5"));
+        }
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(responseStatus, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * 固定結果的降級提供者
+     */
+    private static class FixedProvider implements RerankingProvider {
+
+        @Override
+        public List<RerankResult> rerank(String query, List<Document> documents, int topK) {
+            return List.of(RerankResult.builder()
+                    .document(documents.get(0))
+                    .originalIndex(0)
+                    .newIndex(0)
+                    .relevanceScore(0.0)
+                    .providerName(getProviderName())
+                    .build());
+        }
+
+        @Override
+        public String getProviderName() {
+            return "fixed";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+    }
+}
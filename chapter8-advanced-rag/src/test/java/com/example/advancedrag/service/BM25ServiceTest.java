@@ -0,0 +1,86 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.index.BM25Index;
+import com.example.advancedrag.vectorstore.EmbeddingVectorSearch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BM25Service 測試
+ *
+ * 測試索引生命週期：
+ * 1. 啟動時從向量數據庫分頁重建索引
+ * 2. 未索引文檔的評分為唯讀，不改變集合統計
+ */
+@DisplayName("BM25 服務測試")
+class BM25ServiceTest {
+
+    private static final List<Document> STORED = List.of(
+            new Document("doc-1", "Spring AI makes RAG applications simple", Map.of()),
+            new Document("doc-2", "PostgreSQL pgvector stores embeddings for vector search", Map.of()),
+            new Document("doc-3", "Spring Boot and Spring AI with pgvector", Map.of()));
+
+    @Test
+    @DisplayName("BM25 測試1：從向量數據庫重建索引")
+    void testRebuildFromStore() {
+        BM25Service bm25Service = new BM25Service();
+
+        int rebuilt = bm25Service.rebuildFrom(new PagedStore(STORED));
+
+        assertEquals(3, rebuilt);
+        assertEquals(3, bm25Service.getIndexedDocumentCount());
+        List<BM25Index.Hit> hits = bm25Service.search(List.of("embeddings"), 10);
+        assertEquals(1, hits.size());
+        assertEquals("doc-2", hits.get(0).docId());
+    }
+
+    @Test
+    @DisplayName("BM25 測試2：未索引文檔評分不寫入索引")
+    void testScoringUnindexedDocumentIsReadOnly() {
+        BM25Service bm25Service = new BM25Service();
+        bm25Service.indexDocuments(STORED);
+        double averageLength = bm25Service.getAverageDocumentLength();
+
+        Document unindexed = new Document("doc-x", "pgvector embeddings embeddings", Map.of());
+        double first = bm25Service.calculateBM25Score(unindexed, "pgvector", List.of("pgvector", "embeddings"));
+        double second = bm25Service.calculateBM25Score(unindexed, "pgvector", List.of("pgvector", "embeddings"));
+
+        assertTrue(first > 0.0);
+        assertEquals(first, second);
+        assertEquals(3, bm25Service.getIndexedDocumentCount());
+        assertEquals(averageLength, bm25Service.getAverageDocumentLength());
+        assertEquals(first, bm25Service.calculateBM25Score(
+                unindexed.getText(), "pgvector", List.of("pgvector", "embeddings")));
+    }
+
+    /**
+     * 每頁兩個文檔的向量數據庫替身
+     */
+    private record PagedStore(List<Document> documents) implements EmbeddingVectorSearch {
+
+        @Override
+        public List<Document> similaritySearch(float[] queryEmbedding, int topK, double similarityThreshold) {
+            return List.of();
+        }
+
+        @Override
+        public List<Document> findByIds(Collection<String> ids) {
+            return documents.stream().filter(document -> ids.contains(document.getId())).toList();
+        }
+
+        @Override
+        public void forEachPage(int pageSize, Consumer<List<Document>> pageConsumer) {
+            for (int from = 0; from < documents.size(); from += 2) {
+                pageConsumer.accept(documents.subList(from, Math.min(documents.size(), from + 2)));
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.dto.ModerationResult;
+import com.example.advancedrag.properties.ModerationProperties;
+import com.example.advancedrag.properties.RAGProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * ContentModerationService 測試
+ *
+ * 測試審核結果快取不可用時的降級：
+ * 1. 快取讀取失敗視為未命中，改為調用 API
+ * 2. 快取寫入失敗不影響已取得的 API 審核結果
+ * 3. null 或空白內容不調用 API，返回標記為不通過的默認結果
+ */
+@DisplayName("OpenAI 內容審核服務測試")
+class ContentModerationServiceTest {
+
+    private static final String API_RESPONSE = """
+            {"id":"modr-1","model":"text-moderation-stable","results":[
+              {"flagged":false,"categories":{"hate":false},"categoryScores":{"hate":0.01}}]}
+            """;
+
+    private FailingCache cache;
+    private MockRestServiceServer server;
+    private ContentModerationService service;
+
+    @BeforeEach
+    void setUp() {
+        cache = new FailingCache();
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(cache));
+        cacheManager.afterPropertiesSet();
+
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(requestTo("https://api.openai.com/v1/moderations"))
+                .andRespond(withSuccess(API_RESPONSE, MediaType.APPLICATION_JSON));
+
+        service = new ContentModerationService(new RAGProperties(), restTemplate, cacheManager,
+                new ModerationProperties());
+    }
+
+    @Test
+    @DisplayName("審核測試1：快取讀取失敗時改為調用 API")
+    void testCacheReadFailureFallsBackToApi() {
+        cache.failReads = true;
+
+        ModerationResult result = service.moderateContent("Spring AI 的 RAG 流程");
+
+        server.verify();
+        assertTrue(result.getPassed());
+        assertEquals("內容正常", result.getReason());
+    }
+
+    @Test
+    @DisplayName("審核測試2：快取寫入失敗不影響審核結果")
+    void testCacheWriteFailureKeepsApiResult() {
+        cache.failWrites = true;
+
+        ModerationResult result = service.moderateContent("Spring AI 的 RAG 流程");
+
+        server.verify();
+        assertTrue(result.getPassed());
+        assertFalse(result.getFlagged());
+        assertEquals("內容正常", result.getReason());
+    }
+
+    @Test
+    @DisplayName("審核測試3：null 或空白內容返回默認的不通過結果")
+    void testNullOrBlankContentReturnsFallback() {
+        for (String content : Arrays.asList(null, "", "   ")) {
+            ModerationResult result = service.moderateContent(content);
+
+            assertTrue(result.getFlagged());
+            assertFalse(result.getPassed());
+            assertEquals("審核服務暫時不可用", result.getReason());
+        }
+
+        List<ModerationResult> results = service.moderateContents(Arrays.asList(null, " "));
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(ModerationResult::getFlagged));
+    }
+
+    /**
+     * 可模擬讀寫失敗（如 Redis 不可用）的快取
+     */
+    private static final class FailingCache extends ConcurrentMapCache {
+
+        boolean failReads;
+        boolean failWrites;
+
+        FailingCache() {
+            super(ContentModerationService.MODERATION_CACHE);
+        }
+
+        @Override
+        @Nullable
+        public <T> T get(Object key, @Nullable Class<T> type) {
+            if (failReads) {
+                throw new IllegalStateException("Redis 連線失敗");
+            }
+            return super.get(key, type);
+        }
+
+        @Override
+        public void put(Object key, @Nullable Object value) {
+            if (failWrites) {
+                throw new IllegalStateException("Redis 連線失敗");
+            }
+            super.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.model.RAGQueryOptions;
+import com.example.advancedrag.model.ScoredDocument;
+import com.example.advancedrag.properties.RAGProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 上下文優化服務測試
+ *
+ * 測試：
+ * 1. 未指定上限時使用模型 token 預算
+ * 2. 舊參數 maxContextLength（字元）換算為 token 預算並生效
+ * 3. maxContextTokens 優先於 maxContextLength
+ */
+@DisplayName("上下文優化服務測試")
+class ContextOptimizationServiceTest {
+
+    private static final int DOCUMENTS = 10;
+    private static final int DOCUMENT_CHARS = 400;
+
+    private final ContextOptimizationService service = new ContextOptimizationService(new RAGProperties());
+    private final List<ScoredDocument> documents = documents();
+
+    @Test
+    @DisplayName("預算測試1：未指定上限時使用模型預算")
+    void testModelBudgetByDefault() {
+        String context = service.optimizeContext(documents, options().build());
+
+        assertEquals(DOCUMENTS, countDocuments(context));
+    }
+
+    @Test
+    @DisplayName("預算測試2：maxContextLength 換算為 token 預算")
+    void testMaxContextLengthIsHonored() {
+        int maxChars = 1000;
+
+        String context = service.optimizeContext(documents, options().maxContextLength(maxChars).build());
+
+        // 每個文檔 400 字元：最多 2 個完整文檔加 1 個截斷文檔
+        int count = countDocuments(context);
+        assertTrue(count >= 1 && count <= 3, "文檔數 " + count);
+        assertTrue(documentChars(context) <= maxChars, "文檔內容 " + documentChars(context) + " 字元");
+    }
+
+    @Test
+    @DisplayName("預算測試3：maxContextTokens 優先於 maxContextLength")
+    void testMaxContextTokensTakesPrecedence() {
+        String context = service.optimizeContext(documents,
+                options().maxContextLength(1000).maxContextTokens(3000).build());
+
+        assertEquals(DOCUMENTS, countDocuments(context));
+    }
+
+    private static RAGQueryOptions.RAGQueryOptionsBuilder options() {
+        return RAGQueryOptions.builder().finalTopK(DOCUMENTS);
+    }
+
+    /**
+     * 隨機小寫單詞組成的文檔，彼此不構成近似重複
+     */
+    private static List<ScoredDocument> documents() {
+        Random random = new Random(7);
+        List<ScoredDocument> documents = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < DOCUMENT_CHARS) {
+                int length = 3 + random.nextInt(6);
+                for (int c = 0; c < length; c++) {
+                    text.append((char) ('a' + random.nextInt(26)));
+                }
+                text.append(' ');
+            }
+            text.setLength(DOCUMENT_CHARS);
+            documents.add(ScoredDocument.of(
+                    Document.builder().id("doc-" + i).text(text.toString()).build(), 1.0 - i * 0.05));
+        }
+        return documents;
+    }
+
+    private static int countDocuments(String context) {
+        return context.split("【文檔", -1).length - 1;
+    }
+
+    /**
+     * 上下文中文檔內容的字元數（不含標題行、分數行與截斷標記）
+     */
+    private static int documentChars(String context) {
+        int chars = 0;
+        for (String line : context.split("\n")) {
+            if (!line.isEmpty() && !line.startsWith("以下是") && !line.startsWith("【文檔") && !line.startsWith("（")) {
+                chars += line.endsWith("...") ? line.length() - 3 : line.length();
+            }
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.dto.ModerationResult;
+import com.example.advancedrag.properties.ModerationProperties;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.AhoCorasick;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自定義規則審核服務測試
+ *
+ * 測試：
+ * 1. Aho-Corasick 自動機找出重疊與不區分大小寫的模式
+ * 2. 內建與配置的敏感詞皆被檢出
+ * 3. 外部詞庫檔案修改後自動重新載入
+ * 4. 滾動哈希重複檢測與原窗口比對結果一致
+ */
+@DisplayName("自定義規則審核服務測試")
+class CustomRuleModerationServiceTest {
+
+    private ModerationProperties moderationProperties;
+    private CustomRuleModerationService service;
+
+    @BeforeEach
+    void setUp() {
+        moderationProperties = new ModerationProperties();
+        moderationProperties.setSensitiveWords(List.of("違禁品"));
+        service = new CustomRuleModerationService(new RAGProperties(), moderationProperties);
+        service.init();
+    }
+
+    @Test
+    @DisplayName("自動機測試1：重疊與大小寫")
+    void testAutomatonFindsOverlappingPatterns() {
+        AhoCorasick matcher = AhoCorasick.compile(List.of("he", "she", "hers", "his", "Spam"));
+
+        assertEquals(List.of("she", "he", "hers"), matcher.findAll("ushers"));
+        assertEquals(List.of("Spam"), matcher.findAll("NO SPAM PLEASE"));
+        assertTrue(matcher.findAll("nothing here").stream().noneMatch("his"::equals));
+    }
+
+    @Test
+    @DisplayName("敏感詞測試2：內建與配置的敏感詞")
+    void testBuiltInAndConfiguredWords() {
+        ModerationResult result = service.moderateContent("這段文字提到賭博與違禁品，也提到攻擊行為。");
+
+        @SuppressWarnings("unchecked")
+        List<String> matched = (List<String>) result.getDetails().get("sensitive_words");
+        assertEquals(List.of("賭博", "違禁品", "攻擊"), matched);
+        assertTrue(result.getFlagged());
+    }
+
+    @Test
+    @DisplayName("敏感詞測試3：詞庫檔案熱更新")
+    void testReloadFromFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("sensitive-words.txt");
+        Files.writeString(file, "# 註解\n詐騙\n");
+        moderationProperties.setSensitiveWordsFile(file.toString());
+        service.reloadSensitiveWordsIfChanged();
+
+        assertEquals(List.of("詐騙"), sensitiveWords("小心網路詐騙訊息與釣魚連結"));
+        assertEquals(List.of(), sensitiveWords("小心網路釣魚連結與可疑訊息"));
+
+        Files.writeString(file, "詐騙\n釣魚\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        service.reloadSensitiveWordsIfChanged();
+
+        assertEquals(List.of("釣魚"), sensitiveWords("小心網路釣魚連結與可疑訊息"));
+    }
+
+    @Test
+    @DisplayName("重複測試4：與原窗口比對結果一致")
+    void testRepetitionMatchesWindowScan() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            int length = 20 + random.nextInt(80);
+            int alphabet = 2 + random.nextInt(4);
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                text.append((char) ('a' + random.nextInt(alphabet)));
+            }
+            String content = text.toString();
+
+            double ratio = (double) service.moderateContent(content).getDetails().get("repetition_ratio");
+            assertEquals(referenceRepetitionRatio(content), ratio, 1e-12, content);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> sensitiveWords(String content) {
+        return (List<String>) service.moderateContent(content).getDetails().get("sensitive_words");
+    }
+
+    /**
+     * 原實現：逐位置取窗口，在其後的剩餘內容中查找
+     */
+    private static double referenceRepetitionRatio(String content) {
+        int maxRepetitionLength = 0;
+        int windowSize = Math.min(10, content.length() / 4);
+        for (int i = 0; i <= content.length() - windowSize * 2; i++) {
+            String window = content.substring(i, i + windowSize);
+            if (content.substring(i + windowSize).contains(window)) {
+                maxRepetitionLength = windowSize;
+            }
+        }
+        return (double) maxRepetitionLength / content.length();
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.cache.SemanticAnswerCache;
+import com.example.advancedrag.dto.AdvancedRAGResponse;
+import com.example.advancedrag.dto.DocumentAddRequest;
+import com.example.advancedrag.dto.DocumentAddResponse;
+import com.example.advancedrag.index.NearDuplicateIndex;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.SimHash;
+import com.example.advancedrag.vectorstore.EmbeddingVectorSearch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DocumentIngestionService 測試
+ *
+ * 測試寫入前的近似重複過濾：
+ * 1. 與已寫入文檔近似重複的文檔被跳過並回報原文檔 ID
+ * 2. 同一請求內的近似重複只保留較早出現的文檔
+ * 3. 近似重複索引指向已不存在於向量數據庫的文檔時照常寫入，並移除過期指紋
+ * 4. 文檔寫入或刪除後清空語義答案快取
+ */
+@DisplayName("文檔寫入服務測試")
+class DocumentIngestionServiceTest {
+
+    private static final String CONTENT = "Spring AI 提供統一的向量數據庫抽象，支援 pgvector、Redis 與多種檢索策略。"
+            + "多階段檢索先以向量相似度召回候選文檔，再以 BM25 與品質特徵重新排序。";
+
+    private InMemoryStore store;
+    private InMemoryNearDuplicateIndex nearDuplicateIndex;
+    private SemanticAnswerCache semanticAnswerCache;
+    private DocumentIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryStore();
+        nearDuplicateIndex = new InMemoryNearDuplicateIndex();
+        semanticAnswerCache = new SemanticAnswerCache(new RAGProperties());
+        service = new DocumentIngestionService(store, store, new BM25Service(), null,
+                nearDuplicateIndex, semanticAnswerCache, new RAGProperties());
+    }
+
+    @Test
+    @DisplayName("去重測試1：跳過與已寫入文檔近似重複的文檔")
+    void testSkipsDuplicateOfStoredDocument() {
+        service.addDocuments(request(item("doc-1", CONTENT)));
+
+        DocumentAddResponse response = service.addDocuments(request(item("doc-2", CONTENT + " ")));
+
+        assertEquals(0, response.getSuccessCount());
+        assertEquals(1, response.getDuplicateCount());
+        assertEquals(Map.of("doc-2", "doc-1"), response.getDuplicateDocumentIds());
+        assertFalse(store.documents.containsKey("doc-2"));
+    }
+
+    @Test
+    @DisplayName("去重測試2：同一請求內保留較早出現的文檔")
+    void testSkipsDuplicateWithinRequest() {
+        DocumentAddResponse response = service.addDocuments(request(
+                item("doc-1", CONTENT), item("doc-2", CONTENT)));
+
+        assertEquals(List.of("doc-1"), response.getAddedDocumentIds());
+        assertEquals(Map.of("doc-2", "doc-1"), response.getDuplicateDocumentIds());
+    }
+
+    @Test
+    @DisplayName("去重測試3：匹配文檔已不在向量數據庫時照常寫入")
+    void testWritesWhenMatchedDocumentIsGone() {
+        service.addDocuments(request(item("doc-1", CONTENT)));
+        // 模擬向量數據庫被重置，Redis 中的指紋仍在
+        store.documents.clear();
+
+        DocumentAddResponse response = service.addDocuments(request(item("doc-2", CONTENT)));
+
+        assertEquals(List.of("doc-2"), response.getAddedDocumentIds());
+        assertEquals(0, response.getDuplicateCount());
+        assertTrue(store.documents.containsKey("doc-2"));
+        assertFalse(nearDuplicateIndex.signatures.containsKey("doc-1"));
+    }
+
+    @Test
+    @DisplayName("快取失效測試1：文檔寫入或刪除後清空語義答案快取")
+    void testClearsSemanticAnswerCacheOnWrite() {
+        float[] query = {1f, 0f, 0f};
+        AdvancedRAGResponse cached = AdvancedRAGResponse.builder().queryId("q1").answer("answer").build();
+
+        semanticAnswerCache.put(query, "options", cached);
+        service.addDocuments(request(item("doc-1", CONTENT)));
+        assertEquals(0, semanticAnswerCache.size());
+
+        semanticAnswerCache.put(query, "options", cached);
+        service.deleteDocument("doc-1");
+        assertEquals(0, semanticAnswerCache.size());
+    }
+
+    private static DocumentAddRequest request(DocumentAddRequest.DocumentItem... items) {
+        return DocumentAddRequest.builder().documents(List.of(items)).build();
+    }
+
+    private static DocumentAddRequest.DocumentItem item(String id, String content) {
+        return DocumentAddRequest.DocumentItem.builder().documentId(id).content(content).build();
+    }
+
+    /**
+     * 記憶體向量數據庫（同時提供 VectorStore 與 EmbeddingVectorSearch）
+     */
+    private static final class InMemoryStore implements VectorStore, EmbeddingVectorSearch {
+
+        final Map<String, Document> documents = new LinkedHashMap<>();
+
+        @Override
+        public void add(List<Document> batch) {
+            batch.forEach(document -> documents.put(document.getId(), document));
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+            idList.forEach(documents::remove);
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+
+        @Override
+        public List<Document> similaritySearch(float[] queryEmbedding, int topK, double similarityThreshold) {
+            return List.of();
+        }
+
+        @Override
+        public List<Document> findByIds(Collection<String> ids) {
+            return ids.stream().map(documents::get).filter(document -> document != null).toList();
+        }
+
+        @Override
+        public void forEachPage(int pageSize, Consumer<List<Document>> pageConsumer) {
+            pageConsumer.accept(new ArrayList<>(documents.values()));
+        }
+    }
+
+    /**
+     * 以暴力比對取代 Redis 的近似重複索引
+     */
+    private static final class InMemoryNearDuplicateIndex extends NearDuplicateIndex {
+
+        final Map<String, Long> signatures = new HashMap<>();
+
+        InMemoryNearDuplicateIndex() {
+            super(null);
+        }
+
+        @Override
+        public Map<String, String> findNearDuplicates(Map<String, Long> candidates, int maxDistance) {
+            Map<String, String> duplicates = new HashMap<>();
+            candidates.forEach((id, signature) -> signatures.forEach((indexedId, indexed) -> {
+                if (!indexedId.equals(id) && SimHash.distance(signature, indexed) <= maxDistance) {
+                    duplicates.putIfAbsent(id, indexedId);
+                }
+            }));
+            return duplicates;
+        }
+
+        @Override
+        public void addAll(Map<String, Long> added) {
+            signatures.putAll(added);
+        }
+
+        @Override
+        public void removeAll(Collection<String> documentIds) {
+            documentIds.forEach(signatures::remove);
+        }
+    }
+}
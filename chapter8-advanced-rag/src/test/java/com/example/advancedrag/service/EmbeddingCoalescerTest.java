@@ -0,0 +1,160 @@
+package com.example.advancedrag.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.example.advancedrag.exception.AdvancedRAGException;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EmbeddingCoalescer 測試
+ *
+ * 測試 Embedding 請求合併：
+ * 1. 同一窗口內的並發請求合併為少量批次
+ * 2. 進行中的相同文本只發送一次
+ * 3. 批次失敗時所有等待者收到異常
+ * 4. 等待中的呼叫者可被中斷
+ */
+@DisplayName("Embedding 請求合併器測試")
+class EmbeddingCoalescerTest {
+
+    @Test
+    @DisplayName("合併測試1：並發請求合併為批次，結果對應原文本")
+    void testConcurrentRequestsAreBatched() {
+        RecordingEmbeddingModel model = new RecordingEmbeddingModel(false);
+        EmbeddingCoalescer coalescer = new EmbeddingCoalescer(model, 50, 64, 4);
+
+        try {
+            List<CompletableFuture<float[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(coalescer.submit("query-" + i));
+            }
+
+            for (int i = 0; i < 20; i++) {
+                assertEquals(("query-" + i).length(), futures.get(i).join()[0]);
+            }
+            assertTrue(model.requests.size() < 20, "請求應被合併");
+        } finally {
+            coalescer.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("合併測試2：進行中的相同文本只發送一次")
+    void testInFlightDeduplication() {
+        RecordingEmbeddingModel model = new RecordingEmbeddingModel(false);
+        EmbeddingCoalescer coalescer = new EmbeddingCoalescer(model, 50, 64, 4);
+
+        try {
+            CompletableFuture<float[]> first = coalescer.submit("same text");
+            CompletableFuture<float[]> second = coalescer.submit("same text");
+
+            assertSame(first, second);
+            assertEquals(9.0f, first.join()[0]);
+
+            long sent = model.requests.stream()
+                    .flatMap(List::stream)
+                    .filter("same text"::equals)
+                    .count();
+            assertEquals(1L, sent);
+        } finally {
+            coalescer.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("合併測試3：批次失敗時等待者收到異常")
+    void testFailurePropagates() {
+        EmbeddingCoalescer coalescer = new EmbeddingCoalescer(new RecordingEmbeddingModel(true), 5, 64, 4);
+
+        try {
+            assertThrows(IllegalStateException.class, () -> coalescer.embed("will fail"));
+        } finally {
+            coalescer.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("合併測試4：等待中的呼叫者可被中斷")
+    void testWaitingCallerCanBeInterrupted() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        EmbeddingModel blocking = new RecordingEmbeddingModel(false) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.call(request);
+            }
+        };
+        EmbeddingCoalescer coalescer = new EmbeddingCoalescer(blocking, 1, 64, 4);
+
+        try {
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread caller = Thread.ofVirtual().start(() -> {
+                try {
+                    coalescer.embed("slow text");
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            });
+
+            Thread.sleep(50);
+            caller.interrupt();
+            caller.join(1000);
+
+            assertFalse(caller.isAlive(), "被中斷的呼叫者應立即返回");
+            assertInstanceOf(AdvancedRAGException.class, error.get());
+        } finally {
+            release.countDown();
+            coalescer.shutdown();
+        }
+    }
+
+    /**
+     * 記錄請求的假 EmbeddingModel：向量第一維為文本長度
+     */
+    private static class RecordingEmbeddingModel implements EmbeddingModel {
+
+        private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+        private final boolean fail;
+
+        RecordingEmbeddingModel(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            if (fail) {
+                throw new IllegalStateException("provider unavailable");
+            }
+            List<String> texts = request.getInstructions();
+            requests.add(texts);
+
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(new float[]{texts.get(i).length()}, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
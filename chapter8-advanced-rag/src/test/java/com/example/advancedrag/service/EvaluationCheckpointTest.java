@@ -0,0 +1,121 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.dto.EvaluationResult;
+import com.example.advancedrag.dto.SingleEvaluationRequest;
+import com.example.advancedrag.exception.EvaluationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批次評估檢查點測試
+ *
+ * 測試：
+ * 1. 以相同 runId 重新打開時載入已完成的結果
+ * 2. 中斷時寫了一半的最後一行被忽略
+ * 3. 案例鍵與批次序號及請求內容相關、與物件實例無關；重複內容不互相覆蓋
+ * 4. 拒絕含路徑字元的 runId
+ */
+@DisplayName("批次評估檢查點測試")
+class EvaluationCheckpointTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("檢查點測試1：重新打開時載入已完成的結果")
+    void testResumeLoadsCompletedResults() {
+        SingleEvaluationRequest request = request("什麼是 RAG？");
+        String key = EvaluationCheckpoint.caseKey(0, request);
+
+        try (EvaluationCheckpoint checkpoint = EvaluationCheckpoint.open(dir.toString(), "nightly-1", objectMapper)) {
+            assertNull(checkpoint.completed(key));
+            checkpoint.append(key, EvaluationResult.builder()
+                    .question(request.getQuestion())
+                    .overallScore(8.5)
+                    .passed(true)
+                    .build());
+        }
+
+        try (EvaluationCheckpoint checkpoint = EvaluationCheckpoint.open(dir.toString(), "nightly-1", objectMapper)) {
+            EvaluationResult resumed = checkpoint.completed(key);
+            assertNotNull(resumed);
+            assertEquals(8.5, resumed.getOverallScore().doubleValue());
+            assertTrue(resumed.getPassed());
+        }
+    }
+
+    @Test
+    @DisplayName("檢查點測試2：忽略寫了一半的最後一行")
+    void testTruncatedLineIgnored() throws IOException {
+        String key = EvaluationCheckpoint.caseKey(0, request("問題一"));
+        try (EvaluationCheckpoint checkpoint = EvaluationCheckpoint.open(dir.toString(), "run", objectMapper)) {
+            checkpoint.append(key, EvaluationResult.builder().overallScore(7.0).passed(true).build());
+        }
+        Files.writeString(dir.resolve("run.jsonl"), "{\"key\":\"abc\",\"result\":{\"overall",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        String nextKey = EvaluationCheckpoint.caseKey(1, request("問題二"));
+        try (EvaluationCheckpoint checkpoint = EvaluationCheckpoint.open(dir.toString(), "run", objectMapper)) {
+            assertNotNull(checkpoint.completed(key));
+            assertNull(checkpoint.completed("abc"));
+            checkpoint.append(nextKey, EvaluationResult.builder().overallScore(6.0).passed(false).build());
+        }
+
+        // 續跑後寫入的記錄不受殘缺行影響
+        try (EvaluationCheckpoint checkpoint = EvaluationCheckpoint.open(dir.toString(), "run", objectMapper)) {
+            assertNotNull(checkpoint.completed(nextKey));
+        }
+    }
+
+    @Test
+    @DisplayName("檢查點測試3：案例鍵由批次序號與請求內容決定")
+    void testCaseKeyDependsOnIndexAndContent() {
+        assertEquals(EvaluationCheckpoint.caseKey(0, request("問題一")),
+                EvaluationCheckpoint.caseKey(0, request("問題一")));
+        assertNotEquals(EvaluationCheckpoint.caseKey(0, request("問題一")),
+                EvaluationCheckpoint.caseKey(0, request("問題二")));
+
+        // 同一批次中內容重複的案例各自有獨立的鍵，續跑時不會互相覆蓋
+        String first = EvaluationCheckpoint.caseKey(0, request("問題一"));
+        String duplicate = EvaluationCheckpoint.caseKey(1, request("問題一"));
+        assertNotEquals(first, duplicate);
+        try (EvaluationCheckpoint checkpoint = EvaluationCheckpoint.open(dir.toString(), "dup", objectMapper)) {
+            checkpoint.append(first, EvaluationResult.builder().testCaseId("case-a").caseIndex(0).build());
+        }
+        try (EvaluationCheckpoint checkpoint = EvaluationCheckpoint.open(dir.toString(), "dup", objectMapper)) {
+            assertEquals("case-a", checkpoint.completed(first).getTestCaseId());
+            assertNull(checkpoint.completed(duplicate));
+        }
+    }
+
+    @Test
+    @DisplayName("檢查點測試4：拒絕不合法的 runId")
+    void testInvalidRunIdRejected() {
+        assertThrows(EvaluationException.class,
+                () -> EvaluationCheckpoint.open(dir.toString(), "../escape", objectMapper));
+    }
+
+    private static SingleEvaluationRequest request(String question) {
+        return SingleEvaluationRequest.builder()
+                .question(question)
+                .generatedAnswer("生成的答案")
+                .groundTruth("參考答案")
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.model.HybridRetrievalResult;
+import com.example.advancedrag.model.RAGQueryOptions;
+import com.example.advancedrag.properties.EmbeddingProperties;
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.vectorstore.EmbeddingVectorSearch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多階段檢索服務測試
+ *
+ * 測試混合檢索：
+ * 1. 超時的一路在截止時間返回空結果並被中斷，另一路結果照常參與融合
+ */
+@DisplayName("多階段檢索服務測試")
+class MultiStageRetrievalServiceTest {
+
+    private static final List<Document> STORED = List.of(
+            new Document("doc-1", "Spring AI makes RAG applications simple", Map.of()),
+            new Document("doc-2", "PostgreSQL pgvector stores embeddings for vector search", Map.of()));
+
+    @Test
+    @DisplayName("混合檢索測試1：超時的向量檢索被中斷，關鍵詞結果照常返回")
+    void testTimedOutLegIsInterrupted() throws InterruptedException {
+        BlockingVectorSearch vectorSearch = new BlockingVectorSearch();
+        BM25Service bm25Service = new BM25Service();
+        bm25Service.indexDocuments(STORED);
+
+        RAGProperties ragProperties = new RAGProperties();
+        ragProperties.getHybrid().setLegTimeoutMs(100L);
+
+        try (ExecutorService retrievalExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            MultiStageRetrievalService service = new MultiStageRetrievalService(
+                    vectorSearch, embeddingService(), bm25Service, ragProperties, retrievalExecutor);
+
+            long start = System.nanoTime();
+            HybridRetrievalResult result = service.hybridRetrieval("pgvector embeddings", List.of(),
+                    RAGQueryOptions.builder().similarityThreshold(0.0).build());
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsedMs < 2000, "應在截止時間返回，實際耗時 " + elapsedMs + "ms");
+            assertEquals(0, result.getVectorHits().intValue());
+            assertEquals("doc-2", result.getDocuments().get(0).getDocument().getId());
+            assertTrue(vectorSearch.interrupted.await(2, TimeUnit.SECONDS), "超時的向量檢索應被中斷");
+        }
+    }
+
+    private static SmartEmbeddingService embeddingService() {
+        EmbeddingProperties embeddingProperties = new EmbeddingProperties();
+        embeddingProperties.setEnableCache(false);
+        embeddingProperties.getCoalescing().setEnabled(false);
+        return new SmartEmbeddingService(new FixedEmbeddingModel(), embeddingProperties,
+                new ConcurrentMapCacheManager(), null, null);
+    }
+
+    /**
+     * 向量檢索一直阻塞到被中斷；按 ID 讀取直接返回已存文檔
+     */
+    private static final class BlockingVectorSearch implements EmbeddingVectorSearch {
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public List<Document> similaritySearch(float[] queryEmbedding, int topK, double similarityThreshold) {
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return List.of();
+        }
+
+        @Override
+        public List<Document> findByIds(Collection<String> ids) {
+            List<Document> found = new ArrayList<>();
+            for (Document document : STORED) {
+                if (ids.contains(document.getId())) {
+                    found.add(document);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public void forEachPage(int pageSize, Consumer<List<Document>> pageConsumer) {
+            pageConsumer.accept(STORED);
+        }
+    }
+
+    /**
+     * 固定向量的假 EmbeddingModel
+     */
+    private static final class FixedEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(new float[]{1f, 0f, 0f}, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return new float[]{1f, 0f, 0f};
+        }
+
+        @Override
+        public int dimensions() {
+            return 3;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.advancedrag.service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -18,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.*;
  * 3. 評估指標記錄
  * 4. 審核指標記錄
  * 5. 指標統計查詢
+ * 6. Re-ranking 候選數分佈（獨立 registry）
  */
 @SpringBootTest
 @ActiveProfiles("test")
@@ -132,12 +135,16 @@ class RAGMetricsServiceTest {
         // Given
         long rerankingTime = 80L;
 
+        int candidates = 300;
+
         // When
         metricsService.recordRerankingDuration(rerankingTime);
+        metricsService.recordRerankingCandidates(candidates);
 
         // Then
         System.out.println("\n=== 指標測試5：記錄 Re-ranking 指標 ===");
         System.out.println("Re-ranking 時間: " + rerankingTime + " ms");
+        System.out.println("Re-ranking 候選文檔數: " + candidates);
         System.out.println("指標已成功記錄");
     }
 
@@ -377,4 +384,23 @@ class RAGMetricsServiceTest {
         System.out.println("\n=== 指標測試15：邊界情況測試 ===");
         System.out.println("所有邊界情況測試通過");
     }
+
+    @Test
+    @DisplayName("指標測試16：Re-ranking 候選數分佈")
+    void testRerankingCandidatesSummary() {
+        // Given（獨立的 registry，避免共用上下文中其他測試的記錄干擾計數）
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RAGMetricsService isolatedMetrics = new RAGMetricsService(registry);
+
+        // When
+        isolatedMetrics.recordRerankingCandidates(300);
+
+        // Then
+        DistributionSummary summary = registry.get("rag.reranking.candidates").summary();
+        assertEquals(1, summary.count());
+        assertEquals(300.0, summary.totalAmount());
+
+        System.out.println("\n=== 指標測試16：Re-ranking 候選數分佈 ===");
+        System.out.println("記錄次數: " + summary.count() + "，候選總數: " + summary.totalAmount());
+    }
 }
@@ -0,0 +1,117 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.model.RAGQueryOptions;
+import com.example.advancedrag.model.ScoredDocument;
+import com.example.advancedrag.properties.RAGProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RerankingService 測試
+ *
+ * 測試大候選集的分塊並行評分：
+ * 1. 並行評分與順序評分結果完全一致（候選文檔皆未寫入 BM25 索引）
+ * 2. 評分不寫入 BM25 索引，重複執行結果不變
+ * 3. 記錄候選文檔數分布
+ */
+@SuppressWarnings("removal")
+@DisplayName("Re-ranking 服務測試")
+class RerankingServiceTest {
+
+    private static final String QUERY = "Spring AI 向量檢索 Re-ranking";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BM25Service bm25Service = new BM25Service();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("並行測試1：未索引候選的並行評分與順序評分結果一致")
+    void testParallelMatchesSequential() {
+        List<ScoredDocument> candidates = candidates(500);
+        RAGQueryOptions options = RAGQueryOptions.builder().finalTopK(20).build();
+
+        // 先並行再順序：若評分寫入索引，順序評分會看到不同的集合統計
+        List<ScoredDocument> parallel = service(100).rerank(QUERY, candidates, options);
+        List<ScoredDocument> sequential = service(Integer.MAX_VALUE).rerank(QUERY, candidates, options);
+
+        assertEquals(20, parallel.size());
+        assertSameRanking(sequential, parallel);
+    }
+
+    @Test
+    @DisplayName("並行測試2：評分不寫入 BM25 索引")
+    void testScoringLeavesIndexUntouched() {
+        List<ScoredDocument> candidates = candidates(500);
+        RAGQueryOptions options = RAGQueryOptions.builder().finalTopK(20).build();
+
+        List<ScoredDocument> first = service(100).rerank(QUERY, candidates, options);
+        List<ScoredDocument> second = service(100).rerank(QUERY, candidates, options);
+
+        assertEquals(0, bm25Service.getIndexedDocumentCount());
+        assertSameRanking(first, second);
+    }
+
+    @Test
+    @DisplayName("並行測試3：記錄候選文檔數分布")
+    void testRecordsCandidateCount() {
+        RAGQueryOptions options = RAGQueryOptions.builder().finalTopK(5).build();
+
+        service(100).rerank(QUERY, candidates(300), options);
+
+        assertEquals(1, meterRegistry.get("rag.reranking.candidates").summary().count());
+        assertEquals(300.0, meterRegistry.get("rag.reranking.candidates").summary().totalAmount());
+    }
+
+    private void assertSameRanking(List<ScoredDocument> expected, List<ScoredDocument> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDocument().getId(), actual.get(i).getDocument().getId());
+            assertEquals(expected.get(i).getScore(), actual.get(i).getScore());
+        }
+    }
+
+    private RerankingService service(int parallelThreshold) {
+        RAGProperties properties = new RAGProperties();
+        properties.getReranking().setParallelThreshold(parallelThreshold);
+        properties.getReranking().setParallelChunkSize(32);
+        return new RerankingService(properties, null, bm25Service,
+                new RAGMetricsService(meterRegistry), executor);
+    }
+
+    private List<ScoredDocument> candidates(int count) {
+        String[] words = {"Spring", "AI", "向量", "檢索", "Re-ranking", "模型", "文檔", "查詢", "快取", "評分"};
+        Random random = new Random(7);
+        List<ScoredDocument> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 20 + random.nextInt(200);
+            for (int w = 0; w < length; w++) {
+                text.append(words[random.nextInt(words.length)]).append(w % 10 == 9 ? "。" : " ");
+            }
+            Document document = Document.builder()
+                    .id("doc-" + i)
+                    .text(text.toString())
+                    .metadata(Map.of("title", "文檔 " + i))
+                    .build();
+            candidates.add(ScoredDocument.of(document, random.nextDouble()));
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.advancedrag.service;
+
+import com.example.advancedrag.model.EmbeddingContext;
+import com.example.advancedrag.properties.EmbeddingProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SmartEmbeddingService 測試
+ *
+ * 測試批次生成 Embedding：
+ * 1. 模型按索引亂序返回時，結果仍與輸入順序一致
+ * 2. 模型返回數量少於輸入時拋出異常，而非返回含 null 的列表
+ */
+@DisplayName("智能 Embedding 服務測試")
+class SmartEmbeddingServiceTest {
+
+    @Test
+    @DisplayName("批次測試1：亂序返回的向量按索引對應輸入")
+    void testOutputsFollowIndexes() {
+        SmartEmbeddingService service = service(new StubEmbeddingModel(0, true));
+
+        List<float[]> embeddings = service.generateEmbeddings(List.of("alpha", "beta", "gamma"),
+                EmbeddingContext.builder().build());
+
+        assertEquals(3, embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            assertEquals(i, embeddings.get(i)[0]);
+        }
+    }
+
+    @Test
+    @DisplayName("批次測試2：返回數量不符時拋出異常")
+    void testThrowsOnMissingOutputs() {
+        SmartEmbeddingService service = service(new StubEmbeddingModel(1, false));
+
+        assertThrows(RuntimeException.class, () -> service.generateEmbeddings(
+                List.of("alpha", "beta", "gamma"), EmbeddingContext.builder().build()));
+    }
+
+    private static SmartEmbeddingService service(EmbeddingModel model) {
+        EmbeddingProperties embeddingProperties = new EmbeddingProperties();
+        embeddingProperties.setEnableCache(false);
+        embeddingProperties.getCoalescing().setEnabled(false);
+        return new SmartEmbeddingService(model, embeddingProperties, new ConcurrentMapCacheManager(), null, null);
+    }
+
+    /**
+     * 第一維為輸入索引的假 EmbeddingModel，可少返回若干向量或倒序返回
+     */
+    private static final class StubEmbeddingModel implements EmbeddingModel {
+        private final int missing;
+        private final boolean reversed;
+
+        private StubEmbeddingModel(int missing, boolean reversed) {
+            this.missing = missing;
+            this.reversed = reversed;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            int count = request.getInstructions().size() - missing;
+            for (int i = 0; i < count; i++) {
+                int index = reversed ? count - 1 - i : i;
+                embeddings.add(new Embedding(new float[]{index, 1f}, index));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return new float[]{0f, 1f};
+        }
+
+        @Override
+        public int dimensions() {
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.advancedrag.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SentenceBuffer 測試
+ *
+ * 測試串流文本的句子切分：
+ * 1. 中文句末標點切分
+ * 2. 跨片段的句子
+ * 3. 英文句點與小數
+ * 4. 結束時取出剩餘文本
+ * 5. 已完成句子的長度（串流逐句推送的位置）
+ */
+@DisplayName("串流句子緩衝區測試")
+class SentenceBufferTest {
+
+    @Test
+    @DisplayName("句子測試1：中文句末標點切分")
+    void testChinesePunctuation() {
+        SentenceBuffer buffer = new SentenceBuffer();
+
+        List<String> sentences = buffer.append("Spring AI 很好用。它支援多種模型！");
+
+        assertEquals(List.of("Spring AI 很好用。", "它支援多種模型！"), sentences);
+        assertEquals("", buffer.flush());
+    }
+
+    @Test
+    @DisplayName("句子測試2：跨片段的句子在邊界處完成")
+    void testSentenceAcrossFragments() {
+        SentenceBuffer buffer = new SentenceBuffer();
+        List<String> sentences = new ArrayList<>();
+
+        for (String fragment : List.of("向量", "資料庫", "用於", "檢索", "。下一", "句")) {
+            sentences.addAll(buffer.append(fragment));
+        }
+
+        assertEquals(List.of("向量資料庫用於檢索。"), sentences);
+        assertEquals("下一句", buffer.flush());
+        assertEquals("向量資料庫用於檢索。下一句", buffer.getText());
+    }
+
+    @Test
+    @DisplayName("句子測試3：英文句點後接空白才切分，小數不切分")
+    void testEnglishPeriod() {
+        SentenceBuffer buffer = new SentenceBuffer();
+        List<String> sentences = new ArrayList<>();
+
+        sentences.addAll(buffer.append("Version 3.5 is out."));
+        assertTrue(sentences.isEmpty());
+
+        sentences.addAll(buffer.append(" Try it"));
+
+        assertEquals(List.of("Version 3.5 is out."), sentences);
+        assertEquals("Try it", buffer.flush());
+    }
+
+    @Test
+    @DisplayName("句子測試5：已完成句子的長度只在句子邊界前進")
+    void testCompletedLength() {
+        SentenceBuffer buffer = new SentenceBuffer();
+
+        buffer.append("第一句");
+        assertEquals(0, buffer.completedLength());
+
+        buffer.append("完成。第二");
+        assertEquals("第一句完成。", buffer.getText().substring(0, buffer.completedLength()));
+
+        buffer.flush();
+        assertEquals(buffer.getText().length(), buffer.completedLength());
+    }
+}
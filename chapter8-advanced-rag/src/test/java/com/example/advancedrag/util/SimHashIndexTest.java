@@ -0,0 +1,63 @@
+package com.example.advancedrag.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SimHash 近似重複索引測試
+ *
+ * 測試：
+ * 1. 相同與僅格式不同的文本指紋相同
+ * 2. 少量改動的文本指紋漢明距離小，不相關文本距離大
+ * 3. 分段索引找出近似重複、不誤判不相關文本
+ * 4. 超出分段索引保證範圍的漢明距離被拒絕
+ */
+@DisplayName("SimHash 近似重複索引測試")
+class SimHashIndexTest {
+
+    private static final String DOC = "Spring AI 提供了完整的 RAG 實現框架，包括向量存儲、文檔檢索和生成等功能。"
+            + "開發者可以透過 Advisor 模式將檢索增強整合到 ChatClient 流程中，並搭配 Re-ranking 提升排序品質。";
+
+    @Test
+    @DisplayName("指紋測試1：格式差異不影響指紋")
+    void testFormattingIgnored() {
+        assertEquals(SimHash.of(DOC), SimHash.of(DOC));
+        assertEquals(SimHash.of(DOC), SimHash.of("  " + DOC.replace("，", "， ").toUpperCase() + "\n"));
+    }
+
+    @Test
+    @DisplayName("指紋測試2：少量改動距離小，不相關文本距離大")
+    void testDistance() {
+        long original = SimHash.of(DOC);
+        long edited = SimHash.of(DOC.replace("品質。", "品質！"));
+        long unrelated = SimHash.of("Java 21 引入了虛擬線程與模式匹配，大幅簡化高併發服務的撰寫方式，也改善了記錄類別的可讀性。");
+
+        assertTrue(SimHash.distance(original, edited) <= 3,
+                "距離應 ≤ 3，實際 " + SimHash.distance(original, edited));
+        assertTrue(SimHash.distance(original, unrelated) > 10,
+                "距離應 > 10，實際 " + SimHash.distance(original, unrelated));
+    }
+
+    @Test
+    @DisplayName("索引測試3：分段索引找出近似重複")
+    void testIndexFindsNearDuplicates() {
+        SimHashIndex<String> index = new SimHashIndex<>(3);
+        index.add("doc-1", SimHash.of(DOC));
+
+        assertEquals("doc-1", index.findNearDuplicate(SimHash.of(DOC.replace("品質。", "品質！"))));
+        assertNull(index.findNearDuplicate(SimHash.of("Redis 二級快取搭配 Caffeine 可以降低向量生成的延遲與成本。")));
+
+        // 與任一段相同但距離過大的指紋不應命中
+        long signature = SimHash.of(DOC);
+        assertNull(index.findNearDuplicate(signature ^ 0xF0F0_0000_0000_0000L));
+    }
+
+    @Test
+    @DisplayName("索引測試4：漢明距離超過 BANDS - 1 時拒絕建立索引")
+    void testRejectsDistanceBeyondBands() {
+        assertThrows(IllegalArgumentException.class, () -> new SimHashIndex<String>(SimHash.BANDS));
+        assertThrows(IllegalArgumentException.class, () -> new SimHashIndex<String>(-1));
+    }
+}
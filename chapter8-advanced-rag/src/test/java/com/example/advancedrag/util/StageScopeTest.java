@@ -0,0 +1,128 @@
+package com.example.advancedrag.util;
+
+import com.example.advancedrag.exception.AdvancedRAGException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StageScope 測試
+ *
+ * 測試非同步階段作用域：
+ * 1. 獨立階段並行執行
+ * 2. 依賴階段接收上游結果
+ * 3. 階段超時轉為 STAGE_TIMEOUT 並中斷任務
+ * 4. 取消後依賴階段不再啟動
+ * 5. 失敗時返回降級值
+ */
+@DisplayName("非同步階段作用域測試")
+class StageScopeTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("階段測試1：獨立階段並行執行")
+    void testIndependentStagesOverlap() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        try (StageScope scope = new StageScope(executor)) {
+            CompletableFuture<Boolean> a = scope.run("a", () -> {
+                bothStarted.countDown();
+                return bothStarted.await(2, TimeUnit.SECONDS);
+            }, 5000);
+            CompletableFuture<Boolean> b = scope.run("b", () -> {
+                bothStarted.countDown();
+                return bothStarted.await(2, TimeUnit.SECONDS);
+            }, 5000);
+
+            assertTrue(StageScope.await(a));
+            assertTrue(StageScope.await(b));
+        }
+    }
+
+    @Test
+    @DisplayName("階段測試2：依賴階段接收上游結果")
+    void testDependentStage() {
+        try (StageScope scope = new StageScope(executor)) {
+            CompletableFuture<String> query = scope.run("rewrite", () -> "spring ai", 1000);
+            CompletableFuture<Integer> length = scope.then(query, "length", String::length, 1000);
+
+            int result = StageScope.await(length);
+            assertEquals(9, result);
+        }
+    }
+
+    @Test
+    @DisplayName("階段測試3：超時轉為 STAGE_TIMEOUT 並中斷任務")
+    void testTimeoutInterruptsTask() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        try (StageScope scope = new StageScope(executor)) {
+            CompletableFuture<String> slow = scope.run("slow", () -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "late";
+            }, 50);
+
+            AdvancedRAGException exception = assertThrows(AdvancedRAGException.class,
+                    () -> StageScope.await(slow));
+            assertEquals("STAGE_TIMEOUT", exception.getErrorCode());
+        }
+
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "超時的任務應被中斷");
+    }
+
+    @Test
+    @DisplayName("階段測試4：取消後依賴階段不再啟動")
+    void testCancelStopsDependents() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean dependentRan = new AtomicBoolean(false);
+
+        StageScope scope = new StageScope(executor);
+        CompletableFuture<String> upstream = scope.run("upstream", () -> {
+            release.await(2, TimeUnit.SECONDS);
+            return "done";
+        }, 5000);
+        CompletableFuture<String> dependent = scope.then(upstream, "dependent", value -> {
+            dependentRan.set(true);
+            return value;
+        }, 5000);
+
+        scope.cancelAll();
+        release.countDown();
+
+        assertTrue(upstream.isCancelled());
+        assertThrows(RuntimeException.class, () -> StageScope.await(dependent));
+        Thread.sleep(100);
+        assertFalse(dependentRan.get());
+    }
+
+    @Test
+    @DisplayName("階段測試5：失敗時返回降級值")
+    void testAwaitOrDefault() {
+        try (StageScope scope = new StageScope(executor)) {
+            CompletableFuture<String> failing = scope.run("failing", () -> {
+                throw new IllegalStateException("boom");
+            }, 1000);
+
+            assertEquals("fallback", StageScope.awaitOrDefault(failing, "fallback", "failing"));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.advancedrag.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TopKSelector 測試
+ *
+ * 測試有界堆 Top-K 選擇：
+ * 1. 基本降序選擇
+ * 2. 同分時保持原始順序
+ * 3. 與「穩定排序後取前 k 個」結果一致（隨機資料）
+ * 4. 邊界條件
+ */
+@DisplayName("Top-K 選擇測試")
+class TopKSelectorTest {
+
+    @Test
+    @DisplayName("選擇測試1：返回分數最高的 k 個索引（降序）")
+    void testSelectDescending() {
+        double[] scores = {0.1, 0.9, 0.5, 0.7, 0.3};
+
+        assertArrayEquals(new int[]{1, 3, 2}, TopKSelector.select(scores, 3));
+    }
+
+    @Test
+    @DisplayName("選擇測試2：同分時索引較小者優先")
+    void testTiesKeepOriginalOrder() {
+        double[] scores = {0.5, 0.8, 0.5, 0.8, 0.5};
+
+        assertArrayEquals(new int[]{1, 3, 0, 2}, TopKSelector.select(scores, 4));
+    }
+
+    @Test
+    @DisplayName("選擇測試3：與穩定排序後取前 k 個一致")
+    void testMatchesStableSort() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int n = random.nextInt(400);
+            int k = random.nextInt(60);
+            double[] scores = new double[n];
+            for (int i = 0; i < n; i++) {
+                // 取少量離散值以產生大量同分
+                scores[i] = random.nextInt(20) / 20.0;
+            }
+
+            assertArrayEquals(stableSortTopK(scores, k), TopKSelector.select(scores, k),
+                    "n=" + n + ", k=" + k);
+        }
+    }
+
+    @Test
+    @DisplayName("選擇測試4：k 為 0 或大於候選數")
+    void testBoundaries() {
+        double[] scores = {0.2, 0.4};
+
+        assertEquals(0, TopKSelector.select(scores, 0).length);
+        assertEquals(0, TopKSelector.select(new double[0], 5).length);
+        assertArrayEquals(new int[]{1, 0}, TopKSelector.select(scores, 10));
+    }
+
+    private int[] stableSortTopK(double[] scores, int k) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) {
+            indices.add(i);
+        }
+        indices.sort((a, b) -> Double.compare(scores[b], scores[a]));
+        return indices.stream().limit(k).mapToInt(Integer::intValue).toArray();
+    }
+}
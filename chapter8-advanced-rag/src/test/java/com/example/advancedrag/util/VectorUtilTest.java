@@ -0,0 +1,132 @@
+package com.example.advancedrag.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 向量計算工具測試
+ *
+ * 測試：
+ * 1. 餘弦相似度與逐元素參考實現一致（含不足一個向量寬度的尾端與零向量）
+ * 2. 批次內積、批次餘弦與逐對計算一致
+ * 3. 預先正規化後內積即為餘弦相似度
+ * 4. SIMD 與純量後端結果一致（SIMD 模組不可用時略過）
+ */
+@DisplayName("向量計算工具測試")
+class VectorUtilTest {
+
+    private static final int[] DIMENSIONS = {1, 3, 7, 8, 17, 384, 1536, 3072};
+
+    private final Random random = new Random(42);
+
+    @Test
+    @DisplayName("相似度測試1：與參考實現一致")
+    void testCosineMatchesReference() {
+        for (int dimensions : DIMENSIONS) {
+            float[] a = randomVector(dimensions);
+            float[] b = randomVector(dimensions);
+
+            assertEquals(referenceCosine(a, b), VectorUtil.cosineSimilarity(a, b), 1e-5, "dims=" + dimensions);
+            assertEquals(referenceDot(a, b), VectorUtil.dotProduct(a, b),
+                    1e-5 * Math.max(1.0, Math.abs(referenceDot(a, b))), "dims=" + dimensions);
+        }
+
+        assertEquals(0.0, VectorUtil.cosineSimilarity(new float[16], randomVector(16)));
+        assertThrows(IllegalArgumentException.class, () -> VectorUtil.cosineSimilarity(new float[3], new float[4]));
+    }
+
+    @Test
+    @DisplayName("批次測試2：與逐對計算一致")
+    void testBatchMatchesPairwise() {
+        int dimensions = 389;
+        int rows = 50;
+        float[] query = randomVector(dimensions);
+        float[] matrix = randomVector(dimensions * rows);
+
+        double[] dots = new double[rows];
+        double[] cosines = new double[rows];
+        VectorUtil.dotProducts(query, matrix, dimensions, dots);
+        VectorUtil.cosineSimilarities(query, matrix, dimensions, cosines);
+
+        for (int r = 0; r < rows; r++) {
+            float[] row = new float[dimensions];
+            System.arraycopy(matrix, r * dimensions, row, 0, dimensions);
+            assertEquals(referenceDot(query, row), dots[r], 1e-3, "row=" + r);
+            assertEquals(referenceCosine(query, row), cosines[r], 1e-5, "row=" + r);
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> VectorUtil.dotProducts(query, new float[dimensions + 1], dimensions, dots));
+        assertThrows(IllegalArgumentException.class,
+                () -> VectorUtil.dotProducts(query, matrix, dimensions, new double[rows - 1]));
+    }
+
+    @Test
+    @DisplayName("正規化測試3：正規化後內積即餘弦")
+    void testNormalizedDotIsCosine() {
+        int dimensions = 1536;
+        int rows = 20;
+        float[] matrix = randomVector(dimensions * rows);
+        float[] original = matrix.clone();
+        float[] query = randomVector(dimensions);
+
+        VectorUtil.normalizeRows(matrix, dimensions);
+        double[] dots = new double[rows];
+        VectorUtil.dotProducts(VectorUtil.normalize(query), matrix, dimensions, dots);
+
+        double[] cosines = new double[rows];
+        VectorUtil.cosineSimilarities(query, original, dimensions, cosines);
+        for (int r = 0; r < rows; r++) {
+            assertEquals(cosines[r], dots[r], 1e-5, "row=" + r);
+        }
+
+        // 零列保持不變
+        float[] zeros = VectorUtil.normalizeRows(new float[8], 4);
+        assertArrayEquals(new float[8], zeros);
+    }
+
+    @Test
+    @DisplayName("後端測試4：SIMD 與純量結果一致")
+    void testSimdMatchesScalar() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "需以 --add-modules jdk.incubator.vector 執行");
+
+        VectorKernels simd = VectorKernels.loadSimd();
+        assumeTrue(simd != null, "平台不支援 SIMD 向量寬度");
+        VectorKernels scalar = ScalarVectorKernels.INSTANCE;
+        for (int dimensions : DIMENSIONS) {
+            float[] a = randomVector(dimensions);
+            float[] b = randomVector(dimensions);
+
+            assertEquals(scalar.cosine(a, b), simd.cosine(a, b), 1e-5, "dims=" + dimensions);
+            double expectedDot = scalar.dot(a, 0, b, 0, dimensions);
+            assertEquals(expectedDot, simd.dot(a, 0, b, 0, dimensions),
+                    1e-5 * Math.max(1.0, Math.abs(expectedDot)), "dims=" + dimensions);
+        }
+    }
+
+    private float[] randomVector(int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double referenceDot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += (double) a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double referenceCosine(float[] a, float[] b) {
+        return referenceDot(a, b) / (Math.sqrt(referenceDot(a, a)) * Math.sqrt(referenceDot(b, b)));
+    }
+}
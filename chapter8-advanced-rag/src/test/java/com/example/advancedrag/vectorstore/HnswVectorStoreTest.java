@@ -0,0 +1,299 @@
+package com.example.advancedrag.vectorstore;
+
+import com.example.advancedrag.properties.RAGProperties;
+import com.example.advancedrag.util.TopKSelector;
+import com.example.advancedrag.util.VectorUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 進程內 HNSW 向量庫測試
+ *
+ * 測試：
+ * 1. 近似檢索召回率與暴力掃描比較（recall@10 ≥ 0.95），結果按相似度降序且含 distance
+ * 2. 元數據過濾表達式（AND / IN / NOT / 數值比較）只返回符合的文檔
+ * 3. 增量更新與刪除（按 ID、按過濾表達式），重建後結果不變
+ * 4. 快照保存後以記憶體映射載入，檢索結果一致且可繼續寫入；未完成的快照版本不影響載入
+ * 5. VectorStore 介面以 EmbeddingModel 計算文檔與查詢向量
+ */
+@DisplayName("進程內 HNSW 向量庫測試")
+class HnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int DOCUMENTS = 2000;
+    private static final String[] LANGUAGES = {"zh", "en", "ja"};
+
+    private final Random random = new Random(42);
+    private final FilterExpressionBuilder filter = new FilterExpressionBuilder();
+
+    @TempDir
+    Path dir;
+
+    private HnswVectorStore store;
+    private List<float[]> vectors;
+
+    @BeforeEach
+    void setUp() {
+        store = new HnswVectorStore(new FixedEmbeddingModel(), new RAGProperties());
+        vectors = new ArrayList<>();
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            vectors.add(randomVector());
+            documents.add(document(i));
+        }
+        store.add(documents, vectors);
+    }
+
+    @Test
+    @DisplayName("檢索測試1：召回率與暴力掃描比較")
+    void testRecallAgainstBruteForce() {
+        int queries = 50;
+        int k = 10;
+        int hits = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector();
+            Set<String> expected = bruteForce(query, k);
+
+            List<Document> results = store.similaritySearch(query, k, 0.0);
+            assertEquals(k, results.size());
+            for (int i = 1; i < results.size(); i++) {
+                assertTrue(results.get(i - 1).getScore() >= results.get(i).getScore());
+            }
+            Document top = results.get(0);
+            assertEquals(1.0 - top.getScore(), (Double) top.getMetadata().get("distance"), 1e-9);
+
+            for (Document document : results) {
+                if (expected.contains(document.getId())) {
+                    hits++;
+                }
+            }
+        }
+
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= 0.95, "recall@10 = " + recall);
+
+        // 自身向量必為第一名，閾值過濾生效
+        List<Document> self = store.similaritySearch(vectors.get(7), 3, 0.99);
+        assertEquals(1, self.size());
+        assertEquals("doc-7", self.get(0).getId());
+    }
+
+    @Test
+    @DisplayName("過濾測試2：元數據過濾表達式")
+    void testFilterExpression() {
+        float[] query = randomVector();
+        // 閾值 -1：接受所有相似度，只驗證過濾
+        double acceptAll = -1.0;
+
+        List<Document> zhRecent = store.search(query, 20, acceptAll,
+                filter.and(filter.eq("lang", "zh"), filter.gte("year", 2024)).build());
+        assertEquals(20, zhRecent.size());
+        for (Document document : zhRecent) {
+            assertEquals("zh", document.getMetadata().get("lang"));
+            assertTrue(((Number) document.getMetadata().get("year")).intValue() >= 2024);
+        }
+
+        List<Document> notZh = store.search(query, 20, acceptAll,
+                filter.not(filter.in("lang", "zh", "ja")).build());
+        assertFalse(notZh.isEmpty());
+        notZh.forEach(document -> assertEquals("en", document.getMetadata().get("lang")));
+
+        // 高選擇性過濾：只有一個文檔符合
+        List<Document> single = store.search(query, 5, acceptAll, filter.eq("seq", 1234).build());
+        assertEquals(1, single.size());
+        assertEquals("doc-1234", single.get(0).getId());
+    }
+
+    @Test
+    @DisplayName("更新測試3：增量更新、刪除與重建")
+    void testUpdateDeleteAndCompact() {
+        float[] target = randomVector();
+
+        // 同 ID 再次寫入：以新向量取代舊向量
+        store.add(List.of(document(10)), List.of(target));
+        assertEquals(DOCUMENTS, store.size());
+        assertEquals("doc-10", store.similaritySearch(target, 1, 0.0).get(0).getId());
+        assertFalse(store.similaritySearch(vectors.get(10), 5, 0.0).stream()
+                .anyMatch(document -> document.getId().equals("doc-10")
+                        && document.getScore() > 0.999));
+
+        store.delete(List.of("doc-10"));
+        assertEquals(DOCUMENTS - 1, store.size());
+        assertNotEquals("doc-10", store.similaritySearch(target, 1, 0.0).get(0).getId());
+
+        store.delete(filter.eq("lang", "ja").build());
+        assertTrue(store.similaritySearch(randomVector(), 50, 0.0).stream()
+                .noneMatch(document -> "ja".equals(document.getMetadata().get("lang"))));
+        int remaining = store.size();
+
+        float[] query = randomVector();
+        List<String> before = ids(store.similaritySearch(query, 10, 0.0));
+        store.compact();
+        assertEquals(remaining, store.size());
+        List<String> after = ids(store.similaritySearch(query, 10, 0.0));
+        assertTrue(overlap(before, after) >= 9, before + " vs " + after);
+    }
+
+    @Test
+    @DisplayName("快照測試4：保存後載入結果一致")
+    void testSnapshotRoundTrip() {
+        store.delete(List.of("doc-3"));
+        store.snapshot(dir);
+
+        HnswVectorStore restored = new HnswVectorStore(new FixedEmbeddingModel(), new RAGProperties());
+        restored.restore(dir);
+        assertEquals(store.size(), restored.size());
+
+        for (int q = 0; q < 10; q++) {
+            float[] query = randomVector();
+            List<Document> expected = store.similaritySearch(query, 10, 0.0);
+            List<Document> actual = restored.similaritySearch(query, 10, 0.0);
+            assertEquals(ids(expected), ids(actual));
+            assertEquals(expected.get(0).getMetadata().get("lang"), actual.get(0).getMetadata().get("lang"));
+        }
+        assertTrue(restored.similaritySearch(vectors.get(3), 5, 0.0).stream()
+                .noneMatch(document -> document.getId().equals("doc-3")));
+
+        // 載入後可繼續寫入
+        float[] extra = randomVector();
+        restored.add(List.of(Document.builder().id("extra").text("extra").build()), List.of(extra));
+        assertEquals("extra", restored.similaritySearch(extra, 1, 0.0).get(0).getId());
+    }
+
+    @Test
+    @DisplayName("快照測試4：中途崩潰的快照版本不影響載入")
+    void testInterruptedSnapshotIsIgnored() throws IOException {
+        store.snapshot(dir);
+        store.delete(List.of("doc-0", "doc-1"));
+        store.snapshot(dir);
+        assertEquals("snapshot-2", Files.readString(dir.resolve("CURRENT")).trim());
+
+        // 模擬寫到一半崩潰：新版本目錄只有部分檔案，CURRENT 尚未切換
+        Path partial = Files.createDirectory(dir.resolve("snapshot-3"));
+        Files.write(partial.resolve("vectors.f32"), new byte[DIMENSIONS * 4]);
+
+        HnswVectorStore restored = new HnswVectorStore(new FixedEmbeddingModel(), new RAGProperties());
+        restored.restore(dir);
+        assertEquals(store.size(), restored.size());
+
+        // 下一次快照不重用未完成版本的名稱，並清理舊版本
+        store.snapshot(dir);
+        assertEquals("snapshot-4", Files.readString(dir.resolve("CURRENT")).trim());
+        assertFalse(Files.exists(dir.resolve("snapshot-1")));
+    }
+
+    @Test
+    @DisplayName("介面測試5：VectorStore 以 EmbeddingModel 計算向量")
+    void testVectorStoreInterface() {
+        HnswVectorStore textStore = new HnswVectorStore(new FixedEmbeddingModel(), new RAGProperties());
+        textStore.add(List.of(
+                Document.builder().id("a").text("向量資料庫").metadata("lang", "zh").build(),
+                Document.builder().id("b").text("vector database").metadata("lang", "en").build(),
+                Document.builder().id("c").text("重排序模型").metadata("lang", "zh").build()));
+
+        List<Document> results = textStore.similaritySearch(SearchRequest.builder()
+                .query("向量資料庫")
+                .topK(2)
+                .filterExpression(filter.eq("lang", "zh").build())
+                .build());
+        assertEquals(List.of("a", "c"), ids(results));
+
+        textStore.delete(List.of("a"));
+        assertEquals(List.of("c"), ids(textStore.similaritySearch(SearchRequest.builder()
+                .query("向量資料庫")
+                .topK(2)
+                .filterExpression(filter.eq("lang", "zh").build())
+                .build())));
+    }
+
+    private Document document(int i) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("lang", LANGUAGES[i % LANGUAGES.length]);
+        metadata.put("year", 2020 + (i / LANGUAGES.length) % 6);
+        metadata.put("seq", i);
+        return Document.builder().id("doc-" + i).text("document " + i).metadata(metadata).build();
+    }
+
+    private Set<String> bruteForce(float[] query, int k) {
+        double[] scores = new double[vectors.size()];
+        for (int i = 0; i < vectors.size(); i++) {
+            scores[i] = VectorUtil.cosineSimilarity(query, vectors.get(i));
+        }
+        Set<String> ids = new HashSet<>();
+        for (int index : TopKSelector.select(scores, k)) {
+            ids.add("doc-" + index);
+        }
+        return ids;
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    private static int overlap(List<String> a, List<String> b) {
+        Set<String> set = new HashSet<>(a);
+        return (int) b.stream().filter(set::contains).count();
+    }
+
+    /**
+     * 固定向量的假 EmbeddingModel：相同文本得到相同向量，文本共享的字元越多越相似
+     */
+    private static class FixedEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(embed(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public float[] embed(String text) {
+            float[] vector = new float[DIMENSIONS];
+            text.codePoints().forEach(c -> vector[Math.floorMod(c * 31, DIMENSIONS)] += 1f);
+            return vector;
+        }
+
+        @Override
+        public int dimensions() {
+            return DIMENSIONS;
+        }
+    }
+}